@@ -0,0 +1,183 @@
+package com.example.hero_pr12;
+
+/**
+ * Decides from the motion sensors whether the user is walking or standing still, and duty-cycles
+ * the BLE scan accordingly.
+ *
+ * Still means the variance of the accelerometer magnitude stayed below {@link #STILL_VARIANCE}
+ * with no step for {@link #STILL_NANOS}; gravity alone gives a constant magnitude whatever the
+ * orientation of the phone. Any step, or a variance above {@link #MOVING_VARIANCE}, switches
+ * straight back to {@link Mode#ACTIVE}, which happens within the first step. While
+ * {@link Mode#IDLE} the scan runs for {@link #IDLE_SCAN_WINDOW_NANOS} at the end of every
+ * {@link #IDLE_SCAN_PERIOD_NANOS}, enough to notice that the beacons around have changed.
+ *
+ * Scan-on time is integrated from the sample timestamps, so replaying a trace gives the same
+ * figure as the device. Timestamps are elapsed-realtime nanoseconds. Not thread-safe.
+ */
+public class AdaptiveScanScheduler {
+    public enum Mode {
+        /** Walking: continuous scan, motion sensors at full rate. */
+        ACTIVE,
+        /** Still: duty-cycled scan, motion sensors slowed down. */
+        IDLE
+    }
+
+    public interface Listener {
+        void onModeChanged(Mode mode, long timestampNanos);
+    }
+
+    static final long STILL_NANOS = 5000000000L;
+    static final long IDLE_SCAN_PERIOD_NANOS = 10000000000L;
+    static final long IDLE_SCAN_WINDOW_NANOS = 2000000000L;
+    static final double STILL_VARIANCE = 0.05; // (m/s²)²
+    static final double MOVING_VARIANCE = 0.5;
+    private static final double VARIANCE_TIME_CONSTANT_NANOS = 0.5e9;
+
+    private Listener listener;
+    private Mode mode = Mode.ACTIVE;
+    private long idleSinceNanos;
+    private long lastUnstillNanos;
+    private boolean hasAccelerometer;
+    private long lastAccelerometerNanos;
+    private double mean;
+    private double variance;
+    private long startNanos = -1;
+    private long lastNanos;
+    private long scanOnNanos;
+    private long idleNanos;
+    private int modeChanges;
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void onAccelerometer(float[] values, long timestampNanos) {
+        advance(timestampNanos);
+        double magnitude = Math.sqrt(values[0] * values[0] + values[1] * values[1] + values[2] * values[2]);
+        if (!hasAccelerometer) {
+            hasAccelerometer = true;
+            mean = magnitude;
+            variance = 0;
+            lastUnstillNanos = timestampNanos;
+        } else if (timestampNanos > lastAccelerometerNanos) {
+            double alpha = 1 - Math.exp(-(timestampNanos - lastAccelerometerNanos) / VARIANCE_TIME_CONSTANT_NANOS);
+            double difference = magnitude - mean;
+            mean += alpha * difference;
+            variance = (1 - alpha) * (variance + alpha * difference * difference);
+        }
+        lastAccelerometerNanos = Math.max(lastAccelerometerNanos, timestampNanos);
+        if (variance >= STILL_VARIANCE) {
+            lastUnstillNanos = timestampNanos;
+        }
+        if (variance > MOVING_VARIANCE) {
+            setMode(Mode.ACTIVE, timestampNanos);
+        } else if (mode == Mode.ACTIVE && timestampNanos - lastUnstillNanos >= STILL_NANOS) {
+            setMode(Mode.IDLE, timestampNanos);
+        }
+    }
+
+    public void onStep(long timestampNanos) {
+        advance(timestampNanos);
+        lastUnstillNanos = Math.max(lastUnstillNanos, timestampNanos);
+        setMode(Mode.ACTIVE, timestampNanos);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Whether the scan should be running at {@code nowNanos}.
+     */
+    public boolean isScanOn(long nowNanos) {
+        advance(nowNanos);
+        return mode == Mode.ACTIVE || isInWindow(nowNanos - idleSinceNanos);
+    }
+
+    /**
+     * When the scan should next be started or stopped, if nothing moves before then;
+     * {@link Long#MAX_VALUE} while {@link Mode#ACTIVE}.
+     */
+    public long nextScanChangeNanos(long nowNanos) {
+        if (mode == Mode.ACTIVE) {
+            return Long.MAX_VALUE;
+        }
+        long phase = Math.floorMod(nowNanos - idleSinceNanos, IDLE_SCAN_PERIOD_NANOS);
+        long offStart = IDLE_SCAN_PERIOD_NANOS - IDLE_SCAN_WINDOW_NANOS;
+        return nowNanos - phase + (phase < offStart ? offStart : IDLE_SCAN_PERIOD_NANOS);
+    }
+
+    /**
+     * Scan-on time from the first sample up to the latest one.
+     */
+    public long getScanOnNanos() {
+        return scanOnNanos;
+    }
+
+    /**
+     * Time from the first sample up to the latest one.
+     */
+    public long getElapsedNanos() {
+        return startNanos < 0 ? 0 : lastNanos - startNanos;
+    }
+
+    public long getIdleNanos() {
+        return idleNanos;
+    }
+
+    /**
+     * Fraction of the elapsed time the scan was on; 1 before anything was seen.
+     */
+    public double getScanDutyCycle() {
+        long elapsed = getElapsedNanos();
+        return elapsed == 0 ? 1 : (double) scanOnNanos / elapsed;
+    }
+
+    public int getModeChangeCount() {
+        return modeChanges;
+    }
+
+    private void setMode(Mode newMode, long timestampNanos) {
+        if (newMode == mode) {
+            return;
+        }
+        mode = newMode;
+        modeChanges++;
+        if (newMode == Mode.IDLE) {
+            idleSinceNanos = timestampNanos;
+        }
+        if (listener != null) {
+            listener.onModeChanged(newMode, timestampNanos);
+        }
+    }
+
+    // Adds the scan-on time up to nowNanos under the current mode
+    private void advance(long nowNanos) {
+        if (startNanos < 0) {
+            startNanos = nowNanos;
+            lastNanos = nowNanos;
+            return;
+        }
+        if (nowNanos <= lastNanos) {
+            return;
+        }
+        if (mode == Mode.ACTIVE) {
+            scanOnNanos += nowNanos - lastNanos;
+        } else {
+            scanOnNanos += windowTimeUntil(nowNanos - idleSinceNanos) - windowTimeUntil(lastNanos - idleSinceNanos);
+            idleNanos += nowNanos - lastNanos;
+        }
+        lastNanos = nowNanos;
+    }
+
+    // The scan window sits at the end of each period, so a short stop does not start with a scan
+    private static boolean isInWindow(long sinceIdleNanos) {
+        return Math.floorMod(sinceIdleNanos, IDLE_SCAN_PERIOD_NANOS) >= IDLE_SCAN_PERIOD_NANOS - IDLE_SCAN_WINDOW_NANOS;
+    }
+
+    private static long windowTimeUntil(long sinceIdleNanos) {
+        long periods = sinceIdleNanos / IDLE_SCAN_PERIOD_NANOS;
+        long phase = sinceIdleNanos % IDLE_SCAN_PERIOD_NANOS;
+        return periods * IDLE_SCAN_WINDOW_NANOS + Math.max(0, phase - (IDLE_SCAN_PERIOD_NANOS - IDLE_SCAN_WINDOW_NANOS));
+    }
+}
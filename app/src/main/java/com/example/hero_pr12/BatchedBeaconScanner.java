@@ -0,0 +1,141 @@
+package com.example.hero_pr12;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scanner built on {@link BluetoothLeScanner}. Known beacons are matched by hardware filters and
+ * results are held in the controller for {@code reportDelayMillis}, so the application processor
+ * wakes once per batch instead of once per advertisement.
+ */
+public class BatchedBeaconScanner implements BeaconScanner {
+    public enum Mode {
+        LOW_POWER(ScanSettings.SCAN_MODE_LOW_POWER),
+        BALANCED(ScanSettings.SCAN_MODE_BALANCED),
+        LOW_LATENCY(ScanSettings.SCAN_MODE_LOW_LATENCY);
+
+        final int scanMode;
+
+        Mode(int scanMode) {
+            this.scanMode = scanMode;
+        }
+    }
+
+    private static final String TAG = "BatchedBeaconScanner";
+
+    private final BluetoothAdapter bluetoothAdapter;
+    private final BeaconScanFilterSpec filterSpec;
+    private final Mode mode;
+    private final long reportDelayMillis;
+    private BluetoothLeScanner scanner;
+    private volatile Listener listener;
+    private boolean scanning;
+
+    private final ScanCallback scanCallback = new ScanCallback() {
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            Listener current = listener;
+            if (current != null) {
+                deliver(current, result);
+                current.onScanBatchComplete();
+            }
+        }
+
+        @Override
+        public void onBatchScanResults(List<ScanResult> results) {
+            Listener current = listener;
+            if (current == null) {
+                return;
+            }
+            for (int i = 0, size = results.size(); i < size; i++) {
+                deliver(current, results.get(i));
+            }
+            current.onScanBatchComplete();
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            Log.e(TAG, "Scan failed: " + errorCode);
+            scanning = false;
+        }
+    };
+
+    public BatchedBeaconScanner(BluetoothAdapter bluetoothAdapter, BeaconScanFilterSpec filterSpec, Mode mode, long reportDelayMillis) {
+        this.bluetoothAdapter = bluetoothAdapter;
+        this.filterSpec = filterSpec;
+        this.mode = mode;
+        this.reportDelayMillis = reportDelayMillis;
+    }
+
+    @Override
+    public void start(Listener listener) {
+        if (scanning) {
+            return;
+        }
+        scanner = bluetoothAdapter.getBluetoothLeScanner();
+        if (scanner == null) {
+            Log.e(TAG, "Bluetooth LE scanner unavailable");
+            return;
+        }
+        this.listener = listener;
+        scanner.startScan(buildFilters(), buildSettings(), scanCallback);
+        scanning = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!scanning) {
+            return;
+        }
+        if (bluetoothAdapter.isEnabled()) {
+            scanner.flushPendingScanResults(scanCallback);
+            scanner.stopScan(scanCallback);
+        }
+        // The flushed batch arrives on the callback after this returns, so the listener stays
+        // until the next start replaces it
+        scanning = false;
+    }
+
+    @Override
+    public boolean isScanning() {
+        return scanning;
+    }
+
+    private List<ScanFilter> buildFilters() {
+        List<ScanFilter> filters = new ArrayList<>();
+        for (String address : filterSpec.getDeviceAddresses()) {
+            filters.add(new ScanFilter.Builder().setDeviceAddress(address).build());
+        }
+        byte[] mask = filterSpec.getManufacturerDataMask();
+        for (byte[] data : filterSpec.getManufacturerData()) {
+            filters.add(new ScanFilter.Builder()
+                    .setManufacturerData(BeaconScanFilterSpec.APPLE_COMPANY_ID, data, mask)
+                    .build());
+        }
+        return filters;
+    }
+
+    private ScanSettings buildSettings() {
+        // Controllers without batching reject a non-zero report delay
+        long delay = bluetoothAdapter.isOffloadedScanBatchingSupported() ? reportDelayMillis : 0;
+        return new ScanSettings.Builder()
+                .setScanMode(mode.scanMode)
+                .setReportDelay(delay)
+                .build();
+    }
+
+    private static void deliver(Listener listener, ScanResult result) {
+        ScanRecord record = result.getScanRecord();
+        listener.onScanSample(result.getDevice().getAddress(), result.getRssi(),
+                record != null ? record.getBytes() : null, result.getTimestampNanos());
+    }
+}
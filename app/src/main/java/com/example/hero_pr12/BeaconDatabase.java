@@ -0,0 +1,308 @@
+package com.example.hero_pr12;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.UUID;
+
+/**
+ * Read-only view of the binary beacon database, normally memory-mapped from disk.
+ *
+ * Layout (little-endian):
+ * <pre>
+ *   header   magic "BCDB", version, record count, record size,
+ *            records offset, MAC table offset, iBeacon table offset, floor table offset (8 x int)
+ *   records  count x RECORD_SIZE bytes, in source order; the record index is the beacon index
+ *            mac(long) uuidMsb(long) uuidLsb(long) major<<16|minor(int) txPower(int)
+ *            x(float) y(float) color(int) floor(int)
+ *   MAC      count x (mac(long) index(int)), sorted by MAC
+ *   iBeacon  count x (uuidMsb(long) uuidLsb(long) major<<16|minor(int) index(int)), sorted
+ *   floors   floor count(int), then per floor in ascending order (floor(int) first(int) count(int)),
+ *            then count x index(int) grouped by floor; entry "first" points into this list
+ * </pre>
+ * Lookups binary-search the key tables in place; nothing is parsed into maps. Version 1 files
+ * have no floor table and zero in the floor field, so every beacon is on floor 0.
+ */
+public class BeaconDatabase {
+    public static final int MAGIC = 0x42434442; // "BCDB"
+    public static final int VERSION = 2;
+    static final int VERSION_SINGLE_FLOOR = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int RECORD_SIZE = 48;
+    public static final int MAC_ENTRY_SIZE = 12;
+    public static final int IBEACON_ENTRY_SIZE = 24;
+    public static final int FLOOR_ENTRY_SIZE = 12;
+    public static final long NO_MAC = -1L;
+
+    static final int RECORD_MAC = 0;
+    static final int RECORD_UUID_MSB = 8;
+    static final int RECORD_UUID_LSB = 16;
+    static final int RECORD_MAJOR_MINOR = 24;
+    static final int RECORD_TX_POWER = 28;
+    static final int RECORD_X = 32;
+    static final int RECORD_Y = 36;
+    static final int RECORD_COLOR = 40;
+    static final int RECORD_FLOOR = 44;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int recordsOffset;
+    private final int macTableOffset;
+    private final int iBeaconTableOffset;
+    private final int floorTableOffset; // -1 in version 1 files
+
+    private BeaconDatabase(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a beacon database");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION && version != VERSION_SINGLE_FLOOR) {
+            throw new IllegalArgumentException("Unsupported beacon database version " + version);
+        }
+        count = buffer.getInt(8);
+        if (buffer.getInt(12) != RECORD_SIZE) {
+            throw new IllegalArgumentException("Unexpected record size " + buffer.getInt(12));
+        }
+        recordsOffset = buffer.getInt(16);
+        macTableOffset = buffer.getInt(20);
+        iBeaconTableOffset = buffer.getInt(24);
+        if (iBeaconTableOffset + (long) count * IBEACON_ENTRY_SIZE > buffer.limit()) {
+            throw new IllegalArgumentException("Truncated beacon database");
+        }
+        floorTableOffset = version == VERSION_SINGLE_FLOOR ? -1 : buffer.getInt(28);
+        if (floorTableOffset >= 0 && (floorTableOffset + 4 > buffer.limit() || floorTableOffset + 4
+                + (long) buffer.getInt(floorTableOffset) * FLOOR_ENTRY_SIZE + (long) count * 4 > buffer.limit())) {
+            throw new IllegalArgumentException("Truncated beacon database");
+        }
+    }
+
+    public static BeaconDatabase open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            return new BeaconDatabase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static BeaconDatabase wrap(ByteBuffer buffer) {
+        return new BeaconDatabase(buffer.duplicate());
+    }
+
+    public static BeaconDatabase empty() {
+        return wrap(new BeaconDatabaseWriter().toByteBuffer());
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long mac(int index) {
+        return buffer.getLong(record(index) + RECORD_MAC);
+    }
+
+    public long uuidMostSignificantBits(int index) {
+        return buffer.getLong(record(index) + RECORD_UUID_MSB);
+    }
+
+    public long uuidLeastSignificantBits(int index) {
+        return buffer.getLong(record(index) + RECORD_UUID_LSB);
+    }
+
+    public int major(int index) {
+        return buffer.getInt(record(index) + RECORD_MAJOR_MINOR) >>> 16;
+    }
+
+    public int minor(int index) {
+        return buffer.getInt(record(index) + RECORD_MAJOR_MINOR) & 0xFFFF;
+    }
+
+    public int txPower(int index) {
+        return buffer.getInt(record(index) + RECORD_TX_POWER);
+    }
+
+    public float x(int index) {
+        return buffer.getFloat(record(index) + RECORD_X);
+    }
+
+    public float y(int index) {
+        return buffer.getFloat(record(index) + RECORD_Y);
+    }
+
+    public int color(int index) {
+        return buffer.getInt(record(index) + RECORD_COLOR);
+    }
+
+    public int floor(int index) {
+        return buffer.getInt(record(index) + RECORD_FLOOR);
+    }
+
+    /**
+     * The floors that have beacons, in ascending order. An empty database has none.
+     */
+    public int[] floors() {
+        if (floorTableOffset < 0) {
+            return count > 0 ? new int[]{0} : new int[0];
+        }
+        int[] floors = new int[buffer.getInt(floorTableOffset)];
+        for (int i = 0; i < floors.length; i++) {
+            floors[i] = buffer.getInt(floorTableOffset + 4 + i * FLOOR_ENTRY_SIZE);
+        }
+        return floors;
+    }
+
+    /**
+     * Indices of the beacons on {@code floor}, ascending; empty if the floor has none.
+     */
+    public int[] beaconsOnFloor(int floor) {
+        if (floorTableOffset < 0) {
+            int[] all = new int[floor == 0 ? count : 0];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        int floorCount = buffer.getInt(floorTableOffset);
+        int indices = floorTableOffset + 4 + floorCount * FLOOR_ENTRY_SIZE;
+        for (int i = 0; i < floorCount; i++) {
+            int entry = floorTableOffset + 4 + i * FLOOR_ENTRY_SIZE;
+            if (buffer.getInt(entry) == floor) {
+                int first = buffer.getInt(entry + 4);
+                int[] beacons = new int[buffer.getInt(entry + 8)];
+                for (int j = 0; j < beacons.length; j++) {
+                    beacons[j] = buffer.getInt(indices + (first + j) * 4);
+                }
+                return beacons;
+            }
+        }
+        return new int[0];
+    }
+
+    /**
+     * Builds the legacy {@code uuid_major_minor} key. Allocates; not for the per-packet path.
+     */
+    public String beaconKey(int index) {
+        UUID uuid = new UUID(uuidMostSignificantBits(index), uuidLeastSignificantBits(index));
+        return uuid + "_" + major(index) + "_" + minor(index);
+    }
+
+    /**
+     * Returns the index of the beacon with the given packed MAC address, or -1.
+     */
+    public int findByMac(long mac) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long key = buffer.getLong(macTableOffset + mid * MAC_ENTRY_SIZE);
+            if (key < mac) {
+                low = mid + 1;
+            } else if (key > mac) {
+                high = mid - 1;
+            } else {
+                return buffer.getInt(macTableOffset + mid * MAC_ENTRY_SIZE + 8);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the beacon with the given iBeacon identity, or -1.
+     */
+    public int findByIBeacon(long uuidMsb, long uuidLsb, int major, int minor) {
+        int majorMinor = (major << 16) | minor;
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = iBeaconTableOffset + mid * IBEACON_ENTRY_SIZE;
+            int cmp = compareIBeacon(buffer.getLong(entry), buffer.getLong(entry + 8), buffer.getInt(entry + 16),
+                    uuidMsb, uuidLsb, majorMinor);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return buffer.getInt(entry + 20);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Looks up a legacy {@code uuid_major_minor} key. Allocates; not for the per-packet path.
+     */
+    public int findByKey(String beaconKey) {
+        int second = beaconKey.lastIndexOf('_');
+        int first = second > 0 ? beaconKey.lastIndexOf('_', second - 1) : -1;
+        if (first <= 0) {
+            return -1;
+        }
+        try {
+            UUID uuid = UUID.fromString(beaconKey.substring(0, first));
+            int major = Integer.parseInt(beaconKey.substring(first + 1, second));
+            int minor = Integer.parseInt(beaconKey.substring(second + 1));
+            return findByIBeacon(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), major, minor);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Orders iBeacon identities by UUID then major/minor, comparing as unsigned values.
+     */
+    static int compareIBeacon(long msbA, long lsbA, int majorMinorA, long msbB, long lsbB, int majorMinorB) {
+        int cmp = Long.compare(msbA ^ Long.MIN_VALUE, msbB ^ Long.MIN_VALUE);
+        if (cmp == 0) {
+            cmp = Long.compare(lsbA ^ Long.MIN_VALUE, lsbB ^ Long.MIN_VALUE);
+        }
+        if (cmp == 0) {
+            cmp = Integer.compare(majorMinorA ^ Integer.MIN_VALUE, majorMinorB ^ Integer.MIN_VALUE);
+        }
+        return cmp;
+    }
+
+    /**
+     * Packs "AA:BB:CC:DD:EE:FF" into the low 48 bits of a long without allocating.
+     * Returns {@link #NO_MAC} if the string is not a MAC address.
+     */
+    public static long packMac(CharSequence address) {
+        if (address == null || address.length() != 17) {
+            return NO_MAC;
+        }
+        long mac = 0;
+        for (int i = 0; i < 17; i++) {
+            char c = address.charAt(i);
+            if (i % 3 == 2) {
+                if (c != ':') {
+                    return NO_MAC;
+                }
+                continue;
+            }
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                return NO_MAC;
+            }
+            mac = (mac << 4) | digit;
+        }
+        return mac;
+    }
+
+    public static String formatMac(long mac) {
+        StringBuilder builder = new StringBuilder(17);
+        for (int shift = 40; shift >= 0; shift -= 8) {
+            int octet = (int) (mac >>> shift) & 0xFF;
+            builder.append(Character.toUpperCase(Character.forDigit(octet >>> 4, 16)))
+                    .append(Character.toUpperCase(Character.forDigit(octet & 0xF, 16)));
+            if (shift > 0) {
+                builder.append(':');
+            }
+        }
+        return builder.toString();
+    }
+
+    private int record(int index) {
+        return recordsOffset + index * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.hero_pr12;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Builds a {@link BeaconDatabase} file, typically by converting {@code beacon_info.txt}.
+ */
+public class BeaconDatabaseWriter {
+    private long[] macs = new long[16];
+    private long[] uuidMsbs = new long[16];
+    private long[] uuidLsbs = new long[16];
+    private int[] majorMinors = new int[16];
+    private int[] txPowers = new int[16];
+    private float[] xs = new float[16];
+    private float[] ys = new float[16];
+    private int[] colors = new int[16];
+    private int[] floors = new int[16];
+    private int count;
+
+    public BeaconDatabaseWriter add(long mac, UUID uuid, int major, int minor, int txPower, float x, float y, int color) {
+        return add(mac, uuid, major, minor, txPower, x, y, color, 0);
+    }
+
+    public BeaconDatabaseWriter add(long mac, UUID uuid, int major, int minor, int txPower, float x, float y, int color,
+                                    int floor) {
+        if (major < 0 || major > 0xFFFF || minor < 0 || minor > 0xFFFF) {
+            throw new IllegalArgumentException("major/minor out of range: " + major + "/" + minor);
+        }
+        if (count == macs.length) {
+            int capacity = count * 2;
+            macs = Arrays.copyOf(macs, capacity);
+            uuidMsbs = Arrays.copyOf(uuidMsbs, capacity);
+            uuidLsbs = Arrays.copyOf(uuidLsbs, capacity);
+            majorMinors = Arrays.copyOf(majorMinors, capacity);
+            txPowers = Arrays.copyOf(txPowers, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            colors = Arrays.copyOf(colors, capacity);
+            floors = Arrays.copyOf(floors, capacity);
+        }
+        macs[count] = mac;
+        uuidMsbs[count] = uuid.getMostSignificantBits();
+        uuidLsbs[count] = uuid.getLeastSignificantBits();
+        majorMinors[count] = (major << 16) | minor;
+        txPowers[count] = txPower;
+        xs[count] = x;
+        ys[count] = y;
+        colors[count] = color;
+        floors[count] = floor;
+        count++;
+        return this;
+    }
+
+    /**
+     * Reads lines of {@code mac,uuid,major,minor,txPower,x,y,#color[,floor]}, the beacon_info.txt
+     * format. Beacons without a floor are on floor 0.
+     */
+    public BeaconDatabaseWriter readCsv(Reader source) throws IOException {
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] parts = line.split(",");
+            if (parts.length < 8) {
+                throw new IOException("Line " + lineNumber + ": expected 8 fields, found " + parts.length);
+            }
+            long mac = BeaconDatabase.packMac(parts[0].trim());
+            if (mac == BeaconDatabase.NO_MAC) {
+                throw new IOException("Line " + lineNumber + ": bad MAC address " + parts[0]);
+            }
+            try {
+                add(mac, UUID.fromString(parts[1].trim()),
+                        Integer.parseInt(parts[2].trim()), Integer.parseInt(parts[3].trim()),
+                        Integer.parseInt(parts[4].trim()),
+                        Float.parseFloat(parts[5].trim()), Float.parseFloat(parts[6].trim()),
+                        parseColor(parts[7].trim()),
+                        parts.length > 8 ? Integer.parseInt(parts[8].trim()) : 0);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        return this;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public ByteBuffer toByteBuffer() {
+        int recordsOffset = BeaconDatabase.HEADER_SIZE;
+        int macTableOffset = recordsOffset + count * BeaconDatabase.RECORD_SIZE;
+        int iBeaconTableOffset = macTableOffset + count * BeaconDatabase.MAC_ENTRY_SIZE;
+        int floorTableOffset = iBeaconTableOffset + count * BeaconDatabase.IBEACON_ENTRY_SIZE;
+        Integer[] byFloor = sortedIndices();
+        Arrays.sort(byFloor, (a, b) -> Integer.compare(floors[a], floors[b])); // Stable, so ascending within a floor
+        int floorCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || floors[byFloor[i]] != floors[byFloor[i - 1]]) {
+                floorCount++;
+            }
+        }
+        int floorIndicesOffset = floorTableOffset + 4 + floorCount * BeaconDatabase.FLOOR_ENTRY_SIZE;
+        int size = floorIndicesOffset + count * 4;
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(0, BeaconDatabase.MAGIC);
+        buffer.putInt(4, BeaconDatabase.VERSION);
+        buffer.putInt(8, count);
+        buffer.putInt(12, BeaconDatabase.RECORD_SIZE);
+        buffer.putInt(16, recordsOffset);
+        buffer.putInt(20, macTableOffset);
+        buffer.putInt(24, iBeaconTableOffset);
+        buffer.putInt(28, floorTableOffset);
+
+        for (int i = 0; i < count; i++) {
+            int record = recordsOffset + i * BeaconDatabase.RECORD_SIZE;
+            buffer.putLong(record + BeaconDatabase.RECORD_MAC, macs[i]);
+            buffer.putLong(record + BeaconDatabase.RECORD_UUID_MSB, uuidMsbs[i]);
+            buffer.putLong(record + BeaconDatabase.RECORD_UUID_LSB, uuidLsbs[i]);
+            buffer.putInt(record + BeaconDatabase.RECORD_MAJOR_MINOR, majorMinors[i]);
+            buffer.putInt(record + BeaconDatabase.RECORD_TX_POWER, txPowers[i]);
+            buffer.putFloat(record + BeaconDatabase.RECORD_X, xs[i]);
+            buffer.putFloat(record + BeaconDatabase.RECORD_Y, ys[i]);
+            buffer.putInt(record + BeaconDatabase.RECORD_COLOR, colors[i]);
+            buffer.putInt(record + BeaconDatabase.RECORD_FLOOR, floors[i]);
+        }
+
+        Integer[] byMac = sortedIndices();
+        Arrays.sort(byMac, (a, b) -> Long.compare(macs[a], macs[b]));
+        for (int i = 0; i < count; i++) {
+            int entry = macTableOffset + i * BeaconDatabase.MAC_ENTRY_SIZE;
+            buffer.putLong(entry, macs[byMac[i]]);
+            buffer.putInt(entry + 8, byMac[i]);
+        }
+
+        Integer[] byIBeacon = sortedIndices();
+        Arrays.sort(byIBeacon, (a, b) -> BeaconDatabase.compareIBeacon(
+                uuidMsbs[a], uuidLsbs[a], majorMinors[a], uuidMsbs[b], uuidLsbs[b], majorMinors[b]));
+        for (int i = 0; i < count; i++) {
+            int entry = iBeaconTableOffset + i * BeaconDatabase.IBEACON_ENTRY_SIZE;
+            int index = byIBeacon[i];
+            buffer.putLong(entry, uuidMsbs[index]);
+            buffer.putLong(entry + 8, uuidLsbs[index]);
+            buffer.putInt(entry + 16, majorMinors[index]);
+            buffer.putInt(entry + 20, index);
+        }
+
+        buffer.putInt(floorTableOffset, floorCount);
+        int floorEntry = floorTableOffset + 4 - BeaconDatabase.FLOOR_ENTRY_SIZE;
+        for (int i = 0; i < count; i++) {
+            int index = byFloor[i];
+            if (i == 0 || floors[index] != floors[byFloor[i - 1]]) {
+                floorEntry += BeaconDatabase.FLOOR_ENTRY_SIZE;
+                buffer.putInt(floorEntry, floors[index]);
+                buffer.putInt(floorEntry + 4, i);
+            }
+            buffer.putInt(floorEntry + 8, buffer.getInt(floorEntry + 8) + 1);
+            buffer.putInt(floorIndicesOffset + i * 4, index);
+        }
+        return buffer;
+    }
+
+    /**
+     * Writes the database next to {@code file} and renames it into place, so a reader never maps a
+     * half-written file.
+     */
+    public void writeTo(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp); FileChannel channel = out.getChannel()) {
+            ByteBuffer buffer = toByteBuffer();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not rename " + temp + " to " + file);
+        }
+    }
+
+    public static void convertCsv(InputStream csv, File database) throws IOException {
+        new BeaconDatabaseWriter()
+                .readCsv(new InputStreamReader(csv, StandardCharsets.UTF_8))
+                .writeTo(database);
+    }
+
+    /**
+     * Parses #RRGGBB or #AARRGGBB, the forms used in beacon_info.txt.
+     */
+    static int parseColor(String color) {
+        if (color.length() != 7 && color.length() != 9 || color.charAt(0) != '#') {
+            throw new IllegalArgumentException("Unknown color " + color);
+        }
+        long value = Long.parseLong(color.substring(1), 16);
+        if (color.length() == 7) {
+            value |= 0xFF000000L;
+        }
+        return (int) value;
+    }
+
+    private Integer[] sortedIndices() {
+        Integer[] indices = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+}
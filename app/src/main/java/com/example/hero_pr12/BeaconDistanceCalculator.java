@@ -14,6 +14,12 @@ public abstract class BeaconDistanceCalculator {
     public static final int CALIBRATED_RSSI_AT_ONE_METER = -62;
     public static final int SIGNAL_LOSS_AT_ONE_METER = -41;
 
+    /**
+     * Typical standard deviation of a smoothed RSSI reading indoors, in dB.
+     */
+    public static final float RSSI_STANDARD_DEVIATION = 4f;
+    private static final double MIN_RANGE_VARIANCE = 0.25;
+
     private static float pathLossParameter = PATH_LOSS_PARAMETER_OFFICE_HARD_PARTITION;
 
     /**
@@ -23,6 +29,15 @@ public abstract class BeaconDistanceCalculator {
         return (float) Math.pow(10, (calibratedRssi - rssi) / (10 * pathLossParameter));
     }
 
+    /**
+     * Variance of a range obtained from the log-distance model. An RSSI error of sigma dB scales the
+     * distance by 10^(sigma / 10n), so the range error grows linearly with the range itself.
+     */
+    public static double rangeVariance(double distance, float pathLossParameter) {
+        double sigma = distance * Math.log(10) / (10 * pathLossParameter) * RSSI_STANDARD_DEVIATION;
+        return Math.max(sigma * sigma, MIN_RANGE_VARIANCE);
+    }
+
     public static float getCalibratedRssiAtOneMeter(float calibratedRssi, float calibratedDistance) {
         float calibratedRssiAtOneMeter;
         if (calibratedDistance == 1.0) {
@@ -0,0 +1,161 @@
+package com.example.hero_pr12;
+
+/**
+ * Uniform grid over beacon locations for radius and viewport queries.
+ *
+ * Beacons are numbered 0..size()-1 ("slots", the same as their {@link BeaconDatabase} indices)
+ * and bucketed by cell in a compressed layout: the slots of cell c are
+ * {@code cellItems[cellStart[c] .. cellStart[c + 1])}. A query visits only the cells overlapping
+ * its bounds, so its cost depends on local beacon density rather than on the
+ * size of the venue. Queries write slots into a caller-supplied array and allocate nothing.
+ */
+public class BeaconGridIndex {
+    private static final double MIN_CELL_SIZE = 1.0; // 미터
+    private static final int MAX_CELLS_PER_AXIS = 1024;
+
+    private final double[] xs;
+    private final double[] ys;
+    private final double originX;
+    private final double originY;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStart;
+    private final int[] cellItems;
+
+    private BeaconGridIndex(double[] xs, double[] ys, double cellSize) {
+        this.xs = xs;
+        this.ys = ys;
+        int count = xs.length;
+
+        double minX = count > 0 ? xs[0] : 0, minY = count > 0 ? ys[0] : 0;
+        double maxX = minX, maxY = minY;
+        for (int i = 1; i < count; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        if (cellSize <= 0) {
+            // 셀 하나에 평균 두 개 정도의 비콘이 들어가도록 크기를 정한다
+            double area = Math.max((maxX - minX) * (maxY - minY), 1);
+            cellSize = Math.sqrt(2 * area / Math.max(count, 1));
+        }
+        cellSize = Math.max(cellSize, MIN_CELL_SIZE);
+        cellSize = Math.max(cellSize, Math.max(maxX - minX, maxY - minY) / MAX_CELLS_PER_AXIS);
+        this.cellSize = cellSize;
+        this.originX = minX;
+        this.originY = minY;
+        this.columns = (int) ((maxX - minX) / cellSize) + 1;
+        this.rows = (int) ((maxY - minY) / cellSize) + 1;
+
+        // Counting sort of slots by cell
+        cellStart = new int[columns * rows + 1];
+        int[] cellOf = new int[count];
+        for (int i = 0; i < count; i++) {
+            cellOf[i] = cellIndex(column(xs[i]), row(ys[i]));
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        cellItems = new int[count];
+        int[] fill = new int[columns * rows];
+        for (int i = 0; i < count; i++) {
+            int c = cellOf[i];
+            cellItems[cellStart[c] + fill[c]++] = i;
+        }
+    }
+
+    /**
+     * Builds an index over beacons at (xs[i], ys[i]). A non-positive cell size is derived from
+     * the beacon density.
+     */
+    public static BeaconGridIndex build(double[] xs, double[] ys, double cellSize) {
+        return new BeaconGridIndex(xs, ys, cellSize);
+    }
+
+    public int size() {
+        return xs.length;
+    }
+
+    public double xAt(int slot) {
+        return xs[slot];
+    }
+
+    public double yAt(int slot) {
+        return ys[slot];
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Writes the slots of all beacons within {@code radius} of (x, y) into {@code out} and returns
+     * how many were found, up to {@code out.length}.
+     */
+    public int queryRadius(double x, double y, double radius, int[] out) {
+        double radiusSquared = radius * radius;
+        int minColumn = column(x - radius), maxColumn = column(x + radius);
+        int minRow = row(y - radius), maxRow = row(y + radius);
+        int found = 0;
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minColumn; c <= maxColumn; c++) {
+                int cell = cellIndex(c, r);
+                for (int i = cellStart[cell], end = cellStart[cell + 1]; i < end; i++) {
+                    int slot = cellItems[i];
+                    double dx = xs[slot] - x;
+                    double dy = ys[slot] - y;
+                    if (dx * dx + dy * dy <= radiusSquared) {
+                        if (found == out.length) {
+                            return found;
+                        }
+                        out[found++] = slot;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Writes the slots of all beacons inside the rectangle into {@code out} and returns how many
+     * were found, up to {@code out.length}.
+     */
+    public int queryRect(double minX, double minY, double maxX, double maxY, int[] out) {
+        int minColumn = column(minX), maxColumn = column(maxX);
+        int minRow = row(minY), maxRow = row(maxY);
+        int found = 0;
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minColumn; c <= maxColumn; c++) {
+                int cell = cellIndex(c, r);
+                for (int i = cellStart[cell], end = cellStart[cell + 1]; i < end; i++) {
+                    int slot = cellItems[i];
+                    if (xs[slot] >= minX && xs[slot] <= maxX && ys[slot] >= minY && ys[slot] <= maxY) {
+                        if (found == out.length) {
+                            return found;
+                        }
+                        out[found++] = slot;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    // Cell coordinates are clamped so that queries reaching past the venue stay in range
+    private int column(double x) {
+        int c = (int) Math.floor((x - originX) / cellSize);
+        return c < 0 ? 0 : (c >= columns ? columns - 1 : c);
+    }
+
+    private int row(double y) {
+        int r = (int) Math.floor((y - originY) / cellSize);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+
+    private int cellIndex(int column, int row) {
+        return row * columns + column;
+    }
+}
@@ -2,47 +2,168 @@
 package com.example.hero_pr12;
 
 import android.content.Context;
-import android.graphics.Color;
+import android.content.pm.PackageManager;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
 
 public class BeaconInfoLoader {
-    public static final Map<String, Point> BEACON_LOCATIONS = new HashMap<>();
-    public static final Map<String, Integer> beaconTxPower = new HashMap<>();
-    public static final Map<String, String> beaconMacAddress = new HashMap<>();
-    public static final Map<String, Integer> beaconColors = new HashMap<>();
+    private static final String BEACON_INFO_ASSET = "beacon_info.txt";
+    private static final String BEACON_DATABASE_FILE = "beacons.bcdb";
 
+    // Read from the scan and worker threads, replaced as a whole by setDatabase
+    private static volatile Beacons beacons = new Beacons(BeaconDatabase.empty());
+    // Beacons of the current floor and its neighbours, paged in on the loader thread
+    private static final ExecutorService floorLoader = FloorWindow.newLoaderExecutor("BeaconFloorLoader");
+    private static volatile FloorWindow<FloorBeacons> floorBeacons = newFloorWindow(beacons.database);
+    private static volatile int currentFloor;
+    private static FloorWindow.Listener floorListener;
+    // 레거시 문자열 키는 필요할 때만 만든다
+    private static String[] beaconKeys = new String[0];
+
+    /**
+     * Maps the binary beacon database, converting {@code beacon_info.txt} into it first if the
+     * cached copy is missing or older than the installed app.
+     */
     public static void loadBeaconInfo(Context context) {
         try {
-            //애플리케이션의 자원에서 beacon_info.txt 파일을 읽어옴
-            BufferedReader reader = new BufferedReader(new InputStreamReader(context.getAssets().open("beacon_info.txt")));
-            String line;
-            // 파일의 각 줄을 읽어서 처리
-            while ((line = reader.readLine()) != null) {
-                // 쉼표로 구분된 각 부분을 배열로 분리
-                String[] parts = line.split(",");
-                String macAddress = parts[0];
-                String uuid = parts[1];
-                int major = Integer.parseInt(parts[2]);
-                int minor = Integer.parseInt(parts[3]);
-                int txPower = Integer.parseInt(parts[4]);
-                double x = Double.parseDouble(parts[5]);
-                double y = Double.parseDouble(parts[6]);
-                int color = Color.parseColor(parts[7]);
-                //비콘의 고유키 생성
-                String beaconKey = uuid + "_" + major + "_" + minor;
-                //비콘의 위치정보, 전송전력, MAC주소, 색상정보 저장
-                BEACON_LOCATIONS.put(beaconKey, new Point(x, y));
-                beaconTxPower.put(beaconKey, txPower);
-                beaconMacAddress.put(macAddress, beaconKey);
-                beaconColors.put(beaconKey, color);
+            File file = new File(context.getFilesDir(), BEACON_DATABASE_FILE);
+            if (!file.exists() || file.lastModified() < installTime(context)) {
+                try (InputStream csv = context.getAssets().open(BEACON_INFO_ASSET)) {
+                    BeaconDatabaseWriter.convertCsv(csv, file);
+                }
             }
-            reader.close();
+            setDatabase(BeaconDatabase.open(file));
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    public static BeaconDatabase getDatabase() {
+        return beacons.database;
+    }
+
+    /**
+     * The current database with its MAC index. Threads that resolve an id and then read its
+     * record take one snapshot, so that a concurrent {@link #setDatabase} cannot pair an id with
+     * the other database.
+     */
+    public static Beacons getBeacons() {
+        return beacons;
+    }
+
+    public static synchronized void setDatabase(BeaconDatabase newDatabase) {
+        Beacons newBeacons = new Beacons(newDatabase);
+        beaconKeys = new String[newDatabase.size()];
+        FloorWindow<FloorBeacons> previous = floorBeacons;
+        floorBeacons = newFloorWindow(newDatabase);
+        previous.close();
+        beacons = newBeacons;
+    }
+
+    /**
+     * The beacons of {@code floor} with their spatial index, or null if the floor is not resident
+     * (not next to the current floor, or still loading) or has no beacons.
+     */
+    public static FloorBeacons getFloorBeacons(int floor) {
+        return floorBeacons.get(floor);
+    }
+
+    /**
+     * Keeps the beacons of {@code floor} and its neighbours resident, loading them in the
+     * background, and lets the others go.
+     */
+    public static void setCurrentFloor(int floor) {
+        currentFloor = floor;
+        floorBeacons.setCurrentFloor(floor);
+    }
+
+    /**
+     * Called on the loader thread whenever a floor's beacons become resident.
+     */
+    public static synchronized void setFloorListener(FloorWindow.Listener listener) {
+        floorListener = listener;
+        floorBeacons.setListener(listener);
+    }
+
+    /**
+     * Returns the id (database index) of the beacon with this MAC address, or -1. Allocation-free.
+     */
+    public static int findBeaconByMac(String macAddress) {
+        return beacons.findByMac(macAddress);
+    }
+
+    public static int findBeaconByKey(String beaconKey) {
+        return beacons.database.findByKey(beaconKey);
+    }
+
+    /**
+     * The {@code uuid_major_minor} key of a beacon, built once and then cached.
+     */
+    public static synchronized String getBeaconKey(int index) {
+        String key = beaconKeys[index];
+        if (key == null) {
+            key = beacons.database.beaconKey(index);
+            beaconKeys[index] = key;
+        }
+        return key;
+    }
+
+    public static Point getBeaconLocation(String beaconKey) {
+        BeaconDatabase db = beacons.database;
+        int index = db.findByKey(beaconKey);
+        return index < 0 ? null : new Point(db.x(index), db.y(index), db.floor(index));
+    }
+
+    private static FloorWindow<FloorBeacons> newFloorWindow(BeaconDatabase db) {
+        FloorWindow<FloorBeacons> window = new FloorWindow<>(new FloorWindow.Loader<FloorBeacons>() {
+            @Override
+            public FloorBeacons load(int floor) {
+                FloorBeacons beacons = FloorBeacons.build(db, floor);
+                return beacons.size() > 0 ? beacons : null;
+            }
+
+            @Override
+            public void release(FloorBeacons beacons) {
+                // Nothing beyond the heap; the records stay in the mapped file
+            }
+        }, floorLoader, FloorWindow.DEFAULT_RADIUS);
+        window.setListener(floorListener);
+        window.setCurrentFloor(currentFloor);
+        return window;
+    }
+
+    /**
+     * A beacon database and the index from MAC address to id in it, published together.
+     */
+    public static final class Beacons {
+        public final BeaconDatabase database;
+        private final LongIntMap ids;
+
+        Beacons(BeaconDatabase database) {
+            this.database = database;
+            ids = new LongIntMap(database.size());
+            for (int i = 0; i < database.size(); i++) {
+                ids.put(database.mac(i), i);
+            }
+        }
+
+        /**
+         * Returns the id in {@link #database} of the beacon with this MAC address, or -1.
+         * Allocation-free.
+         */
+        public int findByMac(String macAddress) {
+            long mac = BeaconDatabase.packMac(macAddress);
+            return mac == BeaconDatabase.NO_MAC ? -1 : ids.get(mac);
+        }
+    }
+
+    static long installTime(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return Long.MAX_VALUE;
+        }
+    }
 }
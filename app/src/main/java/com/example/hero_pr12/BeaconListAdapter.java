@@ -0,0 +1,113 @@
+package com.example.hero_pr12;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.List;
+
+/**
+ * Shows a {@link BeaconListModel} in a RecyclerView. Items have stable ids (the beacon id) and
+ * the model's changes are passed on as item notifications, so a refresh rebinds only the visible
+ * rows whose values changed; such rebinds carry a payload and set only the two number fields,
+ * formatted into per-row buffers.
+ */
+public class BeaconListAdapter extends RecyclerView.Adapter<BeaconListAdapter.RowHolder> implements BeaconListModel.Listener {
+    // Payload of a rebind where only the distance and RSSI changed
+    private static final Object VALUES_CHANGED = new Object();
+
+    private final BeaconListModel model;
+
+    public BeaconListAdapter(BeaconListModel model) {
+        this.model = model;
+        setHasStableIds(true);
+        model.setListener(this);
+    }
+
+    @Override
+    public RowHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        return new RowHolder(LayoutInflater.from(parent.getContext()).inflate(R.layout.item_beacon, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(RowHolder holder, int position) {
+        holder.keyView.setText(BeaconInfoLoader.getBeaconKey(model.getId(position)));
+        holder.bindValues(model.getCentimeters(position), model.getRssi(position));
+    }
+
+    @Override
+    public void onBindViewHolder(RowHolder holder, int position, List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+        } else {
+            holder.bindValues(model.getCentimeters(position), model.getRssi(position));
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return model.getId(position);
+    }
+
+    @Override
+    public void onRowInserted(int position) {
+        notifyItemInserted(position);
+    }
+
+    @Override
+    public void onRowRemoved(int position) {
+        notifyItemRemoved(position);
+    }
+
+    @Override
+    public void onRowChanged(int position) {
+        notifyItemChanged(position, VALUES_CHANGED);
+    }
+
+    @Override
+    public void onRowMoved(int fromPosition, int toPosition) {
+        notifyItemMoved(fromPosition, toPosition);
+    }
+
+    @Override
+    public void onRowsReset() {
+        notifyDataSetChanged();
+    }
+
+    static class RowHolder extends RecyclerView.ViewHolder {
+        final TextView keyView;
+        final TextView distanceView;
+        final TextView rssiView;
+        // TextView keeps a reference to these; they are rewritten only right before the next setText
+        private final char[] distanceChars = new char[16];
+        private final char[] rssiChars = new char[16];
+
+        RowHolder(View itemView) {
+            super(itemView);
+            keyView = itemView.findViewById(R.id.beaconKeyTextView);
+            distanceView = itemView.findViewById(R.id.beaconDistanceTextView);
+            rssiView = itemView.findViewById(R.id.beaconRssiTextView);
+        }
+
+        void bindValues(int centimeters, int rssi) {
+            int length = CharFormat.appendFixed(distanceChars, 0, centimeters, 2);
+            length = CharFormat.append(distanceChars, length, " m");
+            distanceView.setText(distanceChars, 0, length);
+            if (rssi == BeaconListModel.NO_RSSI) {
+                length = CharFormat.append(rssiChars, 0, "-");
+            } else {
+                length = CharFormat.appendInt(rssiChars, 0, rssi);
+                length = CharFormat.append(rssiChars, length, " dBm");
+            }
+            rssiView.setText(rssiChars, 0, length);
+        }
+    }
+}
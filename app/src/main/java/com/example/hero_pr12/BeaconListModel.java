@@ -0,0 +1,181 @@
+package com.example.hero_pr12;
+
+import java.util.Arrays;
+
+/**
+ * Rows of the beacon list: the heard beacons by dense id, with the distance and RSSI as they are
+ * shown (centimeters and whole dBm), sorted by distance or RSSI. {@link #update} compares the
+ * new values with the shown ones and reports only what changed to the {@link Listener}: rows
+ * removed, values changed, rows added, and rows moved to keep the order. The order is kept by
+ * insertion sort from the previous refresh; values drift a little between refreshes, so this
+ * costs about one pass plus the few rows that actually move, not a full sort.
+ *
+ * Confined to the main thread. Nothing is allocated unless the beacon database changes size.
+ */
+public class BeaconListModel {
+    public enum SortOrder {
+        DISTANCE, // Nearest first
+        RSSI // Strongest first
+    }
+
+    public interface Listener {
+        void onRowInserted(int position);
+
+        void onRowRemoved(int position);
+
+        void onRowChanged(int position);
+
+        void onRowMoved(int fromPosition, int toPosition);
+
+        // Everything changed at once: a new sort order or a new database
+        void onRowsReset();
+    }
+
+    // Smoothed RSSI not known yet
+    public static final int NO_RSSI = Integer.MIN_VALUE;
+    private static final int NOT_SHOWN = -1;
+
+    private int[] rows = new int[0]; // Beacon ids by position
+    private int rowCount;
+    private int[] shownCentimeters = new int[0]; // By id, NOT_SHOWN for beacons without a row
+    private int[] shownRssi = new int[0];
+    private SortOrder sortOrder = SortOrder.DISTANCE;
+    private Listener listener;
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Brings the rows up to date with {@code distances} in meters, NaN for beacons not heard, and
+     * smoothed {@code rssi} in dBm, both indexed by beacon id.
+     */
+    public void update(double[] distances, float[] rssi) {
+        boolean reset = false;
+        if (shownCentimeters.length != distances.length) {
+            // 비콘 DB가 바뀌면 id도 바뀌므로 처음부터 다시 만든다
+            rows = new int[distances.length];
+            shownCentimeters = new int[distances.length];
+            shownRssi = new int[distances.length];
+            Arrays.fill(shownCentimeters, NOT_SHOWN);
+            rowCount = 0;
+            reset = true;
+        }
+        Listener notify = reset ? null : listener;
+
+        for (int position = rowCount - 1; position >= 0; position--) {
+            int id = rows[position];
+            if (Double.isNaN(distances[id])) {
+                System.arraycopy(rows, position + 1, rows, position, rowCount - position - 1);
+                rowCount--;
+                shownCentimeters[id] = NOT_SHOWN;
+                if (notify != null) {
+                    notify.onRowRemoved(position);
+                }
+            }
+        }
+        for (int position = 0; position < rowCount; position++) {
+            int id = rows[position];
+            int centimeters = toCentimeters(distances[id]);
+            int dBm = toDbm(rssi[id]);
+            if (centimeters != shownCentimeters[id] || dBm != shownRssi[id]) {
+                shownCentimeters[id] = centimeters;
+                shownRssi[id] = dBm;
+                if (notify != null) {
+                    notify.onRowChanged(position);
+                }
+            }
+        }
+        for (int id = 0; id < distances.length; id++) {
+            if (shownCentimeters[id] == NOT_SHOWN && !Double.isNaN(distances[id])) {
+                shownCentimeters[id] = toCentimeters(distances[id]);
+                shownRssi[id] = toDbm(rssi[id]);
+                rows[rowCount++] = id;
+                if (notify != null) {
+                    notify.onRowInserted(rowCount - 1);
+                }
+            }
+        }
+        sortRows(notify);
+        if (reset && listener != null) {
+            listener.onRowsReset();
+        }
+    }
+
+    public void setSortOrder(SortOrder order) {
+        if (order == sortOrder) {
+            return;
+        }
+        sortOrder = order;
+        // Nearly every row moves; one reset is cheaper than a move per row
+        sortRows(null);
+        if (listener != null) {
+            listener.onRowsReset();
+        }
+    }
+
+    public SortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * The beacon id shown at {@code position}.
+     */
+    public int getId(int position) {
+        return rows[position];
+    }
+
+    /**
+     * The distance shown for the beacon at {@code position}, in centimeters.
+     */
+    public int getCentimeters(int position) {
+        return shownCentimeters[rows[position]];
+    }
+
+    /**
+     * The RSSI shown for the beacon at {@code position} in dBm, or {@link #NO_RSSI}.
+     */
+    public int getRssi(int position) {
+        return shownRssi[rows[position]];
+    }
+
+    // Insertion sort; reports every row that moves as one move from its old to its new position
+    private void sortRows(Listener notify) {
+        for (int i = 1; i < rowCount; i++) {
+            int id = rows[i];
+            int j = i - 1;
+            while (j >= 0 && before(id, rows[j])) {
+                rows[j + 1] = rows[j];
+                j--;
+            }
+            if (j + 1 != i) {
+                rows[j + 1] = id;
+                if (notify != null) {
+                    notify.onRowMoved(i, j + 1);
+                }
+            }
+        }
+    }
+
+    private boolean before(int a, int b) {
+        int difference;
+        if (sortOrder == SortOrder.DISTANCE) {
+            difference = Integer.compare(shownCentimeters[a], shownCentimeters[b]);
+        } else {
+            difference = Integer.compare(shownRssi[b], shownRssi[a]);
+        }
+        return difference != 0 ? difference < 0 : a < b;
+    }
+
+    private static int toCentimeters(double meters) {
+        return (int) Math.max(0, Math.min(Math.round(meters * 100), Integer.MAX_VALUE));
+    }
+
+    private static int toDbm(float rssi) {
+        return Float.isNaN(rssi) ? NO_RSSI : Math.round(rssi);
+    }
+}
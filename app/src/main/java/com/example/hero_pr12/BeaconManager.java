@@ -2,41 +2,108 @@ package com.example.hero_pr12;
 
 import android.app.Activity;
 import android.bluetooth.BluetoothAdapter;
-import android.bluetooth.BluetoothDevice;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
+import android.view.Choreographer;
 import androidx.core.app.ActivityCompat;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import android.content.pm.PackageManager;
 
 public class BeaconManager {
-    private static final int RSSI_FILTER_SIZE = 10;
+    private static final long DEFAULT_REPORT_DELAY_MILLIS = 500;
+    // 비콘 목록은 초당 4번까지만 새로 그린다
+    static final long BEACON_LIST_INTERVAL_NANOS = 250000000L;
     private final Activity activity;
     private final UIUpdater uiUpdater;
-    private final Map<String, List<Integer>> rssiValues = new HashMap<>();
-    private final Map<String, ExtendedKalmanFilter> kalmanFilters = new HashMap<>();
-    private final Map<String, Double> distances = new HashMap<>();
-    private BluetoothAdapter.LeScanCallback leScanCallback;
-    private float currentAzimuth;
-    private float currentAngle;
-    private float currentSpeed;
-    private Point currentUserPosition = new Point(0, 0);
+    private final PositioningPipeline pipeline = new PositioningPipeline();
+    private final ScanSampleQueue sampleQueue = pipeline.getSampleQueue();
+    private final PositioningProcessor processor = pipeline.getProcessor();
+    private final HandlerThread workerThread;
+    private final Handler workerHandler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AdaptiveScanScheduler scanScheduler = new AdaptiveScanScheduler();
+    private final SensorRateCounter sensorRates = new SensorRateCounter();
+    private final Runnable scanScheduleTask = this::applyScanSchedule;
+    private final Choreographer choreographer;
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final AtomicBoolean framePending = new AtomicBoolean();
+    private final Runnable drainTask = this::drainSamples;
+    private final Choreographer.FrameCallback publishCallback = this::publishToUi;
+    // Distances and smoothed RSSI by beacon id handed from the worker to the UI, guarded by distanceLock
+    private final Object distanceLock = new Object();
+    private double[] publishedDistances = new double[0];
+    private float[] publishedRssi = new float[0];
+    private double[] uiDistanceSnapshot = new double[0];
+    private float[] uiRssiSnapshot = new float[0];
+    private boolean distancesPublished;
+    private long nextBeaconListNanos;
+    private boolean beaconListRefreshPosted;
+    private final Runnable beaconListTask = () -> {
+        beaconListRefreshPosted = false;
+        publishBeaconList();
+    };
+    private final ScanQueueListener scanListener = new ScanQueueListener(sampleQueue, this::scheduleDrain);
+    private final BeaconScanner.Listener recordingListener = new BeaconScanner.Listener() {
+        @Override
+        public void onScanSample(String address, int rssi, byte[] scanRecord, long timestampNanos) {
+            PipelineLatency.get().record(PipelineLatency.SCAN_DELIVERY, SystemClock.elapsedRealtimeNanos() - timestampNanos);
+            TraceRecorder recorder = traceRecorder;
+            if (recorder != null) {
+                recorder.recordScan(address, rssi, scanRecord, timestampNanos);
+            }
+            scanListener.onScanSample(address, rssi, scanRecord, timestampNanos);
+        }
+
+        @Override
+        public void onScanBatchComplete() {
+            TraceRecorder recorder = traceRecorder;
+            if (recorder != null) {
+                recorder.recordScanBatch();
+            }
+            scanListener.onScanBatchComplete();
+        }
+    };
+    private volatile TraceRecorder traceRecorder;
+    private SurveyRecorder surveyRecorder; // Worker thread only
+    private BeaconScanner scanner;
+    private boolean scanRequested;
+    private boolean adaptiveScanning = true;
+    private AdaptiveScanScheduler.Listener motionModeListener;
+    private boolean batchedScanning = true;
+    private BatchedBeaconScanner.Mode scanMode = BatchedBeaconScanner.Mode.BALANCED;
+    private long reportDelayMillis = DEFAULT_REPORT_DELAY_MILLIS;
+    private volatile float currentAzimuth;
+    private volatile float currentAngle;
+    private volatile float currentSpeed;
+    private volatile Point currentUserPosition = new Point(0, 0);
+    // When currentUserPosition was computed, for the publish latency
+    private volatile long currentFixNanos;
+    private volatile long batchCount;
+    private Point publishedPosition;
+    private float publishedAzimuth = Float.NaN;
 
     public BeaconManager(Activity activity, UIUpdater uiUpdater) {
         this.activity = activity;
         this.uiUpdater = uiUpdater;
-        initializeLeScanCallback();
-        uiUpdater.setBeaconPositions(BeaconInfoLoader.BEACON_LOCATIONS); // 비콘 위치 초기화
+        workerThread = new HandlerThread("Positioning", Process.THREAD_PRIORITY_DEFAULT);
+        workerThread.start();
+        workerHandler = new Handler(workerThread.getLooper());
+        choreographer = Choreographer.getInstance();
+        scanScheduler.setListener(this::onMotionModeChanged);
     }
 
     public void updateOrientationData(float azimuth, float angle, float speed) {
         this.currentAzimuth = azimuth;
         this.currentAngle = angle;
         this.currentSpeed = speed;
-        uiUpdater.updateUserOrientation(azimuth);
+        processor.setMotion(azimuth, speed);
+        requestUiFrame();
     }
 
     public float getCurrentAzimuth() {
@@ -51,107 +118,415 @@ public class BeaconManager {
         return currentSpeed;
     }
 
+    /**
+     * Changes the RSSI smoothing window, decay and mode. Existing per-beacon history is discarded.
+     */
+    public void setRssiSmoothing(final int windowSize, final float decay, final RssiSmoother.Mode mode) {
+        workerHandler.post(() -> processor.setRssiSmoothing(windowSize, decay, mode));
+    }
+
+    /**
+     * Beacons not heard for this long stop counting towards position fixes.
+     */
+    public void setBeaconTtl(final long ttlNanos) {
+        workerHandler.post(() -> processor.setBeaconTtl(ttlNanos));
+    }
+
+    /**
+     * Selects the position engine; null uses per-fix multilateration. Runs on the worker thread.
+     */
+    public void setPositionEngine(final PositionEngine engine) {
+        workerHandler.post(() -> processor.setPositionEngine(engine));
+    }
+
+    /**
+     * A step from the step detector, taken towards the current azimuth. Moves the position
+     * engine if there is one, otherwise dead-reckons from the last position.
+     */
+    public void onStep(final long timestampNanos, final float stepLength) {
+        scanScheduler.onStep(timestampNanos);
+        final float heading = currentAzimuth;
+        workerHandler.post(() -> {
+            Point estimatedPosition = pipeline.step(timestampNanos, stepLength, heading, currentUserPosition);
+            if (estimatedPosition != null) {
+                setCurrentFix(estimatedPosition);
+            }
+            requestUiFrame();
+        });
+    }
+
+    /**
+     * An accelerometer sample, for telling walking from standing still. Main thread.
+     */
+    public void onAccelerometer(float[] values, long timestampNanos) {
+        scanScheduler.onAccelerometer(values, timestampNanos);
+    }
+
+    /**
+     * A barometer sample in hPa, for floor detection.
+     */
+    public void onPressure(final float hPa, final long timestampNanos) {
+        workerHandler.post(() -> {
+            processor.onPressure(hPa, timestampNanos);
+            publishFloor();
+        });
+    }
+
+    /**
+     * Storey height in meters used to read floor changes from the barometer.
+     */
+    public void setFloorHeight(final double floorHeight) {
+        workerHandler.post(() -> processor.setFloorHeight(floorHeight));
+    }
+
+    /**
+     * Survey mode: from now on every sample is aggregated for the reference point at
+     * {@code location}, and the point surveyed before it is merged into {@code file}.
+     */
+    public void startSurveyPoint(final Point location, final File file) {
+        workerHandler.post(() -> {
+            BeaconDatabase database = BeaconInfoLoader.getDatabase();
+            if (surveyRecorder != null && (surveyRecorder.getDatabase() != database || !surveyRecorder.getFile().equals(file))) {
+                finishSurvey();
+            }
+            if (surveyRecorder == null) {
+                surveyRecorder = new SurveyRecorder(database, file);
+                processor.setSurveyRecorder(surveyRecorder);
+            }
+            try {
+                surveyRecorder.begin(location.x, location.y, location.floor);
+                Log.i("BeaconManager", "Surveying (" + location.x + ", " + location.y + ") on floor " + location.floor
+                        + ", " + surveyRecorder.getMergedPointCount() + " points merged");
+            } catch (IOException e) {
+                Log.e("BeaconManager", "Could not merge the survey point into " + file, e);
+            }
+        });
+    }
+
+    /**
+     * Merges the point being surveyed and leaves survey mode.
+     */
+    public void stopSurvey() {
+        workerHandler.post(this::finishSurvey);
+    }
+
+    /**
+     * Records every scan and sensor sample to {@code recorder} until replaced with null. The
+     * caller keeps ownership and closes the recorder.
+     */
+    public void setTraceRecorder(TraceRecorder recorder) {
+        this.traceRecorder = recorder;
+    }
+
+    public TraceRecorder getTraceRecorder() {
+        return traceRecorder;
+    }
+
     public Point getCurrentUserPosition() {
         return currentUserPosition;
     }
 
     public void updateUserPosition(Point newPosition) {
-        this.currentUserPosition = newPosition;
-        uiUpdater.updateLocation(currentUserPosition);
-    }
-
-    private void initializeLeScanCallback() {
-        leScanCallback = new BluetoothAdapter.LeScanCallback() {
-            @Override
-            public void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord) {
-                Log.d("BeaconManager", "Beacon detected: " + device.getAddress());
-                String beaconId = BeaconInfoLoader.beaconMacAddress.get(device.getAddress());
-                if (beaconId != null) {
-                    double weightedAverageRssi = calculateWeightedAverageRssi(beaconId, rssi);
-                    float distance = BeaconDistanceCalculator.calculateDistance((float) weightedAverageRssi, BeaconDistanceCalculator.CALIBRATED_RSSI_AT_ONE_METER, BeaconDistanceCalculator.PATH_LOSS_PARAMETER_INDOOR);
-                    double filteredDistance = applyDoubleKalmanFilter(beaconId, distance);
-                    distances.put(beaconId, filteredDistance);
-                    uiUpdater.updateInfoTextView(distances);
-                    if (distances.size() >= 3) {
-                        Map<String, Double> strongestBeacons = getStrongestBeacons(distances, 3);
-                        Point estimatedPosition = calculatePosition(strongestBeacons);
-                        Log.d("BeaconManager", "Estimated Position: " + estimatedPosition.x + ", " + estimatedPosition.y);
-                        updateUserPosition(estimatedPosition);
-                    }
-                }
-            }
-        };
+        setCurrentFix(newPosition);
+        requestUiFrame();
+    }
+
+    public int getQueueDepth() {
+        return sampleQueue.size();
+    }
+
+    public long getDroppedSampleCount() {
+        return sampleQueue.getDroppedCount();
+    }
+
+    public long getProcessedSampleCount() {
+        return processor.getProcessedCount();
+    }
+
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Whether the user currently counts as walking or still. Main thread.
+     */
+    public AdaptiveScanScheduler.Mode getMotionMode() {
+        return scanScheduler.getMode();
+    }
+
+    /**
+     * Time the scan was on since the first motion sample, for comparing against
+     * {@link #getScanElapsedNanos()}. Main thread.
+     */
+    public long getScanOnNanos() {
+        return scanScheduler.getScanOnNanos();
+    }
+
+    public long getScanElapsedNanos() {
+        return scanScheduler.getElapsedNanos();
+    }
+
+    /**
+     * Event counts and rates of the sensors feeding this manager, filled in by
+     * {@link SensorHandler} and {@link GyroscopeHandler} on the main thread.
+     */
+    public SensorRateCounter getSensorRateCounter() {
+        return sensorRates;
+    }
+
+    /**
+     * Called on the main thread when the motion mode changes, e.g. to slow the sensors down.
+     */
+    public void setMotionModeListener(AdaptiveScanScheduler.Listener listener) {
+        this.motionModeListener = listener;
+    }
+
+    /**
+     * With {@code adaptive} unset the scan runs continuously whatever the motion. Main thread.
+     */
+    public void setAdaptiveScanning(boolean adaptive) {
+        this.adaptiveScanning = adaptive;
+        applyScanSchedule();
+    }
+
+    /**
+     * Selects the scanner used by the next {@link #startBeaconScan()}. With {@code batched} set,
+     * advertisements are filtered and batched by the controller; otherwise the legacy
+     * {@code startLeScan} path is used.
+     */
+    public void setScanConfiguration(boolean batched, BatchedBeaconScanner.Mode mode, long reportDelayMillis) {
+        this.batchedScanning = batched;
+        this.scanMode = mode;
+        this.reportDelayMillis = reportDelayMillis;
+    }
+
+    /**
+     * Replaces the scanner, e.g. with a fake when no Bluetooth hardware is available.
+     */
+    public void setScanner(BeaconScanner scanner) {
+        stopBeaconScan();
+        this.scanner = scanner;
     }
 
     public void startBeaconScan() {
-        BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
         if (ActivityCompat.checkSelfPermission(activity, android.Manifest.permission.BLUETOOTH_SCAN) != PackageManager.PERMISSION_GRANTED) {
             return;
         }
+        if (scanner == null) {
+            scanner = createScanner(BluetoothAdapter.getDefaultAdapter());
+        }
         Log.d("BeaconManager", "Starting Beacon Scan");
-        bluetoothAdapter.startLeScan(leScanCallback);
+        scanRequested = true;
+        applyScanSchedule();
+    }
+
+    public void stopBeaconScan() {
+        scanRequested = false;
+        mainHandler.removeCallbacks(scanScheduleTask);
+        if (scanner != null) {
+            scanner.stop();
+        }
     }
 
-    private double calculateWeightedAverageRssi(String beaconId, int rssi) {
-        List<Integer> values = rssiValues.getOrDefault(beaconId, new ArrayList<>());
-        if (values.size() >= RSSI_FILTER_SIZE) {
-            values.remove(0);
+    private void onMotionModeChanged(AdaptiveScanScheduler.Mode mode, long timestampNanos) {
+        if (EventTrace.LEVEL >= EventTrace.INFO) {
+            EventTrace.get().record(EventTrace.MOTION_MODE, timestampNanos, mode.ordinal(),
+                    scanScheduler.getScanOnNanos() / 1e9f, scanScheduler.getElapsedNanos() / 1e9f);
+        }
+        applyScanSchedule();
+        if (motionModeListener != null) {
+            motionModeListener.onModeChanged(mode, timestampNanos);
+        }
+    }
+
+    // Main thread: starts or stops the scanner for the current mode and times the next change
+    private void applyScanSchedule() {
+        mainHandler.removeCallbacks(scanScheduleTask);
+        if (!scanRequested || scanner == null) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtimeNanos();
+        boolean on = !adaptiveScanning || scanScheduler.isScanOn(now);
+        if (on && !scanner.isScanning()) {
+            scanner.start(recordingListener);
+            if (EventTrace.LEVEL >= EventTrace.DEBUG) {
+                EventTrace.get().record(EventTrace.SCAN_STATE, now, 1);
+            }
+        } else if (!on && scanner.isScanning()) {
+            scanner.stop();
+            if (EventTrace.LEVEL >= EventTrace.DEBUG) {
+                EventTrace.get().record(EventTrace.SCAN_STATE, now, 0);
+            }
         }
-        values.add(rssi);
-        rssiValues.put(beaconId, values);
+        long next = scanScheduler.nextScanChangeNanos(now);
+        if (adaptiveScanning && next != Long.MAX_VALUE) {
+            mainHandler.postDelayed(scanScheduleTask, (next - now + 999999) / 1000000);
+        }
+    }
 
-        double weightedSum = 0;
-        double weightSum = 0;
-        double weight = 1.0;
-        for (int value : values) {
-            weightedSum += value * weight;
-            weightSum += weight;
-            weight *= 0.9; // 가중치를 점차 감소시킴
+    private BeaconScanner createScanner(BluetoothAdapter bluetoothAdapter) {
+        if (batchedScanning) {
+            BeaconScanFilterSpec filterSpec = BeaconScanFilterSpec.fromDatabase(BeaconInfoLoader.getDatabase());
+            return new BatchedBeaconScanner(bluetoothAdapter, filterSpec, scanMode, reportDelayMillis);
         }
-        return weightedSum / weightSum;
+        return new LegacyBeaconScanner(bluetoothAdapter);
     }
 
-    private double applyDoubleKalmanFilter(String beaconId, float distance) {
-        ExtendedKalmanFilter filter = kalmanFilters.get(beaconId);
-        if (filter == null) {
-            filter = new ExtendedKalmanFilter();
-            kalmanFilters.put(beaconId, filter);
+    /**
+     * Stops scanning and the positioning worker. The manager cannot be restarted afterwards.
+     */
+    public void shutdown() {
+        stopBeaconScan();
+        scanScheduler.setListener(null);
+        workerHandler.removeCallbacksAndMessages(null);
+        workerHandler.post(this::finishSurvey);
+        workerHandler.post(() -> processor.setPositionEngine(null));
+        workerThread.quitSafely();
+        choreographer.removeFrameCallback(publishCallback);
+        mainHandler.removeCallbacks(beaconListTask);
+    }
+
+    // Runs on the worker thread; the file is rewritten once per surveyed point, not per sample
+    private void finishSurvey() {
+        if (surveyRecorder == null) {
+            return;
         }
-        double[] control = {0, 0};
-        filter.predict(control);
-        filter.update(new double[]{distance, 0});
-        filter.predict(control);
-        filter.update(new double[]{distance, 0});
-        double[] state = filter.getState();
-        return state[0];
+        try {
+            surveyRecorder.commit();
+        } catch (IOException e) {
+            Log.e("BeaconManager", "Could not merge the survey point into " + surveyRecorder.getFile(), e);
+        }
+        processor.setSurveyRecorder(null);
+        surveyRecorder = null;
     }
 
-    private Map<String, Double> getStrongestBeacons(Map<String, Double> distances, int count) {
-        return distances.entrySet().stream()
-                .sorted(Map.Entry.comparingByValue())
-                .limit(count)
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            workerHandler.post(drainTask);
+        }
     }
 
-    private Point calculatePosition(Map<String, Double> distances) {
-        List<String> beacons = new ArrayList<>(distances.keySet());
-        Point p1 = BeaconInfoLoader.BEACON_LOCATIONS.get(beacons.get(0));
-        Point p2 = BeaconInfoLoader.BEACON_LOCATIONS.get(beacons.get(1));
-        Point p3 = BeaconInfoLoader.BEACON_LOCATIONS.get(beacons.get(2));
+    // Runs on the worker thread
+    private void drainSamples() {
+        drainScheduled.set(false);
+        long drainStart = SystemClock.elapsedRealtimeNanos();
+        long newestBefore = processor.getNewestSampleNanos();
+        int drained = pipeline.drainBatch();
+        if (drained == 0) {
+            return;
+        }
+        long drainEnd = SystemClock.elapsedRealtimeNanos();
+        PipelineLatency latency = PipelineLatency.get();
+        if (processor.getNewestSampleNanos() != newestBefore) {
+            latency.record(PipelineLatency.QUEUE, drainStart - processor.getNewestSampleNanos());
+        }
+        latency.record(PipelineLatency.SMOOTHING, drainEnd - drainStart);
+        batchCount++;
+        if (EventTrace.LEVEL >= EventTrace.VERBOSE) {
+            EventTrace.get().record(EventTrace.DRAIN, SystemClock.elapsedRealtimeNanos(), drained, sampleQueue.size(), 0);
+        }
+        if (!sampleQueue.isEmpty()) {
+            scheduleDrain();
+        }
+        publishFloor();
+        if (!processor.consumeDistancesChanged()) {
+            return;
+        }
+        BeaconStateTable state = processor.getState();
+        synchronized (distanceLock) {
+            if (publishedDistances.length != state.size()) {
+                publishedDistances = new double[state.size()];
+                publishedRssi = new float[state.size()];
+            }
+            state.copyDistances(publishedDistances);
+            state.copySmoothedRssi(publishedRssi);
+            distancesPublished = true;
+        }
+        Point estimatedPosition = null;
+        if (processor.hasEnoughBeacons()) {
+            long estimateStart = SystemClock.elapsedRealtimeNanos();
+            estimatedPosition = pipeline.estimate();
+            latency.record(PipelineLatency.ESTIMATE, SystemClock.elapsedRealtimeNanos() - estimateStart);
+        }
+        if (estimatedPosition != null) {
+            if (EventTrace.LEVEL >= EventTrace.DEBUG) {
+                EventTrace.get().record(EventTrace.FIX, SystemClock.elapsedRealtimeNanos(), estimatedPosition.floor,
+                        (float) estimatedPosition.x, (float) estimatedPosition.y);
+            }
+            setCurrentFix(estimatedPosition);
+        }
+        requestUiFrame();
+    }
 
-        double r1 = distances.get(beacons.get(0));
-        double r2 = distances.get(beacons.get(1));
-        double r3 = distances.get(beacons.get(2));
+    private void setCurrentFix(Point position) {
+        currentFixNanos = SystemClock.elapsedRealtimeNanos();
+        currentUserPosition = position;
+    }
 
-        Point trilaterationPoint = TrilaterationCalculator.trilateration(distances);
-        Point triangulationPoint = TrilaterationCalculator.triangulation(p1, p2, p3, r1, r2, r3);
+    // Runs on the worker thread; pages in the new floor's beacons and plans in the background
+    private void publishFloor() {
+        if (processor.consumeFloorChanged()) {
+            int floor = processor.getFloor();
+            if (EventTrace.LEVEL >= EventTrace.INFO) {
+                EventTrace.get().record(EventTrace.FLOOR, SystemClock.elapsedRealtimeNanos(), floor);
+            }
+            BeaconInfoLoader.setCurrentFloor(floor);
+            BuildingPlanLoader.setCurrentFloor(floor);
+        }
+    }
 
-        double combinedX = (trilaterationPoint.x + triangulationPoint.x) / 2.0;
-        double combinedY = (trilaterationPoint.y + triangulationPoint.y) / 2.0;
+    private void requestUiFrame() {
+        if (framePending.compareAndSet(false, true)) {
+            choreographer.postFrameCallback(publishCallback);
+        }
+    }
 
-        combinedX += Math.cos(Math.toRadians(currentAzimuth)) * currentSpeed;
-        combinedY += Math.sin(Math.toRadians(currentAzimuth)) * currentSpeed;
+    // Runs on the main thread at most once per frame
+    private void publishToUi(long frameTimeNanos) {
+        framePending.set(false);
+        publishBeaconList();
+        Point position = currentUserPosition;
+        if (position != publishedPosition) {
+            publishedPosition = position;
+            long fixNanos = currentFixNanos;
+            if (fixNanos != 0) {
+                PipelineLatency.get().record(PipelineLatency.PUBLISH, SystemClock.elapsedRealtimeNanos() - fixNanos);
+            }
+            uiUpdater.updateLocation(position);
+        }
+        float azimuth = currentAzimuth;
+        if (azimuth != publishedAzimuth) {
+            publishedAzimuth = azimuth;
+            uiUpdater.updateUserOrientation(azimuth);
+        }
+    }
 
-        return new Point(combinedX, combinedY);
+    // Runs on the main thread; hands the newest distances to the beacon list at most once per
+    // BEACON_LIST_INTERVAL_NANOS, and later ones wait for the next slot
+    private void publishBeaconList() {
+        synchronized (distanceLock) {
+            if (!distancesPublished) {
+                return;
+            }
+        }
+        long now = SystemClock.elapsedRealtimeNanos();
+        if (now < nextBeaconListNanos) {
+            if (!beaconListRefreshPosted) {
+                beaconListRefreshPosted = true;
+                mainHandler.postDelayed(beaconListTask, (nextBeaconListNanos - now + 999999) / 1000000);
+            }
+            return;
+        }
+        synchronized (distanceLock) {
+            if (uiDistanceSnapshot.length != publishedDistances.length) {
+                uiDistanceSnapshot = new double[publishedDistances.length];
+                uiRssiSnapshot = new float[publishedDistances.length];
+            }
+            System.arraycopy(publishedDistances, 0, uiDistanceSnapshot, 0, publishedDistances.length);
+            System.arraycopy(publishedRssi, 0, uiRssiSnapshot, 0, publishedRssi.length);
+            distancesPublished = false;
+        }
+        nextBeaconListNanos = now + BEACON_LIST_INTERVAL_NANOS;
+        uiUpdater.updateBeaconList(uiDistanceSnapshot, uiRssiSnapshot);
     }
 }
@@ -0,0 +1,90 @@
+package com.example.hero_pr12;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Hardware scan filters derived from the beacon database: one manufacturer-data filter per
+ * iBeacon proximity UUID and, while the controller can hold them, one filter per known MAC.
+ * Kept free of Android types so the generated bytes can be checked on the JVM.
+ */
+public class BeaconScanFilterSpec {
+    public static final int APPLE_COMPANY_ID = 0x004C;
+    public static final int IBEACON_DATA_LENGTH = 23; // 0x02 0x15, UUID, major, minor, tx power
+    // Most controllers offload 16-32 filters; beyond that the UUID filters alone are used
+    public static final int MAX_ADDRESS_FILTERS = 16;
+
+    private static final int IBEACON_PREFIX_LENGTH = 18; // 0x02 0x15 + UUID
+
+    private final List<String> deviceAddresses;
+    private final List<byte[]> manufacturerData;
+    private final byte[] manufacturerDataMask;
+
+    private BeaconScanFilterSpec(List<String> deviceAddresses, List<byte[]> manufacturerData) {
+        this.deviceAddresses = Collections.unmodifiableList(deviceAddresses);
+        this.manufacturerData = Collections.unmodifiableList(manufacturerData);
+        manufacturerDataMask = new byte[IBEACON_DATA_LENGTH];
+        for (int i = 0; i < IBEACON_PREFIX_LENGTH; i++) {
+            manufacturerDataMask[i] = (byte) 0xFF;
+        }
+    }
+
+    /**
+     * Builds the filters from every beacon in the database. Only the proximity UUIDs are used:
+     * beacons are identified by their iBeacon frame, so a randomised or replaced MAC must still
+     * get through.
+     */
+    public static BeaconScanFilterSpec fromDatabase(BeaconDatabase database) {
+        Set<String> uuids = new LinkedHashSet<>();
+        for (int i = 0; i < database.size(); i++) {
+            uuids.add(new UUID(database.uuidMostSignificantBits(i), database.uuidLeastSignificantBits(i)).toString());
+        }
+        return build(Collections.<String>emptyList(), uuids);
+    }
+
+    public static BeaconScanFilterSpec build(Collection<String> macAddresses, Collection<String> proximityUuids) {
+        List<String> addresses = new ArrayList<>();
+        if (macAddresses.size() <= MAX_ADDRESS_FILTERS) {
+            addresses.addAll(macAddresses);
+        }
+        List<byte[]> data = new ArrayList<>();
+        for (String uuid : proximityUuids) {
+            data.add(iBeaconPrefix(UUID.fromString(uuid)));
+        }
+        return new BeaconScanFilterSpec(addresses, data);
+    }
+
+    static byte[] iBeaconPrefix(UUID uuid) {
+        byte[] data = new byte[IBEACON_DATA_LENGTH];
+        data[0] = 0x02;
+        data[1] = 0x15;
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        for (int i = 0; i < 8; i++) {
+            data[2 + i] = (byte) (msb >>> (56 - 8 * i));
+            data[10 + i] = (byte) (lsb >>> (56 - 8 * i));
+        }
+        return data;
+    }
+
+    public List<String> getDeviceAddresses() {
+        return deviceAddresses;
+    }
+
+    public List<byte[]> getManufacturerData() {
+        return manufacturerData;
+    }
+
+    public byte[] getManufacturerDataMask() {
+        return manufacturerDataMask;
+    }
+
+    public boolean isEmpty() {
+        return deviceAddresses.isEmpty() && manufacturerData.isEmpty();
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.hero_pr12;
+
+/**
+ * Source of BLE advertisements. Implementations deliver samples on a single thread and call
+ * {@link Listener#onScanBatchComplete()} after each group of samples, so the consumer can wake
+ * the positioning worker once per batch instead of once per advertisement.
+ */
+public interface BeaconScanner {
+    interface Listener {
+        void onScanSample(String address, int rssi, byte[] scanRecord, long timestampNanos);
+
+        void onScanBatchComplete();
+    }
+
+    void start(Listener listener);
+
+    void stop();
+
+    boolean isScanning();
+}
@@ -0,0 +1,376 @@
+package com.example.hero_pr12;
+
+import java.util.Arrays;
+
+/**
+ * Per-beacon positioning state in parallel primitive arrays, indexed by the dense beacon id
+ * (the {@link BeaconDatabase} index). With distance filtering on, each beacon's distance runs
+ * through its own constant-velocity filter, a slice of the shared state and covariance arrays run
+ * with the static {@link ExtendedKalmanFilter} kernels; this is for per-fix multilateration, which
+ * has no memory of its own. A {@link PositionEngine} filters over time itself and gets the
+ * distances unfiltered.
+ *
+ * Beacons not heard for longer than the TTL are evicted. The heard beacons are ranked by a
+ * quality score, variance x e^(age / FRESHNESS_TIME), and the best few are kept apart in a
+ * bounded max-heap whose root is the worst of them; the others sit in a min-heap whose root is
+ * the best of them. A sample moves one beacon within its heap and swaps the two roots if they
+ * cross, so the best set is always exact at O(log n) per sample. Because every beacon ages at
+ * the same rate, the score is stored as ln(variance) - lastSeen / FRESHNESS_TIME, which never
+ * changes between samples and keeps both heaps valid as time passes.
+ *
+ * Confined to the positioning worker thread. Nothing is allocated after construction.
+ */
+public class BeaconStateTable {
+    public static final int DEFAULT_BEST_COUNT = 8;
+    public static final long DEFAULT_TTL_NANOS = 10000000000L; // 10초
+    private static final double FRESHNESS_TIME_NANOS = 2e9;
+    private static final double NS2S = 1.0 / 1000000000.0;
+
+    private final int[] lastRssi;
+    private final float[] smoothedRssi;
+    private final double[] distance;
+    private final double[] variance;
+    private final double[] filterState;
+    private final double[] filterCovariance;
+    private boolean distanceFiltering;
+    private final long[] lastSeen; // 0 while the beacon is not heard
+    private final double[] score; // Lower is better
+    private final IdHeap best;
+    private final IdHeap rest;
+    private final int[] sortScratch;
+    private long ttlNanos = DEFAULT_TTL_NANOS;
+    private long nextEvictionNanos;
+
+    public BeaconStateTable(int size) {
+        this(size, DEFAULT_BEST_COUNT);
+    }
+
+    public BeaconStateTable(int size, int bestCount) {
+        lastRssi = new int[size];
+        smoothedRssi = new float[size];
+        distance = new double[size];
+        variance = new double[size];
+        filterState = new double[size * ExtendedKalmanFilter.STATE_SIZE];
+        filterCovariance = new double[size * ExtendedKalmanFilter.COVARIANCE_SIZE];
+        lastSeen = new long[size];
+        score = new double[size];
+        int[] heapPosition = new int[size];
+        best = new IdHeap(Math.min(bestCount, size), true, score, heapPosition);
+        rest = new IdHeap(size, false, score, heapPosition);
+        sortScratch = new int[best.ids.length];
+        clear();
+    }
+
+    /**
+     * Records a sample and returns the distance, filtered if distance filtering is on. A beacon's
+     * filter starts at the first distance heard and predicts over the real time since the last.
+     */
+    public double update(int id, int rssi, float smoothed, float measuredDistance, double rangeVariance,
+                         long timestampNanos) {
+        boolean heard = lastSeen[id] != 0;
+        lastRssi[id] = rssi;
+        smoothedRssi[id] = smoothed;
+        if (distanceFiltering) {
+            int xOff = id * ExtendedKalmanFilter.STATE_SIZE;
+            int pOff = id * ExtendedKalmanFilter.COVARIANCE_SIZE;
+            if (!heard) {
+                startFilter(id, measuredDistance);
+            } else {
+                double dt = (timestampNanos - lastSeen[id]) * NS2S;
+                ExtendedKalmanFilter.predict(filterState, xOff, filterCovariance, pOff, dt, 0, 0);
+                ExtendedKalmanFilter.update(filterState, xOff, filterCovariance, pOff, measuredDistance, 0);
+            }
+            distance[id] = filterState[xOff];
+        } else {
+            distance[id] = measuredDistance;
+        }
+        variance[id] = rangeVariance;
+        lastSeen[id] = timestampNanos;
+        score[id] = Math.log(rangeVariance) - timestampNanos / FRESHNESS_TIME_NANOS;
+        if (!heard) {
+            rest.add(id);
+        } else if (best.contains(id)) {
+            best.changed(id);
+        } else {
+            rest.changed(id);
+        }
+        rebalance();
+        return distance[id];
+    }
+
+    /**
+     * Turns the per-beacon distance filters on or off. Turning them on starts every heard beacon's
+     * filter at its latest distance.
+     */
+    public void setDistanceFiltering(boolean enabled) {
+        if (enabled && !distanceFiltering) {
+            for (int i = 0, n = getHeardCount(); i < n; i++) {
+                int id = getHeardId(i);
+                startFilter(id, distance[id]);
+            }
+        }
+        distanceFiltering = enabled;
+    }
+
+    public boolean isDistanceFiltering() {
+        return distanceFiltering;
+    }
+
+    /**
+     * Forgets every beacon last heard more than the TTL before {@code nowNanos}. The full pass
+     * runs at most four times per TTL; other calls return at once. Returns the number evicted.
+     */
+    public int evictExpired(long nowNanos) {
+        if (nowNanos < nextEvictionNanos) {
+            return 0;
+        }
+        nextEvictionNanos = nowNanos + ttlNanos / 4;
+        long oldest = nowNanos - ttlNanos;
+        int evicted = evictOlderThan(best, oldest) + evictOlderThan(rest, oldest);
+        if (evicted > 0) {
+            rebalance();
+        }
+        return evicted;
+    }
+
+    public void setTtlNanos(long ttlNanos) {
+        this.ttlNanos = ttlNanos;
+        nextEvictionNanos = 0;
+    }
+
+    public long getTtlNanos() {
+        return ttlNanos;
+    }
+
+    /**
+     * Copies the ids of the best beacons into {@code out}, best first, and returns how many there
+     * are: min(heard, best count). Ties are broken by id, so the order is stable.
+     */
+    public int copyBest(int[] out) {
+        int count = best.size;
+        System.arraycopy(best.ids, 0, sortScratch, 0, count);
+        // Insertion sort; the best set is a handful of beacons
+        for (int i = 1; i < count; i++) {
+            int id = sortScratch[i];
+            int j = i - 1;
+            while (j >= 0 && better(id, sortScratch[j])) {
+                sortScratch[j + 1] = sortScratch[j];
+                j--;
+            }
+            sortScratch[j + 1] = id;
+        }
+        System.arraycopy(sortScratch, 0, out, 0, count);
+        return count;
+    }
+
+    public int getBestCapacity() {
+        return best.ids.length;
+    }
+
+    public int size() {
+        return lastSeen.length;
+    }
+
+    public boolean isHeard(int id) {
+        return lastSeen[id] != 0;
+    }
+
+    public int getHeardCount() {
+        return best.size + rest.size;
+    }
+
+    /**
+     * The id of the i-th beacon heard, for 0 <= i < {@link #getHeardCount()}, in no particular order.
+     */
+    public int getHeardId(int i) {
+        return i < best.size ? best.ids[i] : rest.ids[i - best.size];
+    }
+
+    public int getLastRssi(int id) {
+        return lastRssi[id];
+    }
+
+    public float getSmoothedRssi(int id) {
+        return smoothedRssi[id];
+    }
+
+    /**
+     * The latest distance in meters, filtered if distance filtering is on, or NaN if the beacon
+     * is not heard.
+     */
+    public double getDistance(int id) {
+        return distance[id];
+    }
+
+    public double getRangeVariance(int id) {
+        return variance[id];
+    }
+
+    public long getLastSeen(int id) {
+        return lastSeen[id];
+    }
+
+    /**
+     * Copies every distance into {@code out}, NaN for beacons not heard.
+     */
+    public void copyDistances(double[] out) {
+        System.arraycopy(distance, 0, out, 0, distance.length);
+    }
+
+    /**
+     * Copies every smoothed RSSI into {@code out}, NaN for beacons not heard.
+     */
+    public void copySmoothedRssi(float[] out) {
+        System.arraycopy(smoothedRssi, 0, out, 0, smoothedRssi.length);
+    }
+
+    public void clear() {
+        Arrays.fill(lastRssi, 0);
+        Arrays.fill(smoothedRssi, Float.NaN);
+        Arrays.fill(distance, Double.NaN);
+        Arrays.fill(variance, Double.NaN);
+        Arrays.fill(lastSeen, 0);
+        best.size = 0;
+        rest.size = 0;
+        nextEvictionNanos = 0;
+    }
+
+    private void startFilter(int id, double initialDistance) {
+        int xOff = id * ExtendedKalmanFilter.STATE_SIZE;
+        ExtendedKalmanFilter.reset(filterState, xOff, filterCovariance, id * ExtendedKalmanFilter.COVARIANCE_SIZE);
+        filterState[xOff] = initialDistance;
+    }
+
+    // Fills the best heap from the rest and swaps the roots while the best of the rest beats the worst of the best
+    private void rebalance() {
+        while (best.size < best.ids.length && rest.size > 0) {
+            best.add(rest.removeAt(0));
+        }
+        while (rest.size > 0 && best.size > 0 && better(rest.ids[0], best.ids[0])) {
+            int promoted = rest.removeAt(0);
+            int demoted = best.removeAt(0);
+            best.add(promoted);
+            rest.add(demoted);
+        }
+    }
+
+    private int evictOlderThan(IdHeap heap, long oldest) {
+        int evicted = 0;
+        for (int i = heap.size - 1; i >= 0; i--) {
+            if (i >= heap.size) {
+                continue;
+            }
+            int id = heap.ids[i];
+            if (lastSeen[id] < oldest) {
+                heap.removeAt(i);
+                lastSeen[id] = 0;
+                distance[id] = Double.NaN;
+                variance[id] = Double.NaN;
+                smoothedRssi[id] = Float.NaN;
+                evicted++;
+                i++; // Look again at whatever moved into this slot
+            }
+        }
+        return evicted;
+    }
+
+    private boolean better(int a, int b) {
+        return score[a] < score[b] || score[a] == score[b] && a < b;
+    }
+
+    /**
+     * Binary heap of beacon ids ordered by score, tracking each id's position so that an entry can
+     * be moved or removed in place. {@code max} puts the worst beacon at the root.
+     */
+    private static final class IdHeap {
+        final int[] ids;
+        final boolean max;
+        final double[] score;
+        final int[] position; // Shared between the two heaps; an id is in at most one
+        int size;
+
+        IdHeap(int capacity, boolean max, double[] score, int[] position) {
+            this.ids = new int[capacity];
+            this.max = max;
+            this.score = score;
+            this.position = position;
+        }
+
+        boolean contains(int id) {
+            int i = position[id];
+            return i < size && ids[i] == id;
+        }
+
+        void add(int id) {
+            ids[size] = id;
+            position[id] = size;
+            size++;
+            siftUp(size - 1);
+        }
+
+        int removeAt(int i) {
+            int id = ids[i];
+            size--;
+            if (i != size) {
+                ids[i] = ids[size];
+                position[ids[i]] = i;
+                changedAt(i);
+            }
+            return id;
+        }
+
+        void changed(int id) {
+            changedAt(position[id]);
+        }
+
+        private void changedAt(int i) {
+            if (!siftUp(i)) {
+                siftDown(i);
+            }
+        }
+
+        // True if a is closer to the root than b
+        private boolean above(int a, int b) {
+            boolean aBetter = score[a] < score[b] || score[a] == score[b] && a < b;
+            return max != aBetter;
+        }
+
+        private boolean siftUp(int i) {
+            int id = ids[i];
+            int start = i;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!above(id, ids[parent])) {
+                    break;
+                }
+                ids[i] = ids[parent];
+                position[ids[i]] = i;
+                i = parent;
+            }
+            ids[i] = id;
+            position[id] = i;
+            return i != start;
+        }
+
+        private void siftDown(int i) {
+            int id = ids[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && above(ids[child + 1], ids[child])) {
+                    child++;
+                }
+                if (!above(ids[child], id)) {
+                    break;
+                }
+                ids[i] = ids[child];
+                position[ids[i]] = i;
+                i = child;
+            }
+            ids[i] = id;
+            position[id] = i;
+        }
+    }
+}
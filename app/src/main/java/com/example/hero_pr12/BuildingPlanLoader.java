@@ -3,15 +3,220 @@ package com.example.hero_pr12;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.util.Log;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Loads the building plans on a background thread without ever decoding one whole: a plan is
+ * drawn from a {@link PlanTilePyramid} and its wall map is built from full-resolution strips.
+ *
+ * Each floor has its own plan, the drawable {@code building_plan_<floor>} ({@code building_plan_b<n>}
+ * for basement n, and plain {@code building_plan} for a single-floor venue). Only the current
+ * floor and its neighbours are kept open; see {@link FloorWindow}.
+ */
 public class BuildingPlanLoader {
-    private static Bitmap buildingPlanBitmap;
+    // 도면 1 m 당 픽셀 수; 도면의 중심이 지도 좌표 (0, 0)에 온다
+    public static final double PLAN_PIXELS_PER_METER = 50;
+    private static final double WALL_CELL_SIZE = 0.1; // 미터
+    private static final String PLAN_RESOURCE = "building_plan";
+    private static final String PLAN_DIRECTORY = "plans";
+    private static final String TILE_DIRECTORY = "plan_tiles";
+    // Rows decoded at a time for the wall map; subsampling could drop one-pixel walls
+    private static final int WALL_STRIP_HEIGHT = 256;
+
+    private static final ExecutorService planLoader = FloorWindow.newLoaderExecutor("PlanLoader");
+    private static volatile FloorWindow<FloorPlan> plans;
+
+    /**
+     * Starts loading the plans around {@code floor}. The resource bytes of a plan are copied to a
+     * file once per install so that they can be region-decoded; its tiles are usable as soon as
+     * {@code onPlanReady} runs, on the loading thread, and its wall map follows. Tile pyramids are
+     * then written to disk if a previous run has not already done so.
+     */
+    public static synchronized void loadBuildingPlans(Context context, int floor, Runnable onPlanReady) {
+        Context appContext = context.getApplicationContext();
+        FloorWindow<FloorPlan> window = new FloorWindow<>(new FloorWindow.Loader<FloorPlan>() {
+            @Override
+            public FloorPlan load(int floor) throws IOException {
+                return openPlan(appContext, floor);
+            }
+
+            @Override
+            public void release(FloorPlan plan) {
+                plan.close();
+            }
+        }, planLoader, FloorWindow.DEFAULT_RADIUS);
+        if (onPlanReady != null) {
+            window.setListener(loadedFloor -> onPlanReady.run());
+        }
+        FloorWindow<FloorPlan> previous = plans;
+        plans = window;
+        if (previous != null) {
+            previous.close();
+        }
+        window.setCurrentFloor(floor);
+    }
+
+    /**
+     * Keeps the plans of {@code floor} and its neighbours open and closes the others.
+     */
+    public static void setCurrentFloor(int floor) {
+        FloorWindow<FloorPlan> window = plans;
+        if (window != null) {
+            window.setCurrentFloor(floor);
+        }
+    }
+
+    /**
+     * Tiles of the plan of {@code floor}, or null while it is not loaded.
+     */
+    public static PlanTilePyramid getPlanTiles(int floor) {
+        FloorPlan plan = plan(floor);
+        return plan != null ? plan.tiles : null;
+    }
+
+    /**
+     * Walls of the plan of {@code floor}, or null until they are built.
+     */
+    public static WallMap getWallMap(int floor) {
+        FloorPlan plan = plan(floor);
+        return plan != null ? plan.walls : null;
+    }
+
+    /**
+     * Walls of the current floor's plan, or null until they are built.
+     */
+    public static WallMap getWallMap() {
+        FloorWindow<FloorPlan> window = plans;
+        return window != null ? getWallMap(window.getCurrentFloor()) : null;
+    }
 
-    public static void loadBuildingPlan(Context context, int resourceId) {
-        buildingPlanBitmap = BitmapFactory.decodeResource(context.getResources(), resourceId);
+    static String resourceName(int floor) {
+        return floor < 0 ? PLAN_RESOURCE + "_b" + -floor : PLAN_RESOURCE + "_" + floor;
     }
 
-    public static Bitmap getBuildingPlanBitmap() {
-        return buildingPlanBitmap;
+    private static FloorPlan plan(int floor) {
+        FloorWindow<FloorPlan> window = plans;
+        return window != null ? window.get(floor) : null;
+    }
+
+    // Runs on the loader thread; null if the floor has no plan
+    private static FloorPlan openPlan(Context context, int floor) throws IOException {
+        String name = resourceName(floor);
+        int resourceId = context.getResources().getIdentifier(name, "drawable", context.getPackageName());
+        if (resourceId == 0 && floor == 0) {
+            name = PLAN_RESOURCE;
+            resourceId = context.getResources().getIdentifier(name, "drawable", context.getPackageName());
+        }
+        if (resourceId == 0) {
+            return null;
+        }
+        File file = new File(new File(context.getFilesDir(), PLAN_DIRECTORY), name + ".png");
+        File tileDirectory = new File(new File(context.getFilesDir(), TILE_DIRECTORY), name);
+        if (!file.exists() || file.lastModified() < BeaconInfoLoader.installTime(context)) {
+            deleteTiles(tileDirectory);
+            copyResource(context, resourceId, file);
+        }
+        FloorPlan plan = new FloorPlan(file, PlanTilePyramid.open(file, tileDirectory));
+        // Queued behind the other floors of the window, so that every plan can be drawn first
+        planLoader.execute(plan::finish);
+        return plan;
+    }
+
+    private static WallMap buildWallMap(File file) throws IOException {
+        BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(file.getPath());
+        try {
+            int width = decoder.getWidth();
+            int height = decoder.getHeight();
+            WallMap map = WallMap.forImage(width, height, PLAN_PIXELS_PER_METER,
+                    -width / 2.0 / PLAN_PIXELS_PER_METER, -height / 2.0 / PLAN_PIXELS_PER_METER, WALL_CELL_SIZE);
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            int[] pixels = new int[width * Math.min(WALL_STRIP_HEIGHT, height)];
+            Rect strip = new Rect();
+            for (int top = 0; top < height; top += WALL_STRIP_HEIGHT) {
+                int rows = Math.min(WALL_STRIP_HEIGHT, height - top);
+                strip.set(0, top, width, top + rows);
+                Bitmap bitmap = decoder.decodeRegion(strip, options);
+                if (bitmap == null) {
+                    throw new IOException("Cannot decode plan rows " + top + "-" + (top + rows));
+                }
+                bitmap.getPixels(pixels, 0, width, 0, 0, width, rows);
+                bitmap.recycle();
+                map.addWallPixels(pixels, 0, top, width, rows, PLAN_PIXELS_PER_METER);
+            }
+            return map;
+        } finally {
+            decoder.recycle();
+        }
+    }
+
+    private static void copyResource(Context context, int resourceId, File file) throws IOException {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File partial = new File(file.getPath() + ".part");
+        try (InputStream in = context.getResources().openRawResource(resourceId);
+             OutputStream out = new FileOutputStream(partial)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+        if (!partial.renameTo(file)) {
+            throw new IOException("Cannot rename " + partial);
+        }
+    }
+
+    private static void deleteTiles(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File tile : files) {
+                tile.delete();
+            }
+        }
+    }
+
+    /**
+     * One floor's plan: tiles at once, walls once {@link #finish()} has run.
+     */
+    private static final class FloorPlan {
+        final File file;
+        final PlanTilePyramid tiles;
+        volatile WallMap walls;
+        private volatile boolean closed;
+
+        FloorPlan(File file, PlanTilePyramid tiles) {
+            this.file = file;
+            this.tiles = tiles;
+        }
+
+        void finish() {
+            try {
+                if (!closed) {
+                    walls = buildWallMap(file);
+                }
+                if (!closed) {
+                    tiles.build();
+                }
+            } catch (IOException e) {
+                Log.e("BuildingPlanLoader", "Plan " + file.getName() + " could not be prepared", e);
+            }
+        }
+
+        void close() {
+            closed = true;
+            tiles.close();
+        }
     }
 }
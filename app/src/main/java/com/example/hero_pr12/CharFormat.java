@@ -0,0 +1,71 @@
+package com.example.hero_pr12;
+
+/**
+ * Writes numbers into a caller-owned {@code char[]} instead of building strings, for text that
+ * is refreshed several times a second. The result is shown with
+ * {@code TextView.setText(char[], int, int)}, so nothing is allocated per update.
+ */
+public class CharFormat {
+    private CharFormat() {
+    }
+
+    /**
+     * Writes {@code value} in decimal at {@code offset} and returns the offset after it.
+     */
+    public static int appendInt(char[] out, int offset, long value) {
+        if (value < 0) {
+            out[offset++] = '-';
+            if (value == Long.MIN_VALUE) {
+                // -MIN_VALUE overflows; write the last digit on its own
+                offset = appendInt(out, offset, -(value / 10));
+                out[offset++] = '8';
+                return offset;
+            }
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int end = offset + digits;
+        for (int i = end - 1; i >= offset; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * Writes {@code scaled / 10^decimals} with exactly {@code decimals} fraction digits, e.g.
+     * 1234 with two decimals as "12.34" and -5 as "-0.05", and returns the offset after it.
+     */
+    public static int appendFixed(char[] out, int offset, long scaled, int decimals) {
+        if (decimals == 0) {
+            return appendInt(out, offset, scaled);
+        }
+        if (scaled < 0) {
+            out[offset++] = '-';
+            scaled = -scaled;
+        }
+        long unit = 1;
+        for (int i = 0; i < decimals; i++) {
+            unit *= 10;
+        }
+        offset = appendInt(out, offset, scaled / unit);
+        out[offset++] = '.';
+        long fraction = scaled % unit;
+        for (int i = offset + decimals - 1; i >= offset; i--) {
+            out[i] = (char) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        return offset + decimals;
+    }
+
+    /**
+     * Copies {@code text} to {@code offset} and returns the offset after it.
+     */
+    public static int append(char[] out, int offset, String text) {
+        text.getChars(0, text.length(), out, offset);
+        return offset + text.length();
+    }
+}
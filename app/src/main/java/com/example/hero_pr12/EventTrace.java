@@ -0,0 +1,165 @@
+package com.example.hero_pr12;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory ring of fixed-size binary events, for the diagnostics that used to be {@code Log.d}
+ * strings on every fix and sensor sample. Recording an event stores an event type, a timestamp,
+ * an int and four floats into preallocated arrays: no string, no allocation, no lock. When the
+ * ring is full the oldest events are overwritten. {@link #dump(File)} writes the ring out on
+ * demand and {@link EventTraceDecoder} turns the dump back into text or CSV.
+ *
+ * Call sites guard each event with its level against {@link #LEVEL}, a compile-time constant, so
+ * events above it cost nothing at all:
+ * <pre>
+ *   if (EventTrace.LEVEL >= EventTrace.DEBUG) {
+ *       EventTrace.get().record(EventTrace.FIX, now, floor, x, y);
+ *   }
+ * </pre>
+ *
+ * Dump layout (little-endian):
+ * <pre>
+ *   header   magic "HEVT", version, event count, events overwritten before the dump  (4 x int)
+ *   events   timestamp(long) type(int) arg(int) values(4 x float), oldest first
+ * </pre>
+ * Any thread may record. A record still being written, or overwritten while the dump reads it,
+ * is normally left out of the dump; this is a diagnostic, so the rare torn record is accepted
+ * rather than paying for a lock on every event.
+ */
+public class EventTrace {
+    public static final int OFF = 0;
+    public static final int INFO = 1;
+    public static final int DEBUG = 2;
+    public static final int VERBOSE = 3;
+    /** Events above this level are compiled out at their call sites. */
+    public static final int LEVEL = DEBUG;
+
+    // Event types; EventTraceDecoder knows their names and fields
+    public static final int SCAN_STATE = 1;
+    public static final int MOTION_MODE = 2;
+    public static final int FIX = 3;
+    public static final int FLOOR = 4;
+    public static final int DRAIN = 5;
+    public static final int AZIMUTH = 6;
+    public static final int GYRO_ORIENTATION = 7;
+
+    public static final int MAGIC = 0x54564548; // "HEVT"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 32;
+    static final int DEFAULT_CAPACITY = 16384; // 512 KB, a few minutes at DEBUG
+
+    private static final EventTrace TRACE = new EventTrace(DEFAULT_CAPACITY);
+
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+    // Sequence number + 1 of the event in each slot, 0 while it is being written
+    private final AtomicLongArray sequences;
+    private final long[] timestamps;
+    private final int[] types;
+    private final int[] args;
+    private final float[] values;
+
+    /**
+     * @param capacity events kept, rounded up to a power of two
+     */
+    public EventTrace(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        timestamps = new long[size];
+        types = new int[size];
+        args = new int[size];
+        values = new float[size * 4];
+    }
+
+    /**
+     * The app-wide trace.
+     */
+    public static EventTrace get() {
+        return TRACE;
+    }
+
+    public void record(int type, long timestampNanos, int arg) {
+        record(type, timestampNanos, arg, 0, 0, 0, 0);
+    }
+
+    public void record(int type, long timestampNanos, int arg, float a, float b) {
+        record(type, timestampNanos, arg, a, b, 0, 0);
+    }
+
+    public void record(int type, long timestampNanos, int arg, float a, float b, float c, float d) {
+        long sequence = next.getAndIncrement();
+        int slot = (int) sequence & mask;
+        sequences.set(slot, 0);
+        timestamps[slot] = timestampNanos;
+        types[slot] = type;
+        args[slot] = arg;
+        int v = slot * 4;
+        values[v] = a;
+        values[v + 1] = b;
+        values[v + 2] = c;
+        values[v + 3] = d;
+        sequences.lazySet(slot, sequence + 1);
+    }
+
+    /**
+     * Events recorded so far, including those already overwritten.
+     */
+    public long getRecordedCount() {
+        return next.get();
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * The events currently in the ring in the dump layout, oldest first.
+     */
+    public ByteBuffer snapshot() {
+        long end = next.get();
+        long start = Math.max(0, end - getCapacity());
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + (int) (end - start) * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        out.position(HEADER_SIZE);
+        int count = 0;
+        for (long sequence = start; sequence < end; sequence++) {
+            int slot = (int) sequence & mask;
+            if (sequences.get(slot) != sequence + 1) {
+                continue;
+            }
+            int position = out.position();
+            int v = slot * 4;
+            out.putLong(timestamps[slot]).putInt(types[slot]).putInt(args[slot])
+                    .putFloat(values[v]).putFloat(values[v + 1]).putFloat(values[v + 2]).putFloat(values[v + 3]);
+            if (sequences.get(slot) != sequence + 1) {
+                out.position(position); // Overwritten while copying
+                continue;
+            }
+            count++;
+        }
+        out.flip();
+        out.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, count)
+                .putInt(12, (int) Math.min(Integer.MAX_VALUE, start));
+        return out;
+    }
+
+    /**
+     * Writes the events currently in the ring to {@code file}. Recording carries on meanwhile.
+     */
+    public void dump(File file) throws IOException {
+        ByteBuffer snapshot = snapshot();
+        try (FileOutputStream out = new FileOutputStream(file); FileChannel channel = out.getChannel()) {
+            while (snapshot.hasRemaining()) {
+                channel.write(snapshot);
+            }
+        }
+    }
+}
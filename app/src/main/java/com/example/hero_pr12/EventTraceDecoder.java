@@ -0,0 +1,160 @@
+package com.example.hero_pr12;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads a dump written by {@link EventTrace#dump} and formats it as readable text or as CSV.
+ * Plain JVM code; from a checkout:
+ * <pre>
+ *   java com.example.hero_pr12.EventTraceDecoder [--csv] events.hevt
+ * </pre>
+ */
+public class EventTraceDecoder {
+    public static class Event {
+        public final long timestampNanos;
+        public final int type;
+        public final int arg;
+        public final float[] values;
+
+        Event(long timestampNanos, int type, int arg, float[] values) {
+            this.timestampNanos = timestampNanos;
+            this.type = type;
+            this.arg = arg;
+            this.values = values;
+        }
+    }
+
+    // Name, then labels of arg and the four values; null labels are not printed
+    private static final String[][] FORMATS = new String[8][];
+
+    static {
+        FORMATS[EventTrace.SCAN_STATE] = new String[]{"SCAN_STATE", "on", null, null, null, null};
+        FORMATS[EventTrace.MOTION_MODE] = new String[]{"MOTION_MODE", "mode", "scanOnS", "elapsedS", null, null};
+        FORMATS[EventTrace.FIX] = new String[]{"FIX", "floor", "x", "y", null, null};
+        FORMATS[EventTrace.FLOOR] = new String[]{"FLOOR", "floor", null, null, null, null};
+        FORMATS[EventTrace.DRAIN] = new String[]{"DRAIN", "samples", "queued", null, null, null};
+        FORMATS[EventTrace.AZIMUTH] = new String[]{"AZIMUTH", null, "azimuth", null, null, null};
+        FORMATS[EventTrace.GYRO_ORIENTATION] = new String[]{"GYRO_ORIENTATION", null, "azimuth", "pitch", "roll", null};
+    }
+
+    private final int overwritten;
+    private final List<Event> events;
+
+    public EventTraceDecoder(ByteBuffer dump) {
+        ByteBuffer buffer = dump.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < EventTrace.HEADER_SIZE || buffer.getInt(0) != EventTrace.MAGIC) {
+            throw new IllegalArgumentException("Not an event trace");
+        }
+        int version = buffer.getInt(4);
+        if (version != EventTrace.VERSION) {
+            throw new IllegalArgumentException("Unsupported event trace version " + version);
+        }
+        int count = Math.min(buffer.getInt(8), (buffer.limit() - EventTrace.HEADER_SIZE) / EventTrace.RECORD_SIZE);
+        overwritten = buffer.getInt(12);
+        events = new ArrayList<>(count);
+        buffer.position(EventTrace.HEADER_SIZE);
+        for (int i = 0; i < count; i++) {
+            long timestamp = buffer.getLong();
+            int type = buffer.getInt();
+            int arg = buffer.getInt();
+            float[] values = {buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat()};
+            events.add(new Event(timestamp, type, arg, values));
+        }
+    }
+
+    public static EventTraceDecoder open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            return new EventTraceDecoder(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    /**
+     * Events lost to the ring wrapping around before the dump.
+     */
+    public int getOverwrittenCount() {
+        return overwritten;
+    }
+
+    public static String name(int type) {
+        String[] format = format(type);
+        return format != null ? format[0] : "EVENT_" + type;
+    }
+
+    /**
+     * One line such as {@code 12.345678 FIX floor=1 x=3.20 y=4.75}; seconds since boot. Unknown
+     * event types print all their fields.
+     */
+    public static String toText(Event event) {
+        StringBuilder line = new StringBuilder();
+        line.append(String.format(Locale.ROOT, "%.6f %s", event.timestampNanos / 1e9, name(event.type)));
+        String[] format = format(event.type);
+        if (format == null || format[1] != null) {
+            line.append(' ').append(format != null ? format[1] : "arg").append('=').append(event.arg);
+        }
+        for (int i = 0; i < 4; i++) {
+            if (format == null || format[i + 2] != null) {
+                line.append(' ').append(format != null ? format[i + 2] : "v" + i).append('=')
+                        .append(String.format(Locale.ROOT, "%.2f", event.values[i]));
+            }
+        }
+        return line.toString();
+    }
+
+    public void writeText(Appendable out) throws IOException {
+        if (overwritten > 0) {
+            out.append("# ").append(String.valueOf(overwritten)).append(" earlier events overwritten\n");
+        }
+        for (Event event : events) {
+            out.append(toText(event)).append('\n');
+        }
+    }
+
+    /**
+     * All fields of every event, with the generic column names arg and v0-v3.
+     */
+    public void writeCsv(Appendable out) throws IOException {
+        out.append("timestamp_ns,event,arg,v0,v1,v2,v3\n");
+        for (Event event : events) {
+            out.append(String.valueOf(event.timestampNanos)).append(',').append(name(event.type))
+                    .append(',').append(String.valueOf(event.arg));
+            for (float value : event.values) {
+                out.append(',').append(String.valueOf(value));
+            }
+            out.append('\n');
+        }
+    }
+
+    private static String[] format(int type) {
+        return type >= 0 && type < FORMATS.length ? FORMATS[type] : null;
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean csv = args.length == 2 && args[0].equals("--csv");
+        if (args.length != (csv ? 2 : 1)) {
+            System.err.println("Usage: EventTraceDecoder [--csv] <dump>");
+            System.exit(2);
+        }
+        EventTraceDecoder decoder = open(new File(args[args.length - 1]));
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, "UTF-8"));
+        if (csv) {
+            decoder.writeCsv(out);
+        } else {
+            decoder.writeText(out);
+        }
+        out.flush();
+    }
+}
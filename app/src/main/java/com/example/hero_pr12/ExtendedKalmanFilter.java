@@ -1,162 +1,187 @@
 package com.example.hero_pr12;
 
+/**
+ * Constant-velocity Kalman filter with a fixed 4-element state {x, y, vx, vy} and a
+ * 2-element position measurement.
+ *
+ * The state and covariance are updated in place. Because F and H are sparse and P is
+ * symmetric, the products are expanded by hand and only the upper triangle of P is stored:
+ *
+ * <pre>
+ *     P = | p[0] p[1] p[2] p[3] |
+ *         |  .   p[4] p[5] p[6] |
+ *         |  .    .   p[7] p[8] |
+ *         |  .    .    .   p[9] |
+ * </pre>
+ *
+ * The static kernels take an offset so that several filters can share one pair of arrays.
+ */
 public class ExtendedKalmanFilter {
-    private double[][] F; // State transition matrix
-    private double[][] H; // Measurement matrix
-    private double[][] Q; // Process noise covariance
-    private double[][] R; // Measurement noise covariance
-    private double[][] P; // Estimate error covariance
-    private double[] x; // State
+    public static final int STATE_SIZE = 4;
+    public static final int COVARIANCE_SIZE = 10;
+
+    private static final double PROCESS_NOISE = 0.1; // Q = 0.1 * I
+    private static final double MEASUREMENT_NOISE = 1.0; // R = I
+    private static final double NS2S = 1.0 / 1000000000.0;
+
+    private final double[] x = new double[STATE_SIZE]; // State
+    private final double[] p = new double[COVARIANCE_SIZE]; // Estimate error covariance (upper triangle)
     private double dt; // Time step
+    private long lastTimestampNanos;
 
     public ExtendedKalmanFilter() {
+        reset(x, 0, p, 0);
+    }
+
+    /**
+     * Sets the time step used by the next {@link #predict(double[])}.
+     */
+    public void setTimeStep(double dt) {
         this.dt = dt;
-        F = new double[][] {
-                {1, 0, dt, 0},
-                {0, 1, 0, dt},
-                {0, 0, 1, 0},
-                {0, 0, 0, 1}
-        };
-        H = new double[][] {
-                {1, 0, 0, 0},
-                {0, 1, 0, 0}
-        };
-        Q = new double[][] {
-                {0.1, 0, 0, 0},
-                {0, 0.1, 0, 0},
-                {0, 0, 0.1, 0},
-                {0, 0, 0, 0.1}
-        };
-        R = new double[][] {
-                {1, 0},
-                {0, 1}
-        };
-        P = new double[][] {
-                {1, 0, 0, 0},
-                {0, 1, 0, 0},
-                {0, 0, 1, 0},
-                {0, 0, 0, 1}
-        };
-        x = new double[] {0, 0, 0, 0};
+    }
+
+    /**
+     * Derives the time step from the timestamp of the sample about to be filtered. The first
+     * sample seen by the filter gets a time step of zero.
+     */
+    public void setTimestamp(long timestampNanos) {
+        dt = lastTimestampNanos == 0 ? 0 : (timestampNanos - lastTimestampNanos) * NS2S;
+        lastTimestampNanos = timestampNanos;
     }
 
     public void predict(double[] u) {
-        // Predict state
-        x = matrixVectorMultiply(F, x);
-        x[2] += u[0] * dt; // Add control input (acceleration in x)
-        x[3] += u[1] * dt; // Add control input (acceleration in y)
+        predict(x, 0, p, 0, dt, u[0], u[1]);
+    }
 
-        // Predict error covariance
-        P = matrixAdd(matrixMultiply(matrixMultiply(F, P), transpose(F)), Q);
+    public void predict(double ux, double uy) {
+        predict(x, 0, p, 0, dt, ux, uy);
     }
 
     public void update(double[] z) {
-        // Calculate Kalman gain
-        double[][] S = matrixAdd(matrixMultiply(matrixMultiply(H, P), transpose(H)), R);
-        double[][] K = matrixMultiply(matrixMultiply(P, transpose(H)), inverse(S));
-
-        // Update estimate
-        double[] y = vectorSubtract(z, matrixVectorMultiply(H, x));
-        x = vectorAdd(x, matrixVectorMultiply(K, y));
+        update(x, 0, p, 0, z[0], z[1]);
+    }
 
-        // Update error covariance
-        double[][] I = new double[][] {{1, 0, 0, 0}, {0, 1, 0, 0}, {0, 0, 1, 0}, {0, 0, 0, 1}};
-        P = matrixMultiply(matrixSubtract(I, matrixMultiply(K, H)), P);
+    public void update(double zx, double zy) {
+        update(x, 0, p, 0, zx, zy);
     }
 
     public double[] getState() {
         return x;
     }
 
-    // Helper methods for matrix operations
-    private double[][] matrixMultiply(double[][] A, double[][] B) {
-        int m = A.length;
-        int n = B[0].length;
-        int o = B.length;
-        double[][] result = new double[m][n];
-        for (int i = 0; i < m; i++) {
-            for (int j = 0; j < n; j++) {
-                for (int k = 0; k < o; k++) {
-                    result[i][j] += A[i][k] * B[k][j];
-                }
-            }
-        }
-        return result;
+    public double getCovariance(int row, int col) {
+        return p[covarianceIndex(row, col)];
     }
 
-    private double[] matrixVectorMultiply(double[][] A, double[] v) {
-        int m = A.length;
-        int n = v.length;
-        double[] result = new double[m];
-        for (int i = 0; i < m; i++) {
-            for (int j = 0; j < n; j++) {
-                result[i] += A[i][j] * v[j];
-            }
-        }
-        return result;
-    }
-
-    private double[][] matrixAdd(double[][] A, double[][] B) {
-        int m = A.length;
-        int n = A[0].length;
-        double[][] result = new double[m][n];
-        for (int i = 0; i < m; i++) {
-            for (int j = 0; j < n; j++) {
-                result[i][j] = A[i][j] + B[i][j];
-            }
-        }
-        return result;
+    public double getTimeStep() {
+        return dt;
     }
 
-    private double[][] matrixSubtract(double[][] A, double[][] B) {
-        int m = A.length;
-        int n = A[0].length;
-        double[][] result = new double[m][n];
-        for (int i = 0; i < m; i++) {
-            for (int j = 0; j < n; j++) {
-                result[i][j] = A[i][j] - B[i][j];
-            }
+    static int covarianceIndex(int row, int col) {
+        if (row > col) {
+            int tmp = row;
+            row = col;
+            col = tmp;
         }
-        return result;
+        return row * STATE_SIZE - row * (row - 1) / 2 + (col - row);
     }
 
-    private double[][] transpose(double[][] A) {
-        int m = A.length;
-        int n = A[0].length;
-        double[][] result = new double[n][m];
-        for (int i = 0; i < m; i++) {
-            for (int j = 0; j < n; j++) {
-                result[j][i] = A[i][j];
-            }
+    /**
+     * Resets a state to the origin and its covariance to the identity.
+     */
+    public static void reset(double[] x, int xOff, double[] p, int pOff) {
+        x[xOff] = 0;
+        x[xOff + 1] = 0;
+        x[xOff + 2] = 0;
+        x[xOff + 3] = 0;
+        for (int i = 0; i < COVARIANCE_SIZE; i++) {
+            p[pOff + i] = 0;
         }
-        return result;
+        p[pOff] = 1;
+        p[pOff + 4] = 1;
+        p[pOff + 7] = 1;
+        p[pOff + 9] = 1;
     }
 
-    private double[] vectorAdd(double[] a, double[] b) {
-        int n = a.length;
-        double[] result = new double[n];
-        for (int i = 0; i < n; i++) {
-            result[i] = a[i] + b[i];
-        }
-        return result;
+    /**
+     * x = F x + B u, P = F P F^T + Q with F = [I dt*I; 0 I].
+     */
+    public static void predict(double[] x, int xOff, double[] p, int pOff, double dt, double ux, double uy) {
+        // Predict state
+        x[xOff] += dt * x[xOff + 2];
+        x[xOff + 1] += dt * x[xOff + 3];
+        x[xOff + 2] += ux * dt; // Add control input (acceleration in x)
+        x[xOff + 3] += uy * dt; // Add control input (acceleration in y)
+
+        // Predict error covariance. Each row is expanded as (P + dt * P[2|3]) then multiplied by F^T,
+        // so the result matches the general F * P * F^T product term for term.
+        double p00 = p[pOff], p01 = p[pOff + 1], p02 = p[pOff + 2], p03 = p[pOff + 3];
+        double p11 = p[pOff + 4], p12 = p[pOff + 5], p13 = p[pOff + 6];
+        double p22 = p[pOff + 7], p23 = p[pOff + 8];
+        double p33 = p[pOff + 9];
+
+        double a00 = p00 + dt * p02;
+        double a01 = p01 + dt * p12;
+        double a02 = p02 + dt * p22;
+        double a03 = p03 + dt * p23;
+        double a11 = p11 + dt * p13;
+        double a12 = p12 + dt * p23;
+        double a13 = p13 + dt * p33;
+
+        p[pOff] = a00 + a02 * dt + PROCESS_NOISE;
+        p[pOff + 1] = a01 + a03 * dt;
+        p[pOff + 2] = a02;
+        p[pOff + 3] = a03;
+        p[pOff + 4] = a11 + a13 * dt + PROCESS_NOISE;
+        p[pOff + 5] = a12;
+        p[pOff + 6] = a13;
+        p[pOff + 7] = p22 + PROCESS_NOISE;
+        p[pOff + 8] = p23;
+        p[pOff + 9] = p33 + PROCESS_NOISE;
     }
 
-    private double[] vectorSubtract(double[] a, double[] b) {
-        int n = a.length;
-        double[] result = new double[n];
-        for (int i = 0; i < n; i++) {
-            result[i] = a[i] - b[i];
-        }
-        return result;
-    }
+    /**
+     * Measurement update for z = H x + v with H = [I 0].
+     */
+    public static void update(double[] x, int xOff, double[] p, int pOff, double zx, double zy) {
+        double p00 = p[pOff], p01 = p[pOff + 1], p02 = p[pOff + 2], p03 = p[pOff + 3];
+        double p11 = p[pOff + 4], p12 = p[pOff + 5], p13 = p[pOff + 6];
+        double p22 = p[pOff + 7], p23 = p[pOff + 8];
+        double p33 = p[pOff + 9];
+
+        // S = H P H^T + R is the top-left 2x2 block of P plus R
+        double s00 = p00 + MEASUREMENT_NOISE;
+        double s01 = p01;
+        double s11 = p11 + MEASUREMENT_NOISE;
+        double det = s00 * s11 - s01 * s01;
+        double i00 = s11 / det;
+        double i01 = -s01 / det;
+        double i11 = s00 / det;
+
+        // K = P H^T S^-1, where P H^T is the first two columns of P
+        double k00 = p00 * i00 + p01 * i01, k01 = p00 * i01 + p01 * i11;
+        double k10 = p01 * i00 + p11 * i01, k11 = p01 * i01 + p11 * i11;
+        double k20 = p02 * i00 + p12 * i01, k21 = p02 * i01 + p12 * i11;
+        double k30 = p03 * i00 + p13 * i01, k31 = p03 * i01 + p13 * i11;
 
-    private double[][] inverse(double[][] A) {
-        // This is a simple implementation for 2x2 matrices
-        // For larger matrices, you should use a more robust method
-        double det = A[0][0] * A[1][1] - A[0][1] * A[1][0];
-        return new double[][] {
-                {A[1][1] / det, -A[0][1] / det},
-                {-A[1][0] / det, A[0][0] / det}
-        };
+        // Update estimate
+        double y0 = zx - x[xOff];
+        double y1 = zy - x[xOff + 1];
+        x[xOff] += k00 * y0 + k01 * y1;
+        x[xOff + 1] += k10 * y0 + k11 * y1;
+        x[xOff + 2] += k20 * y0 + k21 * y1;
+        x[xOff + 3] += k30 * y0 + k31 * y1;
+
+        // Update error covariance: P = P - K H P, where H P is the first two rows of P
+        p[pOff] = p00 - (k00 * p00 + k01 * p01);
+        p[pOff + 1] = p01 - (k00 * p01 + k01 * p11);
+        p[pOff + 2] = p02 - (k00 * p02 + k01 * p12);
+        p[pOff + 3] = p03 - (k00 * p03 + k01 * p13);
+        p[pOff + 4] = p11 - (k10 * p01 + k11 * p11);
+        p[pOff + 5] = p12 - (k10 * p02 + k11 * p12);
+        p[pOff + 6] = p13 - (k10 * p03 + k11 * p13);
+        p[pOff + 7] = p22 - (k20 * p02 + k21 * p12);
+        p[pOff + 8] = p23 - (k20 * p03 + k21 * p13);
+        p[pOff + 9] = p33 - (k30 * p03 + k31 * p13);
     }
-}
\ No newline at end of file
+}
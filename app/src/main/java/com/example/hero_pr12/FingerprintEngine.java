@@ -0,0 +1,259 @@
+package com.example.hero_pr12;
+
+import java.util.Arrays;
+
+/**
+ * Fingerprint positioning: matches the smoothed RSSI of the beacons heard against a surveyed
+ * {@link RadioMap} and places the user at the weighted mean of the k nearest reference points in
+ * signal space, each weighted by 1 / (signal distance + 1 dB). Unlike the range-based engines it
+ * does not rely on the log-distance model, which fails where racks and walls shadow the beacons.
+ *
+ * The search only compares the points listed in the map's inverted index under the query's
+ * {@link #QUERY_STRONGEST} strongest beacons, a few hundred even on a map of 50,000 points; if
+ * that leaves fewer than k points on the floor, every point is compared. Each fix stands on its
+ * own, so steps are ignored. Beacons not heard for the beacon TTL are dropped from the query.
+ *
+ * Confined to the positioning worker thread. Nothing is allocated after construction.
+ */
+public class FingerprintEngine implements PositionEngine {
+    public static final int DEFAULT_K = 4;
+    static final int QUERY_STRONGEST = 3;
+    private static final long MAX_AGE_NANOS = BeaconStateTable.DEFAULT_TTL_NANOS;
+    private static final float DISTANCE_OFFSET = 1f; // dB, so that an exact match does not take all the weight
+    private static final double MIN_VARIANCE = 1.0; // 제곱미터, 기준점 간격 정도
+
+    private final RadioMap map;
+    private final int k;
+    private boolean useIndex = true;
+    // The query by beacon id, NOT_HEARD_RSSI for beacons not heard
+    private final float[] query;
+    private final long[] lastSeen;
+    private final int[] heard;
+    private final int[] heardSlot; // Position in heard, -1 if not heard
+    private int heardCount;
+    private long newestNanos;
+    private final int[] strongest = new int[QUERY_STRONGEST];
+    private final float[] strongestRssi = new float[QUERY_STRONGEST];
+    // Points already compared in this search carry the current stamp
+    private final int[] visited;
+    private int visitStamp;
+    // The k best so far, nearest first
+    private final int[] neighbours;
+    private final float[] neighbourDistances;
+    private int neighbourCount;
+    private int candidateCount;
+
+    public FingerprintEngine(RadioMap map) {
+        this(map, DEFAULT_K);
+    }
+
+    public FingerprintEngine(RadioMap map, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1");
+        }
+        this.map = map;
+        this.k = k;
+        query = new float[map.getBeaconCount()];
+        Arrays.fill(query, RadioMap.NOT_HEARD_RSSI);
+        lastSeen = new long[map.getBeaconCount()];
+        heard = new int[map.getBeaconCount()];
+        heardSlot = new int[map.getBeaconCount()];
+        Arrays.fill(heardSlot, -1);
+        visited = new int[map.getPointCount()];
+        neighbours = new int[k];
+        neighbourDistances = new float[k];
+    }
+
+    @Override
+    public void onStep(long timestampNanos, double stepLength, double headingDegrees) {
+        // Each fix stands on its own
+    }
+
+    @Override
+    public void onBeaconRssi(int beaconId, float smoothedRssi, long timestampNanos) {
+        if (beaconId >= query.length || Float.isNaN(smoothedRssi)) {
+            return;
+        }
+        if (heardSlot[beaconId] < 0) {
+            heardSlot[beaconId] = heardCount;
+            heard[heardCount++] = beaconId;
+        }
+        query[beaconId] = smoothedRssi;
+        lastSeen[beaconId] = timestampNanos;
+        newestNanos = Math.max(newestNanos, timestampNanos);
+    }
+
+    @Override
+    public void onBeaconRange(int beaconId, double beaconX, double beaconY, double range, double rangeVariance,
+                              long timestampNanos) {
+        // Matched by RSSI in onBeaconRssi
+    }
+
+    /**
+     * Places the estimate at the weighted mean of the nearest reference points on
+     * {@code out.floor}, or on any floor if it is unknown, with their weighted spread as the
+     * covariance.
+     */
+    @Override
+    public boolean estimate(PositionEstimate out) {
+        for (int i = heardCount - 1; i >= 0; i--) {
+            if (newestNanos - lastSeen[heard[i]] > MAX_AGE_NANOS) {
+                forget(heard[i]);
+            }
+        }
+        if (search(out.floor) == 0) {
+            return false;
+        }
+        double totalWeight = 0, x = 0, y = 0;
+        for (int i = 0; i < neighbourCount; i++) {
+            double weight = 1.0 / (Math.sqrt(neighbourDistances[i]) + DISTANCE_OFFSET);
+            totalWeight += weight;
+            x += weight * map.x(neighbours[i]);
+            y += weight * map.y(neighbours[i]);
+        }
+        x /= totalWeight;
+        y /= totalWeight;
+        double varianceX = 0, covarianceXY = 0, varianceY = 0;
+        for (int i = 0; i < neighbourCount; i++) {
+            double weight = 1.0 / (Math.sqrt(neighbourDistances[i]) + DISTANCE_OFFSET) / totalWeight;
+            double dx = map.x(neighbours[i]) - x;
+            double dy = map.y(neighbours[i]) - y;
+            varianceX += weight * dx * dx;
+            covarianceXY += weight * dx * dy;
+            varianceY += weight * dy * dy;
+        }
+        out.set(x, y, varianceX + MIN_VARIANCE, covarianceXY, varianceY + MIN_VARIANCE);
+        out.beaconCount = heardCount;
+        out.iterations = 0;
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        while (heardCount > 0) {
+            forget(heard[heardCount - 1]);
+        }
+        newestNanos = 0;
+        neighbourCount = 0;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    /**
+     * Searches with the inverted index (the default) or by comparing every reference point.
+     */
+    public void setUseIndex(boolean useIndex) {
+        this.useIndex = useIndex;
+    }
+
+    /**
+     * Finds the k reference points on {@code floor} nearest to the current query, or on any
+     * floor for {@link FloorDetector#UNKNOWN_FLOOR}, and returns how many were found.
+     */
+    public int search(int floor) {
+        neighbourCount = 0;
+        candidateCount = 0;
+        if (heardCount == 0) {
+            return 0;
+        }
+        float queryNorm = 0;
+        for (int i = 0; i < heardCount; i++) {
+            float unmatched = query[heard[i]] - RadioMap.NOT_HEARD_RSSI;
+            queryNorm += unmatched * unmatched;
+        }
+        if (useIndex) {
+            searchIndexed(floor, queryNorm);
+            if (neighbourCount == k) {
+                return neighbourCount;
+            }
+            neighbourCount = 0;
+        }
+        for (int point = 0; point < map.getPointCount(); point++) {
+            compare(point, floor, queryNorm);
+        }
+        return neighbourCount;
+    }
+
+    public int getNeighbour(int i) {
+        return neighbours[i];
+    }
+
+    public float getNeighbourDistanceSquared(int i) {
+        return neighbourDistances[i];
+    }
+
+    /**
+     * How many reference points the last search compared.
+     */
+    public int getCandidateCount() {
+        return candidateCount;
+    }
+
+    private void searchIndexed(int floor, float queryNorm) {
+        if (++visitStamp == 0) {
+            Arrays.fill(visited, 0);
+            visitStamp = 1;
+        }
+        int found = strongestHeard();
+        for (int s = 0; s < found; s++) {
+            for (int i = map.indexStart(strongest[s]), end = map.indexEnd(strongest[s]); i < end; i++) {
+                int point = map.indexedPoint(i);
+                if (visited[point] != visitStamp) {
+                    visited[point] = visitStamp;
+                    compare(point, floor, queryNorm);
+                }
+            }
+        }
+    }
+
+    private void compare(int point, int floor, float queryNorm) {
+        if (floor != FloorDetector.UNKNOWN_FLOOR && map.floor(point) != floor) {
+            return;
+        }
+        candidateCount++;
+        float distance = map.distanceSquared(point, query, queryNorm);
+        if (neighbourCount == k && distance >= neighbourDistances[k - 1]) {
+            return;
+        }
+        int j = neighbourCount < k ? neighbourCount++ : k - 1;
+        while (j > 0 && neighbourDistances[j - 1] > distance) {
+            neighbours[j] = neighbours[j - 1];
+            neighbourDistances[j] = neighbourDistances[j - 1];
+            j--;
+        }
+        neighbours[j] = point;
+        neighbourDistances[j] = distance;
+    }
+
+    // The strongest heard beacons into strongest[], strongest first
+    private int strongestHeard() {
+        int found = 0;
+        for (int i = 0; i < heardCount; i++) {
+            int id = heard[i];
+            float value = query[id];
+            if (found == QUERY_STRONGEST && value <= strongestRssi[found - 1]) {
+                continue;
+            }
+            int j = found < QUERY_STRONGEST ? found++ : found - 1;
+            while (j > 0 && strongestRssi[j - 1] < value) {
+                strongest[j] = strongest[j - 1];
+                strongestRssi[j] = strongestRssi[j - 1];
+                j--;
+            }
+            strongest[j] = id;
+            strongestRssi[j] = value;
+        }
+        return found;
+    }
+
+    private void forget(int id) {
+        int slot = heardSlot[id];
+        int last = heard[--heardCount];
+        heard[slot] = last;
+        heardSlot[last] = slot;
+        heardSlot[id] = -1;
+        query[id] = RadioMap.NOT_HEARD_RSSI;
+    }
+}
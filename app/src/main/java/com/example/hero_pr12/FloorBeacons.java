@@ -0,0 +1,44 @@
+package com.example.hero_pr12;
+
+/**
+ * The beacons of one floor with their spatial index. Index slots are local to the floor;
+ * {@link #id(int)} turns a slot into the beacon id (database index).
+ */
+public class FloorBeacons {
+    private final int floor;
+    private final int[] ids;
+    private final BeaconGridIndex index;
+
+    private FloorBeacons(int floor, int[] ids, BeaconGridIndex index) {
+        this.floor = floor;
+        this.ids = ids;
+        this.index = index;
+    }
+
+    public static FloorBeacons build(BeaconDatabase database, int floor) {
+        int[] ids = database.beaconsOnFloor(floor);
+        double[] xs = new double[ids.length];
+        double[] ys = new double[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            xs[i] = database.x(ids[i]);
+            ys[i] = database.y(ids[i]);
+        }
+        return new FloorBeacons(floor, ids, BeaconGridIndex.build(xs, ys, 0));
+    }
+
+    public int getFloor() {
+        return floor;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int id(int slot) {
+        return ids[slot];
+    }
+
+    public BeaconGridIndex getIndex() {
+        return index;
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.hero_pr12;
+
+import java.util.Arrays;
+
+/**
+ * Decides which floor the user is on from the beacons heard and the barometer.
+ *
+ * Each beacon sample adds its received power in mW to the score of its floor, and the scores
+ * decay with a 3 s time constant. A slab costs 15-20 dB, so the floor holding most of the power
+ * is the user's floor; the beacons only call a floor when it leads the next one by 6 dB. The
+ * barometer gives the height change since the current floor was established, and proposes a
+ * floor change once that reaches 60% of a floor.
+ *
+ * A change needs its candidate floor held for {@link #DWELL_NANOS}, when the barometer proposes
+ * it and the beacons agree or have no opinion, or when the beacons propose it and there is no
+ * barometer. Beacons have no opinion when none was heard for a few seconds, as in an elevator.
+ * Beacons against a steady barometer need {@link #DISPUTED_DWELL_NANOS}, which covers a wrong
+ * starting floor; a barometer against beacons that keep insisting on the current floor is
+ * overruled after {@link #OVERRULED_DWELL_NANOS} with a new pressure reference. While both agree
+ * on the current floor the reference slowly follows the pressure, so weather changes do not add
+ * up to a floor.
+ *
+ * Timestamps are elapsed-realtime nanoseconds, the clock of both scan and sensor samples. Not
+ * thread-safe; it lives on the positioning worker thread.
+ */
+public class FloorDetector {
+    public static final int UNKNOWN_FLOOR = Integer.MIN_VALUE;
+    public static final double DEFAULT_FLOOR_HEIGHT = 4.0; // 미터
+    static final long DWELL_NANOS = 2000000000L;
+    static final long DISPUTED_DWELL_NANOS = 5000000000L;
+    static final long OVERRULED_DWELL_NANOS = 15000000000L;
+    private static final long BEACON_STALE_NANOS = 3000000000L;
+    private static final double BEACON_TIME_CONSTANT_NANOS = 3e9;
+    private static final double PRESSURE_TIME_CONSTANT_NANOS = 1e9;
+    private static final double REFERENCE_TIME_CONSTANT_NANOS = 60e9;
+    private static final double DOMINANCE = 4; // 6 dB
+    private static final double MIN_POWER = 1e-10; // -100 dBm in mW
+    private static final double BAROMETER_STEP = 0.6; // Fraction of a floor
+    private static final double STANDARD_PRESSURE = 1013.25; // hPa
+
+    private final int lowestFloor;
+    private final double[] power;
+    private final double floorHeight;
+    private int floor = UNKNOWN_FLOOR;
+    private long lastBeaconNanos;
+    private long lastPressureNanos;
+    private long lastEvaluationNanos;
+    private double pressure = Double.NaN; // Smoothed, hPa
+    private double referencePressure = Double.NaN;
+    private int candidate = UNKNOWN_FLOOR;
+    private long candidateSinceNanos;
+
+    /**
+     * @param floors the floors of the venue in ascending order, as {@link BeaconDatabase#floors()}
+     */
+    public FloorDetector(int[] floors, double floorHeight) {
+        this.lowestFloor = floors.length > 0 ? floors[0] : 0;
+        this.power = new double[floors.length > 0 ? floors[floors.length - 1] - lowestFloor + 1 : 1];
+        this.floorHeight = floorHeight;
+        if (floors.length == 1) {
+            floor = floors[0];
+        }
+    }
+
+    /**
+     * A sample from a beacon on {@code beaconFloor}. Returns true if the floor changed.
+     */
+    public boolean onBeacon(int beaconFloor, int rssi, long timestampNanos) {
+        int slot = beaconFloor - lowestFloor;
+        if (slot < 0 || slot >= power.length) {
+            return false;
+        }
+        if (lastBeaconNanos != 0 && timestampNanos > lastBeaconNanos) {
+            double decay = Math.exp(-(timestampNanos - lastBeaconNanos) / BEACON_TIME_CONSTANT_NANOS);
+            for (int i = 0; i < power.length; i++) {
+                power[i] *= decay;
+            }
+        }
+        lastBeaconNanos = Math.max(lastBeaconNanos, timestampNanos);
+        power[slot] += Math.pow(10, rssi / 10.0);
+        return evaluate(timestampNanos);
+    }
+
+    /**
+     * A barometer sample in hPa. Returns true if the floor changed.
+     */
+    public boolean onPressure(float hPa, long timestampNanos) {
+        if (Double.isNaN(pressure)) {
+            pressure = hPa;
+        } else if (timestampNanos > lastPressureNanos) {
+            double alpha = 1 - Math.exp(-(timestampNanos - lastPressureNanos) / PRESSURE_TIME_CONSTANT_NANOS);
+            pressure += alpha * (hPa - pressure);
+        }
+        lastPressureNanos = Math.max(lastPressureNanos, timestampNanos);
+        if (floor != UNKNOWN_FLOOR && Double.isNaN(referencePressure)) {
+            referencePressure = pressure;
+        }
+        return evaluate(timestampNanos);
+    }
+
+    /**
+     * The current floor, or {@link #UNKNOWN_FLOOR} before the first decision.
+     */
+    public int getFloor() {
+        return floor;
+    }
+
+    /**
+     * Height in meters gained since the current floor was established, or NaN without a barometer.
+     */
+    public double getRelativeAltitude() {
+        return Double.isNaN(referencePressure) ? Double.NaN : altitude(pressure) - altitude(referencePressure);
+    }
+
+    public void reset() {
+        Arrays.fill(power, 0);
+        floor = power.length == 1 ? lowestFloor : UNKNOWN_FLOOR;
+        lastBeaconNanos = 0;
+        lastPressureNanos = 0;
+        lastEvaluationNanos = 0;
+        pressure = Double.NaN;
+        referencePressure = Double.NaN;
+        candidate = UNKNOWN_FLOOR;
+    }
+
+    private boolean evaluate(long nowNanos) {
+        long elapsed = lastEvaluationNanos != 0 ? Math.max(0, nowNanos - lastEvaluationNanos) : 0;
+        lastEvaluationNanos = Math.max(lastEvaluationNanos, nowNanos);
+        int beaconFloor = dominantBeaconFloor(nowNanos);
+        if (floor == UNKNOWN_FLOOR) {
+            if (beaconFloor == UNKNOWN_FLOOR) {
+                return false;
+            }
+            establish(beaconFloor);
+            return true;
+        }
+
+        boolean hasBarometer = !Double.isNaN(referencePressure);
+        int steps = barometerSteps();
+        int barometerFloor = clamp(floor + steps);
+        int target;
+        long dwell;
+        if (steps != 0 && (beaconFloor == UNKNOWN_FLOOR || beaconFloor == barometerFloor)) {
+            target = barometerFloor;
+            dwell = DWELL_NANOS;
+        } else if (beaconFloor != UNKNOWN_FLOOR && beaconFloor != floor) {
+            target = beaconFloor;
+            dwell = hasBarometer ? DISPUTED_DWELL_NANOS : DWELL_NANOS;
+        } else if (steps != 0) {
+            // The beacons still say this floor: keep it and take a new pressure reference
+            target = floor;
+            dwell = OVERRULED_DWELL_NANOS;
+        } else {
+            candidate = UNKNOWN_FLOOR;
+            if (hasBarometer && beaconFloor == floor) {
+                referencePressure += (pressure - referencePressure)
+                        * (1 - Math.exp(-elapsed / REFERENCE_TIME_CONSTANT_NANOS));
+            }
+            return false;
+        }
+
+        if (target != candidate) {
+            candidate = target;
+            candidateSinceNanos = nowNanos;
+            return false;
+        }
+        if (nowNanos - candidateSinceNanos < dwell) {
+            return false;
+        }
+        boolean changed = target != floor;
+        if (changed && target == barometerFloor && hasBarometer) {
+            // Moved by whole floors, keeping the remainder so that a long ride is not cut short
+            referencePressure = pressureAt(altitude(referencePressure) + (target - floor) * floorHeight);
+            floor = target;
+            candidate = UNKNOWN_FLOOR;
+        } else {
+            establish(target);
+        }
+        return changed;
+    }
+
+    private void establish(int newFloor) {
+        floor = newFloor;
+        referencePressure = pressure;
+        candidate = UNKNOWN_FLOOR;
+    }
+
+    private int dominantBeaconFloor(long nowNanos) {
+        if (lastBeaconNanos == 0 || nowNanos - lastBeaconNanos > BEACON_STALE_NANOS) {
+            return UNKNOWN_FLOOR;
+        }
+        int best = 0;
+        double second = 0;
+        for (int i = 1; i < power.length; i++) {
+            if (power[i] > power[best]) {
+                second = power[best];
+                best = i;
+            } else {
+                second = Math.max(second, power[i]);
+            }
+        }
+        if (power[best] < MIN_POWER || power[best] < DOMINANCE * second) {
+            return UNKNOWN_FLOOR;
+        }
+        return lowestFloor + best;
+    }
+
+    private int barometerSteps() {
+        double floors = getRelativeAltitude() / floorHeight;
+        if (Double.isNaN(floors) || Math.abs(floors) < BAROMETER_STEP) {
+            return 0;
+        }
+        return (int) Math.signum(floors) * (int) Math.max(1, Math.round(Math.abs(floors)));
+    }
+
+    private int clamp(int value) {
+        return Math.max(lowestFloor, Math.min(lowestFloor + power.length - 1, value));
+    }
+
+    /**
+     * Altitude in meters at the given pressure in the standard atmosphere, the same formula as
+     * {@code SensorManager.getAltitude}. Only differences between two altitudes are meaningful.
+     */
+    static double altitude(double hPa) {
+        return 44330 * (1 - Math.pow(hPa / STANDARD_PRESSURE, 1 / 5.255));
+    }
+
+    static double pressureAt(double altitude) {
+        return STANDARD_PRESSURE * Math.pow(1 - altitude / 44330, 5.255);
+    }
+}
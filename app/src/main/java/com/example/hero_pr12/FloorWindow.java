@@ -0,0 +1,208 @@
+package com.example.hero_pr12;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps per-floor data resident for the current floor and its neighbours only. Moving to another
+ * floor releases what falls out of the window and loads what comes into it on the executor, the
+ * current floor first; until a floor is loaded {@link #get} returns null for it.
+ *
+ * Thread-safe; {@link #get} only takes a short lock and never waits for a load.
+ */
+public class FloorWindow<T> {
+    public static final int DEFAULT_RADIUS = 1;
+    private static final String TAG = "FloorWindow";
+
+    public interface Loader<T> {
+        /**
+         * Loads the data of one floor on the executor, or returns null if the floor has none.
+         */
+        T load(int floor) throws IOException;
+
+        void release(T value);
+    }
+
+    public interface Listener {
+        /**
+         * Called on the executor after a floor was loaded.
+         */
+        void onFloorLoaded(int floor);
+
+        /**
+         * Called on the executor if loading a floor failed; the floor stays unloaded until it
+         * comes into the window again.
+         */
+        default void onFloorLoadFailed(int floor, Exception e) {
+        }
+    }
+
+    private final Loader<T> loader;
+    private final Executor executor;
+    private final int radius;
+    private final Map<Integer, T> resident = new HashMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+    private Listener listener;
+    private int currentFloor;
+    private boolean started;
+    private boolean closed;
+
+    public FloorWindow(Loader<T> loader, Executor executor, int radius) {
+        this.loader = loader;
+        this.executor = executor;
+        this.radius = radius;
+    }
+
+    /**
+     * A single daemon thread for loading, at background priority.
+     */
+    public static ExecutorService newLoaderExecutor(String name) {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Moves the window to {@code floor}. Returns at once; loading happens on the executor.
+     */
+    public void setCurrentFloor(int floor) {
+        Map<Integer, T> released = new HashMap<>();
+        synchronized (this) {
+            if (closed || started && floor == currentFloor) {
+                return;
+            }
+            started = true;
+            currentFloor = floor;
+            for (Map.Entry<Integer, T> entry : resident.entrySet()) {
+                if (!inWindow(entry.getKey())) {
+                    released.put(entry.getKey(), entry.getValue());
+                }
+            }
+            resident.keySet().removeAll(released.keySet());
+        }
+        // Freed before anything new is loaded
+        for (T value : released.values()) {
+            release(value);
+        }
+        synchronized (this) {
+            if (closed || floor != currentFloor) {
+                return;
+            }
+            // Current floor first, then outwards
+            for (int distance = 0; distance <= radius; distance++) {
+                request(floor + distance);
+                request(floor - distance);
+            }
+        }
+    }
+
+    public synchronized int getCurrentFloor() {
+        return currentFloor;
+    }
+
+    /**
+     * The data of {@code floor} if it is resident, otherwise null.
+     */
+    public synchronized T get(int floor) {
+        return resident.get(floor);
+    }
+
+    public synchronized boolean isResident(int floor) {
+        return resident.containsKey(floor);
+    }
+
+    public synchronized int getResidentCount() {
+        return resident.size();
+    }
+
+    /**
+     * Releases everything; loads still running are released as they finish.
+     */
+    public void close() {
+        Map<Integer, T> released;
+        synchronized (this) {
+            closed = true;
+            released = new HashMap<>(resident);
+            resident.clear();
+        }
+        for (T value : released.values()) {
+            release(value);
+        }
+    }
+
+    private void request(int floor) {
+        if (resident.containsKey(floor) || !loading.add(floor)) {
+            return;
+        }
+        executor.execute(() -> load(floor));
+    }
+
+    private void load(int floor) {
+        T value = null;
+        synchronized (this) {
+            if (closed || !inWindow(floor)) {
+                loading.remove(floor); // Left the window before its turn
+                return;
+            }
+        }
+        Exception failure = null;
+        try {
+            value = loader.load(floor);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not load floor " + floor, e);
+            failure = e;
+        }
+        boolean keep;
+        Listener notify;
+        synchronized (this) {
+            loading.remove(floor);
+            keep = value != null && !closed && inWindow(floor);
+            if (keep) {
+                resident.put(floor, value);
+            }
+            notify = listener;
+        }
+        if (failure != null) {
+            if (notify != null) {
+                notify.onFloorLoadFailed(floor, failure);
+            }
+            return;
+        }
+        if (!keep) {
+            if (value != null) {
+                release(value);
+            }
+            return;
+        }
+        if (notify != null) {
+            notify.onFloorLoaded(floor);
+        }
+    }
+
+    private void release(T value) {
+        try {
+            loader.release(value);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Could not release " + value, e);
+        }
+    }
+
+    private boolean inWindow(int floor) {
+        return Math.abs((long) floor - currentFloor) <= radius;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.hero_pr12;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Frame times over the last {@link #WINDOW} frames, for checking rendering cost on a device.
+ * {@link #record} is called once per frame and does not allocate; the percentile queries sort a
+ * copy and are meant for occasional reporting.
+ */
+public class FrameStats {
+    public static final int WINDOW = 512;
+
+    private final long[] durations = new long[WINDOW];
+    private final long[] sorted = new long[WINDOW];
+    private int next;
+    private int count;
+    private long totalFrames;
+
+    public synchronized void record(long durationNanos) {
+        durations[next] = durationNanos;
+        next = (next + 1) % WINDOW;
+        if (count < WINDOW) {
+            count++;
+        }
+        totalFrames++;
+    }
+
+    /**
+     * Frames recorded since creation or the last {@link #reset()}, including those that have left
+     * the window.
+     */
+    public synchronized long getTotalFrames() {
+        return totalFrames;
+    }
+
+    public synchronized int getWindowCount() {
+        return count;
+    }
+
+    public synchronized double getMeanNanos() {
+        if (count == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += durations[i];
+        }
+        return (double) sum / count;
+    }
+
+    /**
+     * The frame time below which {@code fraction} of the frames in the window fall, e.g. 0.95.
+     */
+    public synchronized long getPercentileNanos(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        System.arraycopy(durations, 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count);
+        int index = (int) Math.ceil(fraction * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    public synchronized long getMaxNanos() {
+        long max = 0;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, durations[i]);
+        }
+        return max;
+    }
+
+    public synchronized void reset() {
+        next = 0;
+        count = 0;
+        totalFrames = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%d frames, mean %.2f ms, p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms",
+                totalFrames, getMeanNanos() / 1e6, getPercentileNanos(0.5) / 1e6, getPercentileNanos(0.95) / 1e6,
+                getPercentileNanos(0.99) / 1e6, getMaxNanos() / 1e6);
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.hero_pr12;
+
+import java.util.Arrays;
+
+/**
+ * Single extended Kalman filter over position, walking speed and heading, fusing pedestrian dead
+ * reckoning with individual beacon ranges.
+ *
+ * State is [x, y, v, theta]. Between events the state is predicted with constant speed along the
+ * heading. A step measures the speed (step length over the time since the previous step) and the
+ * heading; a beacon range is a scalar update with h = |p - beacon|, applied as soon as the range
+ * arrives. Every operation is a handful of 4x4 loops over preallocated arrays.
+ */
+public class FusedPositionFilter implements PositionEngine {
+    private static final int N = 4;
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int V = 2;
+    private static final int THETA = 3;
+
+    private static final double NS2S = 1.0 / 1000000000.0;
+    // Process noise spectral densities
+    private static final double POSITION_NOISE = 0.05; // m^2/s
+    private static final double SPEED_NOISE = 0.5; // (m/s)^2/s
+    private static final double HEADING_NOISE = 0.1; // rad^2/s
+    // Measurement noise
+    private static final double HEADING_VARIANCE = Math.toRadians(15) * Math.toRadians(15);
+    private static final double STEP_SPEED_VARIANCE = 0.1;
+    private static final double STOPPED_SPEED_VARIANCE = 0.01;
+    // Steps further apart than this mean the user stopped in between
+    private static final double MAX_STEP_INTERVAL = 1.5; // 초
+    // Ranges whose squared normalised innovation exceeds this are treated as outliers
+    private static final double RANGE_GATE = 16;
+    private static final int MAX_REJECTED_RANGES = 10;
+
+    private final double[] s = new double[N];
+    private final double[] p = new double[N * N];
+    private final double[] h = new double[N];
+    private final double[] ph = new double[N]; // P h^T
+    private final double[] gain = new double[N];
+    private final double[] scratch = new double[N * N];
+    private boolean initialised;
+    private long lastTimestampNanos;
+    private long lastStepNanos;
+    private int rejectedRanges;
+
+    @Override
+    public void onStep(long timestampNanos, double stepLength, double headingDegrees) {
+        if (!initialised) {
+            return;
+        }
+        predictTo(timestampNanos);
+        double interval = lastStepNanos == 0 ? Double.POSITIVE_INFINITY : (timestampNanos - lastStepNanos) * NS2S;
+        lastStepNanos = timestampNanos;
+        if (interval > 0 && interval <= MAX_STEP_INTERVAL) {
+            updateLinear(V, stepLength / interval, STEP_SPEED_VARIANCE);
+        } else {
+            // First step after standing still: move by the step itself
+            s[X] += stepLength * Math.cos(s[THETA]);
+            s[Y] += stepLength * Math.sin(s[THETA]);
+        }
+        updateHeading(Math.toRadians(headingDegrees));
+    }
+
+    @Override
+    public void onBeaconRange(int beaconId, double beaconX, double beaconY, double range, double rangeVariance,
+                              long timestampNanos) {
+        if (!initialised) {
+            start(beaconX, beaconY, range, rangeVariance, timestampNanos);
+            return;
+        }
+        predictTo(timestampNanos);
+        double dx = s[X] - beaconX;
+        double dy = s[Y] - beaconY;
+        double predicted = Math.sqrt(dx * dx + dy * dy);
+        if (predicted < 1e-6) {
+            return; // Bearing undefined on top of the beacon
+        }
+        h[X] = dx / predicted;
+        h[Y] = dy / predicted;
+        h[V] = 0;
+        h[THETA] = 0;
+        double innovation = range - predicted;
+        double innovationVariance = innovationVariance(rangeVariance);
+        if (innovation * innovation > RANGE_GATE * innovationVariance && rejectedRanges < MAX_REJECTED_RANGES) {
+            rejectedRanges++;
+            return;
+        }
+        rejectedRanges = 0;
+        applyUpdate(innovation, innovationVariance);
+    }
+
+    @Override
+    public boolean estimate(PositionEstimate out) {
+        if (!initialised) {
+            return false;
+        }
+        out.set(s[X], s[Y], p[X * N + X], p[X * N + Y], p[Y * N + Y]);
+        out.beaconCount = 0;
+        out.iterations = 0;
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        initialised = false;
+        lastTimestampNanos = 0;
+        lastStepNanos = 0;
+        rejectedRanges = 0;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    public double getSpeed() {
+        return s[V];
+    }
+
+    /**
+     * Heading in degrees, in the same convention as {@link #onStep}.
+     */
+    public double getHeadingDegrees() {
+        return Math.toDegrees(s[THETA]);
+    }
+
+    public double getCovariance(int row, int col) {
+        return p[row * N + col];
+    }
+
+    // Starts at the first beacon heard, with the range as the position uncertainty
+    private void start(double beaconX, double beaconY, double range, double rangeVariance, long timestampNanos) {
+        Arrays.fill(p, 0);
+        s[X] = beaconX;
+        s[Y] = beaconY;
+        s[V] = 0;
+        s[THETA] = 0;
+        double positionVariance = range * range + rangeVariance;
+        p[X * N + X] = positionVariance;
+        p[Y * N + Y] = positionVariance;
+        p[V * N + V] = 1;
+        p[THETA * N + THETA] = Math.PI * Math.PI;
+        lastTimestampNanos = timestampNanos;
+        initialised = true;
+    }
+
+    /**
+     * x += v dt cos(theta), y += v dt sin(theta); P = F P F^T + Q.
+     */
+    private void predictTo(long timestampNanos) {
+        double dt = (timestampNanos - lastTimestampNanos) * NS2S;
+        if (dt <= 0) {
+            return;
+        }
+        lastTimestampNanos = timestampNanos;
+        if (lastStepNanos != 0 && (timestampNanos - lastStepNanos) * NS2S > MAX_STEP_INTERVAL && s[V] != 0) {
+            // No steps for a while: the user is standing
+            updateLinear(V, 0, STOPPED_SPEED_VARIANCE);
+        }
+        double cos = Math.cos(s[THETA]);
+        double sin = Math.sin(s[THETA]);
+        double v = s[V];
+        s[X] += v * dt * cos;
+        s[Y] += v * dt * sin;
+
+        // F = I except dX/dv, dX/dtheta, dY/dv, dY/dtheta
+        double fxv = dt * cos, fxt = -v * dt * sin;
+        double fyv = dt * sin, fyt = v * dt * cos;
+        // scratch = F P
+        for (int c = 0; c < N; c++) {
+            scratch[X * N + c] = p[X * N + c] + fxv * p[V * N + c] + fxt * p[THETA * N + c];
+            scratch[Y * N + c] = p[Y * N + c] + fyv * p[V * N + c] + fyt * p[THETA * N + c];
+            scratch[V * N + c] = p[V * N + c];
+            scratch[THETA * N + c] = p[THETA * N + c];
+        }
+        // P = scratch F^T
+        for (int r = 0; r < N; r++) {
+            double a = scratch[r * N + X], b = scratch[r * N + Y], sv = scratch[r * N + V], st = scratch[r * N + THETA];
+            p[r * N + X] = a + fxv * sv + fxt * st;
+            p[r * N + Y] = b + fyv * sv + fyt * st;
+            p[r * N + V] = sv;
+            p[r * N + THETA] = st;
+        }
+        p[X * N + X] += POSITION_NOISE * dt;
+        p[Y * N + Y] += POSITION_NOISE * dt;
+        p[V * N + V] += SPEED_NOISE * dt;
+        p[THETA * N + THETA] += HEADING_NOISE * dt;
+    }
+
+    private void updateHeading(double measured) {
+        h[X] = 0;
+        h[Y] = 0;
+        h[V] = 0;
+        h[THETA] = 1;
+        applyUpdate(wrapAngle(measured - s[THETA]), innovationVariance(HEADING_VARIANCE));
+        s[THETA] = wrapAngle(s[THETA]);
+    }
+
+    // Update of a single state variable measured directly
+    private void updateLinear(int index, double measured, double variance) {
+        h[X] = 0;
+        h[Y] = 0;
+        h[V] = 0;
+        h[THETA] = 0;
+        h[index] = 1;
+        applyUpdate(measured - s[index], innovationVariance(variance));
+    }
+
+    // Sets ph = P h^T and returns h P h^T + r
+    private double innovationVariance(double measurementVariance) {
+        double hph = 0;
+        for (int r = 0; r < N; r++) {
+            double sum = 0;
+            for (int c = 0; c < N; c++) {
+                sum += p[r * N + c] * h[c];
+            }
+            ph[r] = sum;
+            hph += h[r] * sum;
+        }
+        return hph + measurementVariance;
+    }
+
+    // K = P h^T / S, x += K y, P -= K (P h^T)^T; needs ph from innovationVariance
+    private void applyUpdate(double innovation, double innovationVariance) {
+        for (int r = 0; r < N; r++) {
+            gain[r] = ph[r] / innovationVariance;
+            s[r] += gain[r] * innovation;
+        }
+        for (int r = 0; r < N; r++) {
+            for (int c = r; c < N; c++) {
+                double value = p[r * N + c] - gain[r] * ph[c];
+                p[r * N + c] = value;
+                p[c * N + r] = value;
+            }
+        }
+    }
+
+    private static double wrapAngle(double angle) {
+        while (angle > Math.PI) {
+            angle -= 2 * Math.PI;
+        }
+        while (angle < -Math.PI) {
+            angle += 2 * Math.PI;
+        }
+        return angle;
+    }
+}
@@ -5,19 +5,32 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
-import android.util.Log;
+import android.os.SystemClock;
 
+/**
+ * Gyroscope, registered with a maximum report latency so that the sensor FIFO delivers batches.
+ * The rotation matrix and orientation are computed in preallocated arrays, so nothing is
+ * allocated per event.
+ */
 public class GyroscopeHandler implements SensorEventListener {
+    static final int REPORT_LATENCY_US = 100000;
     private SensorManager sensorManager;
     private Sensor gyroscope;
     private float[] gyroValues;
     private long lastUpdateTime;
     private static final float NS2S = 1.0f / 1000000000.0f;
     private float[] deltaRotationVector;
+    private final float[] rotationMatrix = new float[9];
+    private final float[] orientationValues = new float[3];
     private BeaconManager beaconManager;
+    private final SensorRateCounter rateCounter;
+    private boolean started;
+    private int activeSensorDelay = SensorManager.SENSOR_DELAY_GAME;
+    private int sensorDelay = activeSensorDelay;
 
     public GyroscopeHandler(Context context, BeaconManager beaconManager) {
         this.beaconManager = beaconManager;
+        this.rateCounter = beaconManager.getSensorRateCounter();
         sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
         gyroscope = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
         gyroValues = new float[3];
@@ -25,16 +38,55 @@ public class GyroscopeHandler implements SensorEventListener {
     }
 
     public void start() {
-        sensorManager.registerListener(this, gyroscope, SensorManager.SENSOR_DELAY_GAME);
+        started = true;
+        sensorManager.registerListener(this, gyroscope, sensorDelay, REPORT_LATENCY_US);
     }
 
     public void stop() {
+        started = false;
         sensorManager.unregisterListener(this);
     }
 
+    /**
+     * Sampling delay while the user walks, one of the {@code SensorManager.SENSOR_DELAY_*}
+     * constants or a period in microseconds.
+     */
+    public void setActiveSensorDelay(int delay) {
+        boolean active = sensorDelay == activeSensorDelay;
+        activeSensorDelay = delay;
+        if (active) {
+            changeSensorDelay(delay);
+        }
+    }
+
+    /**
+     * Drops to the normal rate while the user stands still.
+     */
+    public void setMotionMode(AdaptiveScanScheduler.Mode mode) {
+        changeSensorDelay(mode == AdaptiveScanScheduler.Mode.IDLE ? SensorManager.SENSOR_DELAY_NORMAL : activeSensorDelay);
+    }
+
+    private void changeSensorDelay(int delay) {
+        if (delay == sensorDelay) {
+            return;
+        }
+        sensorDelay = delay;
+        if (started) {
+            sensorManager.unregisterListener(this);
+            sensorManager.registerListener(this, gyroscope, delay, REPORT_LATENCY_US);
+        }
+    }
+
     @Override
     public void onSensorChanged(SensorEvent event) {
         if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE) {
+            long deliveryNanos = SystemClock.elapsedRealtimeNanos();
+            rateCounter.onEvent(Sensor.TYPE_GYROSCOPE, event.timestamp, deliveryNanos);
+            PipelineLatency.get().record(PipelineLatency.SENSOR_DELIVERY, deliveryNanos - event.timestamp);
+            TraceRecorder recorder = beaconManager.getTraceRecorder();
+            if (recorder != null) {
+                recorder.recordSensor(Sensor.TYPE_GYROSCOPE, event.values, event.timestamp);
+            }
             if (lastUpdateTime != 0) {
                 final float dT = (event.timestamp - lastUpdateTime) * NS2S;
 
@@ -69,9 +121,7 @@ public class GyroscopeHandler implements SensorEventListener {
             System.arraycopy(event.values, 0, gyroValues, 0, 3);
 
             // Calculate orientation change
-            float[] rotationMatrix = new float[9];
             SensorManager.getRotationMatrixFromVector(rotationMatrix, deltaRotationVector);
-            float[] orientationValues = new float[3];
             SensorManager.getOrientation(rotationMatrix, orientationValues);
 
             // Convert radians to degrees
@@ -82,7 +132,9 @@ public class GyroscopeHandler implements SensorEventListener {
             // Update orientation in BeaconManager
             beaconManager.updateOrientationData(azimuth, pitch, roll);
 
-            Log.d("GyroscopeHandler", "Orientation: Azimuth=" + azimuth + ", Pitch=" + pitch + ", Roll=" + roll);
+            if (EventTrace.LEVEL >= EventTrace.VERBOSE) {
+                EventTrace.get().record(EventTrace.GYRO_ORIENTATION, event.timestamp, 0, azimuth, pitch, roll, 0);
+            }
         }
     }
 
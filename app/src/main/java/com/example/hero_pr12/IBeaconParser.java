@@ -0,0 +1,98 @@
+package com.example.hero_pr12;
+
+/**
+ * Finds an iBeacon frame in raw advertisement bytes (the {@code scanRecord} handed to the scan
+ * callback) by walking the AD structures in place. The result is kept in this instance, so a
+ * parser is reused by one thread and parsing allocates nothing.
+ *
+ * An iBeacon frame is manufacturer specific data (AD type 0xFF) for Apple (0x004C, little-endian)
+ * followed by 0x02 0x15, a 16-byte proximity UUID, major and minor (big-endian) and the measured
+ * power at one meter as a signed byte.
+ */
+public class IBeaconParser {
+    private static final int AD_TYPE_MANUFACTURER_DATA = 0xFF;
+    private static final int IBEACON_TYPE = 0x02;
+    private static final int IBEACON_LENGTH = 0x15;
+    // type + company id + IBEACON_DATA_LENGTH
+    private static final int IBEACON_AD_LENGTH = 1 + 2 + BeaconScanFilterSpec.IBEACON_DATA_LENGTH;
+
+    private long uuidMostSignificantBits;
+    private long uuidLeastSignificantBits;
+    private int major;
+    private int minor;
+    private int measuredPower;
+
+    public boolean parse(byte[] scanRecord) {
+        return scanRecord != null && parse(scanRecord, 0, scanRecord.length);
+    }
+
+    /**
+     * Returns true if {@code record[offset .. offset + length)} contains an iBeacon frame, whose
+     * fields are then available from the getters.
+     */
+    public boolean parse(byte[] record, int offset, int length) {
+        int end = offset + length;
+        int position = offset;
+        while (position < end) {
+            int adLength = record[position] & 0xFF;
+            if (adLength == 0) {
+                return false; // Zero padding after the last structure
+            }
+            int data = position + 1;
+            if (data + adLength > end) {
+                return false; // Truncated
+            }
+            if (adLength >= IBEACON_AD_LENGTH
+                    && (record[data] & 0xFF) == AD_TYPE_MANUFACTURER_DATA
+                    && (record[data + 1] & 0xFF) == (BeaconScanFilterSpec.APPLE_COMPANY_ID & 0xFF)
+                    && (record[data + 2] & 0xFF) == BeaconScanFilterSpec.APPLE_COMPANY_ID >> 8
+                    && record[data + 3] == IBEACON_TYPE
+                    && record[data + 4] == IBEACON_LENGTH) {
+                int frame = data + 5;
+                uuidMostSignificantBits = readLong(record, frame);
+                uuidLeastSignificantBits = readLong(record, frame + 8);
+                major = readUnsignedShort(record, frame + 16);
+                minor = readUnsignedShort(record, frame + 18);
+                measuredPower = record[frame + 20];
+                return true;
+            }
+            position = data + adLength;
+        }
+        return false;
+    }
+
+    public long getUuidMostSignificantBits() {
+        return uuidMostSignificantBits;
+    }
+
+    public long getUuidLeastSignificantBits() {
+        return uuidLeastSignificantBits;
+    }
+
+    public int getMajor() {
+        return major;
+    }
+
+    public int getMinor() {
+        return minor;
+    }
+
+    /**
+     * The advertised RSSI at one meter, in dBm.
+     */
+    public int getMeasuredPower() {
+        return measuredPower;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+}
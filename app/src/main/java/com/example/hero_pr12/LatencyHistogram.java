@@ -0,0 +1,126 @@
+package com.example.hero_pr12;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of latencies in fixed memory. Values are kept in microseconds; every power
+ * of two is split into {@link #SUB_BUCKETS} linear buckets, so a percentile is reported within
+ * 1/16 (6.25%) of the true value from 1 µs up to days. Recording is lock-free and allocation-free
+ * and may happen on any number of threads at once; queries scan the buckets and are meant for
+ * occasional reporting.
+ */
+public class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Powers of two above the linear range: up to 2^40 µs, about 12 days
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumMicros = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long latencyNanos) {
+        long nanos = Math.max(0, latencyNanos);
+        counts.incrementAndGet(bucketOf(nanos / 1000));
+        count.incrementAndGet();
+        sumMicros.addAndGet(nanos / 1000);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getMeanNanos() {
+        long n = count.get();
+        return n == 0 ? 0 : sumMicros.get() * 1000.0 / n;
+    }
+
+    /**
+     * The latency below which {@code fraction} of the recorded values fall, e.g. 0.99: the upper
+     * end of the bucket holding that rank, capped at the maximum.
+     */
+    public long getPercentileNanos(double fraction) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundMicros(i) * 1000 - 1, getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * How many recorded values exceeded {@code limitNanos}, to bucket precision.
+     */
+    public long getCountAbove(long limitNanos) {
+        long above = 0;
+        int limitBucket = bucketOf(Math.max(0, limitNanos) / 1000);
+        for (int i = limitBucket + 1; i < BUCKET_COUNT; i++) {
+            above += counts.get(i);
+        }
+        return above;
+    }
+
+    /**
+     * Clears the histogram. Values recorded while this runs may be partly counted.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sumMicros.set(0);
+        maxNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "n %d, p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms",
+                getCount(), getPercentileNanos(0.5) / 1e6, getPercentileNanos(0.95) / 1e6,
+                getPercentileNanos(0.99) / 1e6, getMaxNanos() / 1e6);
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (micros >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // Exclusive
+    static long upperBoundMicros(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket + 1) << shift;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.hero_pr12;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.os.SystemClock;
+
+/**
+ * Scanner built on the deprecated {@link BluetoothAdapter#startLeScan}. Every advertisement from
+ * every device wakes the application processor; kept as a fallback for controllers without
+ * hardware filtering.
+ */
+public class LegacyBeaconScanner implements BeaconScanner {
+    private final BluetoothAdapter bluetoothAdapter;
+    private Listener listener;
+    private boolean scanning;
+
+    private final BluetoothAdapter.LeScanCallback leScanCallback = new BluetoothAdapter.LeScanCallback() {
+        @Override
+        public void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord) {
+            Listener current = listener;
+            if (current != null) {
+                current.onScanSample(device.getAddress(), rssi, scanRecord, SystemClock.elapsedRealtimeNanos());
+                current.onScanBatchComplete();
+            }
+        }
+    };
+
+    public LegacyBeaconScanner(BluetoothAdapter bluetoothAdapter) {
+        this.bluetoothAdapter = bluetoothAdapter;
+    }
+
+    @Override
+    public void start(Listener listener) {
+        if (scanning) {
+            return;
+        }
+        this.listener = listener;
+        scanning = bluetoothAdapter.startLeScan(leScanCallback);
+    }
+
+    @Override
+    public void stop() {
+        if (!scanning) {
+            return;
+        }
+        bluetoothAdapter.stopLeScan(leScanCallback);
+        scanning = false;
+        listener = null;
+    }
+
+    @Override
+    public boolean isScanning() {
+        return scanning;
+    }
+}
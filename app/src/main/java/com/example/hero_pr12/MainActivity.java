@@ -2,34 +2,95 @@ package com.example.hero_pr12;
 
 import android.app.Activity;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+import android.view.View;
 import android.widget.TextView;
 
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
 public class MainActivity extends Activity {
-    private MapView mapView;
+    // 현장 문제 재현용: 켜면 스캔과 센서 샘플을 filesDir/traces에 기록한다
+    private static final boolean RECORD_TRACE = false;
+    // 지도를 별도 렌더 스레드(SurfaceView)에서 그린다; 끄면 UI 스레드의 MapView를 쓴다
+    private static final boolean RENDER_THREAD = true;
+    // 위치 파이프라인 단계별 지연 시간(p50/p95/p99/max)을 화면 아래에 1초마다 표시한다
+    private static final boolean SHOW_LATENCY_OVERLAY = false;
+    private static final long LATENCY_OVERLAY_INTERVAL_MILLIS = 1000;
+    // 금속 선반 구역처럼 거리 모델이 맞지 않는 곳용: 측정 모드로 만든 survey.hrmp로 지문 측위를 한다.
+    // 먼저 이 기기에서 측정해야 하며, 측정 파일이 없으면 융합 필터를 그대로 쓴다
+    private static final boolean FINGERPRINTING = false;
+    // 측정 모드: 지도에서 서 있는 곳을 누르면 그 지점의 RSSI 통계를 filesDir/survey.hrmp에 합친다
+    private static final boolean SURVEY_MODE = false;
+    private static final String SURVEY_FILE = "survey.hrmp";
+    private final Handler overlayHandler = new Handler(Looper.getMainLooper());
+    private TextView latencyTextView;
+    private MapDisplay mapDisplay;
     private TextView infoTextView;
     private BeaconManager beaconManager;
     private PermissionHandler permissionHandler;
     private UIUpdater uiUpdater;
     private SensorHandler sensorHandler;
     private GyroscopeHandler gyroscopeHandler;
+    private TraceRecorder traceRecorder;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
-        mapView = findViewById(R.id.mapView);
+        MapView mapView = findViewById(R.id.mapView);
+        MapSurfaceView mapSurfaceView = findViewById(R.id.mapSurfaceView);
+        mapView.setVisibility(RENDER_THREAD ? View.GONE : View.VISIBLE);
+        mapSurfaceView.setVisibility(RENDER_THREAD ? View.VISIBLE : View.GONE);
+        mapDisplay = RENDER_THREAD ? mapSurfaceView : mapView;
         infoTextView = findViewById(R.id.infoTextView);
+        infoTextView.setOnClickListener(view -> uiUpdater.toggleBeaconSortOrder());
+        // 길게 누르면 최근 진단 이벤트와 지연 시간 통계를 파일로 남긴다
+        infoTextView.setOnLongClickListener(view -> {
+            dumpDiagnostics();
+            return true;
+        });
+        latencyTextView = findViewById(R.id.latencyTextView);
+        if (SHOW_LATENCY_OVERLAY) {
+            latencyTextView.setVisibility(View.VISIBLE);
+            overlayHandler.post(this::updateLatencyOverlay);
+        }
         Log.d("MainActivity", "onCreate called");
 
         BeaconInfoLoader.loadBeaconInfo(this);
-        BuildingPlanLoader.loadBuildingPlan(this, R.drawable.building_plan);
-        uiUpdater = new UIUpdater(infoTextView, mapView);
+        // 처음에는 지상층; 층이 감지되면 그 층과 위아래 층만 메모리에 둔다
+        BuildingPlanLoader.loadBuildingPlans(this, 0, mapDisplay::requestRedraw);
+        BeaconInfoLoader.setFloorListener(floor -> mapDisplay.requestRedraw());
+        RecyclerView beaconListView = findViewById(R.id.beaconListView);
+        uiUpdater = new UIUpdater(infoTextView, beaconListView, mapDisplay);
         beaconManager = new BeaconManager(this, uiUpdater);
+        beaconManager.setPositionEngine(new FusedPositionFilter());
+        if (FINGERPRINTING) {
+            loadRadioMap();
+        }
+        if (SURVEY_MODE) {
+            File surveyFile = new File(getFilesDir(), SURVEY_FILE);
+            mapDisplay.setTapListener(location -> beaconManager.startSurveyPoint(location, surveyFile));
+        }
+        if (RECORD_TRACE) {
+            startTraceRecording();
+        }
         permissionHandler = new PermissionHandler(this, beaconManager);
 
         sensorHandler = new SensorHandler(this, beaconManager);
         gyroscopeHandler = new GyroscopeHandler(this, beaconManager);
+        // 가만히 있으면 스캔을 간헐적으로 돌리고 센서 주기를 늦춘다
+        beaconManager.setMotionModeListener((mode, timestampNanos) -> {
+            sensorHandler.setMotionMode(mode);
+            gyroscopeHandler.setMotionMode(mode);
+        });
 
         permissionHandler.checkAndRequestPermissions();
         sensorHandler.start();
@@ -39,8 +100,80 @@ public class MainActivity extends Activity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        overlayHandler.removeCallbacksAndMessages(null);
         sensorHandler.stop();
         gyroscopeHandler.stop();
+        beaconManager.shutdown();
+        if (traceRecorder != null) {
+            beaconManager.setTraceRecorder(null);
+            try {
+                traceRecorder.close();
+            } catch (IOException e) {
+                Log.e("MainActivity", "Trace could not be written", e);
+            }
+        }
+    }
+
+    private void startTraceRecording() {
+        File directory = new File(getFilesDir(), "traces");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e("MainActivity", "Could not create " + directory);
+            return;
+        }
+        try {
+            traceRecorder = new TraceRecorder(new File(directory, "trace-" + System.currentTimeMillis() + ".htrc"));
+            beaconManager.setTraceRecorder(traceRecorder);
+        } catch (IOException e) {
+            Log.e("MainActivity", "Could not start trace recording", e);
+        }
+    }
+
+    // Reads the surveyed radio map in the background; the fused filter runs until it is ready, and
+    // for good if nothing was surveyed on this device
+    private void loadRadioMap() {
+        BeaconDatabase database = BeaconInfoLoader.getDatabase();
+        File surveyFile = new File(getFilesDir(), SURVEY_FILE);
+        if (!surveyFile.exists()) {
+            Log.w("MainActivity", "No radio map; survey first to use fingerprinting");
+            return;
+        }
+        new Thread(() -> {
+            try {
+                RadioMap map = RadioMap.readSurvey(surveyFile, database);
+                Log.i("MainActivity", "Radio map: " + map.getPointCount() + " reference points");
+                beaconManager.setPositionEngine(new FingerprintEngine(map));
+            } catch (IOException e) {
+                Log.e("MainActivity", "Could not load the radio map", e);
+            }
+        }, "RadioMapLoader").start();
+    }
+
+    private void updateLatencyOverlay() {
+        latencyTextView.setText(PipelineLatency.get().toString());
+        overlayHandler.postDelayed(this::updateLatencyOverlay, LATENCY_OVERLAY_INTERVAL_MILLIS);
+    }
+
+    private void dumpDiagnostics() {
+        File directory = new File(getFilesDir(), "traces");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e("MainActivity", "Could not create " + directory);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        File file = new File(directory, "events-" + now + ".hevt");
+        try {
+            EventTrace.get().dump(file);
+            Log.i("MainActivity", "Event trace written to " + file);
+        } catch (IOException e) {
+            Log.e("MainActivity", "Could not write the event trace", e);
+        }
+        File latencyFile = new File(directory, "latency-" + now + ".csv");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(latencyFile), "UTF-8")) {
+            PipelineLatency.get().writeCsv(out);
+            Log.i("MainActivity", "Latency histograms written to " + latencyFile);
+        } catch (IOException e) {
+            Log.e("MainActivity", "Could not write the latency histograms", e);
+        }
     }
 
     @Override
@@ -0,0 +1,40 @@
+package com.example.hero_pr12;
+
+/**
+ * A view that shows the map around the user: {@link MapView} on the UI thread or
+ * {@link MapSurfaceView} on its own render thread.
+ */
+public interface MapDisplay {
+    interface TapListener {
+        /**
+         * A single tap on the map at {@code location}, in meters on the floor shown.
+         */
+        void onMapTap(Point location);
+    }
+
+    /**
+     * A new position fix. Called on the main thread.
+     */
+    void updateUserPosition(Point userPosition);
+
+    /**
+     * A new heading in degrees. Called on the main thread.
+     */
+    void updateUserOrientation(float orientation);
+
+    /**
+     * Asks for a new frame because the map content changed, e.g. a floor plan finished loading.
+     * Callable from any thread.
+     */
+    void requestRedraw();
+
+    /**
+     * Draw times of recent frames.
+     */
+    FrameStats getFrameStats();
+
+    /**
+     * Reports single taps on the main thread; null stops reporting.
+     */
+    void setTapListener(TapListener listener);
+}
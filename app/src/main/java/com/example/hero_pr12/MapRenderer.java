@@ -0,0 +1,286 @@
+package com.example.hero_pr12;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.util.LruCache;
+
+/**
+ * Draws the map for {@link MapView} and {@link MapSurfaceView}. The static layers (building plan, grid and beacon markers)
+ * are rasterised once into 256 px tiles per zoom level and kept in an LRU cache; a frame only
+ * draws the cached tiles that intersect the viewport and then the user marker on top. The plan
+ * comes from the {@link PlanTilePyramid} level matching the zoom, never from the full image.
+ * Plan and beacons are those of the user's floor.
+ *
+ * World coordinates are map pixels: meters x {@link #PIXELS_PER_METER}, with the building plan
+ * centered on the origin. Zoom level z renders tiles at 2^z screen pixels per map pixel and is
+ * chosen as the smallest level at least as sharp as the current scale. Confined to the thread that
+ * draws the map.
+ */
+public class MapRenderer {
+    public static final int PIXELS_PER_METER = 50;
+    public static final int TILE_SIZE = 256;
+    static final int MIN_ZOOM_LEVEL = -4;
+    static final int MAX_ZOOM_LEVEL = 4;
+    // Missing tiles rasterised per frame; the rest follow in the next frames
+    private static final int MAX_TILES_PER_FRAME = 4;
+    private static final int MAX_CACHE_BYTES = 48 * 1024 * 1024;
+    // The grid covers +-100 m around the origin
+    private static final float GRID_EXTENT = 100 * PIXELS_PER_METER;
+    private static final float BEACON_RADIUS = 10; // 화면 픽셀
+    private static final float USER_RADIUS = 20;
+    private static final float ARROW_LENGTH = 50;
+    private static final float ARROW_HALF_BASE = 15;
+
+    private final LruCache<Long, Bitmap> tiles;
+    private final FrameStats frameStats = new FrameStats();
+    private final Paint tilePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Paint gridPaint = new Paint();
+    private final Paint beaconPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint userPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Canvas tileCanvas = new Canvas();
+    private final RectF tileBounds = new RectF();
+    private final RectF planBounds = new RectF();
+    private final Path arrowPath = new Path();
+    private int[] tileBeacons = new int[0];
+    // Content the cached tiles were drawn from
+    private int tileFloor;
+    private PlanTilePyramid tilePlan;
+    private FloorBeacons tileFloorBeacons;
+    private BeaconDatabase tileDatabase;
+
+    public MapRenderer() {
+        int cacheBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 8, MAX_CACHE_BYTES);
+        tiles = new LruCache<Long, Bitmap>(cacheBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap tile) {
+                return tile.getByteCount();
+            }
+        };
+        gridPaint.setColor(Color.LTGRAY);
+        gridPaint.setStyle(Paint.Style.STROKE);
+        beaconPaint.setStyle(Paint.Style.FILL);
+        userPaint.setColor(Color.RED);
+        userPaint.setStyle(Paint.Style.FILL);
+    }
+
+    public FrameStats getFrameStats() {
+        return frameStats;
+    }
+
+    /**
+     * Draws one frame. The view is scaled by {@code scale} around its top-left corner and panned
+     * by the offsets, in screen pixels, with the user at the center before panning. Returns false
+     * if some tiles were left out to keep the frame short; the caller should draw again.
+     */
+    public boolean draw(Canvas canvas, int width, int height, Point user, float orientation,
+                        float scale, float offsetX, float offsetY) {
+        long start = System.nanoTime();
+        checkContent(user.floor);
+        float centerX = width / 2f;
+        float centerY = height / 2f;
+        double userX = user.x * PIXELS_PER_METER;
+        double userY = user.y * PIXELS_PER_METER;
+
+        canvas.save();
+        canvas.scale(scale, scale);
+        canvas.translate(offsetX / scale, offsetY / scale);
+
+        // Viewport in world pixels
+        double left = -offsetX / scale - centerX + userX;
+        double top = -offsetY / scale - centerY + userY;
+        double right = left + width / scale;
+        double bottom = top + height / scale;
+
+        int zoom = zoomLevel(scale);
+        double tileWorldSize = TILE_SIZE / Math.scalb(1.0, zoom);
+        int firstColumn = tileIndex(left, tileWorldSize);
+        int lastColumn = tileIndex(right, tileWorldSize);
+        int firstRow = tileIndex(top, tileWorldSize);
+        int lastRow = tileIndex(bottom, tileWorldSize);
+        int budget = MAX_TILES_PER_FRAME;
+        boolean complete = true;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                long key = tileKey(zoom, column, row);
+                Bitmap tile = tiles.get(key);
+                if (tile == null) {
+                    if (budget == 0) {
+                        complete = false;
+                        continue;
+                    }
+                    budget--;
+                    tile = renderTile(zoom, column, row, tileWorldSize);
+                    tiles.put(key, tile);
+                }
+                float tileLeft = (float) (centerX + column * tileWorldSize - userX);
+                float tileTop = (float) (centerY + row * tileWorldSize - userY);
+                tileBounds.set(tileLeft, tileTop, tileLeft + (float) tileWorldSize, tileTop + (float) tileWorldSize);
+                canvas.drawBitmap(tile, null, tileBounds, tilePaint);
+            }
+        }
+
+        // The user is always at the center; sizes are in screen pixels
+        canvas.drawCircle(centerX, centerY, USER_RADIUS / scale, userPaint);
+        drawUserDirectionTriangle(canvas, centerX, centerY, orientation, scale);
+        canvas.restore();
+
+        frameStats.record(System.nanoTime() - start);
+        return complete;
+    }
+
+    /**
+     * Drops every cached tile, e.g. when the device is low on memory.
+     */
+    public void clearTiles() {
+        tiles.evictAll();
+        if (tilePlan != null) {
+            tilePlan.clearTiles();
+        }
+    }
+
+    // Cached tiles are stale once the floor changes or its plan or beacons are paged in or replaced
+    private void checkContent(int floor) {
+        PlanTilePyramid plan = BuildingPlanLoader.getPlanTiles(floor);
+        FloorBeacons floorBeacons = BeaconInfoLoader.getFloorBeacons(floor);
+        BeaconDatabase database = BeaconInfoLoader.getDatabase();
+        if (floor != tileFloor || plan != tilePlan || floorBeacons != tileFloorBeacons || database != tileDatabase) {
+            tileFloor = floor;
+            tilePlan = plan;
+            tileFloorBeacons = floorBeacons;
+            tileDatabase = database;
+            if (floorBeacons != null && tileBeacons.length < floorBeacons.size()) {
+                tileBeacons = new int[floorBeacons.size()];
+            }
+            tiles.evictAll();
+        }
+    }
+
+    private Bitmap renderTile(int zoom, int column, int row, double tileWorldSize) {
+        Bitmap tile = Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+        float tileScale = Math.scalb(1f, zoom);
+        double worldLeft = column * tileWorldSize;
+        double worldTop = row * tileWorldSize;
+        double worldRight = worldLeft + tileWorldSize;
+        double worldBottom = worldTop + tileWorldSize;
+
+        Canvas canvas = tileCanvas;
+        canvas.setBitmap(tile);
+        canvas.save();
+        canvas.scale(tileScale, tileScale);
+        canvas.translate((float) -worldLeft, (float) -worldTop);
+
+        if (tilePlan != null) {
+            drawPlan(canvas, tileScale, worldLeft, worldTop, worldRight, worldBottom);
+        }
+
+        // Grid lines every meter
+        float gridTop = (float) Math.max(worldTop, -GRID_EXTENT);
+        float gridBottom = (float) Math.min(worldBottom, GRID_EXTENT);
+        float gridLeft = (float) Math.max(worldLeft, -GRID_EXTENT);
+        float gridRight = (float) Math.min(worldRight, GRID_EXTENT);
+        if (gridLeft <= gridRight && gridTop <= gridBottom) {
+            for (double x = Math.ceil(gridLeft / PIXELS_PER_METER) * PIXELS_PER_METER; x <= gridRight; x += PIXELS_PER_METER) {
+                canvas.drawLine((float) x, gridTop, (float) x, gridBottom, gridPaint);
+            }
+            for (double y = Math.ceil(gridTop / PIXELS_PER_METER) * PIXELS_PER_METER; y <= gridBottom; y += PIXELS_PER_METER) {
+                canvas.drawLine(gridLeft, (float) y, gridRight, (float) y, gridPaint);
+            }
+        }
+
+        // Beacon markers, including those just outside whose circle reaches into the tile
+        if (tileFloorBeacons != null) {
+            BeaconGridIndex beaconIndex = tileFloorBeacons.getIndex();
+            double radius = BEACON_RADIUS / tileScale;
+            double margin = radius / PIXELS_PER_METER;
+            int count = beaconIndex.queryRect(worldLeft / PIXELS_PER_METER - margin, worldTop / PIXELS_PER_METER - margin,
+                    worldRight / PIXELS_PER_METER + margin, worldBottom / PIXELS_PER_METER + margin, tileBeacons);
+            for (int i = 0; i < count; i++) {
+                int slot = tileBeacons[i];
+                int id = tileFloorBeacons.id(slot);
+                if (id >= tileDatabase.size()) {
+                    continue; // Beacons from an older database
+                }
+                beaconPaint.setColor(tileDatabase.color(id));
+                canvas.drawCircle((float) (beaconIndex.xAt(slot) * PIXELS_PER_METER),
+                        (float) (beaconIndex.yAt(slot) * PIXELS_PER_METER), (float) radius, beaconPaint);
+            }
+        }
+        canvas.restore();
+        canvas.setBitmap(null);
+        return tile;
+    }
+
+    // Draws the plan tiles under a tile, from the coarsest pyramid level still at least as sharp
+    private void drawPlan(Canvas canvas, float tileScale, double worldLeft, double worldTop,
+                          double worldRight, double worldBottom) {
+        double planScale = PIXELS_PER_METER / BuildingPlanLoader.PLAN_PIXELS_PER_METER; // 지도 픽셀 / 도면 픽셀
+        double halfWidth = tilePlan.getWidth() / 2.0;
+        double halfHeight = tilePlan.getHeight() / 2.0;
+        int level = PlanTilePyramid.levelFor(1 / (planScale * tileScale), tilePlan.getLevelCount());
+        int span = PlanTilePyramid.TILE_SIZE << level;
+        int firstColumn = Math.max(0, tileIndex(worldLeft / planScale + halfWidth, span));
+        int lastColumn = Math.min(tilePlan.getColumns(level) - 1, tileIndex(worldRight / planScale + halfWidth, span));
+        int firstRow = Math.max(0, tileIndex(worldTop / planScale + halfHeight, span));
+        int lastRow = Math.min(tilePlan.getRows(level) - 1, tileIndex(worldBottom / planScale + halfHeight, span));
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                Bitmap planTile = tilePlan.getTile(level, column, row);
+                if (planTile == null) {
+                    continue;
+                }
+                double left = column * span;
+                double top = row * span;
+                double right = Math.min(left + span, tilePlan.getWidth());
+                double bottom = Math.min(top + span, tilePlan.getHeight());
+                planBounds.set((float) ((left - halfWidth) * planScale), (float) ((top - halfHeight) * planScale),
+                        (float) ((right - halfWidth) * planScale), (float) ((bottom - halfHeight) * planScale));
+                canvas.drawBitmap(planTile, null, planBounds, tilePaint);
+            }
+        }
+    }
+
+    private void drawUserDirectionTriangle(Canvas canvas, float centerX, float centerY, float orientation, float scale) {
+        float arrowLength = ARROW_LENGTH / scale;
+        float halfBase = ARROW_HALF_BASE / scale;
+        double rad = Math.toRadians(orientation);
+        double cos = Math.cos(rad);
+        double sin = Math.sin(rad);
+
+        arrowPath.reset();
+        arrowPath.moveTo((float) (centerX + arrowLength * cos), (float) (centerY + arrowLength * sin));
+        // cos(rad +- 90) = -+sin, sin(rad +- 90) = +-cos
+        arrowPath.lineTo((float) (centerX - halfBase * sin), (float) (centerY + halfBase * cos));
+        arrowPath.lineTo((float) (centerX + halfBase * sin), (float) (centerY - halfBase * cos));
+        arrowPath.close();
+        canvas.drawPath(arrowPath, userPaint);
+    }
+
+    /**
+     * The map position in meters under the screen pixel (screenX, screenY) of a frame drawn by
+     * {@link #draw} with the same size, user position, scale and offsets.
+     */
+    public static Point screenToWorld(float screenX, float screenY, int width, int height, Point user,
+                                      float scale, float offsetX, float offsetY) {
+        double canvasX = (screenX - offsetX) / scale;
+        double canvasY = (screenY - offsetY) / scale;
+        return new Point(user.x + (canvasX - width / 2.0) / PIXELS_PER_METER,
+                user.y + (canvasY - height / 2.0) / PIXELS_PER_METER, user.floor);
+    }
+
+    static int zoomLevel(float scale) {
+        int zoom = (int) Math.ceil(Math.log(scale) / Math.log(2) - 1e-6);
+        return Math.max(MIN_ZOOM_LEVEL, Math.min(MAX_ZOOM_LEVEL, zoom));
+    }
+
+    static int tileIndex(double world, double tileWorldSize) {
+        return (int) Math.floor(world / tileWorldSize);
+    }
+
+    static long tileKey(int zoom, int column, int row) {
+        return ((long) (zoom & 0xFF) << 56) | ((long) (column & 0xFFFFFFF) << 28) | (row & 0xFFFFFFF);
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.hero_pr12;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The map drawn on its own thread into a {@link SurfaceView}, so that work on the UI thread never
+ * holds up a frame. Frames are paced by the render thread's {@link Choreographer}: any number of
+ * position, heading or gesture updates between two vsyncs make a single frame, and no frame is
+ * drawn while nothing moves. Between fixes the displayed position and heading come from a
+ * {@link PositionAnimator}, so the marker glides instead of jumping once per fix.
+ *
+ * The {@link MapRenderer} and its tile cache are confined to the render thread.
+ */
+public class MapSurfaceView extends SurfaceView implements SurfaceHolder.Callback, MapDisplay {
+    private final MapRenderer renderer = new MapRenderer();
+    private final PositionAnimator animator = new PositionAnimator();
+    private final Point displayedPosition = new Point(0, 0);
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+    private HandlerThread renderThread;
+    private Handler renderHandler;
+    private Choreographer choreographer; // The render thread's
+    private final Choreographer.FrameCallback frameCallback = this::drawFrame;
+    private final Runnable scheduleFrame = () -> choreographer.postFrameCallback(frameCallback);
+    private volatile boolean surfaceReady;
+    private volatile int surfaceWidth;
+    private volatile int surfaceHeight;
+    // The latest fix until a frame has shown it
+    private volatile long positionHandedNanos;
+    private volatile long positionSampleNanos;
+
+    // Written on the UI thread by gestures, read on the render thread
+    private volatile float scaleFactor = 1.0f;
+    private volatile float offsetX = 0f;
+    private volatile float offsetY = 0f;
+
+    // The position shown by the last frame, for turning taps into map positions
+    private volatile double shownX;
+    private volatile double shownY;
+    private volatile int shownFloor;
+
+    private ScaleGestureDetector scaleDetector;
+    private GestureDetector gestureDetector;
+    private TapListener tapListener;
+
+    public MapSurfaceView(Context context) {
+        super(context);
+        init(context);
+    }
+
+    public MapSurfaceView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init(context);
+    }
+
+    public MapSurfaceView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init(context);
+    }
+
+    private void init(Context context) {
+        scaleDetector = new ScaleGestureDetector(context, new ScaleListener());
+        gestureDetector = new GestureDetector(context, new GestureListener());
+        getHolder().addCallback(this);
+    }
+
+    @Override
+    public void updateUserPosition(Point userPosition) {
+        animator.setPosition(userPosition.x, userPosition.y, userPosition.floor, System.nanoTime());
+        positionSampleNanos = userPosition.timestampNanos;
+        positionHandedNanos = SystemClock.elapsedRealtimeNanos();
+        requestRedraw();
+    }
+
+    @Override
+    public void updateUserOrientation(float orientation) {
+        animator.setHeading(orientation);
+        requestRedraw();
+    }
+
+    /**
+     * Schedules one frame at the next vsync unless one is already pending.
+     */
+    @Override
+    public void requestRedraw() {
+        Handler handler = renderHandler;
+        if (surfaceReady && handler != null && frameScheduled.compareAndSet(false, true)) {
+            handler.post(scheduleFrame);
+        }
+    }
+
+    @Override
+    public FrameStats getFrameStats() {
+        return renderer.getFrameStats();
+    }
+
+    @Override
+    public void setTapListener(TapListener listener) {
+        tapListener = listener;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        renderThread = new HandlerThread("MapRender", Process.THREAD_PRIORITY_DISPLAY);
+        renderThread.start();
+        renderHandler = new Handler(renderThread.getLooper());
+        renderHandler.post(() -> choreographer = Choreographer.getInstance());
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        Handler handler = renderHandler;
+        renderHandler = null;
+        handler.removeCallbacksAndMessages(null);
+        handler.post(() -> {
+            choreographer.removeFrameCallback(frameCallback);
+            renderer.clearTiles();
+        });
+        renderThread.quitSafely();
+        frameScheduled.set(false);
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        surfaceReady = true;
+        requestRedraw();
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        surfaceWidth = width;
+        surfaceHeight = height;
+        requestRedraw();
+    }
+
+    /**
+     * The surface must not be drawn to once this returns, so wait for a frame in progress.
+     */
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        surfaceReady = false;
+        Handler handler = renderHandler;
+        if (handler == null) {
+            return;
+        }
+        CountDownLatch drained = new CountDownLatch(1);
+        handler.post(drained::countDown);
+        try {
+            drained.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Runs on the render thread once per scheduled vsync
+    private void drawFrame(long frameTimeNanos) {
+        frameScheduled.set(false);
+        if (!surfaceReady) {
+            return;
+        }
+        Canvas canvas = getHolder().lockHardwareCanvas();
+        if (canvas == null) {
+            return;
+        }
+        boolean complete;
+        try {
+            animator.sample(frameTimeNanos);
+            displayedPosition.x = animator.getX();
+            displayedPosition.y = animator.getY();
+            displayedPosition.floor = animator.getFloor();
+            canvas.drawColor(Color.WHITE);
+            complete = renderer.draw(canvas, surfaceWidth, surfaceHeight, displayedPosition,
+                    (float) animator.getHeading(), scaleFactor, offsetX, offsetY);
+        } finally {
+            getHolder().unlockCanvasAndPost(canvas);
+        }
+        shownX = displayedPosition.x;
+        shownY = displayedPosition.y;
+        shownFloor = displayedPosition.floor;
+        long handedNanos = positionHandedNanos;
+        if (handedNanos != 0) {
+            positionHandedNanos = 0;
+            PipelineLatency.get().recordDrawn(handedNanos, positionSampleNanos, SystemClock.elapsedRealtimeNanos());
+        }
+        if (!complete || animator.isAnimating(frameTimeNanos)) {
+            requestRedraw();
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        scaleDetector.onTouchEvent(event);
+        gestureDetector.onTouchEvent(event);
+        return true;
+    }
+
+    private class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
+        @Override
+        public boolean onScale(ScaleGestureDetector detector) {
+            scaleFactor = Math.max(0.1f, Math.min(scaleFactor * detector.getScaleFactor(), 10.0f));
+            requestRedraw();
+            return true;
+        }
+    }
+
+    private class GestureListener extends GestureDetector.SimpleOnGestureListener {
+        @Override
+        public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+            offsetX -= distanceX;
+            offsetY -= distanceY;
+            requestRedraw();
+            return true;
+        }
+
+        @Override
+        public boolean onSingleTapConfirmed(MotionEvent e) {
+            if (tapListener == null) {
+                return false;
+            }
+            tapListener.onMapTap(MapRenderer.screenToWorld(e.getX(), e.getY(), surfaceWidth, surfaceHeight,
+                    new Point(shownX, shownY, shownFloor), scaleFactor, offsetX, offsetY));
+            return true;
+        }
+    }
+}
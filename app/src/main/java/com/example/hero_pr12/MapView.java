@@ -1,28 +1,19 @@
 package com.example.hero_pr12;
 
 import android.content.Context;
-import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.Path;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
 import android.view.View;
 
-import java.util.Map;
-
-public class MapView extends View {
+public class MapView extends View implements MapDisplay {
+    private final MapRenderer renderer = new MapRenderer();
     private Point userPosition = new Point(0, 0);
-    private Map<String, Point> beaconPositions;
-    private Paint gridPaint;
-    private Paint pointPaint;
-    private Paint arrowPaint;
-    private Paint markerPaint;
-    private static final int GRID_SIZE = 50;
     private float userOrientation = 0.0f;
+    private long positionHandedNanos; // 0 once a frame has shown the position
 
     private float scaleFactor = 1.0f;
     private float offsetX = 0f;
@@ -30,6 +21,7 @@ public class MapView extends View {
 
     private ScaleGestureDetector scaleDetector;
     private GestureDetector gestureDetector;
+    private TapListener tapListener;
 
     public MapView(Context context) {
         super(context);
@@ -47,123 +39,61 @@ public class MapView extends View {
     }
 
     private void init(Context context) {
-        gridPaint = new Paint();
-        gridPaint.setColor(Color.LTGRAY);
-        gridPaint.setStyle(Paint.Style.STROKE);
-
-        pointPaint = new Paint();
-        pointPaint.setColor(Color.RED);
-        pointPaint.setStyle(Paint.Style.FILL);
-
-        arrowPaint = new Paint();
-        arrowPaint.setColor(Color.RED);
-        arrowPaint.setStyle(Paint.Style.FILL);
-
-        markerPaint = new Paint();
-        markerPaint.setColor(Color.RED);
-        markerPaint.setStyle(Paint.Style.FILL);
-
         scaleDetector = new ScaleGestureDetector(context, new ScaleListener());
         gestureDetector = new GestureDetector(context, new GestureListener());
     }
 
+    @Override
     public void updateUserPosition(Point userPosition) {
+        if (userPosition.x == this.userPosition.x && userPosition.y == this.userPosition.y
+                && userPosition.floor == this.userPosition.floor) {
+            return;
+        }
         this.userPosition = userPosition;
+        positionHandedNanos = SystemClock.elapsedRealtimeNanos();
         invalidate();
     }
 
+    @Override
     public void updateUserOrientation(float orientation) {
+        if (orientation == userOrientation) {
+            return;
+        }
         this.userOrientation = orientation;
         invalidate();
     }
 
-    public void setBeaconPositions(Map<String, Point> beaconPositions) {
-        this.beaconPositions = beaconPositions;
-        invalidate();
+    @Override
+    public void requestRedraw() {
+        postInvalidate();
     }
 
     @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
+    public FrameStats getFrameStats() {
+        return renderer.getFrameStats();
+    }
 
-        canvas.save();
-        canvas.scale(scaleFactor, scaleFactor);
-        canvas.translate(offsetX / scaleFactor, offsetY / scaleFactor);
-
-        int width = getWidth();
-        int height = getHeight();
-        int centerX = width / 2;
-        int centerY = height / 2;
-
-        // Draw building plan
-        Bitmap buildingPlanBitmap = BuildingPlanLoader.getBuildingPlanBitmap();
-        if (buildingPlanBitmap != null) {
-            int planWidth = buildingPlanBitmap.getWidth();
-            int planHeight = buildingPlanBitmap.getHeight();
-            float planLeft = centerX - planWidth / 2f - (float)userPosition.x;
-            float planTop = centerY - planHeight / 2f - (float)userPosition.y;
-            canvas.drawBitmap(buildingPlanBitmap, planLeft, planTop, null);
-        }
+    @Override
+    public void setTapListener(TapListener listener) {
+        tapListener = listener;
+    }
 
-        // Draw grid
-        for (int i = -100 * GRID_SIZE; i <= 100 * GRID_SIZE; i += GRID_SIZE) {
-            float x = centerX + i - (float)userPosition.x;
-            canvas.drawLine(x, -100 * GRID_SIZE, x, 100 * GRID_SIZE, gridPaint);
-        }
-        for (int j = -100 * GRID_SIZE; j <= 100 * GRID_SIZE; j += GRID_SIZE) {
-            float y = centerY + j - (float)userPosition.y;
-            canvas.drawLine(-100 * GRID_SIZE, y, 100 * GRID_SIZE, y, gridPaint);
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (!renderer.draw(canvas, getWidth(), getHeight(), userPosition, userOrientation, scaleFactor, offsetX, offsetY)) {
+            postInvalidateOnAnimation(); // Tiles still to be rasterised
         }
-
-        // Draw beacons
-        if (beaconPositions != null) {
-            for (Map.Entry<String, Point> entry : beaconPositions.entrySet()) {
-                String beaconKey = entry.getKey();
-                Point point = entry.getValue();
-                float beaconX = centerX + (float)(point.x - userPosition.x) * GRID_SIZE;
-                float beaconY = centerY + (float)(point.y - userPosition.y) * GRID_SIZE;
-                Paint beaconPaint = new Paint();
-                beaconPaint.setColor(BeaconInfoLoader.beaconColors.get(beaconKey));
-                beaconPaint.setStyle(Paint.Style.FILL);
-                canvas.drawCircle(beaconX, beaconY, 10 / scaleFactor, beaconPaint);
-            }
+        if (positionHandedNanos != 0) {
+            PipelineLatency.get().recordDrawn(positionHandedNanos, userPosition.timestampNanos, SystemClock.elapsedRealtimeNanos());
+            positionHandedNanos = 0;
         }
-
-        // Draw user position (always at center)
-        canvas.drawCircle(centerX, centerY, 20 / scaleFactor, pointPaint);
-
-        // Draw user direction triangle
-        drawUserDirectionTriangle(canvas, centerX, centerY, userOrientation);
-
-        // Draw user marker
-        float markerRadius = 20 / scaleFactor;
-        canvas.drawCircle(centerX, centerY, markerRadius, markerPaint);
-
-        canvas.restore();
     }
 
-    private void drawUserDirectionTriangle(Canvas canvas, int centerX, int centerY, float orientation) {
-        float arrowLength = 50 / scaleFactor;
-        float halfBase = 15 / scaleFactor;
-
-        float rad = (float) Math.toRadians(orientation);
-
-        float tipX = (float) (centerX + arrowLength * Math.cos(rad));
-        float tipY = (float) (centerY + arrowLength * Math.sin(rad));
-
-        float leftX = (float) (centerX + halfBase * Math.cos(rad + Math.PI / 2));
-        float leftY = (float) (centerY + halfBase * Math.sin(rad + Math.PI / 2));
-
-        float rightX = (float) (centerX + halfBase * Math.cos(rad - Math.PI / 2));
-        float rightY = (float) (centerY + halfBase * Math.sin(rad - Math.PI / 2));
-
-        Path path = new Path();
-        path.moveTo(tipX, tipY);
-        path.lineTo(leftX, leftY);
-        path.lineTo(rightX, rightY);
-        path.close();
-
-        canvas.drawPath(path, arrowPaint);
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        renderer.clearTiles();
     }
 
     @Override
@@ -191,5 +121,15 @@ public class MapView extends View {
             invalidate();
             return true;
         }
+
+        @Override
+        public boolean onSingleTapConfirmed(MotionEvent e) {
+            if (tapListener == null) {
+                return false;
+            }
+            tapListener.onMapTap(MapRenderer.screenToWorld(e.getX(), e.getY(), getWidth(), getHeight(),
+                    userPosition, scaleFactor, offsetX, offsetY));
+            return true;
+        }
     }
-}
\ No newline at end of file
+}
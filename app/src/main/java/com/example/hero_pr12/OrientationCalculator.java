@@ -0,0 +1,42 @@
+package com.example.hero_pr12;
+
+/**
+ * Azimuth from accelerometer and magnetometer readings, computed the same way as
+ * SensorManager.getRotationMatrix followed by getOrientation, but without the rotation matrix
+ * arrays and without Android, so a replayed trace gets exactly the headings the app saw.
+ */
+public class OrientationCalculator {
+    private static final float STANDARD_GRAVITY = 9.80665f;
+    private static final float FREE_FALL_GRAVITY_SQUARED = 0.01f * STANDARD_GRAVITY * STANDARD_GRAVITY;
+
+    /**
+     * Returns the azimuth in degrees in [0, 360), or NaN in free fall or when the device is
+     * close to the magnetic pole axis, where getRotationMatrix fails too.
+     */
+    public static float azimuth(float[] gravity, float[] geomagnetic) {
+        float ax = gravity[0], ay = gravity[1], az = gravity[2];
+        float normSquaredA = ax * ax + ay * ay + az * az;
+        if (normSquaredA < FREE_FALL_GRAVITY_SQUARED) {
+            return Float.NaN;
+        }
+        float ex = geomagnetic[0], ey = geomagnetic[1], ez = geomagnetic[2];
+        float hx = ey * az - ez * ay;
+        float hy = ez * ax - ex * az;
+        float hz = ex * ay - ey * ax;
+        float normH = (float) Math.sqrt(hx * hx + hy * hy + hz * hz);
+        if (normH < 0.1f) {
+            return Float.NaN;
+        }
+        float invH = 1.0f / normH;
+        hx *= invH;
+        hy *= invH;
+        hz *= invH;
+        float invA = 1.0f / (float) Math.sqrt(normSquaredA);
+        ax *= invA;
+        az *= invA;
+        // Second row of the rotation matrix, M = A x H; only My is needed for the azimuth
+        float my = az * hx - ax * hz;
+        float azimuth = (float) Math.toDegrees(Math.atan2(hy, my));
+        return (azimuth + 360) % 360;
+    }
+}
@@ -0,0 +1,441 @@
+package com.example.hero_pr12;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Particle filter over the user's 2D position.
+ *
+ * Particles live in flat primitive arrays. A step moves every particle by a noisy copy of the
+ * step; particles whose move would cross a wall of the {@link WallMap} are rejected (weight zero).
+ * A beacon range multiplies each weight by a Gaussian range likelihood. When the effective sample
+ * size drops below half the particle count the set is rebuilt by systematic resampling.
+ *
+ * The walls are looked up again for every step, range and seed, so a source such as
+ * {@code BuildingPlanLoader::getWallMap} follows the current floor; while it returns null,
+ * nothing is a wall.
+ *
+ * With more than one thread, steps and weight updates are split into contiguous chunks, one per
+ * thread, each with its own random generator; resampling and the estimate stay sequential.
+ * The caller runs the first chunk and then parks until the others are done. An interrupt does
+ * not cut the wait short, since the weights are only complete once every chunk has finished.
+ * Weights are left unnormalised after an update and rescaled during the next pass over them.
+ */
+public class ParticleFilter implements PositionEngine {
+    public static final int DEFAULT_PARTICLE_COUNT = 1000;
+
+    private static final double STEP_LENGTH_SIGMA = 0.15; // 걸음 길이에 대한 비율
+    private static final double HEADING_SIGMA = Math.toRadians(10);
+    private static final double ROUGHENING_SIGMA = 0.1; // 미터, 리샘플링 후 복제된 입자를 흩뜨린다
+    private static final double MIN_TOTAL_WEIGHT = 1e-200;
+    private static final int MIN_PARTICLES_PER_CHUNK = 256;
+    private static final int MAX_SEED_ATTEMPTS = 8;
+
+    private static final int OP_STEP = 0;
+    private static final int OP_RANGE = 1;
+
+    private final int count;
+    private final Supplier<WallMap> wallSource;
+    private WallMap walls; // Of the update being run
+    private double[] xs;
+    private double[] ys;
+    private double[] nextXs;
+    private double[] nextYs;
+    private final double[] weights;
+    private double weightScale = 1; // Applied to every weight on the next pass
+    private double totalWeight; // Of the weights before scaling
+    private boolean initialised;
+
+    private final Rng rng = new Rng(0x5DEECE66DL);
+    private final Chunk[] chunks;
+    private final ExecutorService executor;
+    // Chunks handed to the executor and not finished yet; the caller parks until it is zero
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile Thread waiter;
+
+    // Parameters of the operation being run by the chunks
+    private int operation;
+    private double stepLength;
+    private double heading;
+    private double beaconX;
+    private double beaconY;
+    private double range;
+    private double rangeVariance;
+
+    public ParticleFilter(int particleCount, WallMap walls) {
+        this(particleCount, walls, 1);
+    }
+
+    public ParticleFilter(int particleCount, WallMap walls, int threads) {
+        this(particleCount, () -> walls, threads);
+    }
+
+    /**
+     * @param wallSource gives the walls for each update, or null if there are none
+     * @param threads    threads used for steps and weight updates, including the caller's; 1 runs
+     *                   everything on the calling thread
+     */
+    public ParticleFilter(int particleCount, Supplier<WallMap> wallSource, int threads) {
+        if (particleCount < 1) {
+            throw new IllegalArgumentException("particleCount must be positive: " + particleCount);
+        }
+        this.count = particleCount;
+        this.wallSource = wallSource;
+        xs = new double[particleCount];
+        ys = new double[particleCount];
+        nextXs = new double[particleCount];
+        nextYs = new double[particleCount];
+        weights = new double[particleCount];
+
+        int chunkCount = Math.max(1, Math.min(threads, particleCount / MIN_PARTICLES_PER_CHUNK));
+        chunks = new Chunk[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            chunks[i] = new Chunk(particleCount * i / chunkCount, particleCount * (i + 1) / chunkCount, rng.nextLong(), i > 0);
+        }
+        executor = chunkCount > 1 ? Executors.newFixedThreadPool(chunkCount - 1, runnable -> {
+            Thread thread = new Thread(runnable, "ParticleFilter");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    @Override
+    public void onStep(long timestampNanos, double stepLength, double headingDegrees) {
+        if (!initialised) {
+            return;
+        }
+        this.stepLength = stepLength;
+        this.heading = Math.toRadians(headingDegrees);
+        walls = wallSource.get();
+        run(OP_STEP);
+        if (totalWeight < MIN_TOTAL_WEIGHT) {
+            // Every particle hit a wall: the step was wrong, not the particles
+            resetWeights();
+            return;
+        }
+        resampleIfDegenerate();
+    }
+
+    @Override
+    public void onBeaconRange(int beaconId, double beaconX, double beaconY, double range, double rangeVariance,
+                              long timestampNanos) {
+        walls = wallSource.get();
+        if (!initialised) {
+            seed(beaconX, beaconY, range, Math.sqrt(rangeVariance));
+            return;
+        }
+        this.beaconX = beaconX;
+        this.beaconY = beaconY;
+        this.range = range;
+        this.rangeVariance = rangeVariance;
+        run(OP_RANGE);
+        if (totalWeight < MIN_TOTAL_WEIGHT) {
+            // No particle is consistent with the range, so the track is lost
+            seed(beaconX, beaconY, range, Math.sqrt(rangeVariance));
+            return;
+        }
+        resampleIfDegenerate();
+    }
+
+    @Override
+    public boolean estimate(PositionEstimate out) {
+        if (!initialised) {
+            return false;
+        }
+        double sum = 0, meanX = 0, meanY = 0;
+        for (int i = 0; i < count; i++) {
+            double w = weights[i];
+            sum += w;
+            meanX += w * xs[i];
+            meanY += w * ys[i];
+        }
+        meanX /= sum;
+        meanY /= sum;
+        double varX = 0, covXY = 0, varY = 0;
+        for (int i = 0; i < count; i++) {
+            double w = weights[i];
+            double dx = xs[i] - meanX;
+            double dy = ys[i] - meanY;
+            varX += w * dx * dx;
+            covXY += w * dx * dy;
+            varY += w * dy * dy;
+        }
+        out.set(meanX, meanY, varX / sum, covXY / sum, varY / sum);
+        out.beaconCount = 0;
+        out.iterations = 0;
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        initialised = false;
+    }
+
+    @Override
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public int getParticleCount() {
+        return count;
+    }
+
+    public int getThreadCount() {
+        return chunks.length;
+    }
+
+    public double getX(int i) {
+        return xs[i];
+    }
+
+    public double getY(int i) {
+        return ys[i];
+    }
+
+    /**
+     * Effective sample size, between 1 and the particle count.
+     */
+    public double getEffectiveSampleSize() {
+        double sum = 0, sumSquares = 0;
+        for (int i = 0; i < count; i++) {
+            sum += weights[i];
+            sumSquares += weights[i] * weights[i];
+        }
+        return sumSquares > 0 ? sum * sum / sumSquares : 0;
+    }
+
+    /**
+     * Spreads the particles uniformly over the disc of the given center and radius, avoiding walls.
+     */
+    public void seedUniform(double centerX, double centerY, double radius) {
+        walls = wallSource.get();
+        for (int i = 0; i < count; i++) {
+            int attempts = 0;
+            double px, py;
+            do {
+                double r = radius * Math.sqrt(rng.nextDouble());
+                double theta = 2 * Math.PI * rng.nextDouble();
+                px = centerX + r * Math.cos(theta);
+                py = centerY + r * Math.sin(theta);
+            } while (walls != null && walls.isWall(px, py) && ++attempts < MAX_SEED_ATTEMPTS);
+            xs[i] = px;
+            ys[i] = py;
+        }
+        resetWeights();
+    }
+
+    // Places the particles on a ring around the beacon at the measured range
+    private void seed(double centerX, double centerY, double range, double sigma) {
+        for (int i = 0; i < count; i++) {
+            int attempts = 0;
+            double px, py;
+            do {
+                double r = Math.abs(range + sigma * rng.nextGaussian());
+                double theta = 2 * Math.PI * rng.nextDouble();
+                px = centerX + r * Math.cos(theta);
+                py = centerY + r * Math.sin(theta);
+            } while (walls != null && walls.isWall(px, py) && ++attempts < MAX_SEED_ATTEMPTS);
+            xs[i] = px;
+            ys[i] = py;
+        }
+        resetWeights();
+    }
+
+    private void resetWeights() {
+        Arrays.fill(weights, 1);
+        weightScale = 1;
+        totalWeight = count;
+        initialised = true;
+    }
+
+    private void run(int op) {
+        operation = op;
+        if (executor == null) {
+            chunks[0].run();
+        } else {
+            waiter = Thread.currentThread();
+            pending.set(chunks.length - 1);
+            for (int i = 1; i < chunks.length; i++) {
+                try {
+                    executor.execute(chunks[i]);
+                } catch (RejectedExecutionException e) {
+                    // Shut down: finish the chunk here so that the weights are still complete
+                    chunks[i].run();
+                }
+            }
+            chunks[0].run();
+            awaitChunks();
+        }
+        double total = 0;
+        for (Chunk chunk : chunks) {
+            total += chunk.weightSum;
+        }
+        totalWeight = total;
+        weightScale = total > 0 ? 1 / total : 1;
+    }
+
+    // Waits for every chunk even if interrupted; the interrupt is kept for the caller
+    private void awaitChunks() {
+        boolean interrupted = false;
+        while (pending.get() > 0) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void resampleIfDegenerate() {
+        double sumSquares = 0;
+        for (Chunk chunk : chunks) {
+            sumSquares += chunk.weightSumSquares;
+        }
+        double effective = totalWeight * totalWeight / sumSquares;
+        if (effective >= count / 2.0) {
+            return;
+        }
+        // Systematic resampling: one random offset, then N evenly spaced pointers into the CDF
+        double spacing = totalWeight / count;
+        double pointer = rng.nextDouble() * spacing;
+        double cumulative = weights[0];
+        int source = 0;
+        for (int i = 0; i < count; i++) {
+            while (cumulative < pointer && source < count - 1) {
+                cumulative += weights[++source];
+            }
+            double px = xs[source] + ROUGHENING_SIGMA * rng.nextGaussian();
+            double py = ys[source] + ROUGHENING_SIGMA * rng.nextGaussian();
+            if (walls != null && walls.crossesWall(xs[source], ys[source], px, py)) {
+                px = xs[source];
+                py = ys[source];
+            }
+            nextXs[i] = px;
+            nextYs[i] = py;
+            pointer += spacing;
+        }
+        double[] swap = xs;
+        xs = nextXs;
+        nextXs = swap;
+        swap = ys;
+        ys = nextYs;
+        nextYs = swap;
+        resetWeights();
+    }
+
+    private final class Chunk implements Runnable {
+        final int from;
+        final int to;
+        final Rng random;
+        final boolean counted; // Run by the executor and counted in pending
+        double weightSum;
+        double weightSumSquares;
+
+        Chunk(int from, int to, long seed, boolean counted) {
+            this.from = from;
+            this.to = to;
+            this.random = new Rng(seed);
+            this.counted = counted;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (operation == OP_STEP) {
+                    move();
+                } else {
+                    weigh();
+                }
+            } finally {
+                if (counted && pending.decrementAndGet() == 0) {
+                    LockSupport.unpark(waiter);
+                }
+            }
+        }
+
+        private void move() {
+            double scale = weightScale;
+            double sum = 0, sumSquares = 0;
+            double[] x = xs, y = ys, w = weights;
+            for (int i = from; i < to; i++) {
+                double wi = w[i] * scale;
+                if (wi > 0) {
+                    double length = stepLength * (1 + STEP_LENGTH_SIGMA * random.nextGaussian());
+                    double theta = heading + HEADING_SIGMA * random.nextGaussian();
+                    double nx = x[i] + length * Math.cos(theta);
+                    double ny = y[i] + length * Math.sin(theta);
+                    if (walls != null && walls.crossesWall(x[i], y[i], nx, ny)) {
+                        wi = 0;
+                    } else {
+                        x[i] = nx;
+                        y[i] = ny;
+                    }
+                }
+                w[i] = wi;
+                sum += wi;
+                sumSquares += wi * wi;
+            }
+            weightSum = sum;
+            weightSumSquares = sumSquares;
+        }
+
+        private void weigh() {
+            double scale = weightScale;
+            double bx = beaconX, by = beaconY, r = range;
+            double inverseTwoVariance = 0.5 / rangeVariance;
+            double sum = 0, sumSquares = 0;
+            double[] x = xs, y = ys, w = weights;
+            for (int i = from; i < to; i++) {
+                double dx = x[i] - bx;
+                double dy = y[i] - by;
+                double error = Math.sqrt(dx * dx + dy * dy) - r;
+                double wi = w[i] * scale * Math.exp(-error * error * inverseTwoVariance);
+                w[i] = wi;
+                sum += wi;
+                sumSquares += wi * wi;
+            }
+            weightSum = sum;
+            weightSumSquares = sumSquares;
+        }
+    }
+
+    // xorshift64*: cheap, and one instance per chunk keeps the threads independent
+    private static final class Rng {
+        private long state;
+
+        Rng(long seed) {
+            state = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+        }
+
+        long nextLong() {
+            state ^= state >>> 12;
+            state ^= state << 25;
+            state ^= state >>> 27;
+            return state * 0x2545F4914F6CDD1DL;
+        }
+
+        double nextDouble() {
+            return (nextLong() >>> 11) * 0x1.0p-53;
+        }
+
+        // Marsaglia polar method, discarding the second value
+        double nextGaussian() {
+            double u, v, s;
+            do {
+                u = 2 * nextDouble() - 1;
+                v = 2 * nextDouble() - 1;
+                s = u * u + v * v;
+            } while (s >= 1 || s == 0);
+            return u * Math.sqrt(-2 * Math.log(s) / s);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.hero_pr12;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Latency of each stage of the positioning pipeline, from the radio or sensor timestamp of a
+ * sample to the frame that shows the position computed from it. Every sample carries its
+ * elapsed-realtime timestamp through the queue and the processor, and a {@link Point} carries
+ * the timestamp of the newest sample behind it to the map view.
+ * <pre>
+ *   SCAN_DELIVERY     advertisement received by the radio -> scan callback (controller batching)
+ *   SENSOR_DELIVERY   sensor sample taken -> onSensorChanged (sensor FIFO batching)
+ *   QUEUE             newest sample of a batch -> worker starts draining it
+ *   SMOOTHING         draining a batch: RSSI smoothing, ranging and filter updates
+ *   ESTIMATE          one fix from the filter or multilateration
+ *   PUBLISH           fix computed -> handed to the map on the main thread
+ *   DRAW              handed to the map -> first frame showing it drawn
+ *   END_TO_END        newest sample behind a position -> first frame showing it drawn
+ * </pre>
+ * Each stage may have a budget; values above it are counted so a device can report how often
+ * the pipeline ran late.
+ */
+public class PipelineLatency {
+    public static final int SCAN_DELIVERY = 0;
+    public static final int SENSOR_DELIVERY = 1;
+    public static final int QUEUE = 2;
+    public static final int SMOOTHING = 3;
+    public static final int ESTIMATE = 4;
+    public static final int PUBLISH = 5;
+    public static final int DRAW = 6;
+    public static final int END_TO_END = 7;
+    public static final int STAGE_COUNT = 8;
+    // The batched scanner alone holds results for 500 ms
+    public static final long DEFAULT_END_TO_END_BUDGET_NANOS = 1000000000L;
+
+    private static final String[] NAMES = {
+            "scan delivery", "sensor delivery", "queue", "smoothing", "estimate", "publish", "draw", "end-to-end"
+    };
+    private static final PipelineLatency PIPELINE = new PipelineLatency();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGE_COUNT];
+    private final long[] budgets = new long[STAGE_COUNT];
+
+    public PipelineLatency() {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        budgets[END_TO_END] = DEFAULT_END_TO_END_BUDGET_NANOS;
+    }
+
+    /**
+     * The app-wide instance.
+     */
+    public static PipelineLatency get() {
+        return PIPELINE;
+    }
+
+    public static String stageName(int stage) {
+        return NAMES[stage];
+    }
+
+    public void record(int stage, long latencyNanos) {
+        histograms[stage].record(latencyNanos);
+    }
+
+    /**
+     * The first frame showing a position was drawn at {@code nowNanos}; the position reached the
+     * view at {@code handedNanos} and is based on samples up to {@code sampleNanos}, 0 if unknown.
+     */
+    public void recordDrawn(long handedNanos, long sampleNanos, long nowNanos) {
+        histograms[DRAW].record(nowNanos - handedNanos);
+        if (sampleNanos != 0) {
+            histograms[END_TO_END].record(nowNanos - sampleNanos);
+        }
+    }
+
+    public LatencyHistogram getHistogram(int stage) {
+        return histograms[stage];
+    }
+
+    /**
+     * Sets the budget of {@code stage}; zero means none.
+     */
+    public void setBudget(int stage, long budgetNanos) {
+        budgets[stage] = budgetNanos;
+    }
+
+    public long getBudget(int stage) {
+        return budgets[stage];
+    }
+
+    /**
+     * Values of {@code stage} above its budget, or 0 if it has none.
+     */
+    public long getOverBudgetCount(int stage) {
+        return budgets[stage] > 0 ? histograms[stage].getCountAbove(budgets[stage]) : 0;
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * One line per stage with data, for the debug overlay.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            LatencyHistogram histogram = histograms[i];
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            text.append(String.format(Locale.US, "%-15s p50 %6.1f  p95 %6.1f  p99 %6.1f  max %6.1f ms",
+                    NAMES[i], histogram.getPercentileNanos(0.5) / 1e6, histogram.getPercentileNanos(0.95) / 1e6,
+                    histogram.getPercentileNanos(0.99) / 1e6, histogram.getMaxNanos() / 1e6));
+            if (budgets[i] > 0) {
+                text.append(String.format(Locale.US, "  over %d", getOverBudgetCount(i)));
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Every stage as a CSV row of count, mean, percentiles and max in microseconds.
+     */
+    public void writeCsv(Appendable out) throws IOException {
+        out.append("stage,count,mean_us,p50_us,p95_us,p99_us,max_us,budget_us,over_budget\n");
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            LatencyHistogram histogram = histograms[i];
+            out.append(String.format(Locale.US, "%s,%d,%.0f,%d,%d,%d,%d,%d,%d\n", NAMES[i], histogram.getCount(),
+                    histogram.getMeanNanos() / 1e3, histogram.getPercentileNanos(0.5) / 1000,
+                    histogram.getPercentileNanos(0.95) / 1000, histogram.getPercentileNanos(0.99) / 1000,
+                    histogram.getMaxNanos() / 1000, budgets[i] / 1000, getOverBudgetCount(i)));
+        }
+    }
+}
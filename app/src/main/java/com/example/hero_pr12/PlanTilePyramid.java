@@ -0,0 +1,234 @@
+package com.example.hero_pr12;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.util.LruCache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The building plan as a pyramid of 256 px tiles, so that no view ever needs the full-size plan
+ * in memory. Level l holds the plan subsampled by 2^l; the top level fits in a single tile.
+ *
+ * A tile is read from the on-disk pyramid if it has been written, and otherwise decoded straight
+ * from the plan with {@link BitmapRegionDecoder}. {@link #build()} writes every missing tile,
+ * coarsest level first because those are the expensive ones to region-decode (the decoder still
+ * reads every source row they cover). The pyramid is written once; later runs only read it.
+ * Decoded tiles are kept in a memory-bounded LRU cache.
+ *
+ * {@link #getTile} is meant for the thread that draws the map and {@link #build()} for one background thread;
+ * each uses its own decoder so that a long build never stalls a frame on the decoder lock.
+ */
+public class PlanTilePyramid implements Closeable {
+    public static final int TILE_SIZE = 256;
+    private static final int MAX_CACHE_BYTES = 16 * 1024 * 1024;
+    private static final String COMPLETE_MARKER = "complete";
+
+    private final File source;
+    private final File directory;
+    private final BitmapRegionDecoder decoder;
+    private final int width;
+    private final int height;
+    private final int levelCount;
+    private final LruCache<Long, Bitmap> tiles;
+    private final Rect region = new Rect();
+    private final BitmapFactory.Options options = new BitmapFactory.Options();
+    private volatile boolean closed;
+
+    private PlanTilePyramid(File source, File directory, BitmapRegionDecoder decoder) {
+        this.source = source;
+        this.directory = directory;
+        this.decoder = decoder;
+        this.width = decoder.getWidth();
+        this.height = decoder.getHeight();
+        this.levelCount = levelCount(width, height);
+        int cacheBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 16, MAX_CACHE_BYTES);
+        tiles = new LruCache<Long, Bitmap>(cacheBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap tile) {
+                return tile.getByteCount();
+            }
+        };
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+    }
+
+    /**
+     * Opens the plan image for region decoding, with its pyramid stored in {@code directory}.
+     * Only the image header is read here.
+     */
+    public static PlanTilePyramid open(File source, File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        return new PlanTilePyramid(source, directory, BitmapRegionDecoder.newInstance(source.getPath()));
+    }
+
+    /**
+     * Plan width in full-resolution pixels.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    public int getColumns(int level) {
+        return tileCount(width, level);
+    }
+
+    public int getRows(int level) {
+        return tileCount(height, level);
+    }
+
+    /**
+     * Whether every tile of every level has been written to disk.
+     */
+    public boolean isBuilt() {
+        return new File(directory, COMPLETE_MARKER).exists();
+    }
+
+    /**
+     * The tile at the given level, column and row, or null if there is none there. Tiles on the
+     * right and bottom edges are smaller than {@link #TILE_SIZE}.
+     */
+    public Bitmap getTile(int level, int column, int row) {
+        if (closed || level < 0 || level >= levelCount || column < 0 || row < 0
+                || column >= getColumns(level) || row >= getRows(level)) {
+            return null;
+        }
+        long key = tileKey(level, column, row);
+        Bitmap tile = tiles.get(key);
+        if (tile == null) {
+            File file = tileFile(level, column, row);
+            tile = file.isFile() ? BitmapFactory.decodeFile(file.getPath(), options) : null;
+            if (tile == null) {
+                tile = decodeTile(decoder, region, options, level, column, row);
+            }
+            if (tile != null) {
+                tiles.put(key, tile);
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * Writes every tile not yet on disk. Blocking; returns early if the pyramid is closed.
+     */
+    public void build() throws IOException {
+        if (isBuilt()) {
+            return;
+        }
+        BitmapRegionDecoder buildDecoder = BitmapRegionDecoder.newInstance(source.getPath());
+        Rect buildRegion = new Rect();
+        BitmapFactory.Options buildOptions = new BitmapFactory.Options();
+        buildOptions.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        try {
+            for (int level = levelCount - 1; level >= 0; level--) {
+                for (int row = 0; row < getRows(level); row++) {
+                    for (int column = 0; column < getColumns(level); column++) {
+                        if (closed) {
+                            return;
+                        }
+                        File file = tileFile(level, column, row);
+                        if (file.isFile()) {
+                            continue;
+                        }
+                        Bitmap tile = decodeTile(buildDecoder, buildRegion, buildOptions, level, column, row);
+                        if (tile == null) {
+                            throw new IOException("Cannot decode plan tile " + level + "/" + column + "/" + row);
+                        }
+                        writeTile(tile, file);
+                        tile.recycle();
+                    }
+                }
+            }
+            new FileOutputStream(new File(directory, COMPLETE_MARKER)).close();
+        } finally {
+            buildDecoder.recycle();
+        }
+    }
+
+    /**
+     * Drops the decoded tiles, e.g. when the device is low on memory.
+     */
+    public void clearTiles() {
+        tiles.evictAll();
+    }
+
+    /**
+     * Stops a running {@link #build()} after its current tile and releases the decoder.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        tiles.evictAll();
+        decoder.recycle();
+    }
+
+    /**
+     * The level to draw at when one screen pixel covers {@code planPixelsPerScreenPixel} plan
+     * pixels: the coarsest whose tiles are never enlarged on screen.
+     */
+    static int levelFor(double planPixelsPerScreenPixel, int levelCount) {
+        int level = (int) Math.floor(Math.log(planPixelsPerScreenPixel) / Math.log(2) + 1e-6);
+        return Math.max(0, Math.min(levelCount - 1, level));
+    }
+
+    static int levelCount(int width, int height) {
+        int levels = 1;
+        while (Math.max(width, height) > (TILE_SIZE << (levels - 1))) {
+            levels++;
+        }
+        return levels;
+    }
+
+    static int tileCount(int size, int level) {
+        int span = TILE_SIZE << level;
+        return (size + span - 1) / span;
+    }
+
+    private Bitmap decodeTile(BitmapRegionDecoder decoder, Rect region, BitmapFactory.Options options,
+                              int level, int column, int row) {
+        int span = TILE_SIZE << level;
+        region.set(column * span, row * span, Math.min((column + 1) * span, width), Math.min((row + 1) * span, height));
+        options.inSampleSize = 1 << level;
+        try {
+            return decoder.decodeRegion(region, options);
+        } catch (IllegalStateException e) {
+            return null; // Recycled by close()
+        }
+    }
+
+    // Written under a temporary name so that a file with the tile's name is always complete
+    private void writeTile(Bitmap tile, File file) throws IOException {
+        File partial = new File(directory, file.getName() + ".part");
+        try (OutputStream out = new FileOutputStream(partial)) {
+            if (!tile.compress(Bitmap.CompressFormat.PNG, 100, out)) {
+                throw new IOException("Cannot encode " + file);
+            }
+        }
+        if (!partial.renameTo(file)) {
+            throw new IOException("Cannot rename " + partial);
+        }
+    }
+
+    private File tileFile(int level, int column, int row) {
+        return new File(directory, level + "-" + column + "-" + row + ".png");
+    }
+
+    private static long tileKey(int level, int column, int row) {
+        return ((long) level << 56) | ((long) column << 28) | row;
+    }
+}
@@ -3,9 +3,18 @@ package com.example.hero_pr12;
 public class Point {
     public double x;
     public double y;
+    public int floor;
+    // Elapsed-realtime time of the newest sample behind this position, 0 if unknown
+    public long timestampNanos;
 
     public Point(double x, double y) {
         this.x = x;
         this.y = y;
     }
+
+    public Point(double x, double y, int floor) {
+        this.x = x;
+        this.y = y;
+        this.floor = floor;
+    }
 }
@@ -0,0 +1,146 @@
+package com.example.hero_pr12;
+
+/**
+ * Turns position fixes and heading updates, which arrive a few times per second, into a smooth
+ * displayed position and heading for every frame.
+ *
+ * The target moves on from the last fix at the velocity seen between recent fixes, for at most
+ * {@link #MAX_EXTRAPOLATION_NANOS}, and the displayed position follows the target with a short
+ * exponential lag instead of jumping to each fix. Jumps of more than {@link #SNAP_DISTANCE} and
+ * floor changes are shown at once. The heading follows the same lag along the shorter way round.
+ *
+ * Times are {@link System#nanoTime()} nanoseconds, the clock of Choreographer frame times.
+ * Fixes come in on one thread and frames are sampled on another, so every method is synchronized.
+ */
+public class PositionAnimator {
+    static final long MAX_EXTRAPOLATION_NANOS = 1000000000L;
+    private static final double SMOOTHING_TIME_NANOS = 150e6;
+    private static final double SNAP_DISTANCE = 10.0; // 미터
+    private static final double MAX_SPEED = 3.0; // m/s; faster fix-to-fix motion is noise
+    private static final long MAX_FIX_INTERVAL_NANOS = 3000000000L;
+    private static final double VELOCITY_SMOOTHING = 0.5;
+    // After an idle spell the first frame eases in instead of jumping
+    private static final long MAX_FRAME_INTERVAL_NANOS = 50000000L;
+    // Below these the displayed state counts as settled and frames can stop
+    private static final double SETTLED_DISTANCE = 0.005; // 미터
+    private static final double SETTLED_ANGLE = 0.2; // 도
+
+    private boolean hasFix;
+    private double fixX;
+    private double fixY;
+    private int floor;
+    private long fixNanos;
+    private double velocityX;
+    private double velocityY;
+    private boolean hasHeading;
+    private double targetHeading;
+    private double x;
+    private double y;
+    private double heading;
+    private long sampleNanos;
+
+    /**
+     * A new fix, received at {@code nowNanos}.
+     */
+    public synchronized void setPosition(double newX, double newY, int newFloor, long nowNanos) {
+        if (!hasFix || newFloor != floor) {
+            velocityX = 0;
+            velocityY = 0;
+            x = newX;
+            y = newY;
+        } else {
+            long interval = nowNanos - fixNanos;
+            if (interval > 0 && interval <= MAX_FIX_INTERVAL_NANOS) {
+                double vx = (newX - fixX) / (interval / 1e9);
+                double vy = (newY - fixY) / (interval / 1e9);
+                double speed = Math.hypot(vx, vy);
+                if (speed > MAX_SPEED) {
+                    vx *= MAX_SPEED / speed;
+                    vy *= MAX_SPEED / speed;
+                }
+                velocityX += VELOCITY_SMOOTHING * (vx - velocityX);
+                velocityY += VELOCITY_SMOOTHING * (vy - velocityY);
+            } else {
+                velocityX = 0;
+                velocityY = 0;
+            }
+            if (Math.hypot(newX - x, newY - y) > SNAP_DISTANCE) {
+                x = newX;
+                y = newY;
+            }
+        }
+        hasFix = true;
+        fixX = newX;
+        fixY = newY;
+        floor = newFloor;
+        fixNanos = nowNanos;
+        if (sampleNanos == 0) {
+            sampleNanos = nowNanos;
+        }
+    }
+
+    public synchronized void setHeading(double degrees) {
+        if (!hasHeading) {
+            heading = degrees;
+            hasHeading = true;
+        }
+        targetHeading = degrees;
+    }
+
+    /**
+     * Advances the displayed state to {@code nowNanos}; read it with the getters.
+     */
+    public synchronized void sample(long nowNanos) {
+        long elapsed = sampleNanos != 0 ? Math.min(Math.max(0, nowNanos - sampleNanos), MAX_FRAME_INTERVAL_NANOS) : 0;
+        sampleNanos = Math.max(sampleNanos, nowNanos);
+        double follow = 1 - Math.exp(-elapsed / SMOOTHING_TIME_NANOS);
+        if (hasFix) {
+            double ahead = Math.min(Math.max(0, nowNanos - fixNanos), MAX_EXTRAPOLATION_NANOS) / 1e9;
+            x += (fixX + velocityX * ahead - x) * follow;
+            y += (fixY + velocityY * ahead - y) * follow;
+        }
+        heading += angleDifference(targetHeading, heading) * follow;
+        heading = (heading % 360 + 360) % 360;
+    }
+
+    /**
+     * Whether frames after {@code nowNanos} would still show movement.
+     */
+    public synchronized boolean isAnimating(long nowNanos) {
+        if (!hasFix) {
+            return false;
+        }
+        boolean extrapolating = (velocityX != 0 || velocityY != 0) && nowNanos - fixNanos < MAX_EXTRAPOLATION_NANOS;
+        double ahead = Math.min(Math.max(0, nowNanos - fixNanos), MAX_EXTRAPOLATION_NANOS) / 1e9;
+        double distance = Math.hypot(fixX + velocityX * ahead - x, fixY + velocityY * ahead - y);
+        return extrapolating || distance > SETTLED_DISTANCE
+                || Math.abs(angleDifference(targetHeading, heading)) > SETTLED_ANGLE;
+    }
+
+    public synchronized double getX() {
+        return x;
+    }
+
+    public synchronized double getY() {
+        return y;
+    }
+
+    public synchronized int getFloor() {
+        return floor;
+    }
+
+    public synchronized double getHeading() {
+        return heading;
+    }
+
+    // a - b in (-180, 180]
+    static double angleDifference(double a, double b) {
+        double difference = (a - b) % 360;
+        if (difference > 180) {
+            difference -= 360;
+        } else if (difference <= -180) {
+            difference += 360;
+        }
+        return difference;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.hero_pr12;
+
+/**
+ * Sequential position estimator fed from the positioning worker thread: pedestrian steps from
+ * the step detector and ranges to individual beacons as they are heard, with the smoothed RSSI
+ * behind each range for engines that match signal strengths instead. The ranges are not
+ * filtered over time, since the engine does that itself; only the multilateration fallback
+ * filters distances in {@link BeaconStateTable}.
+ */
+public interface PositionEngine {
+    /**
+     * One detected step of {@code stepLength} meters towards {@code headingDegrees}, measured
+     * like the azimuth elsewhere in the app (x grows with cos, y with sin).
+     */
+    void onStep(long timestampNanos, double stepLength, double headingDegrees);
+
+    /**
+     * An unfiltered range, from the smoothed RSSI, to the beacon at (beaconX, beaconY), with its variance in square meters.
+     */
+    void onBeaconRange(int beaconId, double beaconX, double beaconY, double range, double rangeVariance,
+                       long timestampNanos);
+
+    /**
+     * The smoothed RSSI of a beacon, given right before its range. Range-based engines ignore it.
+     */
+    default void onBeaconRssi(int beaconId, float smoothedRssi, long timestampNanos) {
+    }
+
+    /**
+     * Writes the current estimate into {@code out}. Returns false if there is none yet.
+     */
+    boolean estimate(PositionEstimate out);
+
+    /**
+     * Forgets everything; the next range starts a new track.
+     */
+    void reset();
+
+    /**
+     * Releases any threads held by the engine.
+     */
+    void shutdown();
+}
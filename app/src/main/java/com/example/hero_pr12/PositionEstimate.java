@@ -0,0 +1,36 @@
+package com.example.hero_pr12;
+
+/**
+ * Mutable position fix with its 2x2 covariance, filled in by the solvers so that a fix can be
+ * produced without allocating. The floor is filled in by {@link PositioningProcessor}.
+ */
+public class PositionEstimate {
+    public double x;
+    public double y;
+    public double varianceX;
+    public double covarianceXY;
+    public double varianceY;
+    public int floor;
+    public int beaconCount;
+    public int iterations;
+
+    public void set(double x, double y, double varianceX, double covarianceXY, double varianceY) {
+        this.x = x;
+        this.y = y;
+        this.varianceX = varianceX;
+        this.covarianceXY = covarianceXY;
+        this.varianceY = varianceY;
+    }
+
+    /**
+     * Radius of a circle with the same area as the 1-sigma error ellipse.
+     */
+    public double getErrorRadius() {
+        double det = varianceX * varianceY - covarianceXY * covarianceXY;
+        return det > 0 ? Math.sqrt(Math.sqrt(det)) : Math.sqrt(Math.max(varianceX, varianceY));
+    }
+
+    public Point toPoint() {
+        return new Point(x, y, floor);
+    }
+}
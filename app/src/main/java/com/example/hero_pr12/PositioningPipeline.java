@@ -0,0 +1,54 @@
+package com.example.hero_pr12;
+
+/**
+ * The framework-free part of the positioning pipeline, shared by {@link BeaconManager} on the
+ * device and {@link ReplayPipeline} off it: the sample queue between the scan callback and the
+ * {@link PositioningProcessor}, how many samples are taken per batch, and what a step does.
+ *
+ * Samples are offered to the queue on the scan callback's thread; everything else runs on the
+ * thread that owns the processor.
+ */
+public class PositioningPipeline {
+    public static final int SAMPLE_QUEUE_CAPACITY = 1024;
+    public static final int MAX_BATCH_SIZE = 64;
+    public static final float STEP_LENGTH = 0.78f; // 평균 걸음 길이(단위: 미터)
+
+    private final ScanSampleQueue sampleQueue = new ScanSampleQueue(SAMPLE_QUEUE_CAPACITY);
+    private final PositioningProcessor processor = new PositioningProcessor();
+
+    public ScanSampleQueue getSampleQueue() {
+        return sampleQueue;
+    }
+
+    public PositioningProcessor getProcessor() {
+        return processor;
+    }
+
+    /**
+     * Hands at most {@link #MAX_BATCH_SIZE} queued samples to the processor and returns how many.
+     */
+    public int drainBatch() {
+        return sampleQueue.drain(processor, MAX_BATCH_SIZE);
+    }
+
+    /**
+     * A fix from the beacons heard so far, or null if there are too few or no estimate yet.
+     */
+    public Point estimate() {
+        return processor.hasEnoughBeacons() ? processor.estimatePosition() : null;
+    }
+
+    /**
+     * A step towards {@code headingDegrees}. Moves the position engine if there is one and
+     * returns its fix, which may be null; otherwise dead-reckons from {@code position}.
+     */
+    public Point step(long timestampNanos, float stepLength, float headingDegrees, Point position) {
+        if (processor.onStep(timestampNanos, stepLength, headingDegrees)) {
+            return processor.estimatePosition();
+        }
+        Point stepped = new Point(position.x + stepLength * Math.cos(Math.toRadians(headingDegrees)),
+                position.y + stepLength * Math.sin(Math.toRadians(headingDegrees)), position.floor);
+        stepped.timestampNanos = timestampNanos;
+        return stepped;
+    }
+}
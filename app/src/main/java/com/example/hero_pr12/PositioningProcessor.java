@@ -0,0 +1,348 @@
+package com.example.hero_pr12;
+
+import java.util.Arrays;
+
+/**
+ * Turns scan samples into distances and position fixes.
+ *
+ * Every sample goes to the {@link FloorDetector}, but only beacons on the current floor are
+ * ranged: a beacon heard through the slab would pull the fix towards a point on another floor.
+ * A floor change starts a new track on the new floor.
+ *
+ * All per-beacon state lives here and is confined to the positioning worker thread;
+ * {@link BeaconManager} only hands samples in and publishes the results.
+ */
+public class PositioningProcessor implements ScanSampleQueue.Consumer {
+    private static final int RSSI_FILTER_SIZE = 10;
+    private static final float RSSI_DECAY = 0.9f;
+    // Beacons further than this from the last fix are not given to the solver
+    private static final double SOLVER_RADIUS = 30.0;
+
+    private BeaconDatabase database;
+    private BeaconStateTable state;
+    private FloorDetector floorDetector;
+    private double floorHeight = FloorDetector.DEFAULT_FLOOR_HEIGHT;
+    private RssiSmoother rssiSmoother;
+    private int rssiWindowSize = RSSI_FILTER_SIZE;
+    private float rssiDecay = RSSI_DECAY;
+    private RssiSmoother.Mode rssiMode = RssiSmoother.Mode.EXPONENTIAL;
+    private final PositionEstimate estimate = new PositionEstimate();
+    // Null uses per-fix multilateration over filtered distances
+    private PositionEngine engine;
+    // Null unless in survey mode
+    private SurveyRecorder surveyRecorder;
+    // Solver inputs, grown as more beacons are heard
+    private double[] beaconX = new double[8];
+    private double[] beaconY = new double[8];
+    private double[] ranges = new double[8];
+    private double[] rangeVariances = new double[8];
+    private int[] candidateSlots = new int[0];
+    private int[] bestIds = new int[0];
+    private long beaconTtlNanos = BeaconStateTable.DEFAULT_TTL_NANOS;
+    private boolean hasLastFix;
+    private boolean distancesChanged;
+    private boolean floorChanged;
+    private volatile long processedCount;
+    private long newestSampleNanos;
+
+    // Written by the sensor thread, read when a fix is computed
+    private volatile float currentAzimuth;
+    private volatile float currentSpeed;
+
+    public PositioningProcessor() {
+        ensureState();
+    }
+
+    @Override
+    public void accept(int beaconId, int rssi, int txPower, long timestampNanos) {
+        ensureState();
+        if (beaconId < 0 || beaconId >= state.size()) {
+            return;
+        }
+        processedCount++;
+        if (surveyRecorder != null && surveyRecorder.getDatabase() == database) {
+            // 층과 관계없이 그 지점에서 들리는 비콘을 모두 기록한다
+            surveyRecorder.onSample(beaconId, rssi);
+        }
+        int floor = database.floor(beaconId);
+        if (floorDetector.onBeacon(floor, rssi, timestampNanos)) {
+            onFloorChanged();
+        }
+        if (floor != floorDetector.getFloor()) {
+            return;
+        }
+        newestSampleNanos = Math.max(newestSampleNanos, timestampNanos);
+        if (state.evictExpired(timestampNanos) > 0) {
+            distancesChanged = true;
+        }
+        if (!state.isHeard(beaconId)) {
+            // Heard for the first time or again after eviction: old samples say nothing about now
+            rssiSmoother.clear(beaconId);
+        }
+        float smoothedRssi = rssiSmoother.add(beaconId, rssi);
+        float distance = BeaconDistanceCalculator.calculateDistance(smoothedRssi, txPower, BeaconDistanceCalculator.PATH_LOSS_PARAMETER_INDOOR);
+        double variance = BeaconDistanceCalculator.rangeVariance(distance, BeaconDistanceCalculator.PATH_LOSS_PARAMETER_INDOOR);
+        double range = state.update(beaconId, rssi, smoothedRssi, distance, variance, timestampNanos);
+        if (engine != null) {
+            engine.onBeaconRssi(beaconId, smoothedRssi, timestampNanos);
+            engine.onBeaconRange(beaconId, database.x(beaconId), database.y(beaconId), range, variance, timestampNanos);
+        }
+        distancesChanged = true;
+    }
+
+    /**
+     * A barometer sample in hPa.
+     */
+    public void onPressure(float hPa, long timestampNanos) {
+        ensureState();
+        if (floorDetector.onPressure(hPa, timestampNanos)) {
+            onFloorChanged();
+        }
+    }
+
+    /**
+     * The floor fixes are on, or {@link FloorDetector#UNKNOWN_FLOOR} before any was detected.
+     */
+    public int getFloor() {
+        return floorDetector.getFloor();
+    }
+
+    /**
+     * Returns true once if the floor changed since the last call.
+     */
+    public boolean consumeFloorChanged() {
+        boolean changed = floorChanged;
+        floorChanged = false;
+        return changed;
+    }
+
+    /**
+     * Storey height used to turn barometric height changes into floors. Resets floor detection.
+     */
+    public void setFloorHeight(double floorHeight) {
+        this.floorHeight = floorHeight;
+        floorDetector = new FloorDetector(database.floors(), floorHeight);
+    }
+
+    /**
+     * Replaces the position engine; null goes back to multilateration. The previous engine is
+     * shut down.
+     */
+    public void setPositionEngine(PositionEngine engine) {
+        if (this.engine != null) {
+            this.engine.shutdown();
+        }
+        this.engine = engine;
+        state.setDistanceFiltering(engine == null);
+        hasLastFix = false;
+    }
+
+    public PositionEngine getPositionEngine() {
+        return engine;
+    }
+
+    /**
+     * Gives every sample to {@code recorder} as well, raw and from every floor; null stops.
+     */
+    public void setSurveyRecorder(SurveyRecorder recorder) {
+        surveyRecorder = recorder;
+    }
+
+    /**
+     * A detected step. Returns true if the step was given to the position engine.
+     */
+    public boolean onStep(long timestampNanos, double stepLength, double headingDegrees) {
+        if (engine == null) {
+            return false;
+        }
+        engine.onStep(timestampNanos, stepLength, headingDegrees);
+        newestSampleNanos = Math.max(newestSampleNanos, timestampNanos);
+        return true;
+    }
+
+    public void setMotion(float azimuth, float speed) {
+        this.currentAzimuth = azimuth;
+        this.currentSpeed = speed;
+    }
+
+    /**
+     * Changes the RSSI smoothing window, decay and mode. Existing per-beacon history is discarded.
+     */
+    public void setRssiSmoothing(int windowSize, float decay, RssiSmoother.Mode mode) {
+        this.rssiWindowSize = windowSize;
+        this.rssiDecay = decay;
+        this.rssiMode = mode;
+        rssiSmoother = newSmoother(state.size());
+    }
+
+    /**
+     * Returns true once if any distance changed since the last call.
+     */
+    public boolean consumeDistancesChanged() {
+        boolean changed = distancesChanged;
+        distancesChanged = false;
+        return changed;
+    }
+
+    /**
+     * Beacons not heard for this long are dropped from the state and from position fixes.
+     */
+    public void setBeaconTtl(long ttlNanos) {
+        beaconTtlNanos = ttlNanos;
+        state.setTtlNanos(ttlNanos);
+    }
+
+    public boolean hasEnoughBeacons() {
+        return engine != null ? state.getHeardCount() > 0 : state.getHeardCount() >= 3;
+    }
+
+    /**
+     * Estimates the position with the position engine if one is set. Otherwise uses weighted
+     * multilateration over the beacons heard near the last fix, or over the best-ranked beacons
+     * (see {@link BeaconStateTable}) if there is no usable last fix.
+     * Returns null if there is no estimate yet. The point carries the timestamp of the newest
+     * sample used.
+     */
+    public Point estimatePosition() {
+        estimate.floor = floorDetector.getFloor();
+        if (engine != null) {
+            if (!engine.estimate(estimate)) {
+                return null;
+            }
+            Point point = estimate.toPoint();
+            point.timestampNanos = newestSampleNanos;
+            return point;
+        }
+        int count = hasLastFix ? collectNearbyBeacons() : 0;
+        if (count < 3) {
+            count = collectBestBeacons();
+        }
+        if (!TrilaterationCalculator.multilaterate(beaconX, beaconY, ranges, rangeVariances, count, estimate)) {
+            hasLastFix = false;
+            return null;
+        }
+        hasLastFix = true;
+
+        double combinedX = estimate.x;
+        double combinedY = estimate.y;
+        float azimuth = currentAzimuth;
+        float speed = currentSpeed;
+        combinedX += Math.cos(Math.toRadians(azimuth)) * speed;
+        combinedY += Math.sin(Math.toRadians(azimuth)) * speed;
+
+        Point point = new Point(combinedX, combinedY, estimate.floor);
+        point.timestampNanos = newestSampleNanos;
+        return point;
+    }
+
+    /**
+     * Timestamp of the newest ranged sample or step taken in.
+     */
+    public long getNewestSampleNanos() {
+        return newestSampleNanos;
+    }
+
+    /**
+     * The last multilateration result, including its covariance.
+     */
+    public PositionEstimate getLastEstimate() {
+        return estimate;
+    }
+
+    /**
+     * Per-beacon state indexed by beacon id. Replaced when the beacon database changes.
+     */
+    public BeaconStateTable getState() {
+        return state;
+    }
+
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    // Beacon ids are database indices, so the state is rebuilt if the database is replaced
+    private void ensureState() {
+        BeaconDatabase current = BeaconInfoLoader.getDatabase();
+        if (current != database) {
+            database = current;
+            state = new BeaconStateTable(current.size());
+            state.setTtlNanos(beaconTtlNanos);
+            state.setDistanceFiltering(engine == null);
+            floorDetector = new FloorDetector(current.floors(), floorHeight);
+            bestIds = new int[state.getBestCapacity()];
+            rssiSmoother = newSmoother(current.size());
+            hasLastFix = false;
+            if (engine != null) {
+                engine.reset();
+            }
+        }
+    }
+
+    // The beacons heard so far are on the old floor
+    private void onFloorChanged() {
+        state.clear();
+        rssiSmoother = newSmoother(state.size());
+        hasLastFix = false;
+        if (engine != null) {
+            engine.reset();
+        }
+        floorChanged = true;
+        distancesChanged = true;
+    }
+
+    private RssiSmoother newSmoother(int size) {
+        return new RssiSmoother(Math.max(size, 1), rssiWindowSize, rssiDecay, rssiMode, RssiSmoother.DEFAULT_TRIM_FRACTION);
+    }
+
+    // Uses the floor's spatial index so that the cost depends on the beacons around the user, not
+    // on the venue; none while the floor's beacons are still being paged in
+    private int collectNearbyBeacons() {
+        FloorBeacons beacons = BeaconInfoLoader.getFloorBeacons(floorDetector.getFloor());
+        if (beacons == null) {
+            return 0;
+        }
+        BeaconGridIndex index = beacons.getIndex();
+        if (candidateSlots.length < index.size()) {
+            candidateSlots = new int[index.size()];
+        }
+        int found = index.queryRadius(estimate.x, estimate.y, SOLVER_RADIUS, candidateSlots);
+        int count = 0;
+        for (int i = 0; i < found; i++) {
+            int slot = candidateSlots[i];
+            int id = beacons.id(slot);
+            if (id < state.size() && state.isHeard(id)) {
+                ensureSolverCapacity(count + 1);
+                addSolverInput(count++, index.xAt(slot), index.yAt(slot), state.getDistance(id), state.getRangeVariance(id));
+            }
+        }
+        return count;
+    }
+
+    // The best-ranked beacons, already kept up to date sample by sample
+    private int collectBestBeacons() {
+        int count = state.copyBest(bestIds);
+        ensureSolverCapacity(count);
+        for (int i = 0; i < count; i++) {
+            int id = bestIds[i];
+            addSolverInput(i, database.x(id), database.y(id), state.getDistance(id), state.getRangeVariance(id));
+        }
+        return count;
+    }
+
+    private void addSolverInput(int i, double x, double y, double distance, double variance) {
+        beaconX[i] = x;
+        beaconY[i] = y;
+        ranges[i] = distance;
+        rangeVariances[i] = variance;
+    }
+
+    private void ensureSolverCapacity(int count) {
+        if (beaconX.length < count) {
+            int capacity = Math.max(count, beaconX.length * 2);
+            beaconX = Arrays.copyOf(beaconX, capacity);
+            beaconY = Arrays.copyOf(beaconY, capacity);
+            ranges = Arrays.copyOf(ranges, capacity);
+            rangeVariances = Arrays.copyOf(rangeVariances, capacity);
+        }
+    }
+}
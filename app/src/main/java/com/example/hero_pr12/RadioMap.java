@@ -0,0 +1,301 @@
+package com.example.hero_pr12;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Surveyed RSSI fingerprints: reference points (x, y, floor) with the mean RSSI of each beacon
+ * heard there, by dense beacon id of the {@link BeaconDatabase} the map was loaded against.
+ *
+ * A reference point hears a dozen or so of the venue's beacons, so the fingerprints are stored
+ * as rows of a sparse matrix: the RSSI values of every point lie in one contiguous float array,
+ * point after point, next to a parallel array of beacon ids. A beacon missing from a fingerprint
+ * counts as {@link #NOT_HEARD_RSSI}.
+ *
+ * For coarse pruning every point is also listed under its {@link #STRONGEST_PER_POINT} strongest
+ * beacons (an inverted index by beacon id): the beacons loudest at a spot are the ones nearest to
+ * it, so a query only needs the points listed under its own strongest beacons.
+ *
+ * Immutable once built; shared freely between threads.
+ */
+public class RadioMap {
+    public static final float NOT_HEARD_RSSI = -100f;
+    static final int STRONGEST_PER_POINT = 3;
+
+    private final int beaconCount;
+    private final int pointCount;
+    private final float[] xs;
+    private final float[] ys;
+    private final int[] floors;
+    // Fingerprint of point p: entries rowStart[p] until rowStart[p + 1]
+    private final int[] rowStart;
+    private final int[] beaconIds;
+    private final float[] rssi;
+    // Points that have beacon b among their strongest: pointsByBeacon[beaconStart[b] until beaconStart[b + 1]]
+    private final int[] beaconStart;
+    private final int[] pointsByBeacon;
+
+    private RadioMap(Builder builder) {
+        beaconCount = builder.beaconCount;
+        pointCount = builder.pointCount;
+        xs = Arrays.copyOf(builder.xs, pointCount);
+        ys = Arrays.copyOf(builder.ys, pointCount);
+        floors = Arrays.copyOf(builder.floors, pointCount);
+        rowStart = Arrays.copyOf(builder.rowStart, pointCount + 1);
+        int entries = rowStart[pointCount];
+        beaconIds = Arrays.copyOf(builder.beaconIds, entries);
+        rssi = Arrays.copyOf(builder.rssi, entries);
+
+        // Counting sort of (strongest beacon, point) pairs by beacon
+        int[] strongest = new int[STRONGEST_PER_POINT];
+        float[] strongestRssi = new float[STRONGEST_PER_POINT];
+        beaconStart = new int[beaconCount + 1];
+        for (int p = 0; p < pointCount; p++) {
+            int found = strongestBeacons(p, strongest, strongestRssi);
+            for (int i = 0; i < found; i++) {
+                beaconStart[strongest[i] + 1]++;
+            }
+        }
+        for (int b = 0; b < beaconCount; b++) {
+            beaconStart[b + 1] += beaconStart[b];
+        }
+        pointsByBeacon = new int[beaconStart[beaconCount]];
+        int[] next = Arrays.copyOf(beaconStart, beaconCount);
+        for (int p = 0; p < pointCount; p++) {
+            int found = strongestBeacons(p, strongest, strongestRssi);
+            for (int i = 0; i < found; i++) {
+                pointsByBeacon[next[strongest[i]]++] = p;
+            }
+        }
+    }
+
+    /**
+     * Reads a radio map surveyed with other tools from CSV, one reference point per line:
+     * {@code x,y,floor,MAC,rssi,MAC,rssi,...}. Beacons missing from {@code database} are skipped.
+     */
+    public static RadioMap readCsv(Reader source, BeaconDatabase database) throws IOException {
+        Builder builder = new Builder(database.size());
+        BufferedReader reader = new BufferedReader(source);
+        int[] ids = new int[16];
+        float[] values = new float[16];
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split(",");
+            if (parts.length < 3 || parts.length % 2 == 0) {
+                throw new IOException("Line " + lineNumber + ": expected x,y,floor and MAC,rssi pairs");
+            }
+            int count = 0;
+            try {
+                for (int i = 3; i < parts.length; i += 2) {
+                    long mac = BeaconDatabase.packMac(parts[i].trim());
+                    if (mac == BeaconDatabase.NO_MAC) {
+                        throw new IOException("Line " + lineNumber + ": bad MAC address " + parts[i]);
+                    }
+                    int id = database.findByMac(mac);
+                    if (id < 0) {
+                        continue;
+                    }
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2);
+                        values = Arrays.copyOf(values, count * 2);
+                    }
+                    ids[count] = id;
+                    values[count] = Float.parseFloat(parts[i + 1].trim());
+                    count++;
+                }
+                builder.addPoint(Float.parseFloat(parts[0].trim()), Float.parseFloat(parts[1].trim()),
+                        Integer.parseInt(parts[2].trim()), ids, values, count);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Reads a radio map recorded in survey mode (see {@link SurveyRecorder}), using the mean RSSI
+     * of each beacon. Beacons missing from {@code database} are skipped.
+     */
+    public static RadioMap readSurvey(File file, BeaconDatabase database) throws IOException {
+        Builder builder = new Builder(database.size());
+        int[] ids = new int[database.size()];
+        float[] values = new float[database.size()];
+        RadioMapFile.read(file, point -> {
+            int count = 0;
+            for (int i = 0; i < point.size(); i++) {
+                int id = database.findByMac(point.mac(i));
+                if (id >= 0) {
+                    ids[count] = id;
+                    values[count++] = (float) point.mean(i);
+                }
+            }
+            builder.addPoint(point.x, point.y, point.floor, ids, values, count);
+        });
+        return builder.build();
+    }
+
+    public int getBeaconCount() {
+        return beaconCount;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public float x(int point) {
+        return xs[point];
+    }
+
+    public float y(int point) {
+        return ys[point];
+    }
+
+    public int floor(int point) {
+        return floors[point];
+    }
+
+    /**
+     * Squared signal distance between the fingerprint of {@code point} and a query. The query is
+     * given densely, {@code query[id]} being {@link #NOT_HEARD_RSSI} for beacons not heard, with
+     * {@code queryNorm} the sum of (rssi - NOT_HEARD_RSSI)^2 over the beacons heard. Beacons heard
+     * on only one side count against the not-heard level, so the cost is one pass over the
+     * fingerprint whatever the size of the venue.
+     */
+    public float distanceSquared(int point, float[] query, float queryNorm) {
+        float sum = queryNorm;
+        for (int i = rowStart[point], end = rowStart[point + 1]; i < end; i++) {
+            float q = query[beaconIds[i]];
+            float difference = q - rssi[i];
+            float unmatched = q - NOT_HEARD_RSSI;
+            sum += difference * difference - unmatched * unmatched;
+        }
+        return Math.max(sum, 0f);
+    }
+
+    /**
+     * The fingerprint of {@code point} is entries {@code rowStart(point)} until
+     * {@code rowStart(point + 1)} of {@link #beaconAt} and {@link #rssiAt}.
+     */
+    public int rowStart(int point) {
+        return rowStart[point];
+    }
+
+    public int beaconAt(int entry) {
+        return beaconIds[entry];
+    }
+
+    public float rssiAt(int entry) {
+        return rssi[entry];
+    }
+
+    // Inverted index lists, see the class comment
+    int indexStart(int beaconId) {
+        return beaconStart[beaconId];
+    }
+
+    int indexEnd(int beaconId) {
+        return beaconStart[beaconId + 1];
+    }
+
+    int indexedPoint(int i) {
+        return pointsByBeacon[i];
+    }
+
+    // The up to STRONGEST_PER_POINT strongest beacons of a fingerprint, strongest first
+    private int strongestBeacons(int point, int[] out, float[] outRssi) {
+        int found = 0;
+        for (int i = rowStart[point], end = rowStart[point + 1]; i < end; i++) {
+            float value = rssi[i];
+            if (found == out.length && value <= outRssi[found - 1]) {
+                continue;
+            }
+            int j = found < out.length ? found++ : found - 1;
+            while (j > 0 && outRssi[j - 1] < value) {
+                out[j] = out[j - 1];
+                outRssi[j] = outRssi[j - 1];
+                j--;
+            }
+            out[j] = beaconIds[i];
+            outRssi[j] = value;
+        }
+        return found;
+    }
+
+    /**
+     * Collects reference points for a {@link RadioMap}.
+     */
+    public static class Builder {
+        private final int beaconCount;
+        private int pointCount;
+        private float[] xs = new float[64];
+        private float[] ys = new float[64];
+        private int[] floors = new int[64];
+        private int[] rowStart = new int[65];
+        private int[] beaconIds = new int[512];
+        private float[] rssi = new float[512];
+
+        public Builder(int beaconCount) {
+            this.beaconCount = beaconCount;
+        }
+
+        /**
+         * Adds a reference point whose fingerprint is {@code count} pairs of beacon id and mean
+         * RSSI. A beacon listed twice keeps its first value.
+         */
+        public Builder addPoint(double x, double y, int floor, int[] ids, float[] values, int count) {
+            if (pointCount == xs.length) {
+                int capacity = pointCount * 2;
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                floors = Arrays.copyOf(floors, capacity);
+                rowStart = Arrays.copyOf(rowStart, capacity + 1);
+            }
+            int start = rowStart[pointCount];
+            if (start + count > beaconIds.length) {
+                int capacity = Math.max(start + count, beaconIds.length * 2);
+                beaconIds = Arrays.copyOf(beaconIds, capacity);
+                rssi = Arrays.copyOf(rssi, capacity);
+            }
+            int end = start;
+            for (int i = 0; i < count; i++) {
+                if (ids[i] < 0 || ids[i] >= beaconCount) {
+                    throw new IllegalArgumentException("Beacon id " + ids[i] + " out of range");
+                }
+                if (contains(start, end, ids[i])) {
+                    continue;
+                }
+                beaconIds[end] = ids[i];
+                rssi[end] = values[i];
+                end++;
+            }
+            xs[pointCount] = (float) x;
+            ys[pointCount] = (float) y;
+            floors[pointCount] = floor;
+            pointCount++;
+            rowStart[pointCount] = end;
+            return this;
+        }
+
+        public RadioMap build() {
+            return new RadioMap(this);
+        }
+
+        private boolean contains(int start, int end, int id) {
+            for (int i = start; i < end; i++) {
+                if (beaconIds[i] == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.hero_pr12;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Binary radio map built up by survey sessions: per reference point, the sample count, mean and
+ * variance of the RSSI of each beacon heard there. Beacons are stored by MAC address, so a file
+ * stays valid when the beacon database is rebuilt.
+ *
+ * Layout (little-endian):
+ * <pre>
+ *   header   magic "HRMP", version, point count, reserved  (4 x int)
+ *   points   x(float) y(float) floor(int) entry count(int),
+ *            then per entry mac(long) count(int) mean(float) variance(float)
+ * </pre>
+ * Files are read and merged one point at a time through a reused {@link Fingerprint}, so memory
+ * does not grow with the size of the file.
+ */
+public class RadioMapFile {
+    public static final int MAGIC = 0x504D5248; // "HRMP"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int POINT_HEADER_SIZE = 16;
+    public static final int ENTRY_SIZE = 20;
+
+    public interface Visitor {
+        /**
+         * One reference point. {@code point} is reused for the next one.
+         */
+        void onPoint(Fingerprint point);
+    }
+
+    private RadioMapFile() {
+    }
+
+    /**
+     * Calls {@code visitor} for every reference point of {@code file}, in file order.
+     */
+    public static void read(File file, Visitor visitor) throws IOException {
+        try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            int count = readHeader(channel, buffer);
+            Fingerprint point = new Fingerprint(16);
+            for (int i = 0; i < count; i++) {
+                buffer = readPoint(channel, buffer, point);
+                visitor.onPoint(point);
+            }
+        }
+    }
+
+    /**
+     * Merges {@code point} into {@code file}, creating it if needed: into the first reference
+     * point on the same floor within {@code mergeDistance} meters, or as a new point at the end.
+     * The merged file replaces the old one only once it is complete.
+     */
+    public static void merge(File file, Fingerprint point, double mergeDistance) throws IOException {
+        File merged = new File(file.getPath() + ".tmp");
+        int count = 0;
+        boolean moved = false;
+        try {
+            try (FileOutputStream out = new FileOutputStream(merged); FileChannel output = out.getChannel()) {
+                ByteBuffer buffer = ByteBuffer.allocate(Math.max(HEADER_SIZE, pointSize(point)))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC).putInt(VERSION).putInt(0).putInt(0).flip();
+                writeFully(output, buffer);
+                boolean placed = false;
+                if (file.exists()) {
+                    try (FileInputStream in = new FileInputStream(file); FileChannel input = in.getChannel()) {
+                        int existing = readHeader(input, buffer);
+                        Fingerprint stored = new Fingerprint(point.capacity());
+                        for (int i = 0; i < existing; i++) {
+                            buffer = readPoint(input, buffer, stored);
+                            if (!placed && stored.floor == point.floor
+                                    && Math.hypot(stored.x - point.x, stored.y - point.y) <= mergeDistance) {
+                                stored.merge(point);
+                                placed = true;
+                            }
+                            buffer = writePoint(output, buffer, stored);
+                            count++;
+                        }
+                    }
+                }
+                if (!placed) {
+                    buffer = writePoint(output, buffer, point);
+                    count++;
+                }
+            }
+            try (RandomAccessFile header = new RandomAccessFile(merged, "rw")) {
+                header.seek(8);
+                header.writeInt(Integer.reverseBytes(count));
+            }
+            Files.move(merged.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } finally {
+            if (!moved) {
+                // A failed merge leaves the old file as it was and no partial copy behind
+                merged.delete();
+            }
+        }
+    }
+
+    private static int readHeader(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear().limit(HEADER_SIZE);
+        readFully(channel, buffer);
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a radio map");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported radio map version " + buffer.getInt(4));
+        }
+        return buffer.getInt(8);
+    }
+
+    // Returns the buffer, replaced by a larger one if the point did not fit
+    private static ByteBuffer readPoint(FileChannel channel, ByteBuffer buffer, Fingerprint point) throws IOException {
+        buffer.clear().limit(POINT_HEADER_SIZE);
+        readFully(channel, buffer);
+        point.clear();
+        point.x = buffer.getFloat(0);
+        point.y = buffer.getFloat(4);
+        point.floor = buffer.getInt(8);
+        int entries = buffer.getInt(12);
+        if (entries < 0) {
+            throw new IOException("Corrupt radio map");
+        }
+        buffer = ensureCapacity(buffer, entries * ENTRY_SIZE);
+        buffer.clear().limit(entries * ENTRY_SIZE);
+        readFully(channel, buffer);
+        buffer.flip();
+        for (int i = 0; i < entries; i++) {
+            point.add(buffer.getLong(), buffer.getInt(), buffer.getFloat(), buffer.getFloat());
+        }
+        return buffer;
+    }
+
+    private static ByteBuffer writePoint(FileChannel channel, ByteBuffer buffer, Fingerprint point) throws IOException {
+        buffer = ensureCapacity(buffer, pointSize(point));
+        buffer.clear();
+        buffer.putFloat((float) point.x).putFloat((float) point.y).putInt(point.floor).putInt(point.size);
+        for (int i = 0; i < point.size; i++) {
+            buffer.putLong(point.macs[i]).putInt(point.counts[i])
+                    .putFloat((float) point.means[i]).putFloat((float) point.variances[i]);
+        }
+        buffer.flip();
+        writeFully(channel, buffer);
+        return buffer;
+    }
+
+    private static int pointSize(Fingerprint point) {
+        return POINT_HEADER_SIZE + point.size * ENTRY_SIZE;
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int size) {
+        if (buffer.capacity() >= size) {
+            return buffer;
+        }
+        return ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated radio map");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * RSSI statistics of the beacons heard at one reference point: sample count, mean and
+     * population variance per beacon MAC.
+     */
+    public static class Fingerprint {
+        public double x;
+        public double y;
+        public int floor;
+        int size;
+        long[] macs;
+        int[] counts;
+        double[] means;
+        double[] variances;
+
+        public Fingerprint(int capacity) {
+            macs = new long[Math.max(capacity, 1)];
+            counts = new int[macs.length];
+            means = new double[macs.length];
+            variances = new double[macs.length];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long mac(int i) {
+            return macs[i];
+        }
+
+        public int count(int i) {
+            return counts[i];
+        }
+
+        public double mean(int i) {
+            return means[i];
+        }
+
+        public double variance(int i) {
+            return variances[i];
+        }
+
+        public void clear() {
+            size = 0;
+        }
+
+        /**
+         * Adds the statistics of {@code count} samples of {@code mac}, combined with any already
+         * held for it.
+         */
+        public void add(long mac, int count, double mean, double variance) {
+            for (int i = 0; i < size; i++) {
+                if (macs[i] == mac) {
+                    combine(i, count, mean, variance);
+                    return;
+                }
+            }
+            if (size == macs.length) {
+                int capacity = size * 2;
+                macs = Arrays.copyOf(macs, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                means = Arrays.copyOf(means, capacity);
+                variances = Arrays.copyOf(variances, capacity);
+            }
+            macs[size] = mac;
+            counts[size] = count;
+            means[size] = mean;
+            variances[size] = variance;
+            size++;
+        }
+
+        /**
+         * Adds every beacon of {@code other}; the position stays this point's.
+         */
+        public void merge(Fingerprint other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.macs[i], other.counts[i], other.means[i], other.variances[i]);
+            }
+        }
+
+        int capacity() {
+            return macs.length;
+        }
+
+        // Chan et al.'s pairwise update of count, mean and sum of squared deviations
+        private void combine(int i, int count, double mean, double variance) {
+            long total = (long) counts[i] + count;
+            if (total == 0) {
+                return;
+            }
+            double delta = mean - means[i];
+            double squares = variances[i] * counts[i] + variance * count
+                    + delta * delta * counts[i] * count / total;
+            means[i] += delta * count / total;
+            variances[i] = squares / total;
+            counts[i] = (int) Math.min(total, Integer.MAX_VALUE);
+        }
+    }
+}
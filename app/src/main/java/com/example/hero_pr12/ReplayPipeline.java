@@ -0,0 +1,145 @@
+package com.example.hero_pr12;
+
+/**
+ * The positioning pipeline of {@link BeaconManager} on the calling thread, for replaying traces
+ * off the device: scan samples go through {@link ScanQueueListener}, {@link ScanSampleQueue} and
+ * {@link PositioningProcessor}, accelerometer and magnetometer samples give the azimuth, step
+ * detector samples move the position engine and barometer samples feed floor detection. Batches
+ * and steps go through the same {@link PositioningPipeline} as on the device. Gyroscope samples
+ * are recorded for analysis but do not take part in positioning. Nothing here needs the Android
+ * framework.
+ *
+ * Accelerometer and step samples also drive an {@link AdaptiveScanScheduler}, which gives the
+ * scan-on time the device would have had. With {@link #setScanDutyCycling(boolean)} scan samples
+ * that fall in the scheduler's off time are dropped, to see what duty cycling costs in accuracy.
+ */
+public class ReplayPipeline implements TraceReplayer.Listener {
+    public interface FixListener {
+        void onFix(long timestampNanos, Point position);
+    }
+
+    private final PositioningPipeline pipeline = new PositioningPipeline();
+    private final PositioningProcessor processor = pipeline.getProcessor();
+    private final ScanQueueListener scanListener = new ScanQueueListener(pipeline.getSampleQueue(), this::drainSamples);
+    private final AdaptiveScanScheduler scanScheduler = new AdaptiveScanScheduler();
+    private boolean scanDutyCycling;
+    private long skippedScanSamples;
+    private final float[] gravity = new float[3];
+    private final float[] geomagnetic = new float[3];
+    private boolean hasGravity;
+    private boolean hasGeomagnetic;
+    private float azimuth;
+    private long lastTimestampNanos;
+    private Point position = new Point(0, 0);
+    private FixListener fixListener;
+    private long fixCount;
+    private long stepCount;
+
+    public ReplayPipeline(PositionEngine engine) {
+        processor.setPositionEngine(engine);
+    }
+
+    public void setFixListener(FixListener fixListener) {
+        this.fixListener = fixListener;
+    }
+
+    @Override
+    public void onScanSample(String address, int rssi, byte[] scanRecord, long timestampNanos) {
+        lastTimestampNanos = timestampNanos;
+        if (!scanScheduler.isScanOn(timestampNanos) && scanDutyCycling) {
+            skippedScanSamples++;
+            return;
+        }
+        scanListener.onScanSample(address, rssi, scanRecord, timestampNanos);
+    }
+
+    @Override
+    public void onScanBatchComplete() {
+        scanListener.onScanBatchComplete();
+    }
+
+    @Override
+    public void onSensorSample(int sensorType, float[] values, long timestampNanos) {
+        lastTimestampNanos = timestampNanos;
+        if (sensorType == TraceRecorder.SENSOR_ACCELEROMETER) {
+            scanScheduler.onAccelerometer(values, timestampNanos);
+            System.arraycopy(values, 0, gravity, 0, 3);
+            hasGravity = true;
+        } else if (sensorType == TraceRecorder.SENSOR_MAGNETIC_FIELD) {
+            System.arraycopy(values, 0, geomagnetic, 0, 3);
+            hasGeomagnetic = true;
+        } else if (sensorType == TraceRecorder.SENSOR_STEP_DETECTOR) {
+            scanScheduler.onStep(timestampNanos);
+            onStep(timestampNanos);
+        } else if (sensorType == TraceRecorder.SENSOR_PRESSURE) {
+            processor.onPressure(values[0], timestampNanos);
+        }
+        if (hasGravity && hasGeomagnetic) {
+            float newAzimuth = OrientationCalculator.azimuth(gravity, geomagnetic);
+            if (!Float.isNaN(newAzimuth)) {
+                azimuth = newAzimuth;
+                processor.setMotion(azimuth, 0);
+            }
+        }
+    }
+
+    /**
+     * Drops scan samples received while the scan would have been off on the device.
+     */
+    public void setScanDutyCycling(boolean enabled) {
+        this.scanDutyCycling = enabled;
+    }
+
+    public AdaptiveScanScheduler getScanScheduler() {
+        return scanScheduler;
+    }
+
+    public long getSkippedScanSampleCount() {
+        return skippedScanSamples;
+    }
+
+    public PositioningProcessor getProcessor() {
+        return processor;
+    }
+
+    public Point getPosition() {
+        return position;
+    }
+
+    public long getFixCount() {
+        return fixCount;
+    }
+
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    public void shutdown() {
+        processor.setPositionEngine(null);
+    }
+
+    private void onStep(long timestampNanos) {
+        stepCount++;
+        publish(pipeline.step(timestampNanos, PositioningPipeline.STEP_LENGTH, azimuth, position));
+    }
+
+    // The device drains one batch per worker task; here the batches run back to back
+    private void drainSamples() {
+        while (pipeline.drainBatch() > 0) {
+            if (processor.consumeDistancesChanged()) {
+                publish(pipeline.estimate());
+            }
+        }
+    }
+
+    private void publish(Point estimatedPosition) {
+        if (estimatedPosition == null) {
+            return;
+        }
+        position = estimatedPosition;
+        fixCount++;
+        if (fixListener != null) {
+            fixListener.onFix(lastTimestampNanos, estimatedPosition);
+        }
+    }
+}
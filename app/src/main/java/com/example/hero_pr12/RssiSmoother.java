@@ -0,0 +1,223 @@
+package com.example.hero_pr12;
+
+import java.util.Arrays;
+
+/**
+ * Sliding-window RSSI smoother for one or more beacons ("channels").
+ *
+ * Samples are kept in primitive ring buffers, one slice of a shared array per channel. In
+ * {@link Mode#EXPONENTIAL} mode the newest sample has weight 1 and each older sample is
+ * multiplied by {@code decay}; the weighted sum is maintained incrementally so every sample
+ * costs O(1). {@link Mode#MEDIAN} and {@link Mode#TRIMMED_MEAN} additionally keep a sorted copy
+ * of the window, which rejects multipath spikes at O(window) per sample. Nothing is allocated after construction.
+ */
+public class RssiSmoother {
+    public enum Mode {
+        EXPONENTIAL,
+        MEDIAN,
+        TRIMMED_MEAN
+    }
+
+    public static final float DEFAULT_TRIM_FRACTION = 0.2f;
+
+    private final int windowSize;
+    private final int[] window;
+    private final int[] sorted;
+    private final double[] weightSums;
+    private final Mode mode;
+    private final float decay;
+    private final double oldestWeight;
+    private final float trimFraction;
+
+    // Per channel
+    private final int[] head; // Index of the next slot to write
+    private final int[] count;
+    private final double[] weightedSum;
+    private final long[] sum;
+    private final float[] value;
+
+    public RssiSmoother(int windowSize, float decay) {
+        this(windowSize, decay, Mode.EXPONENTIAL, DEFAULT_TRIM_FRACTION);
+    }
+
+    public RssiSmoother(int windowSize, float decay, Mode mode, float trimFraction) {
+        this(1, windowSize, decay, mode, trimFraction);
+    }
+
+    public RssiSmoother(int channels, int windowSize, float decay, Mode mode, float trimFraction) {
+        if (channels < 1) {
+            throw new IllegalArgumentException("channels must be positive: " + channels);
+        }
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be positive: " + windowSize);
+        }
+        if (decay <= 0 || decay > 1) {
+            throw new IllegalArgumentException("decay must be in (0, 1]: " + decay);
+        }
+        if (trimFraction < 0 || trimFraction >= 0.5f) {
+            throw new IllegalArgumentException("trimFraction must be in [0, 0.5): " + trimFraction);
+        }
+        this.windowSize = windowSize;
+        this.window = new int[channels * windowSize];
+        this.sorted = mode == Mode.EXPONENTIAL ? null : new int[channels * windowSize];
+        this.mode = mode;
+        this.decay = decay;
+        this.trimFraction = trimFraction;
+
+        // weightSums[n] = 1 + decay + ... + decay^(n-1)
+        weightSums = new double[windowSize + 1];
+        double weight = 1.0;
+        for (int i = 1; i <= windowSize; i++) {
+            weightSums[i] = weightSums[i - 1] + weight;
+            weight *= decay;
+        }
+        oldestWeight = weight; // decay^windowSize
+
+        head = new int[channels];
+        count = new int[channels];
+        weightedSum = new double[channels];
+        sum = new long[channels];
+        value = new float[channels];
+        Arrays.fill(value, Float.NaN);
+    }
+
+    /**
+     * Adds a sample and returns the smoothed value.
+     */
+    public float add(int rssi) {
+        return add(0, rssi);
+    }
+
+    /**
+     * Adds a sample to {@code channel} and returns its smoothed value.
+     */
+    public float add(int channel, int rssi) {
+        int base = channel * windowSize;
+        int h = head[channel];
+        int n = count[channel];
+        boolean full = n == windowSize;
+        int evicted = window[base + h];
+
+        double ws = weightedSum[channel] * decay + rssi;
+        long s = sum[channel];
+        if (full) {
+            ws -= evicted * oldestWeight;
+            s -= evicted;
+        } else {
+            n++;
+        }
+        weightedSum[channel] = ws;
+        sum[channel] = s + rssi;
+        count[channel] = n;
+        window[base + h] = rssi;
+        head[channel] = h + 1 == windowSize ? 0 : h + 1;
+
+        if (sorted != null) {
+            if (full) {
+                removeSorted(base, evicted, n);
+            }
+            insertSorted(base, rssi, n - 1);
+        }
+
+        float v = computeValue(channel, base, n);
+        value[channel] = v;
+        return v;
+    }
+
+    /**
+     * Returns the current smoothed value, or NaN if no sample has been added.
+     */
+    public float getValue() {
+        return value[0];
+    }
+
+    public float getValue(int channel) {
+        return value[channel];
+    }
+
+    public int getLatest() {
+        return getLatest(0);
+    }
+
+    public int getLatest(int channel) {
+        int h = head[channel];
+        return count[channel] == 0 ? 0 : window[channel * windowSize + (h == 0 ? windowSize - 1 : h - 1)];
+    }
+
+    public int getCount() {
+        return count[0];
+    }
+
+    public int getCount(int channel) {
+        return count[channel];
+    }
+
+    public int getChannelCount() {
+        return head.length;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void clear() {
+        for (int channel = 0; channel < head.length; channel++) {
+            clear(channel);
+        }
+    }
+
+    public void clear(int channel) {
+        head[channel] = 0;
+        count[channel] = 0;
+        weightedSum[channel] = 0;
+        sum[channel] = 0;
+        value[channel] = Float.NaN;
+    }
+
+    private float computeValue(int channel, int base, int n) {
+        switch (mode) {
+            case MEDIAN:
+                int mid = base + (n >> 1);
+                if ((n & 1) == 1) {
+                    return sorted[mid];
+                }
+                return (sorted[mid - 1] + sorted[mid]) * 0.5f;
+            case TRIMMED_MEAN:
+                int trim = (int) (n * trimFraction);
+                long trimmed = sum[channel];
+                for (int i = 0; i < trim; i++) {
+                    trimmed -= sorted[base + i] + sorted[base + n - 1 - i];
+                }
+                return (float) trimmed / (n - 2 * trim);
+            default:
+                return (float) (weightedSum[channel] / weightSums[n]);
+        }
+    }
+
+    // Inserts into sorted[base..base + size) keeping it ordered
+    private void insertSorted(int base, int rssi, int size) {
+        int index = lowerBound(base, rssi, size);
+        System.arraycopy(sorted, index, sorted, index + 1, base + size - index);
+        sorted[index] = rssi;
+    }
+
+    // Removes one occurrence of rssi from sorted[base..base + size)
+    private void removeSorted(int base, int rssi, int size) {
+        int index = lowerBound(base, rssi, size);
+        System.arraycopy(sorted, index + 1, sorted, index, base + size - index - 1);
+    }
+
+    private int lowerBound(int base, int rssi, int size) {
+        int low = base;
+        int high = base + size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < rssi) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.hero_pr12;
+
+/**
+ * Feeds scanner output into a {@link ScanSampleQueue} and wakes the consumer once per batch.
+ * Samples are resolved to beacon ids here, by iBeacon identity when the advertisement carries an
+ * iBeacon frame and by MAC address otherwise; samples from unknown devices are dropped.
+ */
+public class ScanQueueListener implements BeaconScanner.Listener {
+    private final ScanSampleQueue queue;
+    private final Runnable onBatch;
+    private final IBeaconParser parser = new IBeaconParser();
+    private int pending;
+
+    public ScanQueueListener(ScanSampleQueue queue, Runnable onBatch) {
+        this.queue = queue;
+        this.onBatch = onBatch;
+    }
+
+    @Override
+    public void onScanSample(String address, int rssi, byte[] scanRecord, long timestampNanos) {
+        // One snapshot, so the id always indexes the database it was resolved in
+        BeaconInfoLoader.Beacons beacons = BeaconInfoLoader.getBeacons();
+        BeaconDatabase database = beacons.database;
+        boolean iBeacon = parser.parse(scanRecord);
+        int beaconId = iBeacon
+                ? database.findByIBeacon(parser.getUuidMostSignificantBits(), parser.getUuidLeastSignificantBits(),
+                        parser.getMajor(), parser.getMinor())
+                : beacons.findByMac(address);
+        if (beaconId < 0) {
+            return;
+        }
+        // 광고된 1 m 기준 RSSI를 우선 사용하고, 없거나 잘못된 값이면 DB의 값을 쓴다
+        int txPower = iBeacon && parser.getMeasuredPower() < 0 ? parser.getMeasuredPower() : database.txPower(beaconId);
+        if (queue.offer(beaconId, rssi, txPower, timestampNanos)) {
+            pending++;
+        }
+    }
+
+    @Override
+    public void onScanBatchComplete() {
+        if (pending > 0) {
+            pending = 0;
+            onBatch.run();
+        }
+    }
+}
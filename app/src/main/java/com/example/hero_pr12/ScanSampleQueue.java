@@ -0,0 +1,100 @@
+package com.example.hero_pr12;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer/single-consumer ring of scan samples.
+ *
+ * The scan callback is the only producer and the positioning worker the only consumer, so
+ * the ring needs no locks: each side owns one index and publishes it with an ordered write.
+ * Samples are stored field by field in primitive arrays, already resolved to beacon ids. When
+ * the ring is full the new sample is dropped and counted rather than blocking the Bluetooth
+ * callback.
+ */
+public class ScanSampleQueue {
+    public interface Consumer {
+        /**
+         * @param txPower the beacon's calibrated RSSI at one meter, in dBm
+         */
+        void accept(int beaconId, int rssi, int txPower, long timestampNanos);
+    }
+
+    private final int[] beaconIds;
+    private final int[] rssis;
+    private final int[] txPowers;
+    private final long[] timestamps;
+    private final int mask;
+
+    private final AtomicLong head = new AtomicLong(); // Next slot to read, written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // Next slot to write, written by the producer
+    private final AtomicLong dropped = new AtomicLong();
+    private long cachedHead; // Producer's last view of head
+
+    public ScanSampleQueue(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        beaconIds = new int[capacity];
+        rssis = new int[capacity];
+        txPowers = new int[capacity];
+        timestamps = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Producer side. Returns false if the ring was full and the sample was dropped.
+     */
+    public boolean offer(int beaconId, int rssi, int txPower, long timestampNanos) {
+        long t = tail.get();
+        if (t - cachedHead > mask) {
+            cachedHead = head.get();
+            if (t - cachedHead > mask) {
+                dropped.lazySet(dropped.get() + 1);
+                return false;
+            }
+        }
+        int slot = (int) t & mask;
+        beaconIds[slot] = beaconId;
+        rssis[slot] = rssi;
+        txPowers[slot] = txPower;
+        timestamps[slot] = timestampNanos;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side. Hands up to {@code maxSamples} samples to the consumer in arrival order and
+     * returns how many were drained.
+     */
+    public int drain(Consumer consumer, int maxSamples) {
+        long h = head.get();
+        int available = (int) Math.min(tail.get() - h, maxSamples);
+        for (int i = 0; i < available; i++) {
+            int slot = (int) (h + i) & mask;
+            consumer.accept(beaconIds[slot], rssis[slot], txPowers[slot], timestamps[slot]);
+        }
+        head.lazySet(h + available);
+        return available;
+    }
+
+    public int size() {
+        long h = head.get();
+        return (int) (tail.get() - h);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getOfferedCount() {
+        return tail.get() + dropped.get();
+    }
+}
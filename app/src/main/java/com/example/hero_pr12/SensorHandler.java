@@ -5,72 +5,138 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
-import android.util.Log;
+import android.os.SystemClock;
 
+/**
+ * Accelerometer, magnetometer, step detector and barometer. The continuous sensors are registered
+ * with a maximum report latency, so devices with a sensor FIFO hand over a batch at a time instead
+ * of waking the main thread for every sample; the step detector is not batched because a step
+ * must count at once. Event values are copied into preallocated arrays, since the framework
+ * reuses {@link SensorEvent} objects, and nothing is allocated per event.
+ */
 public class SensorHandler implements SensorEventListener {
+    // 방위각 갱신이 늦어 보이지 않을 정도
+    static final int MOTION_REPORT_LATENCY_US = 100000;
+    static final int BAROMETER_REPORT_LATENCY_US = 1000000;
     private SensorManager sensorManager;
     private Sensor accelerometer;
     private Sensor magnetometer;
     private Sensor stepDetector;
+    private Sensor barometer; // Null on devices without one
     private BeaconManager beaconManager;
+    private final SensorRateCounter rateCounter;
+    private boolean started;
+    private int activeSensorDelay = SensorManager.SENSOR_DELAY_UI;
+    private int motionSensorDelay = activeSensorDelay;
 
-    private float[] gravity;
-    private float[] geomagnetic;
+    private final float[] gravity = new float[3];
+    private final float[] geomagnetic = new float[3];
+    private boolean hasGravity;
+    private boolean hasGeomagnetic;
     private float azimuth = 0.0f;
     private int stepCount = 0;
-    private static final float STEP_LENGTH = 0.78f; // 평균 걸음 길이(단위: 미터)
 
     public SensorHandler(Context context, BeaconManager beaconManager) {
         this.beaconManager = beaconManager;
+        this.rateCounter = beaconManager.getSensorRateCounter();
         sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
         accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
         magnetometer = sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
         stepDetector = sensorManager.getDefaultSensor(Sensor.TYPE_STEP_DETECTOR);
+        barometer = sensorManager.getDefaultSensor(Sensor.TYPE_PRESSURE);
     }
 
     public void start() {
-        sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_UI);
-        sensorManager.registerListener(this, magnetometer, SensorManager.SENSOR_DELAY_UI);
+        started = true;
+        registerMotionSensors();
         sensorManager.registerListener(this, stepDetector, SensorManager.SENSOR_DELAY_UI);
+        if (barometer != null) {
+            sensorManager.registerListener(this, barometer, SensorManager.SENSOR_DELAY_NORMAL, BAROMETER_REPORT_LATENCY_US);
+        }
     }
 
     public void stop() {
+        started = false;
         sensorManager.unregisterListener(this);
     }
 
+    /**
+     * Sampling delay of the accelerometer and magnetometer while the user walks, one of the
+     * {@code SensorManager.SENSOR_DELAY_*} constants or a period in microseconds.
+     */
+    public void setActiveSensorDelay(int delay) {
+        boolean active = motionSensorDelay == activeSensorDelay;
+        activeSensorDelay = delay;
+        if (active) {
+            changeMotionSensorDelay(delay);
+        }
+    }
+
+    /**
+     * Slows the accelerometer and magnetometer down while the user stands still. The step
+     * detector keeps running, so the first step brings the full rate back.
+     */
+    public void setMotionMode(AdaptiveScanScheduler.Mode mode) {
+        changeMotionSensorDelay(mode == AdaptiveScanScheduler.Mode.IDLE ? SensorManager.SENSOR_DELAY_NORMAL : activeSensorDelay);
+    }
+
+    private void changeMotionSensorDelay(int delay) {
+        if (delay == motionSensorDelay) {
+            return;
+        }
+        motionSensorDelay = delay;
+        if (started) {
+            // 이미 등록된 센서는 다시 등록해야 속도가 바뀐다
+            sensorManager.unregisterListener(this, accelerometer);
+            sensorManager.unregisterListener(this, magnetometer);
+            registerMotionSensors();
+        }
+    }
+
+    private void registerMotionSensors() {
+        sensorManager.registerListener(this, accelerometer, motionSensorDelay, MOTION_REPORT_LATENCY_US);
+        sensorManager.registerListener(this, magnetometer, motionSensorDelay, MOTION_REPORT_LATENCY_US);
+    }
+
     @Override
     public void onSensorChanged(SensorEvent event) {
-        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-            gravity = event.values;
-        } else if (event.sensor.getType() == Sensor.TYPE_MAGNETIC_FIELD) {
-            geomagnetic = event.values;
-        } else if (event.sensor.getType() == Sensor.TYPE_STEP_DETECTOR) {
+        int type = event.sensor.getType();
+        long deliveryNanos = SystemClock.elapsedRealtimeNanos();
+        rateCounter.onEvent(type, event.timestamp, deliveryNanos);
+        PipelineLatency.get().record(PipelineLatency.SENSOR_DELIVERY, deliveryNanos - event.timestamp);
+        TraceRecorder recorder = beaconManager.getTraceRecorder();
+        if (recorder != null) {
+            recorder.recordSensor(type, event.values, event.timestamp);
+        }
+        if (type == Sensor.TYPE_ACCELEROMETER) {
+            beaconManager.onAccelerometer(event.values, event.timestamp);
+            System.arraycopy(event.values, 0, gravity, 0, 3);
+            hasGravity = true;
+        } else if (type == Sensor.TYPE_MAGNETIC_FIELD) {
+            System.arraycopy(event.values, 0, geomagnetic, 0, 3);
+            hasGeomagnetic = true;
+        } else if (type == Sensor.TYPE_STEP_DETECTOR) {
             stepCount++;
-            updatePositionWithStep();
+            beaconManager.onStep(event.timestamp, PositioningPipeline.STEP_LENGTH);
+        } else if (type == Sensor.TYPE_PRESSURE) {
+            beaconManager.onPressure(event.values[0], event.timestamp);
+            return;
         }
 
-        if (gravity != null && geomagnetic != null) {
-            float[] R = new float[9];
-            float[] I = new float[9];
-            boolean success = SensorManager.getRotationMatrix(R, I, gravity, geomagnetic);
-            if (success) {
-                float[] orientation = new float[3];
-                SensorManager.getOrientation(R, orientation);
-                azimuth = (float) Math.toDegrees(orientation[0]); // orientation contains: azimuth, pitch and roll
-                azimuth = (azimuth + 360) % 360; // Convert azimuth to 0-360 degrees
+        if (hasGravity && hasGeomagnetic) {
+            float newAzimuth = OrientationCalculator.azimuth(gravity, geomagnetic);
+            if (!Float.isNaN(newAzimuth)) {
+                azimuth = newAzimuth;
                 beaconManager.updateOrientationData(azimuth, beaconManager.getCurrentAngle(), beaconManager.getCurrentSpeed());
-                Log.d("SensorHandler", "Azimuth: " + azimuth);
+                if (EventTrace.LEVEL >= EventTrace.VERBOSE) {
+                    EventTrace.get().record(EventTrace.AZIMUTH, event.timestamp, 0, azimuth, 0);
+                }
             }
         }
     }
 
-    private void updatePositionWithStep() {
-        // 사용자의 방향(azimuth)에 따라 위치를 업데이트합니다.
-        float distance = stepCount * STEP_LENGTH;
-        double deltaX = distance * Math.cos(Math.toRadians(azimuth));
-        double deltaY = distance * Math.sin(Math.toRadians(azimuth));
-        Point newPosition = new Point(beaconManager.getCurrentUserPosition().x + deltaX, beaconManager.getCurrentUserPosition().y + deltaY);
-        beaconManager.updateUserPosition(newPosition);
+    public int getStepCount() {
+        return stepCount;
     }
 
     @Override
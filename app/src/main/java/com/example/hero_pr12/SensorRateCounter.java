@@ -0,0 +1,81 @@
+package com.example.hero_pr12;
+
+/**
+ * Per-sensor event counters: total events, events per second over the last full second of sensor
+ * time, and the largest number of events delivered in one burst from the hardware FIFO. Events
+ * are counted by {@code Sensor.TYPE_*} in preallocated arrays, so counting allocates nothing.
+ *
+ * {@link #onEvent} is called on the thread that receives the sensor events; the getters may be
+ * called from any thread and see values at most one event old.
+ */
+public class SensorRateCounter {
+    static final int MAX_SENSOR_TYPE = 64;
+    private static final long WINDOW_NANOS = 1000000000L;
+    // Events delivered this much later than they were sampled came out of the FIFO together
+    private static final long BURST_GAP_NANOS = 5000000L;
+
+    private final long[] counts = new long[MAX_SENSOR_TYPE];
+    private final long[] windowStartNanos = new long[MAX_SENSOR_TYPE];
+    private final int[] windowCounts = new int[MAX_SENSOR_TYPE];
+    private final int[] rates = new int[MAX_SENSOR_TYPE];
+    private final long[] lastDeliveryNanos = new long[MAX_SENSOR_TYPE];
+    private final int[] burstCounts = new int[MAX_SENSOR_TYPE];
+    private final int[] maxBursts = new int[MAX_SENSOR_TYPE];
+    private volatile long totalCount;
+
+    /**
+     * One event of {@code sensorType}, sampled at {@code timestampNanos} and delivered at
+     * {@code deliveryNanos}, both elapsed-realtime nanoseconds.
+     */
+    public void onEvent(int sensorType, long timestampNanos, long deliveryNanos) {
+        if (sensorType < 0 || sensorType >= MAX_SENSOR_TYPE) {
+            return;
+        }
+        counts[sensorType]++;
+        if (windowCounts[sensorType] == 0 && windowStartNanos[sensorType] == 0) {
+            windowStartNanos[sensorType] = timestampNanos;
+        }
+        long elapsed = timestampNanos - windowStartNanos[sensorType];
+        if (elapsed >= WINDOW_NANOS) {
+            // A gap of several windows means nothing arrived in between
+            rates[sensorType] = elapsed < 2 * WINDOW_NANOS ? windowCounts[sensorType] : 0;
+            windowStartNanos[sensorType] = timestampNanos;
+            windowCounts[sensorType] = 0;
+        }
+        windowCounts[sensorType]++;
+        if (deliveryNanos - lastDeliveryNanos[sensorType] > BURST_GAP_NANOS) {
+            burstCounts[sensorType] = 0;
+        }
+        lastDeliveryNanos[sensorType] = deliveryNanos;
+        burstCounts[sensorType]++;
+        maxBursts[sensorType] = Math.max(maxBursts[sensorType], burstCounts[sensorType]);
+        totalCount++;
+    }
+
+    public long getCount(int sensorType) {
+        return isCounted(sensorType) ? counts[sensorType] : 0;
+    }
+
+    /**
+     * Events per second of sensor time over the last full second.
+     */
+    public int getRate(int sensorType) {
+        return isCounted(sensorType) ? rates[sensorType] : 0;
+    }
+
+    /**
+     * The most events of {@code sensorType} delivered back to back; above 1 once the hardware
+     * batches.
+     */
+    public int getMaxBurst(int sensorType) {
+        return isCounted(sensorType) ? maxBursts[sensorType] : 0;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    private static boolean isCounted(int sensorType) {
+        return sensorType >= 0 && sensorType < MAX_SENSOR_TYPE;
+    }
+}
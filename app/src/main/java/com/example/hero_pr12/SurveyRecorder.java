@@ -0,0 +1,128 @@
+package com.example.hero_pr12;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Survey mode: aggregates the RSSI stream for the reference point the operator stands on and
+ * merges it into a {@link RadioMapFile} when the operator moves on. Samples are not kept; each
+ * beacon gets a running count, mean and sum of squared deviations (Welford's algorithm) in arrays
+ * indexed by beacon id, so a session of any length runs in the same memory. Surveying the same
+ * spot again, in this session or a later one, adds to the point already in the file.
+ *
+ * Tied to the beacon database it was created with. Confined to the positioning worker thread.
+ */
+public class SurveyRecorder {
+    // Beacons heard fewer times at a point are left out of its fingerprint
+    static final int MIN_SAMPLES = 5;
+    // 같은 지점을 다시 측정한 것으로 보는 거리(미터)
+    public static final double MERGE_DISTANCE = 0.5;
+
+    private final BeaconDatabase database;
+    private final File file;
+    private final int[] counts;
+    private final double[] means;
+    private final double[] squares;
+    private final int[] heard;
+    private int heardCount;
+    private final RadioMapFile.Fingerprint fingerprint;
+    private boolean surveying;
+    private double x;
+    private double y;
+    private int floor;
+    private long pointSamples;
+    private int mergedPoints;
+
+    public SurveyRecorder(BeaconDatabase database, File file) {
+        this.database = database;
+        this.file = file;
+        counts = new int[database.size()];
+        means = new double[database.size()];
+        squares = new double[database.size()];
+        heard = new int[database.size()];
+        fingerprint = new RadioMapFile.Fingerprint(database.size());
+    }
+
+    /**
+     * Merges the point surveyed so far, if any, and starts aggregating for the point at (x, y).
+     */
+    public void begin(double x, double y, int floor) throws IOException {
+        commit();
+        this.x = x;
+        this.y = y;
+        this.floor = floor;
+        surveying = true;
+    }
+
+    public void onSample(int beaconId, int rssi) {
+        if (!surveying || beaconId < 0 || beaconId >= counts.length) {
+            return;
+        }
+        int n = ++counts[beaconId];
+        if (n == 1) {
+            heard[heardCount++] = beaconId;
+        }
+        double delta = rssi - means[beaconId];
+        means[beaconId] += delta / n;
+        squares[beaconId] += delta * (rssi - means[beaconId]);
+        pointSamples++;
+    }
+
+    /**
+     * Merges the point being surveyed into the file and stops aggregating until the next
+     * {@link #begin}. Returns false if there was nothing to merge.
+     */
+    public boolean commit() throws IOException {
+        if (!surveying) {
+            return false;
+        }
+        surveying = false;
+        fingerprint.clear();
+        fingerprint.x = x;
+        fingerprint.y = y;
+        fingerprint.floor = floor;
+        for (int i = 0; i < heardCount; i++) {
+            int id = heard[i];
+            if (counts[id] >= MIN_SAMPLES) {
+                fingerprint.add(database.mac(id), counts[id], means[id], squares[id] / counts[id]);
+            }
+            counts[id] = 0;
+            means[id] = 0;
+            squares[id] = 0;
+        }
+        heardCount = 0;
+        pointSamples = 0;
+        if (fingerprint.size() == 0) {
+            return false;
+        }
+        RadioMapFile.merge(file, fingerprint, MERGE_DISTANCE);
+        mergedPoints++;
+        return true;
+    }
+
+    public boolean isSurveying() {
+        return surveying;
+    }
+
+    public BeaconDatabase getDatabase() {
+        return database;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Samples taken since the current point was started.
+     */
+    public long getPointSampleCount() {
+        return pointSamples;
+    }
+
+    /**
+     * Points merged into the file by this recorder.
+     */
+    public int getMergedPointCount() {
+        return mergedPoints;
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.hero_pr12;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Appends scan and sensor samples to a binary trace for offline replay with {@link TraceReplayer}.
+ *
+ * Layout (little-endian):
+ * <pre>
+ *   header   magic "HTRC", version                                        (2 x int)
+ *   records  length(int) type(byte) timestamp(long) payload; length counts everything after
+ *            the length field, so readers can skip types they do not know
+ *     scan    mac(long, -1 if not a MAC) rssi(int) record length(short, -1 for none) record bytes
+ *     batch   nothing; the scanner finished a batch
+ *     sensor  sensor type(int) value count(byte) values(float...)
+ * </pre>
+ * Callers on any thread copy their sample into one of two buffers under a lock; a full buffer is
+ * written to the file channel by a background thread while the other one fills.
+ */
+public class TraceRecorder implements Closeable {
+    public static final int MAGIC = 0x43525448; // "HTRC"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+    public static final byte TYPE_SCAN = 1;
+    public static final byte TYPE_SCAN_BATCH = 2;
+    public static final byte TYPE_SENSOR = 3;
+    // Sensor types of sensor records. They are Android's Sensor.TYPE_* values, so the sensor
+    // handlers record event.sensor.getType() as is and readers off the device need no framework.
+    public static final int SENSOR_ACCELEROMETER = 1;
+    public static final int SENSOR_MAGNETIC_FIELD = 2;
+    public static final int SENSOR_GYROSCOPE = 4;
+    public static final int SENSOR_PRESSURE = 6;
+    public static final int SENSOR_STEP_DETECTOR = 18;
+    // length, type and timestamp
+    static final int RECORD_OVERHEAD = 4 + 1 + 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileOutputStream out;
+    private final FileChannel channel;
+    private final ExecutorService writer;
+    private ByteBuffer active = newBuffer();
+    private ByteBuffer spare = newBuffer();
+    private Future<?> pendingWrite;
+    private long lastTimestampNanos;
+    private long recordCount;
+    private long droppedCount;
+    private volatile IOException failure;
+    private boolean closed;
+
+    public TraceRecorder(File file) throws IOException {
+        out = new FileOutputStream(file);
+        channel = out.getChannel();
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TraceWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        active.putInt(MAGIC).putInt(VERSION);
+    }
+
+    public synchronized void recordScan(String address, int rssi, byte[] scanRecord, long timestampNanos) {
+        int recordLength = scanRecord != null ? Math.min(scanRecord.length, Short.MAX_VALUE) : 0;
+        if (!begin(TYPE_SCAN, timestampNanos, 8 + 4 + 2 + recordLength)) {
+            return;
+        }
+        active.putLong(BeaconDatabase.packMac(address));
+        active.putInt(rssi);
+        active.putShort(scanRecord != null ? (short) recordLength : -1);
+        if (scanRecord != null) {
+            active.put(scanRecord, 0, recordLength);
+        }
+    }
+
+    /**
+     * Marks the end of a scan batch, stamped with the time of the last sample.
+     */
+    public synchronized void recordScanBatch() {
+        begin(TYPE_SCAN_BATCH, lastTimestampNanos, 0);
+    }
+
+    public synchronized void recordSensor(int sensorType, float[] values, long timestampNanos) {
+        int count = Math.min(values.length, 127);
+        if (!begin(TYPE_SENSOR, timestampNanos, 4 + 1 + count * 4)) {
+            return;
+        }
+        active.putInt(sensorType);
+        active.put((byte) count);
+        for (int i = 0; i < count; i++) {
+            active.putFloat(values[i]);
+        }
+    }
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Samples lost because the recorder was closed or the file could not be written.
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Writes out everything recorded so far and closes the file. Throws the first write error,
+     * if there was one.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            awaitPendingWrite();
+            if (failure == null) {
+                try {
+                    active.flip();
+                    write(active);
+                    channel.force(false);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+        writer.shutdown();
+        out.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Writes the record header and returns false if the sample has to be dropped
+    private boolean begin(byte type, long timestampNanos, int payloadSize) {
+        if (closed || failure != null) {
+            droppedCount++;
+            return false;
+        }
+        int size = RECORD_OVERHEAD + payloadSize;
+        if (active.remaining() < size) {
+            swapBuffers();
+            if (failure != null || active.remaining() < size) {
+                droppedCount++;
+                return false;
+            }
+        }
+        active.putInt(size - 4);
+        active.put(type);
+        active.putLong(timestampNanos);
+        lastTimestampNanos = timestampNanos;
+        recordCount++;
+        return true;
+    }
+
+    // Hands the full buffer to the writer thread. Only waits if the previous write is still running.
+    private void swapBuffers() {
+        awaitPendingWrite();
+        final ByteBuffer full = active;
+        active = spare;
+        spare = null;
+        active.clear();
+        full.flip();
+        pendingWrite = writer.submit(() -> {
+            try {
+                write(full);
+            } catch (IOException e) {
+                failure = e;
+            }
+            full.clear();
+            spare = full; // Published to the next swap through Future.get()
+        });
+    }
+
+    private void awaitPendingWrite() {
+        if (pendingWrite == null) {
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                pendingWrite.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                failure = new IOException(e.getCause());
+                break;
+            }
+        }
+        pendingWrite = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer newBuffer() {
+        return ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
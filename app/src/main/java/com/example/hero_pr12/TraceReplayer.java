@@ -0,0 +1,131 @@
+package com.example.hero_pr12;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a trace written by {@link TraceRecorder} and hands the samples to a {@link Listener} in
+ * recorded order, either as fast as possible or paced by the recorded timestamps. Plain JVM code,
+ * so traces from the field can be replayed in unit tests.
+ *
+ * Scan records and sensor values are passed in arrays reused between calls; listeners must copy
+ * anything they keep.
+ */
+public class TraceReplayer {
+    public interface Listener extends BeaconScanner.Listener {
+        void onSensorSample(int sensorType, float[] values, long timestampNanos);
+    }
+
+    private final ByteBuffer buffer;
+    // Reused arrays, indexed by length
+    private final byte[][] scanRecords = new byte[256][];
+    private final float[][] sensorValues = new float[128][];
+
+    public TraceReplayer(ByteBuffer trace) {
+        buffer = trace.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < TraceRecorder.HEADER_SIZE || buffer.getInt(0) != TraceRecorder.MAGIC) {
+            throw new IllegalArgumentException("Not a trace");
+        }
+        int version = buffer.getInt(4);
+        if (version != TraceRecorder.VERSION) {
+            throw new IllegalArgumentException("Unsupported trace version " + version);
+        }
+    }
+
+    public static TraceReplayer open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            return new TraceReplayer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Replays every record and returns how many were delivered. With {@code speed} at or below
+     * zero the records are delivered back to back; otherwise 1 is real time, 2 twice as fast and
+     * so on. A truncated last record, as left by a crash while recording, ends the replay.
+     */
+    public long replay(Listener listener, double speed) throws InterruptedException {
+        long delivered = 0;
+        long firstTimestamp = 0;
+        long startNanos = System.nanoTime();
+        int position = TraceRecorder.HEADER_SIZE;
+        int limit = buffer.limit();
+        while (position + 4 <= limit) {
+            int length = buffer.getInt(position);
+            int body = position + 4;
+            if (length < TraceRecorder.RECORD_OVERHEAD - 4 || body + length > limit) {
+                break;
+            }
+            position = body + length;
+            byte type = buffer.get(body);
+            long timestampNanos = buffer.getLong(body + 1);
+            int payload = body + 9;
+            if (speed > 0) {
+                if (delivered == 0) {
+                    firstTimestamp = timestampNanos;
+                }
+                waitUntil(startNanos + (long) ((timestampNanos - firstTimestamp) / speed));
+            }
+            switch (type) {
+                case TraceRecorder.TYPE_SCAN:
+                    deliverScan(listener, payload, timestampNanos);
+                    break;
+                case TraceRecorder.TYPE_SCAN_BATCH:
+                    listener.onScanBatchComplete();
+                    break;
+                case TraceRecorder.TYPE_SENSOR:
+                    deliverSensor(listener, payload, timestampNanos);
+                    break;
+                default:
+                    continue; // Written by a newer recorder
+            }
+            delivered++;
+        }
+        return delivered;
+    }
+
+    private void deliverScan(Listener listener, int payload, long timestampNanos) {
+        long mac = buffer.getLong(payload);
+        int rssi = buffer.getInt(payload + 8);
+        int recordLength = buffer.getShort(payload + 12);
+        byte[] record = null;
+        if (recordLength >= 0) {
+            record = recordLength < scanRecords.length ? scanRecords[recordLength] : null;
+            if (record == null) {
+                record = new byte[recordLength];
+                if (recordLength < scanRecords.length) {
+                    scanRecords[recordLength] = record;
+                }
+            }
+            for (int i = 0; i < recordLength; i++) {
+                record[i] = buffer.get(payload + 14 + i);
+            }
+        }
+        String address = mac == BeaconDatabase.NO_MAC ? null : BeaconDatabase.formatMac(mac);
+        listener.onScanSample(address, rssi, record, timestampNanos);
+    }
+
+    private void deliverSensor(Listener listener, int payload, long timestampNanos) {
+        int sensorType = buffer.getInt(payload);
+        int count = buffer.get(payload + 4);
+        float[] values = sensorValues[count];
+        if (values == null) {
+            values = new float[count];
+            sensorValues[count] = values;
+        }
+        for (int i = 0; i < count; i++) {
+            values[i] = buffer.getFloat(payload + 5 + i * 4);
+        }
+        listener.onSensorSample(sensorType, values, timestampNanos);
+    }
+
+    private static void waitUntil(long deadlineNanos) throws InterruptedException {
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining > 0) {
+            Thread.sleep(remaining / 1000000, (int) (remaining % 1000000));
+        }
+    }
+}
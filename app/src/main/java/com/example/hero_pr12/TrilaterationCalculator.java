@@ -7,13 +7,16 @@ import java.util.Map;
 public class TrilaterationCalculator {
 
     private static final double BEACON_RANGE = 50.0; // 예제 비콘 범위 값 (단위: 미터)
+    private static final int MAX_ITERATIONS = 5;
+    private static final double CONVERGENCE_THRESHOLD = 1e-4; // 미터
+    private static final double SINGULAR_THRESHOLD = 1e-12;
 
     // 삼변 측량 메소드
     public static Point trilateration(Map<String, Double> distances) {
         List<String> beacons = new ArrayList<>(distances.keySet());
-        Point p1 = BeaconInfoLoader.BEACON_LOCATIONS.get(beacons.get(0));
-        Point p2 = BeaconInfoLoader.BEACON_LOCATIONS.get(beacons.get(1));
-        Point p3 = BeaconInfoLoader.BEACON_LOCATIONS.get(beacons.get(2));
+        Point p1 = BeaconInfoLoader.getBeaconLocation(beacons.get(0));
+        Point p2 = BeaconInfoLoader.getBeaconLocation(beacons.get(1));
+        Point p3 = BeaconInfoLoader.getBeaconLocation(beacons.get(2));
 
         double r1 = distances.get(beacons.get(0));
         double r2 = distances.get(beacons.get(1));
@@ -48,6 +51,127 @@ public class TrilaterationCalculator {
         return new Point(x, y);
     }
 
+    /**
+     * Weighted least-squares position from any number of beacon ranges.
+     *
+     * The range equations are first linearised against the most reliable beacon and solved in
+     * closed form for a starting point; a few Gauss-Newton iterations on the exact range model
+     * then refine it. Each beacon is weighted by the inverse of its range variance, and the
+     * returned covariance is (J^T W J)^-1 at the solution. Nothing is allocated.
+     *
+     * @return false if fewer than three beacons were given
+     */
+    public static boolean multilaterate(double[] beaconX, double[] beaconY, double[] ranges, double[] variances,
+                                        int count, PositionEstimate out) {
+        if (count < 3) {
+            return false;
+        }
+
+        // 선형화: 분산이 가장 작은 비콘을 기준으로 원 방정식의 차를 구한다
+        int ref = 0;
+        for (int i = 1; i < count; i++) {
+            if (variances[i] < variances[ref]) {
+                ref = i;
+            }
+        }
+        double xr = beaconX[ref];
+        double yr = beaconY[ref];
+        double rr = ranges[ref];
+        double a00 = 0, a01 = 0, a11 = 0, b0 = 0, b1 = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == ref) {
+                continue;
+            }
+            double ax = beaconX[i] - xr;
+            double ay = beaconY[i] - yr;
+            double rhs = 0.5 * (rr * rr - ranges[i] * ranges[i]
+                    + beaconX[i] * beaconX[i] - xr * xr + beaconY[i] * beaconY[i] - yr * yr);
+            double w = 1.0 / (variances[i] + variances[ref]);
+            a00 += w * ax * ax;
+            a01 += w * ax * ay;
+            a11 += w * ay * ay;
+            b0 += w * ax * rhs;
+            b1 += w * ay * rhs;
+        }
+        double x;
+        double y;
+        double det = a00 * a11 - a01 * a01;
+        if (det > SINGULAR_THRESHOLD * a00 * a11) {
+            x = (a11 * b0 - a01 * b1) / det;
+            y = (a00 * b1 - a01 * b0) / det;
+        } else {
+            // 비콘이 일직선 위에 있으면 가중 무게중심에서 시작하되, 직선 위의 안장점을 피하도록 법선 방향으로 1m 이동
+            double weightSum = 0;
+            x = 0;
+            y = 0;
+            for (int i = 0; i < count; i++) {
+                double w = 1.0 / variances[i];
+                x += w * beaconX[i];
+                y += w * beaconY[i];
+                weightSum += w;
+            }
+            x /= weightSum;
+            y /= weightSum;
+            double nx = -a01;
+            double ny = a00;
+            double norm = Math.sqrt(nx * nx + ny * ny);
+            if (norm > 0) {
+                x += nx / norm;
+                y += ny / norm;
+            } else {
+                y += 1;
+            }
+        }
+
+        // Gauss-Newton: (J^T W J) dp = J^T W (r - d)
+        int iterations = 0;
+        while (true) {
+            a00 = 0;
+            a01 = 0;
+            a11 = 0;
+            b0 = 0;
+            b1 = 0;
+            for (int i = 0; i < count; i++) {
+                double dx = x - beaconX[i];
+                double dy = y - beaconY[i];
+                double d = Math.sqrt(dx * dx + dy * dy);
+                if (d < 1e-9) {
+                    continue;
+                }
+                double w = 1.0 / variances[i];
+                double jx = dx / d;
+                double jy = dy / d;
+                double e = ranges[i] - d;
+                a00 += w * jx * jx;
+                a01 += w * jx * jy;
+                a11 += w * jy * jy;
+                b0 += w * jx * e;
+                b1 += w * jy * e;
+            }
+            det = a00 * a11 - a01 * a01;
+            if (det <= SINGULAR_THRESHOLD * a00 * a11 || iterations == MAX_ITERATIONS) {
+                break;
+            }
+            double stepX = (a11 * b0 - a01 * b1) / det;
+            double stepY = (a00 * b1 - a01 * b0) / det;
+            x += stepX;
+            y += stepY;
+            iterations++;
+            if (stepX * stepX + stepY * stepY < CONVERGENCE_THRESHOLD * CONVERGENCE_THRESHOLD) {
+                break;
+            }
+        }
+
+        if (det > SINGULAR_THRESHOLD * a00 * a11) {
+            out.set(x, y, a11 / det, -a01 / det, a00 / det);
+        } else {
+            out.set(x, y, Double.POSITIVE_INFINITY, 0, Double.POSITIVE_INFINITY);
+        }
+        out.beaconCount = count;
+        out.iterations = iterations;
+        return true;
+    }
+
     // IWCA 적용 메소드
     public static double adjustDistanceWithIWCA(Point p1, Point p2, Point p3, Point estimatedPoint, double r1, double r2, double r3) {
         double volume = calculateTetrahedronVolume(p1, p2, p3, estimatedPoint);
@@ -78,9 +202,9 @@ public class TrilaterationCalculator {
     // 결합된 위치 추정 메소드
     public static Point combinedLocalization(Map<String, Double> distances, float azimuth, float angle, float speed) {
         List<String> beacons = new ArrayList<>(distances.keySet());
-        Point p1 = BeaconInfoLoader.BEACON_LOCATIONS.get(beacons.get(0));
-        Point p2 = BeaconInfoLoader.BEACON_LOCATIONS.get(beacons.get(1));
-        Point p3 = BeaconInfoLoader.BEACON_LOCATIONS.get(beacons.get(2));
+        Point p1 = BeaconInfoLoader.getBeaconLocation(beacons.get(0));
+        Point p2 = BeaconInfoLoader.getBeaconLocation(beacons.get(1));
+        Point p3 = BeaconInfoLoader.getBeaconLocation(beacons.get(2));
 
         double r1 = distances.get(beacons.get(0));
         double r2 = distances.get(beacons.get(1));
@@ -2,26 +2,45 @@ package com.example.hero_pr12;
 
 import android.widget.TextView;
 
-import java.util.Map;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.recyclerview.widget.SimpleItemAnimator;
 
 public class UIUpdater {
     private TextView infoTextView;
-    private MapView mapView;
+    private MapDisplay mapView;
+    private final BeaconListModel beaconList = new BeaconListModel();
+    private int shownBeaconCount = -1;
 
-    public UIUpdater(TextView infoTextView, MapView mapView) {
+    public UIUpdater(TextView infoTextView, RecyclerView beaconListView, MapDisplay mapView) {
         this.infoTextView = infoTextView;
         this.mapView = mapView;
+        beaconListView.setLayoutManager(new LinearLayoutManager(beaconListView.getContext()));
+        beaconListView.setHasFixedSize(true);
+        // 값만 바뀐 행이 깜빡이지 않게 한다
+        RecyclerView.ItemAnimator animator = beaconListView.getItemAnimator();
+        if (animator instanceof SimpleItemAnimator) {
+            ((SimpleItemAnimator) animator).setSupportsChangeAnimations(false);
+        }
+        beaconListView.setAdapter(new BeaconListAdapter(beaconList));
+        updateInfoHeader();
     }
 
-    public void updateInfoTextView(Map<String, Double> distances) {
-        StringBuilder info = new StringBuilder();
-        info.append("Beacons:\n");
-        for (Map.Entry<String, Double> entry : distances.entrySet()) {
-            info.append("UUID: ").append(entry.getKey())
-                    .append("\nDistance: ").append(entry.getValue())
-                    .append(" meters\n\n");
+    /**
+     * Shows the distances in meters, NaN for beacons not heard, and smoothed RSSI of every beacon
+     * by id. Only rows whose shown values changed are redrawn.
+     */
+    public void updateBeaconList(double[] distances, float[] rssi) {
+        beaconList.update(distances, rssi);
+        if (beaconList.getRowCount() != shownBeaconCount) {
+            updateInfoHeader();
         }
-        infoTextView.setText(info.toString());
+    }
+
+    public void toggleBeaconSortOrder() {
+        beaconList.setSortOrder(beaconList.getSortOrder() == BeaconListModel.SortOrder.DISTANCE
+                ? BeaconListModel.SortOrder.RSSI : BeaconListModel.SortOrder.DISTANCE);
+        updateInfoHeader();
     }
 
     public void updateLocation(Point location) {
@@ -32,7 +51,10 @@ public class UIUpdater {
         mapView.updateUserOrientation(orientation);
     }
 
-    public void setBeaconPositions(Map<String, Point> beaconPositions) {
-        mapView.setBeaconPositions(beaconPositions);
+    // Only when the count or the order changes, not on every refresh
+    private void updateInfoHeader() {
+        shownBeaconCount = beaconList.getRowCount();
+        infoTextView.setText("Beacons: " + shownBeaconCount + " (by "
+                + (beaconList.getSortOrder() == BeaconListModel.SortOrder.DISTANCE ? "distance" : "RSSI") + ")");
     }
 }
@@ -0,0 +1,148 @@
+package com.example.hero_pr12;
+
+/**
+ * Occupancy grid of walls in map meters, usually derived from the building plan bitmap.
+ * Cells are stored one bit each. Space outside the grid is treated as free.
+ */
+public class WallMap {
+    // Pixels darker than this (0-255 luminance) and mostly opaque are walls
+    private static final int WALL_LUMINANCE = 96;
+    private static final int WALL_ALPHA = 128;
+
+    private final int columns;
+    private final int rows;
+    private final double cellSize;
+    private final double originX;
+    private final double originY;
+    private final long[] bits;
+
+    public WallMap(int columns, int rows, double cellSize, double originX, double originY) {
+        this.columns = columns;
+        this.rows = rows;
+        this.cellSize = cellSize;
+        this.originX = originX;
+        this.originY = originY;
+        this.bits = new long[(columns * rows + 63) >>> 6];
+    }
+
+    /**
+     * Builds a map from ARGB pixels. Pixel (px, py) covers map meters
+     * (originX + px / pixelsPerMeter, originY + py / pixelsPerMeter); each cell of
+     * {@code cellSize} meters is a wall if any pixel inside it is.
+     */
+    public static WallMap fromPixels(int[] argb, int width, int height, double pixelsPerMeter,
+                                     double originX, double originY, double cellSize) {
+        WallMap map = forImage(width, height, pixelsPerMeter, originX, originY, cellSize);
+        map.addWallPixels(argb, 0, 0, width, height, pixelsPerMeter);
+        return map;
+    }
+
+    /**
+     * An empty map sized for an image of width x height pixels, to be filled block by block with
+     * {@link #addWallPixels} so that the whole image never has to be in memory at once.
+     */
+    public static WallMap forImage(int width, int height, double pixelsPerMeter,
+                                   double originX, double originY, double cellSize) {
+        int columns = (int) Math.ceil(width / pixelsPerMeter / cellSize);
+        int rows = (int) Math.ceil(height / pixelsPerMeter / cellSize);
+        return new WallMap(columns, rows, cellSize, originX, originY);
+    }
+
+    /**
+     * Marks the walls in a block of ARGB pixels whose top-left corner is image pixel (left, top).
+     */
+    public void addWallPixels(int[] argb, int left, int top, int width, int height, double pixelsPerMeter) {
+        double cellsPerPixel = 1 / (pixelsPerMeter * cellSize);
+        for (int py = 0; py < height; py++) {
+            int row = Math.min((int) ((top + py + 0.5) * cellsPerPixel), rows - 1);
+            for (int px = 0; px < width; px++) {
+                if (isWallPixel(argb[py * width + px])) {
+                    setWall(Math.min((int) ((left + px + 0.5) * cellsPerPixel), columns - 1), row);
+                }
+            }
+        }
+    }
+
+    public void setWall(int column, int row) {
+        int cell = row * columns + column;
+        bits[cell >>> 6] |= 1L << cell;
+    }
+
+    public boolean isWall(double x, double y) {
+        int column = (int) Math.floor((x - originX) / cellSize);
+        int row = (int) Math.floor((y - originY) / cellSize);
+        return isWallCell(column, row);
+    }
+
+    /**
+     * Returns true if the straight move from (x0, y0) to (x1, y1) enters a wall cell. The start
+     * cell itself is not checked, so a point that ended up inside a wall can still leave it.
+     */
+    public boolean crossesWall(double x0, double y0, double x1, double y1) {
+        // Grid traversal (Amanatides & Woo): visit every cell the segment passes through
+        double gx0 = (x0 - originX) / cellSize;
+        double gy0 = (y0 - originY) / cellSize;
+        double gx1 = (x1 - originX) / cellSize;
+        double gy1 = (y1 - originY) / cellSize;
+        int column = (int) Math.floor(gx0);
+        int row = (int) Math.floor(gy0);
+        int endColumn = (int) Math.floor(gx1);
+        int endRow = (int) Math.floor(gy1);
+        double dx = gx1 - gx0;
+        double dy = gy1 - gy0;
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
+        double tDeltaX = dx != 0 ? Math.abs(1 / dx) : Double.POSITIVE_INFINITY;
+        double tDeltaY = dy != 0 ? Math.abs(1 / dy) : Double.POSITIVE_INFINITY;
+        double tMaxX = dx != 0 ? (dx > 0 ? column + 1 - gx0 : gx0 - column) * tDeltaX : Double.POSITIVE_INFINITY;
+        double tMaxY = dy != 0 ? (dy > 0 ? row + 1 - gy0 : gy0 - row) * tDeltaY : Double.POSITIVE_INFINITY;
+        int remaining = Math.abs(endColumn - column) + Math.abs(endRow - row);
+        while (remaining-- > 0) {
+            if (tMaxX < tMaxY) {
+                column += stepX;
+                tMaxX += tDeltaX;
+            } else {
+                row += stepY;
+                tMaxY += tDeltaY;
+            }
+            if (isWallCell(column, row)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public double getOriginX() {
+        return originX;
+    }
+
+    public double getOriginY() {
+        return originY;
+    }
+
+    private boolean isWallCell(int column, int row) {
+        if (column < 0 || row < 0 || column >= columns || row >= rows) {
+            return false;
+        }
+        int cell = row * columns + column;
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    private static boolean isWallPixel(int argb) {
+        int alpha = argb >>> 24;
+        int luminance = (((argb >> 16) & 0xFF) * 299 + ((argb >> 8) & 0xFF) * 587 + (argb & 0xFF) * 114) / 1000;
+        return alpha >= WALL_ALPHA && luminance < WALL_LUMINANCE;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.hero_pr12;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Walking/still classification and scan duty cycling, on synthetic accelerometer traces.
+ */
+public class AdaptiveScanSchedulerTest {
+    private static final long SECOND = 1000000000L;
+    private static final long SAMPLE = SECOND / 50;
+    private static final float GRAVITY = 9.81f;
+
+    @Test
+    public void still_dropsToDutyCycledScan() {
+        AdaptiveScanScheduler scheduler = new AdaptiveScanScheduler();
+        List<AdaptiveScanScheduler.Mode> modes = new ArrayList<>();
+        scheduler.setListener((mode, timestampNanos) -> modes.add(mode));
+        long t = SECOND;
+        for (; t < 61 * SECOND; t += SAMPLE) {
+            scheduler.onAccelerometer(desk(t), t);
+        }
+        assertEquals(AdaptiveScanScheduler.Mode.IDLE, scheduler.getMode());
+        assertEquals(1, modes.size());
+
+        // 5 s continuous before going idle, then 2 s of every 10 s for the remaining 55 s
+        double expected = 5 + 5 * 2; // The sixth period is only half over, before its window
+        assertEquals(expected, scheduler.getScanOnNanos() / 1e9, 0.1);
+        assertEquals(60, scheduler.getElapsedNanos() / 1e9, 0.1);
+        assertTrue(scheduler.getScanDutyCycle() < 0.3);
+
+        // Idle since 6 s: the window of the period ending at 66 s opened at 64 s
+        long now = 62 * SECOND;
+        assertFalse(scheduler.isScanOn(now));
+        assertEquals(64 * SECOND, scheduler.nextScanChangeNanos(now));
+        assertTrue(scheduler.isScanOn(65 * SECOND));
+        assertEquals(66 * SECOND, scheduler.nextScanChangeNanos(65 * SECOND));
+    }
+
+    @Test
+    public void walking_keepsFullScanAndComesBackWithinAStep() {
+        AdaptiveScanScheduler scheduler = new AdaptiveScanScheduler();
+        long t = SECOND;
+        for (; t < 31 * SECOND; t += SAMPLE) {
+            scheduler.onAccelerometer(walking(t), t);
+            if (t % (SECOND / 2) == 0) {
+                scheduler.onStep(t);
+            }
+        }
+        assertEquals(AdaptiveScanScheduler.Mode.ACTIVE, scheduler.getMode());
+        assertEquals(1.0, scheduler.getScanDutyCycle(), 1e-9);
+
+        for (long end = t + 20 * SECOND; t < end; t += SAMPLE) {
+            scheduler.onAccelerometer(desk(t), t);
+        }
+        assertEquals(AdaptiveScanScheduler.Mode.IDLE, scheduler.getMode());
+
+        // Picked up again: the accelerometer alone brings the scan back before the first step
+        long pickedUp = t;
+        while (scheduler.getMode() == AdaptiveScanScheduler.Mode.IDLE) {
+            t += SAMPLE;
+            scheduler.onAccelerometer(walking(t), t);
+        }
+        assertTrue(t - pickedUp < SECOND / 2);
+        assertTrue(scheduler.isScanOn(t));
+        assertEquals(Long.MAX_VALUE, scheduler.nextScanChangeNanos(t));
+    }
+
+    @Test
+    public void replay_dropsScansInTheOffTime() {
+        ReplayPipeline pipeline = new ReplayPipeline(null);
+        pipeline.setScanDutyCycling(true);
+        long t = SECOND;
+        int scans = 0;
+        for (; t < 41 * SECOND; t += SAMPLE) {
+            pipeline.onSensorSample(TraceRecorder.SENSOR_ACCELEROMETER, desk(t), t);
+            if (t % (SECOND / 10) == 0) {
+                pipeline.onScanSample("C3:00:00:19:2F:46", -70, null, t);
+                pipeline.onScanBatchComplete();
+                scans++;
+            }
+        }
+        AdaptiveScanScheduler scheduler = pipeline.getScanScheduler();
+        double offFraction = 1 - scheduler.getScanDutyCycle();
+        assertEquals(offFraction * scans, pipeline.getSkippedScanSampleCount(), 0.05 * scans);
+        assertTrue(pipeline.getSkippedScanSampleCount() > 0);
+    }
+
+    // Lying on a desk: gravity plus sensor noise
+    private static float[] desk(long t) {
+        float noise = 0.02f * (float) Math.sin(t / 7e6);
+        return new float[]{0.1f + noise, 0.2f, GRAVITY - noise};
+    }
+
+    // About 2 m/s² of vertical bounce at two steps per second
+    private static float[] walking(long t) {
+        float bounce = 2.0f * (float) Math.sin(2 * Math.PI * 2 * t / 1e9);
+        return new float[]{0.5f, 1.0f, GRAVITY + bounce};
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.hero_pr12;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * 10,000 beacons converted from beacon_info.txt to the binary database: every beacon is found by
+ * MAC and by key with the same fields as the previous parse into four HashMaps. Load times are
+ * measured by BeaconDatabaseBenchmark in the benchmark module.
+ */
+public class BeaconDatabaseTest {
+    private static final int BEACON_COUNT = 10000;
+    private static final String[] UUIDS = {
+            "fda50693-a4e2-4fb1-afcf-c6eb07647825",
+            "e2c56db5-dffb-48d2-b060-d0f5a71096e0",
+    };
+
+    private String csv;
+    private File databaseFile;
+
+    @Before
+    public void setUp() throws IOException {
+        Random random = new Random(7);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < BEACON_COUNT; i++) {
+            builder.append(BeaconDatabase.formatMac(0xC30000000000L + random.nextInt(1 << 24) * 256L + (i & 0xFF)))
+                    .append(',').append(UUIDS[i % UUIDS.length])
+                    .append(',').append(i / 1000)
+                    .append(',').append(i % 1000)
+                    .append(',').append(-59 - random.nextInt(10))
+                    .append(',').append(random.nextInt(2000) / 10.0)
+                    .append(',').append(random.nextInt(2000) / 10.0)
+                    .append(',').append(String.format("#%06X", random.nextInt(1 << 24)))
+                    .append('\n');
+        }
+        csv = builder.toString();
+        databaseFile = File.createTempFile("beacons", ".bcdb");
+        new BeaconDatabaseWriter().readCsv(new StringReader(csv)).writeTo(databaseFile);
+    }
+
+    @After
+    public void tearDown() {
+        databaseFile.delete();
+    }
+
+    @Test
+    public void mappedDatabase_matchesCsv() throws IOException {
+        LegacyBeaconInfo legacy = LegacyBeaconInfo.parse(csv);
+        BeaconDatabase database = BeaconDatabase.open(databaseFile);
+
+        assertEquals(BEACON_COUNT, database.size());
+        assertEquals(legacy.macAddress.size(), database.size());
+        for (Map.Entry<String, String> entry : legacy.macAddress.entrySet()) {
+            int index = database.findByMac(BeaconDatabase.packMac(entry.getKey()));
+            assertTrue(index >= 0);
+            String key = entry.getValue();
+            assertEquals(key, database.beaconKey(index));
+            assertEquals(index, database.findByKey(key));
+            assertEquals(legacy.locations.get(key).x, database.x(index), 1e-4);
+            assertEquals(legacy.locations.get(key).y, database.y(index), 1e-4);
+            assertEquals((int) legacy.txPower.get(key), database.txPower(index));
+            assertEquals((int) legacy.colors.get(key), database.color(index));
+        }
+        assertEquals(-1, database.findByMac(BeaconDatabase.packMac("00:00:00:00:00:01")));
+    }
+
+    @Test
+    public void writer_rejectsMalformedLines() {
+        try {
+            new BeaconDatabaseWriter().readCsv(new StringReader("C3:00:00:19:2F:46,not-a-uuid,1,2,-59,0,0,#FF0000\n"));
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().startsWith("Line 1"));
+        }
+    }
+
+    // The parse BeaconInfoLoader did before the binary database, minus Color.parseColor
+    private static class LegacyBeaconInfo {
+        final Map<String, Point> locations = new HashMap<>();
+        final Map<String, Integer> txPower = new HashMap<>();
+        final Map<String, String> macAddress = new HashMap<>();
+        final Map<String, Integer> colors = new HashMap<>();
+
+        static LegacyBeaconInfo parse(String csv) throws IOException {
+            LegacyBeaconInfo info = new LegacyBeaconInfo();
+            BufferedReader reader = new BufferedReader(new StringReader(csv));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                String macAddress = parts[0];
+                String uuid = parts[1];
+                int major = Integer.parseInt(parts[2]);
+                int minor = Integer.parseInt(parts[3]);
+                int txPower = Integer.parseInt(parts[4]);
+                double x = Double.parseDouble(parts[5]);
+                double y = Double.parseDouble(parts[6]);
+                int color = BeaconDatabaseWriter.parseColor(parts[7]);
+                String beaconKey = UUID.fromString(uuid) + "_" + major + "_" + minor;
+                info.locations.put(beaconKey, new Point(x, y));
+                info.txPower.put(beaconKey, txPower);
+                info.macAddress.put(macAddress, beaconKey);
+                info.colors.put(beaconKey, color);
+            }
+            return info;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.hero_pr12;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Per-fix (radius) and per-frame (viewport) queries of {@link BeaconGridIndex} find the same
+ * beacons as a linear scan, for venues from 10 to 10,000 beacons at a constant beacon density.
+ * Query cost is measured by BeaconGridIndexBenchmark in the benchmark module.
+ */
+public class BeaconGridIndexTest {
+    private static final int[] BEACON_COUNTS = {10, 100, 1000, 10000};
+    private static final double BEACON_SPACING = 8.0; // 미터
+    private static final double FIX_RADIUS = 30.0;
+    private static final double VIEWPORT_WIDTH = 40.0;
+    private static final double VIEWPORT_HEIGHT = 60.0;
+    private static final int QUERIES = 200;
+
+    @Test
+    public void queries_matchLinearScan() {
+        for (int count : BEACON_COUNTS) {
+            Random random = new Random(count);
+            double side = Math.sqrt(count) * BEACON_SPACING;
+            double[] xs = new double[count];
+            double[] ys = new double[count];
+            for (int i = 0; i < count; i++) {
+                xs[i] = random.nextDouble() * side;
+                ys[i] = random.nextDouble() * side;
+            }
+            BeaconGridIndex index = BeaconGridIndex.build(xs, ys, 0);
+            double[] qx = new double[QUERIES];
+            double[] qy = new double[QUERIES];
+            for (int q = 0; q < QUERIES; q++) {
+                qx[q] = random.nextDouble() * side;
+                qy[q] = random.nextDouble() * side;
+            }
+
+            int[] indexed = new int[count];
+            int[] scanned = new int[count];
+            for (int q = 0; q < QUERIES; q++) {
+                assertSameSlots(indexed, index.queryRadius(qx[q], qy[q], FIX_RADIUS, indexed),
+                        scanned, scanRadius(xs, ys, qx[q], qy[q], FIX_RADIUS, scanned));
+                assertSameSlots(indexed, index.queryRect(qx[q], qy[q], qx[q] + VIEWPORT_WIDTH, qy[q] + VIEWPORT_HEIGHT, indexed),
+                        scanned, scanRect(xs, ys, qx[q], qy[q], qx[q] + VIEWPORT_WIDTH, qy[q] + VIEWPORT_HEIGHT, scanned));
+            }
+        }
+    }
+
+    private static int scanRadius(double[] xs, double[] ys, double x, double y, double radius, int[] out) {
+        int found = 0;
+        for (int i = 0; i < xs.length; i++) {
+            double dx = xs[i] - x;
+            double dy = ys[i] - y;
+            if (dx * dx + dy * dy <= radius * radius) {
+                out[found++] = i;
+            }
+        }
+        return found;
+    }
+
+    private static int scanRect(double[] xs, double[] ys, double minX, double minY, double maxX, double maxY, int[] out) {
+        int found = 0;
+        for (int i = 0; i < xs.length; i++) {
+            if (xs[i] >= minX && xs[i] <= maxX && ys[i] >= minY && ys[i] <= maxY) {
+                out[found++] = i;
+            }
+        }
+        return found;
+    }
+
+    private static void assertSameSlots(int[] a, int aCount, int[] b, int bCount) {
+        int[] sortedA = Arrays.copyOf(a, aCount);
+        int[] sortedB = Arrays.copyOf(b, bCount);
+        Arrays.sort(sortedA);
+        Arrays.sort(sortedB);
+        assertArrayEquals(sortedB, sortedA);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.hero_pr12;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * The beacon list's change notifications, replayed the way RecyclerView applies them, must always
+ * reproduce the model's rows; and the number formatting into char buffers.
+ */
+public class BeaconListModelTest {
+
+    // Applies every notification to a plain list, like the adapter's item positions
+    private static class MirrorListener implements BeaconListModel.Listener {
+        final BeaconListModel model;
+        final List<Integer> ids = new ArrayList<>();
+        int changed;
+        int moved;
+        int resets;
+
+        MirrorListener(BeaconListModel model) {
+            this.model = model;
+        }
+
+        @Override
+        public void onRowInserted(int position) {
+            ids.add(position, model.getId(position));
+        }
+
+        @Override
+        public void onRowRemoved(int position) {
+            ids.remove(position);
+        }
+
+        @Override
+        public void onRowChanged(int position) {
+            changed++;
+        }
+
+        @Override
+        public void onRowMoved(int fromPosition, int toPosition) {
+            ids.add(toPosition, ids.remove(fromPosition));
+            moved++;
+        }
+
+        @Override
+        public void onRowsReset() {
+            ids.clear();
+            for (int i = 0; i < model.getRowCount(); i++) {
+                ids.add(model.getId(i));
+            }
+            resets++;
+        }
+
+        void assertMatches() {
+            assertEquals(model.getRowCount(), ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                assertEquals(model.getId(i), (int) ids.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void notifications_reproduceTheRows() {
+        BeaconListModel model = new BeaconListModel();
+        MirrorListener mirror = new MirrorListener(model);
+        model.setListener(mirror);
+        Random random = new Random(7);
+        double[] distances = new double[200];
+        float[] rssi = new float[200];
+        Arrays.fill(distances, Double.NaN);
+        Arrays.fill(rssi, Float.NaN);
+        for (int refresh = 0; refresh < 300; refresh++) {
+            for (int id = 0; id < distances.length; id++) {
+                if (random.nextInt(20) == 0) {
+                    // Beacons come into range and drop out
+                    distances[id] = Double.isNaN(distances[id]) ? random.nextDouble() * 30 : Double.NaN;
+                    rssi[id] = Double.isNaN(distances[id]) ? Float.NaN : -60 - random.nextInt(30);
+                } else if (!Double.isNaN(distances[id])) {
+                    distances[id] = Math.max(0, distances[id] + random.nextGaussian() * 0.05);
+                }
+            }
+            if (refresh == 150) {
+                model.setSortOrder(BeaconListModel.SortOrder.RSSI);
+            }
+            model.update(distances, rssi);
+            mirror.assertMatches();
+            for (int i = 1; i < model.getRowCount(); i++) {
+                if (model.getSortOrder() == BeaconListModel.SortOrder.DISTANCE) {
+                    assertTrue(model.getCentimeters(i - 1) <= model.getCentimeters(i));
+                } else {
+                    assertTrue(model.getRssi(i - 1) >= model.getRssi(i));
+                }
+            }
+        }
+        assertEquals(2, mirror.resets); // The first update and the new sort order
+        assertTrue(mirror.moved > 0);
+    }
+
+    @Test
+    public void update_reportsOnlyRowsWhoseShownValuesChanged() {
+        BeaconListModel model = new BeaconListModel();
+        MirrorListener mirror = new MirrorListener(model);
+        model.setListener(mirror);
+        double[] distances = {1.0, 2.0, Double.NaN, 3.0};
+        float[] rssi = {-60f, -70f, Float.NaN, -80f};
+        model.update(distances, rssi);
+        assertEquals(3, model.getRowCount());
+
+        distances[0] = 1.001; // Same centimeter
+        distances[1] = 2.5;
+        rssi[3] = -80.2f; // Same dBm
+        model.update(distances, rssi);
+        assertEquals(1, mirror.changed);
+        assertEquals(0, mirror.moved);
+
+        distances[1] = 0.5; // Now the nearest
+        model.update(distances, rssi);
+        assertEquals(2, mirror.changed);
+        assertEquals(1, mirror.moved);
+        assertEquals(1, model.getId(0));
+        assertEquals(50, model.getCentimeters(0));
+        mirror.assertMatches();
+    }
+
+    @Test
+    public void charFormat_writesNumbersWithoutStrings() {
+        char[] out = new char[32];
+        assertEquals("12.34", new String(out, 0, CharFormat.appendFixed(out, 0, 1234, 2)));
+        assertEquals("-0.05", new String(out, 0, CharFormat.appendFixed(out, 0, -5, 2)));
+        assertEquals("0.00", new String(out, 0, CharFormat.appendFixed(out, 0, 0, 2)));
+        assertEquals("-67", new String(out, 0, CharFormat.appendInt(out, 0, -67)));
+        assertEquals(Long.toString(Long.MIN_VALUE), new String(out, 0, CharFormat.appendInt(out, 0, Long.MIN_VALUE)));
+        int length = CharFormat.appendFixed(out, 0, 705, 1);
+        assertEquals("70.5 m", new String(out, 0, CharFormat.append(out, length, " m")));
+    }
+}
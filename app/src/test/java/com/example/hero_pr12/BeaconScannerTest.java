@@ -0,0 +1,153 @@
+package com.example.hero_pr12;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the scan ingestion path with a fake scanner instead of Bluetooth hardware.
+ */
+public class BeaconScannerTest {
+    private static final String UUID = "fda50693-a4e2-4fb1-afcf-c6eb07647825";
+    private static final String KNOWN_MAC = "C3:00:00:19:2F:46";
+
+    @Before
+    public void setUp() {
+        BeaconDatabaseWriter writer = new BeaconDatabaseWriter()
+                .add(BeaconDatabase.packMac(KNOWN_MAC), java.util.UUID.fromString(UUID), 123, 456, -59, 1, 2, 0xFFFF0000);
+        BeaconInfoLoader.setDatabase(BeaconDatabase.wrap(writer.toByteBuffer()));
+    }
+
+    @After
+    public void tearDown() {
+        BeaconInfoLoader.setDatabase(BeaconDatabase.empty());
+    }
+
+    @Test
+    public void batch_isQueuedInOnePass() {
+        ScanSampleQueue queue = new ScanSampleQueue(64);
+        int[] wakeUps = new int[1];
+        FakeBeaconScanner scanner = new FakeBeaconScanner();
+        scanner.start(new ScanQueueListener(queue, () -> wakeUps[0]++));
+
+        scanner.deliverBatch(KNOWN_MAC, -60, -61, -62, -63, -64);
+
+        assertEquals(1, wakeUps[0]);
+        assertEquals(5, queue.size());
+        final List<Integer> drained = new ArrayList<>();
+        queue.drain((beaconId, rssi, txPower, timestampNanos) -> drained.add(rssi), 64);
+        assertEquals(Arrays.asList(-60, -61, -62, -63, -64), drained);
+    }
+
+    @Test
+    public void emptyBatch_doesNotWakeConsumer() {
+        int[] wakeUps = new int[1];
+        FakeBeaconScanner scanner = new FakeBeaconScanner();
+        scanner.start(new ScanQueueListener(new ScanSampleQueue(4), () -> wakeUps[0]++));
+
+        scanner.deliverBatch(KNOWN_MAC);
+
+        assertEquals(0, wakeUps[0]);
+    }
+
+    @Test
+    public void fullQueue_dropsAndCounts() {
+        ScanSampleQueue queue = new ScanSampleQueue(4);
+        FakeBeaconScanner scanner = new FakeBeaconScanner();
+        scanner.start(new ScanQueueListener(queue, () -> { }));
+
+        scanner.deliverBatch(KNOWN_MAC, -60, -60, -60, -60, -60, -60);
+
+        assertEquals(4, queue.size());
+        assertEquals(2, queue.getDroppedCount());
+        assertEquals(6, queue.getOfferedCount());
+    }
+
+    @Test
+    public void unknownDevices_areDroppedBeforeQueueing() {
+        ScanSampleQueue queue = new ScanSampleQueue(16);
+        FakeBeaconScanner scanner = new FakeBeaconScanner();
+        scanner.start(new ScanQueueListener(queue, () -> { }));
+        scanner.deliverBatch("AA:BB:CC:DD:EE:FF", -50, -50);
+        scanner.deliverBatch("not a mac", -50);
+        scanner.deliverBatch(KNOWN_MAC, -62);
+
+        assertEquals(1, queue.size());
+        PositioningProcessor processor = new PositioningProcessor();
+        queue.drain(processor, 16);
+
+        assertEquals(1, processor.getProcessedCount());
+        BeaconStateTable state = processor.getState();
+        assertEquals(1, state.getHeardCount());
+        assertEquals(0, state.getHeardId(0));
+        assertEquals(UUID + "_123_456", BeaconInfoLoader.getBeaconKey(state.getHeardId(0)));
+        assertEquals(-62, state.getLastRssi(0));
+        assertFalse(Double.isNaN(state.getDistance(0)));
+        assertTrue(processor.consumeDistancesChanged());
+        assertFalse(processor.consumeDistancesChanged());
+    }
+
+    @Test
+    public void filterSpec_matchesIBeaconPrefix() {
+        BeaconScanFilterSpec spec = BeaconScanFilterSpec.fromDatabase(BeaconInfoLoader.getDatabase());
+
+        assertTrue(spec.getDeviceAddresses().isEmpty());
+        assertEquals(1, spec.getManufacturerData().size());
+        byte[] data = spec.getManufacturerData().get(0);
+        assertEquals(BeaconScanFilterSpec.IBEACON_DATA_LENGTH, data.length);
+        assertEquals(0x02, data[0]);
+        assertEquals(0x15, data[1]);
+        assertEquals((byte) 0xFD, data[2]);
+        assertEquals((byte) 0x25, data[17]);
+        byte[] mask = spec.getManufacturerDataMask();
+        assertEquals((byte) 0xFF, mask[17]);
+        assertEquals(0, mask[18]);
+    }
+
+    @Test
+    public void filterSpec_fallsBackToUuidWhenTooManyAddresses() {
+        List<String> addresses = new ArrayList<>();
+        for (int i = 0; i <= BeaconScanFilterSpec.MAX_ADDRESS_FILTERS; i++) {
+            addresses.add(String.format("C3:00:00:00:00:%02X", i));
+        }
+        BeaconScanFilterSpec spec = BeaconScanFilterSpec.build(addresses, Collections.singleton(UUID));
+
+        assertTrue(spec.getDeviceAddresses().isEmpty());
+        assertEquals(1, spec.getManufacturerData().size());
+    }
+
+    private static class FakeBeaconScanner implements BeaconScanner {
+        private Listener listener;
+        private long clockNanos = 1000000000L;
+
+        @Override
+        public void start(Listener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void stop() {
+            listener = null;
+        }
+
+        @Override
+        public boolean isScanning() {
+            return listener != null;
+        }
+
+        void deliverBatch(String address, int... rssis) {
+            for (int rssi : rssis) {
+                clockNanos += 100000000L;
+                listener.onScanSample(address, rssi, null, clockNanos);
+            }
+            listener.onScanBatchComplete();
+        }
+    }
+}
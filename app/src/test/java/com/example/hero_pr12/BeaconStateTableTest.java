@@ -0,0 +1,236 @@
+package com.example.hero_pr12;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Dense beacon ids: MAC resolution, per-channel smoothing, TTL eviction, best-beacon ranking and
+ * the allocation-free sample path.
+ */
+public class BeaconStateTableTest {
+    private static final int BEACON_COUNT = 200;
+    private static final long FIRST_MAC = 0xC30000192F00L;
+
+    private final String[] addresses = new String[BEACON_COUNT];
+
+    @Before
+    public void setUp() {
+        BeaconDatabaseWriter writer = new BeaconDatabaseWriter();
+        UUID uuid = UUID.fromString("fda50693-a4e2-4fb1-afcf-c6eb07647825");
+        for (int i = 0; i < BEACON_COUNT; i++) {
+            writer.add(FIRST_MAC + i, uuid, 1, i, -59, i % 20, i / 20, 0xFF00FF00);
+            addresses[i] = BeaconDatabase.formatMac(FIRST_MAC + i);
+        }
+        BeaconInfoLoader.setDatabase(BeaconDatabase.wrap(writer.toByteBuffer()));
+    }
+
+    @After
+    public void tearDown() {
+        BeaconInfoLoader.setDatabase(BeaconDatabase.empty());
+    }
+
+    @Test
+    public void macLookup_resolvesEveryBeacon() {
+        for (int i = 0; i < BEACON_COUNT; i++) {
+            assertEquals(i, BeaconInfoLoader.findBeaconByMac(addresses[i]));
+            assertEquals(i, BeaconInfoLoader.findBeaconByMac(addresses[i].toLowerCase()));
+        }
+        assertEquals(-1, BeaconInfoLoader.findBeaconByMac("C3:00:00:19:2F:FF"));
+        assertEquals(-1, BeaconInfoLoader.findBeaconByMac("C3-00-00-19-2F-00"));
+    }
+
+    @Test
+    public void beaconsSnapshot_keepsIdsAndDatabaseTogether() {
+        BeaconInfoLoader.Beacons before = BeaconInfoLoader.getBeacons();
+        BeaconInfoLoader.setDatabase(BeaconDatabase.empty());
+        // A lookup that started before the swap still indexes the database it was resolved in
+        int id = before.findByMac(addresses[BEACON_COUNT - 1]);
+        assertEquals(BEACON_COUNT - 1, id);
+        assertEquals(-59, before.database.txPower(id));
+        assertEquals(-1, BeaconInfoLoader.getBeacons().findByMac(addresses[BEACON_COUNT - 1]));
+        assertSame(BeaconInfoLoader.getDatabase(), BeaconInfoLoader.getBeacons().database);
+    }
+
+    @Test
+    public void longIntMap_growsAndOverwrites() {
+        LongIntMap map = new LongIntMap(2);
+        Random random = new Random(3);
+        long[] keys = new long[5000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong() & 0xFFFFFFFFFFFFL;
+            map.put(keys[i], i);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, map.get(keys[i]));
+        }
+        assertEquals(0, map.put(keys[0], 42));
+        assertEquals(42, map.get(keys[0]));
+        assertEquals(LongIntMap.MISSING, map.get(1L << 50));
+    }
+
+    @Test
+    public void smootherChannels_matchIndependentSmoothers() {
+        for (RssiSmoother.Mode mode : RssiSmoother.Mode.values()) {
+            RssiSmoother bank = new RssiSmoother(3, 5, 0.8f, mode, RssiSmoother.DEFAULT_TRIM_FRACTION);
+            RssiSmoother[] single = new RssiSmoother[3];
+            for (int c = 0; c < 3; c++) {
+                single[c] = new RssiSmoother(5, 0.8f, mode, RssiSmoother.DEFAULT_TRIM_FRACTION);
+            }
+            Random random = new Random(mode.ordinal());
+            for (int i = 0; i < 100; i++) {
+                int channel = random.nextInt(3);
+                int rssi = -90 + random.nextInt(40);
+                assertEquals(single[channel].add(rssi), bank.add(channel, rssi), 1e-4f);
+            }
+            for (int c = 0; c < 3; c++) {
+                assertEquals(single[c].getLatest(), bank.getLatest(c));
+                assertEquals(single[c].getCount(), bank.getCount(c));
+            }
+        }
+    }
+
+    @Test
+    public void ttl_evictsBeaconsNotHeardRecently() {
+        BeaconStateTable state = new BeaconStateTable(10);
+        state.setTtlNanos(5000000000L);
+        state.update(1, -60, -60, 2, 1, 1000000000L);
+        state.update(2, -70, -70, 4, 2, 4000000000L);
+        assertEquals(0, state.evictExpired(5000000000L));
+        assertEquals(2, state.getHeardCount());
+
+        // Rate limited: nothing is checked again until a quarter of the TTL has passed
+        assertEquals(0, state.evictExpired(6100000000L));
+        assertEquals(1, state.evictExpired(6300000000L));
+        assertFalse(state.isHeard(1));
+        assertTrue(Double.isNaN(state.getDistance(1)));
+        assertEquals(1, state.getHeardCount());
+        assertEquals(2, state.getHeardId(0));
+
+        state.update(1, -60, -60, 2, 1, 6400000000L);
+        assertTrue(state.isHeard(1));
+        assertEquals(2, state.getHeardCount());
+    }
+
+    @Test
+    public void distanceFiltering_smoothesNoisyRanges() {
+        BeaconStateTable state = new BeaconStateTable(2);
+        state.setDistanceFiltering(true);
+        Random random = new Random(5);
+        long clock = 1000000000L;
+        double rawError = 0;
+        double filteredError = 0;
+        for (int i = 0; i < 200; i++) {
+            clock += 100000000L;
+            double measured = 4 + random.nextGaussian();
+            double filtered = state.update(0, -70, -70, (float) measured, 1, clock);
+            if (i == 0) {
+                assertEquals(measured, filtered, 1e-6); // Starts at the first distance
+            }
+            if (i >= 50) {
+                rawError += (measured - 4) * (measured - 4);
+                filteredError += (filtered - 4) * (filtered - 4);
+            }
+        }
+        assertTrue(filteredError < rawError / 2);
+        assertEquals(3, state.update(1, -70, -70, 3, 1, clock), 1e-6);
+        assertEquals(3, state.getDistance(1), 1e-6);
+
+        // Off for a position engine: distances pass through
+        state.setDistanceFiltering(false);
+        assertEquals(7, state.update(0, -70, -70, 7, 1, clock + 100000000L), 1e-6);
+    }
+
+    @Test
+    public void bestBeacons_matchFullSort() {
+        int size = 300;
+        int bestCount = 8;
+        BeaconStateTable state = new BeaconStateTable(size, bestCount);
+        state.setTtlNanos(3000000000L);
+        Random random = new Random(17);
+        int[] best = new int[bestCount];
+        long clock = 1000000000L;
+        for (int sample = 0; sample < 20000; sample++) {
+            clock += 1000000L + random.nextInt(2000000);
+            // A moving cluster of beacons is heard, so beacons come, go and get evicted
+            int id = (sample / 50 + random.nextInt(40)) % size;
+            double distance = 0.5 + random.nextDouble() * 20;
+            state.update(id, -70, -70, (float) distance, distance * distance * 0.1 + 0.25, clock);
+            state.evictExpired(clock);
+
+            if (sample % 97 == 0) {
+                int count = state.copyBest(best);
+                Integer[] expected = heardByScore(state, clock);
+                assertEquals(Math.min(expected.length, bestCount), count);
+                for (int i = 0; i < count; i++) {
+                    assertEquals("sample " + sample + " rank " + i, (int) expected[i], best[i]);
+                }
+            }
+        }
+    }
+
+    // Brute force: every heard beacon, sorted by variance scaled by age, ties by id
+    private static Integer[] heardByScore(final BeaconStateTable state, final long now) {
+        Integer[] heard = new Integer[state.getHeardCount()];
+        for (int i = 0; i < heard.length; i++) {
+            heard[i] = state.getHeardId(i);
+        }
+        Arrays.sort(heard, (a, b) -> {
+            int cmp = Double.compare(score(state, a, now), score(state, b, now));
+            return cmp != 0 ? cmp : Integer.compare(a, b);
+        });
+        return heard;
+    }
+
+    private static double score(BeaconStateTable state, int id, long now) {
+        return Math.log(state.getRangeVariance(id)) + (now - state.getLastSeen(id)) / 2e9;
+    }
+
+    @Test
+    public void samplePath_doesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long threadId = Thread.currentThread().getId();
+
+        ScanSampleQueue queue = new ScanSampleQueue(256);
+        ScanQueueListener listener = new ScanQueueListener(queue, () -> { });
+        PositioningProcessor processor = new PositioningProcessor();
+        long clock = 1000000000L;
+        // Warm up so that the measured pass runs compiled code
+        for (int round = 0; round < 200; round++) {
+            clock = deliver(listener, queue, processor, clock);
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int round = 0; round < 100; round++) {
+            clock = deliver(listener, queue, processor, clock);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(BEACON_COUNT, processor.getState().getHeardCount());
+        // A little slack for the measurement itself
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private long deliver(ScanQueueListener listener, ScanSampleQueue queue, PositioningProcessor processor, long clock) {
+        for (int i = 0; i < BEACON_COUNT; i++) {
+            clock += 1000000L;
+            listener.onScanSample(addresses[i], -60 - (i & 15), null, clock);
+            if (queue.size() == queue.capacity()) {
+                queue.drain(processor, queue.capacity());
+            }
+        }
+        listener.onScanBatchComplete();
+        queue.drain(processor, queue.capacity());
+        return clock;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.hero_pr12;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Recording into the event ring, dumping it and decoding the dump.
+ */
+public class EventTraceTest {
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void dump_decodesToTextAndCsv() throws Exception {
+        EventTrace trace = new EventTrace(16);
+        trace.record(EventTrace.FLOOR, SECOND, 2);
+        trace.record(EventTrace.FIX, 2 * SECOND, 2, 3.2f, 4.75f);
+        trace.record(EventTrace.GYRO_ORIENTATION, 3 * SECOND, 0, 10f, -5f, 1.5f, 0);
+        trace.record(99, 4 * SECOND, 7, 1f, 2f);
+
+        File file = File.createTempFile("events", ".hevt");
+        try {
+            trace.dump(file);
+            EventTraceDecoder decoder = EventTraceDecoder.open(file);
+            List<EventTraceDecoder.Event> events = decoder.getEvents();
+            assertEquals(4, events.size());
+            assertEquals(0, decoder.getOverwrittenCount());
+            assertEquals("1.000000 FLOOR floor=2", EventTraceDecoder.toText(events.get(0)));
+            assertEquals("2.000000 FIX floor=2 x=3.20 y=4.75", EventTraceDecoder.toText(events.get(1)));
+            assertEquals("3.000000 GYRO_ORIENTATION azimuth=10.00 pitch=-5.00 roll=1.50",
+                    EventTraceDecoder.toText(events.get(2)));
+            assertEquals("4.000000 EVENT_99 arg=7 v0=1.00 v1=2.00 v2=0.00 v3=0.00",
+                    EventTraceDecoder.toText(events.get(3)));
+
+            StringBuilder csv = new StringBuilder();
+            decoder.writeCsv(csv);
+            String[] lines = csv.toString().split("\n");
+            assertEquals("timestamp_ns,event,arg,v0,v1,v2,v3", lines[0]);
+            assertEquals("2000000000,FIX,2,3.2,4.75,0.0,0.0", lines[2]);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void ring_keepsTheNewestEventsInOrder() {
+        EventTrace trace = new EventTrace(100); // Rounded up to 128
+        assertEquals(128, trace.getCapacity());
+        for (int i = 0; i < 1000; i++) {
+            trace.record(EventTrace.DRAIN, i, i, i, 0);
+        }
+        EventTraceDecoder decoder = new EventTraceDecoder(trace.snapshot());
+        List<EventTraceDecoder.Event> events = decoder.getEvents();
+        assertEquals(128, events.size());
+        assertEquals(1000 - 128, decoder.getOverwrittenCount());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(1000 - 128 + i, events.get(i).arg);
+        }
+        assertEquals(1000, trace.getRecordedCount());
+    }
+
+    @Test
+    public void decoder_rejectsOtherFiles() {
+        try {
+            new EventTraceDecoder(ByteBuffer.wrap(new byte[32]));
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // Not a dump
+        }
+    }
+}
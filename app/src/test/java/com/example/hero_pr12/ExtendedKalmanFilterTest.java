@@ -0,0 +1,194 @@
+package com.example.hero_pr12;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the fixed-size kernel against the original generic matrix implementation.
+ */
+public class ExtendedKalmanFilterTest {
+    private static final double TOLERANCE = 1e-9;
+
+    @Test
+    public void zeroTimeStep_matchesReference() {
+        ExtendedKalmanFilter filter = new ExtendedKalmanFilter();
+        ReferenceFilter reference = new ReferenceFilter();
+        Random random = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            double distance = 1 + random.nextDouble() * 10;
+            filter.predict(new double[]{0, 0});
+            filter.update(new double[]{distance, 0});
+            reference.predict(new double[]{0, 0});
+            reference.update(new double[]{distance, 0});
+            assertSameFilter(reference, filter);
+        }
+    }
+
+    @Test
+    public void variableTimeStepAndControl_matchesReference() {
+        ExtendedKalmanFilter filter = new ExtendedKalmanFilter();
+        ReferenceFilter reference = new ReferenceFilter();
+        Random random = new Random(2);
+        for (int i = 0; i < 500; i++) {
+            double dt = random.nextDouble() * 0.5;
+            double[] u = {random.nextGaussian(), random.nextGaussian()};
+            double[] z = {random.nextGaussian() * 5, random.nextGaussian() * 5};
+            filter.setTimeStep(dt);
+            reference.dt = dt;
+            filter.predict(u);
+            reference.predict(u);
+            assertSameFilter(reference, filter);
+            filter.update(z);
+            reference.update(z);
+            assertSameFilter(reference, filter);
+        }
+    }
+
+    @Test
+    public void timestamp_derivesTimeStep() {
+        ExtendedKalmanFilter filter = new ExtendedKalmanFilter();
+        filter.setTimestamp(5000000000L);
+        assertEquals(0, filter.getTimeStep(), 0);
+        filter.setTimestamp(5100000000L);
+        assertEquals(0.1, filter.getTimeStep(), 1e-12);
+    }
+
+    @Test
+    public void sharedArrays_keepFiltersIndependent() {
+        double[] x = new double[2 * ExtendedKalmanFilter.STATE_SIZE];
+        double[] p = new double[2 * ExtendedKalmanFilter.COVARIANCE_SIZE];
+        ExtendedKalmanFilter.reset(x, 0, p, 0);
+        ExtendedKalmanFilter.reset(x, ExtendedKalmanFilter.STATE_SIZE, p, ExtendedKalmanFilter.COVARIANCE_SIZE);
+        ExtendedKalmanFilter.predict(x, ExtendedKalmanFilter.STATE_SIZE, p, ExtendedKalmanFilter.COVARIANCE_SIZE, 0.1, 0, 0);
+        ExtendedKalmanFilter.update(x, ExtendedKalmanFilter.STATE_SIZE, p, ExtendedKalmanFilter.COVARIANCE_SIZE, 3, 4);
+
+        ExtendedKalmanFilter single = new ExtendedKalmanFilter();
+        single.setTimeStep(0.1);
+        single.predict(0, 0);
+        single.update(3, 4);
+
+        for (int i = 0; i < ExtendedKalmanFilter.STATE_SIZE; i++) {
+            assertEquals(0, x[i], 0);
+            assertEquals(single.getState()[i], x[ExtendedKalmanFilter.STATE_SIZE + i], 0);
+        }
+        assertEquals(1, p[0], 0);
+    }
+
+    private static void assertSameFilter(ReferenceFilter expected, ExtendedKalmanFilter actual) {
+        for (int i = 0; i < 4; i++) {
+            assertEquals("x[" + i + "]", expected.x[i], actual.getState()[i], TOLERANCE);
+            for (int j = 0; j < 4; j++) {
+                assertEquals("P[" + i + "][" + j + "]", expected.P[i][j], actual.getCovariance(i, j), TOLERANCE);
+            }
+        }
+    }
+
+    /**
+     * The generic implementation the kernel replaced, with {@code dt} made settable.
+     */
+    private static class ReferenceFilter {
+        double[][] F;
+        double[][] H = {{1, 0, 0, 0}, {0, 1, 0, 0}};
+        double[][] Q = {{0.1, 0, 0, 0}, {0, 0.1, 0, 0}, {0, 0, 0.1, 0}, {0, 0, 0, 0.1}};
+        double[][] R = {{1, 0}, {0, 1}};
+        double[][] P = {{1, 0, 0, 0}, {0, 1, 0, 0}, {0, 0, 1, 0}, {0, 0, 0, 1}};
+        double[] x = {0, 0, 0, 0};
+        double dt;
+
+        void predict(double[] u) {
+            F = new double[][]{{1, 0, dt, 0}, {0, 1, 0, dt}, {0, 0, 1, 0}, {0, 0, 0, 1}};
+            x = matrixVectorMultiply(F, x);
+            x[2] += u[0] * dt;
+            x[3] += u[1] * dt;
+            P = matrixAdd(matrixMultiply(matrixMultiply(F, P), transpose(F)), Q);
+        }
+
+        void update(double[] z) {
+            double[][] S = matrixAdd(matrixMultiply(matrixMultiply(H, P), transpose(H)), R);
+            double[][] K = matrixMultiply(matrixMultiply(P, transpose(H)), inverse(S));
+            double[] y = vectorSubtract(z, matrixVectorMultiply(H, x));
+            x = vectorAdd(x, matrixVectorMultiply(K, y));
+            double[][] I = {{1, 0, 0, 0}, {0, 1, 0, 0}, {0, 0, 1, 0}, {0, 0, 0, 1}};
+            P = matrixMultiply(matrixSubtract(I, matrixMultiply(K, H)), P);
+        }
+
+        static double[][] matrixMultiply(double[][] A, double[][] B) {
+            double[][] result = new double[A.length][B[0].length];
+            for (int i = 0; i < A.length; i++) {
+                for (int j = 0; j < B[0].length; j++) {
+                    for (int k = 0; k < B.length; k++) {
+                        result[i][j] += A[i][k] * B[k][j];
+                    }
+                }
+            }
+            return result;
+        }
+
+        static double[] matrixVectorMultiply(double[][] A, double[] v) {
+            double[] result = new double[A.length];
+            for (int i = 0; i < A.length; i++) {
+                for (int j = 0; j < v.length; j++) {
+                    result[i] += A[i][j] * v[j];
+                }
+            }
+            return result;
+        }
+
+        static double[][] matrixAdd(double[][] A, double[][] B) {
+            double[][] result = new double[A.length][A[0].length];
+            for (int i = 0; i < A.length; i++) {
+                for (int j = 0; j < A[0].length; j++) {
+                    result[i][j] = A[i][j] + B[i][j];
+                }
+            }
+            return result;
+        }
+
+        static double[][] matrixSubtract(double[][] A, double[][] B) {
+            double[][] result = new double[A.length][A[0].length];
+            for (int i = 0; i < A.length; i++) {
+                for (int j = 0; j < A[0].length; j++) {
+                    result[i][j] = A[i][j] - B[i][j];
+                }
+            }
+            return result;
+        }
+
+        static double[][] transpose(double[][] A) {
+            double[][] result = new double[A[0].length][A.length];
+            for (int i = 0; i < A.length; i++) {
+                for (int j = 0; j < A[0].length; j++) {
+                    result[j][i] = A[i][j];
+                }
+            }
+            return result;
+        }
+
+        static double[] vectorAdd(double[] a, double[] b) {
+            double[] result = new double[a.length];
+            for (int i = 0; i < a.length; i++) {
+                result[i] = a[i] + b[i];
+            }
+            return result;
+        }
+
+        static double[] vectorSubtract(double[] a, double[] b) {
+            double[] result = new double[a.length];
+            for (int i = 0; i < a.length; i++) {
+                result[i] = a[i] - b[i];
+            }
+            return result;
+        }
+
+        static double[][] inverse(double[][] A) {
+            double det = A[0][0] * A[1][1] - A[0][1] * A[1][0];
+            return new double[][]{
+                    {A[1][1] / det, -A[0][1] / det},
+                    {-A[1][0] / det, A[0][0] / det}
+            };
+        }
+    }
+}
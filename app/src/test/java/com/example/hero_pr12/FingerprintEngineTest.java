@@ -0,0 +1,128 @@
+package com.example.hero_pr12;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * k-NN matching against a radio map: exact fingerprints, the inverted index against comparing
+ * every point on a 50,000-point map, and loading the map from CSV. Query cost is measured by
+ * FingerprintBenchmark in the benchmark module.
+ */
+public class FingerprintEngineTest {
+    private static final double BEACON_SPACING = 8.0; // 미터
+    private static final double HEARING_RADIUS = 20.0;
+
+    // Reference points every meter on a width x height grid, beacons on a coarser grid, RSSI from
+    // the log-distance model plus fixed shadowing per point and beacon
+    static RadioMap syntheticMap(int width, int height, Random random) {
+        int beaconColumns = (int) Math.ceil(width / BEACON_SPACING);
+        int beaconRows = (int) Math.ceil(height / BEACON_SPACING);
+        RadioMap.Builder builder = new RadioMap.Builder(beaconColumns * beaconRows);
+        int[] ids = new int[beaconColumns * beaconRows];
+        float[] values = new float[ids.length];
+        for (int py = 0; py < height; py++) {
+            for (int px = 0; px < width; px++) {
+                int count = 0;
+                for (int id = 0; id < ids.length; id++) {
+                    double dx = (id % beaconColumns + 0.5) * BEACON_SPACING - px;
+                    double dy = (id / beaconColumns + 0.5) * BEACON_SPACING - py;
+                    double distance = Math.sqrt(dx * dx + dy * dy);
+                    if (distance <= HEARING_RADIUS) {
+                        ids[count] = id;
+                        values[count] = (float) (-59 - 25 * Math.log10(Math.max(distance, 0.5)) + random.nextGaussian() * 2);
+                        count++;
+                    }
+                }
+                builder.addPoint(px, py, 0, ids, values, count);
+            }
+        }
+        return builder.build();
+    }
+
+    // Gives the fingerprint of a point, with noise, to the engine as one scan
+    private static void feedPoint(FingerprintEngine engine, RadioMap map, int point, Random random, double noise) {
+        engine.reset();
+        for (int i = map.rowStart(point); i < map.rowStart(point + 1); i++) {
+            engine.onBeaconRssi(map.beaconAt(i), (float) (map.rssiAt(i) + random.nextGaussian() * noise), 1);
+        }
+    }
+
+    @Test
+    public void exactFingerprint_isItsOwnNearestNeighbour() {
+        Random random = new Random(1);
+        RadioMap map = syntheticMap(40, 30, random);
+        FingerprintEngine engine = new FingerprintEngine(map);
+        for (int point : new int[]{0, 517, 1199}) {
+            feedPoint(engine, map, point, random, 0);
+            PositionEstimate estimate = new PositionEstimate();
+            estimate.floor = 0;
+            assertTrue(engine.estimate(estimate));
+            assertEquals(point, engine.getNeighbour(0));
+            assertEquals(0, engine.getNeighbourDistanceSquared(0), 1e-2);
+            assertEquals(map.x(point), estimate.x, 1.5);
+            assertEquals(map.y(point), estimate.y, 1.5);
+
+            estimate.floor = 1; // No reference points there
+            assertFalse(engine.estimate(estimate));
+        }
+    }
+
+    @Test
+    public void indexedSearch_matchesComparingEveryPoint() {
+        Random random = new Random(2);
+        RadioMap map = syntheticMap(250, 200, random);
+        assertEquals(50000, map.getPointCount());
+        FingerprintEngine engine = new FingerprintEngine(map);
+        int queries = 200;
+        int agreed = 0;
+        long candidates = 0;
+        for (int q = 0; q < queries; q++) {
+            feedPoint(engine, map, random.nextInt(map.getPointCount()), random, 3);
+            engine.setUseIndex(false);
+            engine.search(0);
+            int scanned = engine.getNeighbour(0);
+            engine.setUseIndex(true);
+            engine.search(0);
+            candidates += engine.getCandidateCount();
+            if (engine.getNeighbour(0) == scanned) {
+                agreed++;
+            }
+        }
+        assertTrue("agreed " + agreed, agreed >= queries * 95 / 100);
+        assertTrue(candidates / queries < map.getPointCount() / 20);
+    }
+
+    @Test
+    public void readCsv_resolvesMacsAndSkipsUnknownBeacons() throws Exception {
+        BeaconDatabaseWriter writer = new BeaconDatabaseWriter();
+        writer.add(BeaconDatabase.packMac("C3:00:00:19:2F:46"), UUID.randomUUID(), 1, 1, -59, 0, 0, 0xFF0000FF);
+        writer.add(BeaconDatabase.packMac("C3:00:00:19:2F:47"), UUID.randomUUID(), 1, 2, -59, 10, 0, 0xFF0000FF);
+        BeaconDatabase database = BeaconDatabase.wrap(writer.toByteBuffer());
+        RadioMap map = RadioMap.readCsv(new StringReader("# x,y,floor,MAC,rssi...\n"
+                + "1.5,2,0,C3:00:00:19:2F:46,-60.5,C3:00:00:19:2F:47,-80,AA:BB:CC:DD:EE:FF,-70\n"
+                + "\n"
+                + "8,2,1,C3:00:00:19:2F:47,-62\n"), database);
+        assertEquals(2, map.getPointCount());
+        assertEquals(2, map.getBeaconCount());
+        assertEquals(1.5f, map.x(0), 0);
+        assertEquals(1, map.floor(1));
+        float[] query = {-60.5f, -80f};
+        float norm = 39.5f * 39.5f + 20f * 20f;
+        assertEquals(0, map.distanceSquared(0, query, norm), 1e-3);
+        // Beacon 0 heard only by the query, beacon 1 by both
+        assertEquals(39.5f * 39.5f + 18f * 18f, map.distanceSquared(1, query, norm), 1e-2);
+
+        try {
+            RadioMap.readCsv(new StringReader("1,2,0,C3:00:00:19:2F:46\n"), database);
+            fail();
+        } catch (IOException expected) {
+            // RSSI missing
+        }
+    }
+}
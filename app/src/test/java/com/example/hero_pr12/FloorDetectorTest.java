@@ -0,0 +1,202 @@
+package com.example.hero_pr12;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Floors in the beacon database, floor detection from beacons and the barometer, and per-floor
+ * residency.
+ */
+public class FloorDetectorTest {
+    private static final UUID PROXIMITY_UUID = UUID.fromString("fda50693-a4e2-4fb1-afcf-c6eb07647825");
+    private static final long SECOND = 1000000000L;
+    private static final float GROUND_PRESSURE = 1000f;
+    // About 0.12 hPa per meter near sea level
+    private static final float FLOOR_PRESSURE_STEP = 0.48f;
+
+    @After
+    public void tearDown() {
+        BeaconInfoLoader.setDatabase(BeaconDatabase.empty());
+    }
+
+    @Test
+    public void database_keepsFloorsAndGroupsBeaconsByFloor() throws Exception {
+        String csv = "C3:00:00:19:2F:46,fda50693-a4e2-4fb1-afcf-c6eb07647825,1,1,-59,1,1,#0000FF,2\n"
+                + "C3:00:00:19:2F:47,fda50693-a4e2-4fb1-afcf-c6eb07647825,1,2,-59,2,1,#0000FF,-1\n"
+                + "C3:00:00:19:2F:48,fda50693-a4e2-4fb1-afcf-c6eb07647825,1,3,-59,3,1,#0000FF\n"
+                + "C3:00:00:19:2F:49,fda50693-a4e2-4fb1-afcf-c6eb07647825,1,4,-59,4,1,#0000FF,2\n";
+        BeaconDatabase database = BeaconDatabase.wrap(new BeaconDatabaseWriter().readCsv(new StringReader(csv)).toByteBuffer());
+        assertEquals(2, database.floor(0));
+        assertEquals(-1, database.floor(1));
+        assertEquals(0, database.floor(2));
+        assertArrayEquals(new int[]{-1, 0, 2}, database.floors());
+        assertArrayEquals(new int[]{0, 3}, database.beaconsOnFloor(2));
+        assertArrayEquals(new int[]{1}, database.beaconsOnFloor(-1));
+        assertArrayEquals(new int[0], database.beaconsOnFloor(1));
+        assertEquals(3, database.findByMac(BeaconDatabase.packMac("C3:00:00:19:2F:49")));
+        assertArrayEquals(new int[0], BeaconDatabase.empty().floors());
+    }
+
+    @Test
+    public void beacons_switchFloorOnlyWhenTheyClearlyLead() {
+        FloorDetector detector = new FloorDetector(new int[]{0, 1, 2}, FloorDetector.DEFAULT_FLOOR_HEIGHT);
+        assertEquals(FloorDetector.UNKNOWN_FLOOR, detector.getFloor());
+        long t = SECOND;
+        assertTrue(detector.onBeacon(1, -70, t));
+        assertEquals(1, detector.getFloor());
+
+        // Floor 2 heard through the slab, 15 dB down: never a change
+        for (int i = 0; i < 100; i++) {
+            t += SECOND / 10;
+            assertFalse(detector.onBeacon(1, -70, t));
+            assertFalse(detector.onBeacon(2, -85, t));
+        }
+        assertEquals(1, detector.getFloor());
+
+        // Up the stairs: floor 2 takes over, and only after the dwell time without a barometer
+        long arrived = t;
+        boolean changed = false;
+        while (!changed) {
+            t += SECOND / 10;
+            changed = detector.onBeacon(2, -70, t) | detector.onBeacon(1, -88, t);
+        }
+        assertEquals(2, detector.getFloor());
+        assertTrue(t - arrived >= FloorDetector.DWELL_NANOS);
+        assertTrue(t - arrived < FloorDetector.DWELL_NANOS + 5 * SECOND);
+    }
+
+    @Test
+    public void barometer_followsTheElevatorButNotTheWeather() {
+        FloorDetector detector = new FloorDetector(new int[]{0, 1, 2, 3}, FloorDetector.DEFAULT_FLOOR_HEIGHT);
+        long t = SECOND;
+        detector.onBeacon(0, -65, t);
+        detector.onPressure(GROUND_PRESSURE, t);
+        assertEquals(0, detector.getFloor());
+
+        // Weather: 1 hPa over 30 minutes, about two floors, with floor 0 beacons all along
+        for (int i = 0; i < 1800; i++) {
+            t += SECOND;
+            detector.onBeacon(0, -65, t);
+            detector.onPressure(GROUND_PRESSURE - i / 1800f, t);
+        }
+        assertEquals(0, detector.getFloor());
+        float pressure = GROUND_PRESSURE - 1;
+
+        // Elevator up two floors in 10 s; no beacon on the way or on arrival yet
+        for (int i = 1; i <= 10; i++) {
+            t += SECOND;
+            detector.onPressure(pressure - 2 * FLOOR_PRESSURE_STEP * i / 10, t);
+        }
+        for (int i = 0; i < 30 && detector.getFloor() != 2; i++) {
+            t += SECOND / 2;
+            detector.onPressure(pressure - 2 * FLOOR_PRESSURE_STEP, t);
+        }
+        assertEquals(2, detector.getFloor());
+        assertEquals(0, detector.getRelativeAltitude(), 1.0);
+    }
+
+    @Test
+    public void window_keepsCurrentFloorAndNeighboursResident() {
+        List<String> events = new ArrayList<>();
+        FloorWindow<String> window = new FloorWindow<>(new FloorWindow.Loader<String>() {
+            @Override
+            public String load(int floor) {
+                events.add("load " + floor);
+                return floor == 5 ? null : "floor " + floor;
+            }
+
+            @Override
+            public void release(String value) {
+                events.add("release " + value);
+            }
+        }, Runnable::run, 1);
+
+        window.setCurrentFloor(2);
+        assertEquals(Arrays.asList("load 2", "load 3", "load 1"), events);
+        assertEquals("floor 3", window.get(3));
+        assertNull(window.get(4));
+
+        events.clear();
+        window.setCurrentFloor(4);
+        assertEquals(Arrays.asList("release floor 1", "release floor 2", "load 4", "load 5"), events);
+        assertEquals(2, window.getResidentCount()); // Floor 5 has no data
+        assertEquals("floor 4", window.get(4));
+
+        events.clear();
+        window.close();
+        assertEquals(2, events.size());
+        assertNull(window.get(4));
+    }
+
+    @Test
+    public void window_reportsFailedLoads() {
+        List<String> events = new ArrayList<>();
+        FloorWindow<String> window = new FloorWindow<>(new FloorWindow.Loader<String>() {
+            @Override
+            public String load(int floor) throws IOException {
+                if (floor == 3) {
+                    throw new IOException("plan missing");
+                }
+                return "floor " + floor;
+            }
+
+            @Override
+            public void release(String value) {
+            }
+        }, Runnable::run, 1);
+        window.setListener(new FloorWindow.Listener() {
+            @Override
+            public void onFloorLoaded(int floor) {
+                events.add("loaded " + floor);
+            }
+
+            @Override
+            public void onFloorLoadFailed(int floor, Exception e) {
+                events.add("failed " + floor + ": " + e.getMessage());
+            }
+        });
+
+        window.setCurrentFloor(2);
+        assertEquals(Arrays.asList("loaded 2", "failed 3: plan missing", "loaded 1"), events);
+        assertFalse(window.isResident(3));
+        assertEquals(2, window.getResidentCount());
+    }
+
+    @Test
+    public void processor_rangesOnlyTheCurrentFloor() {
+        BeaconDatabaseWriter writer = new BeaconDatabaseWriter();
+        for (int i = 0; i < 4; i++) {
+            writer.add(0xC30000192F00L + i, PROXIMITY_UUID, 1, i, -59, i * 5, 0, 0xFF0000FF, 0);
+            writer.add(0xC30000193F00L + i, PROXIMITY_UUID, 2, i, -59, i * 5, 0, 0xFF0000FF, 1);
+        }
+        BeaconInfoLoader.setDatabase(BeaconDatabase.wrap(writer.toByteBuffer()));
+        PositioningProcessor processor = new PositioningProcessor();
+
+        long t = SECOND;
+        for (int round = 0; round < 10; round++) {
+            t += SECOND / 10;
+            for (int i = 0; i < 4; i++) {
+                processor.accept(2 * i, -65, -59, t);     // Floor 0
+                processor.accept(2 * i + 1, -82, -59, t); // Floor 1 through the slab
+            }
+        }
+        assertEquals(0, processor.getFloor());
+        assertTrue(processor.consumeFloorChanged());
+        BeaconStateTable state = processor.getState();
+        assertEquals(4, state.getHeardCount());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(state.isHeard(2 * i));
+            assertFalse(state.isHeard(2 * i + 1));
+        }
+        assertEquals(0, processor.estimatePosition().floor);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.hero_pr12;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the fused filter on the same simulated walk as the particle filter, and its speed,
+ * heading and outlier handling.
+ */
+public class FusedPositionFilterTest {
+    private static final long STEP_NANOS = 500000000L;
+
+    @Test
+    public void track_followsWalkThroughDoor() {
+        FusedPositionFilter filter = new FusedPositionFilter();
+        double error = ParticleFilterTest.walk(filter, new Random(11));
+        assertTrue("final error " + error, error < 2.0);
+    }
+
+    @Test
+    public void steps_estimateSpeedAndHeading() {
+        FusedPositionFilter filter = new FusedPositionFilter();
+        filter.onBeaconRange(0, 0, 0, 1, 1, 0);
+        long t = 0;
+        for (int i = 0; i < 20; i++) {
+            t += STEP_NANOS;
+            filter.onStep(t, 0.7, 90);
+        }
+        assertEquals(1.4, filter.getSpeed(), 0.1);
+        assertEquals(90, filter.getHeadingDegrees(), 5);
+    }
+
+    @Test
+    public void standingStill_speedDecaysToZero() {
+        FusedPositionFilter filter = new FusedPositionFilter();
+        filter.onBeaconRange(0, 0, 0, 1, 1, 0);
+        long t = 0;
+        for (int i = 0; i < 10; i++) {
+            t += STEP_NANOS;
+            filter.onStep(t, 0.7, 0);
+        }
+        PositionEstimate before = new PositionEstimate();
+        PositionEstimate after = new PositionEstimate();
+        // Uninformative ranges keep the filter ticking, no more steps
+        for (int i = 0; i < 10; i++) {
+            t += STEP_NANOS;
+            filter.onBeaconRange(1, 100, 0, 100, 1e6, t);
+            if (i == 5) {
+                filter.estimate(before);
+            }
+        }
+        filter.estimate(after);
+        assertEquals(0, filter.getSpeed(), 0.1);
+        assertEquals(before.x, after.x, 0.2);
+    }
+
+    @Test
+    public void outlierRange_isRejected() {
+        FusedPositionFilter filter = new FusedPositionFilter();
+        Random random = new Random(3);
+        double[][] beacons = {{0, 0}, {10, 0}, {0, 10}, {10, 10}};
+        long t = 0;
+        for (int i = 0; i < 50; i++) {
+            t += 100000000L;
+            double[] beacon = beacons[i % beacons.length];
+            double d = Math.hypot(5 - beacon[0], 5 - beacon[1]);
+            filter.onBeaconRange(i % beacons.length, beacon[0], beacon[1], d + random.nextGaussian() * 0.3, 0.1, t);
+        }
+        PositionEstimate estimate = new PositionEstimate();
+        filter.estimate(estimate);
+        assertEquals(5, estimate.x, 0.5);
+        assertEquals(5, estimate.y, 0.5);
+
+        // A reflection reports the first beacon 20 m away
+        filter.onBeaconRange(0, 0, 0, 20, 0.1, t + 100000000L);
+        filter.estimate(estimate);
+        assertEquals(5, estimate.x, 0.5);
+        assertEquals(5, estimate.y, 0.5);
+    }
+}
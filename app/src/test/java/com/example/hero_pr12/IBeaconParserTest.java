@@ -0,0 +1,128 @@
+package com.example.hero_pr12;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the iBeacon parser and the scan listener against captured advertisement bytes.
+ */
+public class IBeaconParserTest {
+    private static final UUID PROXIMITY_UUID = UUID.fromString("fda50693-a4e2-4fb1-afcf-c6eb07647825");
+    private static final int RECORD_LENGTH = 62; // startLeScan pads advertisement + scan response to 62 bytes
+
+    // Flags, iBeacon 123/456 at -59 dBm, then a scan response with the local name "MBeacon"
+    private static final byte[] IBEACON = record(
+            "02 01 06 1A FF 4C 00 02 15 FD A5 06 93 A4 E2 4F B1 AF CF C6 EB 07 64 78 25 00 7B 01 C8 C5"
+                    + " 08 09 4D 42 65 61 63 6F 6E");
+    // Flags, TX power level, iBeacon 123/457 at -65 dBm
+    private static final byte[] IBEACON_AFTER_TX_POWER_LEVEL = record(
+            "02 01 06 02 0A 00 1A FF 4C 00 02 15 FD A5 06 93 A4 E2 4F B1 AF CF C6 EB 07 64 78 25 00 7B 01 C9 BF");
+    // Eddystone-UID from the same vendor
+    private static final byte[] EDDYSTONE_UID = record(
+            "02 01 06 03 03 AA FE 17 16 AA FE 00 EE FD A5 06 93 A4 E2 4F B1 AF CF 00 00 00 00 00 01 00 00");
+    // Apple "nearby" frame, not an iBeacon
+    private static final byte[] APPLE_NEARBY = record("02 01 1A 0A FF 4C 00 10 05 0B 1C 3D 2E 6F");
+    // iBeacon structure cut off by the controller
+    private static final byte[] TRUNCATED = hex("02 01 06 1A FF 4C 00 02 15 FD A5 06 93 A4 E2 4F");
+
+    private final IBeaconParser parser = new IBeaconParser();
+
+    @Before
+    public void setUp() {
+        BeaconDatabaseWriter writer = new BeaconDatabaseWriter()
+                .add(BeaconDatabase.packMac("C3:00:00:19:2F:46"), PROXIMITY_UUID, 123, 456, -59, 11, 3.4f, 0xFF0000FF)
+                .add(BeaconDatabase.packMac("C3:00:00:19:2F:47"), PROXIMITY_UUID, 123, 457, -62, 17.5f, 3.4f, 0xFF00FF00);
+        BeaconInfoLoader.setDatabase(BeaconDatabase.wrap(writer.toByteBuffer()));
+    }
+
+    @After
+    public void tearDown() {
+        BeaconInfoLoader.setDatabase(BeaconDatabase.empty());
+    }
+
+    @Test
+    public void iBeaconFrame_isParsed() {
+        assertTrue(parser.parse(IBEACON));
+        assertEquals(PROXIMITY_UUID.getMostSignificantBits(), parser.getUuidMostSignificantBits());
+        assertEquals(PROXIMITY_UUID.getLeastSignificantBits(), parser.getUuidLeastSignificantBits());
+        assertEquals(123, parser.getMajor());
+        assertEquals(456, parser.getMinor());
+        assertEquals(-59, parser.getMeasuredPower());
+    }
+
+    @Test
+    public void iBeaconFrame_isFoundAfterOtherStructures() {
+        assertTrue(parser.parse(IBEACON_AFTER_TX_POWER_LEVEL));
+        assertEquals(457, parser.getMinor());
+        assertEquals(-65, parser.getMeasuredPower());
+    }
+
+    @Test
+    public void otherFrames_areRejected() {
+        assertFalse(parser.parse(EDDYSTONE_UID));
+        assertFalse(parser.parse(APPLE_NEARBY));
+        assertFalse(parser.parse(TRUNCATED));
+        assertFalse(parser.parse(new byte[RECORD_LENGTH]));
+        assertFalse(parser.parse(null));
+    }
+
+    @Test
+    public void parse_honoursOffsetAndLength() {
+        byte[] shifted = new byte[IBEACON.length + 5];
+        System.arraycopy(IBEACON, 0, shifted, 5, IBEACON.length);
+        assertTrue(parser.parse(shifted, 5, IBEACON.length));
+        assertEquals(456, parser.getMinor());
+        assertFalse(parser.parse(IBEACON, 0, 20));
+    }
+
+    @Test
+    public void listener_resolvesByIdentityDespiteRandomisedMac() {
+        ScanSampleQueue queue = new ScanSampleQueue(8);
+        ScanQueueListener listener = new ScanQueueListener(queue, () -> { });
+
+        listener.onScanSample("5E:21:9A:03:7C:11", -70, IBEACON_AFTER_TX_POWER_LEVEL, 1000);
+        listener.onScanSample("C3:00:00:19:2F:46", -71, null, 2000);
+        listener.onScanSample("C3:00:00:19:2F:46", -72, EDDYSTONE_UID, 3000);
+        listener.onScanSample("5E:21:9A:03:7C:12", -73, EDDYSTONE_UID, 4000);
+
+        final List<int[]> samples = new ArrayList<>();
+        queue.drain((beaconId, rssi, txPower, timestampNanos) -> samples.add(new int[]{beaconId, rssi, txPower}), 8);
+        assertEquals(3, samples.size());
+        // Advertised power wins over the database value
+        assertArrayEquals(new int[]{1, -70, -65}, samples.get(0));
+        // Without an iBeacon frame the MAC is used, with the database power
+        assertArrayEquals(new int[]{0, -71, -59}, samples.get(1));
+        assertArrayEquals(new int[]{0, -72, -59}, samples.get(2));
+    }
+
+    @Test
+    public void processor_usesPerBeaconPower() {
+        PositioningProcessor processor = new PositioningProcessor();
+        processor.accept(0, -59, -59, 1000);
+        processor.accept(1, -59, -65, 1000);
+
+        // Same RSSI, but beacon 1 is calibrated 6 dB weaker at one meter, so it must be closer
+        assertTrue(processor.getState().getDistance(1) < processor.getState().getDistance(0));
+    }
+
+    private static byte[] record(String hex) {
+        return Arrays.copyOf(hex(hex), RECORD_LENGTH);
+    }
+
+    private static byte[] hex(String hex) {
+        String[] octets = hex.trim().split(" ");
+        byte[] bytes = new byte[octets.length];
+        for (int i = 0; i < octets.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(octets[i], 16);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.hero_pr12;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Percentile accuracy of the log-linear histogram, concurrent recording, and the pipeline's
+ * per-stage budgets and sample timestamps.
+ */
+public class LatencyHistogramTest {
+    private static final long MILLI = 1000000L;
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void percentiles_areWithinOneSubBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(42);
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-normal around 20 ms, from microseconds to seconds
+            values[i] = (long) (20 * MILLI * Math.exp(random.nextGaussian() * 1.5));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double fraction : new double[]{0.5, 0.95, 0.99}) {
+            long exact = values[(int) Math.ceil(fraction * values.length) - 1];
+            long reported = histogram.getPercentileNanos(fraction);
+            assertTrue(fraction + ": " + reported + " vs " + exact,
+                    reported >= exact && reported <= exact + exact / LatencyHistogram.SUB_BUCKETS + 1000);
+        }
+        assertEquals(values[values.length - 1], histogram.getMaxNanos());
+        assertEquals(values[values.length - 1], histogram.getPercentileNanos(1.0));
+        assertEquals(values.length, histogram.getCount());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(0.99));
+    }
+
+    @Test
+    public void buckets_coverTheRangeWithoutGaps() {
+        long previousUpper = 0;
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKET_COUNT; bucket++) {
+            long upper = LatencyHistogram.upperBoundMicros(bucket);
+            assertEquals(bucket, LatencyHistogram.bucketOf(previousUpper));
+            assertEquals(bucket, LatencyHistogram.bucketOf(upper - 1));
+            previousUpper = upper;
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE / 1000));
+    }
+
+    @Test
+    public void recording_fromManyThreadsLosesNothing() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int thread = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 1; i <= 50000; i++) {
+                    histogram.record(i * 1000L + thread);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(200000, histogram.getCount());
+        assertEquals(50000 * 1000L + 3, histogram.getMaxNanos());
+        assertEquals(25000 * 1000L, histogram.getPercentileNanos(0.5), 25000 * 1000L / LatencyHistogram.SUB_BUCKETS);
+    }
+
+    @Test
+    public void pipeline_countsValuesOverBudget() throws IOException {
+        PipelineLatency latency = new PipelineLatency();
+        latency.setBudget(PipelineLatency.ESTIMATE, 5 * MILLI);
+        for (int i = 0; i < 100; i++) {
+            latency.record(PipelineLatency.ESTIMATE, (i < 97 ? 1 : 20) * MILLI);
+        }
+        latency.recordDrawn(10 * SECOND, 10 * SECOND - 600 * MILLI, 10 * SECOND + 16 * MILLI);
+        latency.recordDrawn(11 * SECOND, 0, 11 * SECOND + 16 * MILLI); // Position without a sample time
+        assertEquals(3, latency.getOverBudgetCount(PipelineLatency.ESTIMATE));
+        assertEquals(0, latency.getOverBudgetCount(PipelineLatency.END_TO_END));
+        assertEquals(2, latency.getHistogram(PipelineLatency.DRAW).getCount());
+        assertEquals(1, latency.getHistogram(PipelineLatency.END_TO_END).getCount());
+        assertEquals(0, latency.getOverBudgetCount(PipelineLatency.DRAW)); // No budget
+
+        String overlay = latency.toString();
+        assertTrue(overlay, overlay.contains("estimate") && overlay.contains("over 3"));
+        assertFalse(overlay.contains("queue")); // Stages without data are left out
+        StringBuilder csv = new StringBuilder();
+        latency.writeCsv(csv);
+        assertEquals(PipelineLatency.STAGE_COUNT + 1, csv.toString().split("\n").length);
+        assertTrue(csv.toString().contains("\nestimate,100,"));
+    }
+
+    @Test
+    public void processor_stampsFixesWithTheNewestSample() {
+        BeaconDatabaseWriter writer = new BeaconDatabaseWriter();
+        for (int i = 0; i < 4; i++) {
+            writer.add(0xC30000192F00L + i, UUID.randomUUID(), 1, i, -59, (i % 2) * 10, (i / 2) * 10, 0xFF0000FF);
+        }
+        BeaconInfoLoader.setDatabase(BeaconDatabase.wrap(writer.toByteBuffer()));
+        try {
+            PositioningProcessor processor = new PositioningProcessor();
+            long t = SECOND;
+            for (int round = 0; round < 5; round++) {
+                t += SECOND / 10;
+                for (int i = 0; i < 4; i++) {
+                    processor.accept(i, -65, -59, t + i);
+                }
+            }
+            Point fix = processor.estimatePosition();
+            assertNotNull(fix);
+            assertEquals(t + 3, fix.timestampNanos);
+        } finally {
+            BeaconInfoLoader.setDatabase(BeaconDatabase.empty());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.hero_pr12;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tile addressing of the map renderer and the frame time statistics.
+ */
+public class MapRendererTest {
+    @Test
+    public void zoomLevel_isNeverBlurrierThanTheScale() {
+        assertEquals(0, MapRenderer.zoomLevel(1f));
+        assertEquals(1, MapRenderer.zoomLevel(1.2f));
+        assertEquals(1, MapRenderer.zoomLevel(2f));
+        assertEquals(-1, MapRenderer.zoomLevel(0.5f));
+        assertEquals(0, MapRenderer.zoomLevel(0.7f));
+        assertEquals(MapRenderer.MIN_ZOOM_LEVEL, MapRenderer.zoomLevel(0.01f));
+        assertEquals(MapRenderer.MAX_ZOOM_LEVEL, MapRenderer.zoomLevel(100f));
+        for (float scale = 0.1f; scale <= 10f; scale *= 1.1f) {
+            int zoom = MapRenderer.zoomLevel(scale);
+            // Tiles are drawn shrunk by at most half, never enlarged
+            float shrink = scale / Math.scalb(1f, zoom);
+            assertTrue("scale " + scale, shrink <= 1.0001f && shrink > 0.4999f);
+        }
+    }
+
+    @Test
+    public void screenToWorld_undoesTheDrawTransform() {
+        Point user = new Point(12.5, -3, 2);
+        // Scaled around the top-left corner, the user is drawn at scale x the view center
+        Point center = MapRenderer.screenToWorld(300, 200, 300, 200, user, 2f, 0, 0);
+        assertEquals(12.5, center.x, 1e-9);
+        assertEquals(-3, center.y, 1e-9);
+        assertEquals(2, center.floor);
+        // One meter right of the user, panned 40 px left
+        float screenX = 300 + 2 * MapRenderer.PIXELS_PER_METER - 40;
+        Point tapped = MapRenderer.screenToWorld(screenX, 200, 300, 200, user, 2f, -40, 0);
+        assertEquals(13.5, tapped.x, 1e-9);
+        assertEquals(-3, tapped.y, 1e-9);
+    }
+
+    @Test
+    public void tiles_coverNegativeCoordinatesAndHaveDistinctKeys() {
+        assertEquals(-1, MapRenderer.tileIndex(-0.5, 256));
+        assertEquals(0, MapRenderer.tileIndex(0, 256));
+        assertEquals(0, MapRenderer.tileIndex(255.9, 256));
+        assertEquals(-2, MapRenderer.tileIndex(-256.1, 256));
+
+        Set<Long> keys = new HashSet<>();
+        for (int zoom = MapRenderer.MIN_ZOOM_LEVEL; zoom <= MapRenderer.MAX_ZOOM_LEVEL; zoom++) {
+            for (int column = -20; column <= 20; column++) {
+                for (int row = -20; row <= 20; row++) {
+                    assertTrue(keys.add(MapRenderer.tileKey(zoom, column, row)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void frameStats_reportWindowPercentiles() {
+        FrameStats stats = new FrameStats();
+        assertEquals(0, stats.getPercentileNanos(0.5));
+        for (int i = 1; i <= 100; i++) {
+            stats.record(i * 1000000L);
+        }
+        assertEquals(50000000L, stats.getPercentileNanos(0.5));
+        assertEquals(95000000L, stats.getPercentileNanos(0.95));
+        assertEquals(100000000L, stats.getMaxNanos());
+        assertEquals(50.5e6, stats.getMeanNanos(), 1);
+
+        // Old frames leave the window
+        for (int i = 0; i < FrameStats.WINDOW; i++) {
+            stats.record(2000000L);
+        }
+        assertEquals(2000000L, stats.getMaxNanos());
+        assertEquals(100 + FrameStats.WINDOW, stats.getTotalFrames());
+    }
+}
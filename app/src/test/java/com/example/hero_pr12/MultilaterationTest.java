@@ -0,0 +1,144 @@
+package com.example.hero_pr12;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the N-beacon weighted least-squares solver with the previous three-beacon path
+ * (nearest three beacons, average of trilateration and triangulation) on a synthetic room.
+ * Latency is measured by TrilaterationBenchmark in the benchmark module.
+ */
+public class MultilaterationTest {
+    private static final int BEACON_COUNT = 12;
+    private static final int FIXES = 2000;
+    private static final double ROOM_WIDTH = 30;
+    private static final double ROOM_HEIGHT = 20;
+    private static final float PATH_LOSS = BeaconDistanceCalculator.PATH_LOSS_PARAMETER_OFFICE_HARD_PARTITION;
+    private static final double RSSI_NOISE_DB = 2;
+    private static final UUID BEACON_UUID = UUID.fromString("fda50693-a4e2-4fb1-afcf-c6eb07647825");
+
+    private final double[] beaconX = new double[BEACON_COUNT];
+    private final double[] beaconY = new double[BEACON_COUNT];
+    private final String[] beaconKeys = new String[BEACON_COUNT];
+    private final double[][] measuredRanges = new double[FIXES][BEACON_COUNT];
+    private final double[] trueX = new double[FIXES];
+    private final double[] trueY = new double[FIXES];
+
+    @Before
+    public void setUp() {
+        BeaconDatabaseWriter writer = new BeaconDatabaseWriter();
+        for (int i = 0; i < BEACON_COUNT; i++) {
+            beaconX[i] = (i % 4) * ROOM_WIDTH / 3;
+            beaconY[i] = (i / 4) * ROOM_HEIGHT / 2;
+            writer.add(0xC30000000000L + i, BEACON_UUID, 1, i, -59, (float) beaconX[i], (float) beaconY[i], 0xFF0000FF);
+        }
+        BeaconInfoLoader.setDatabase(BeaconDatabase.wrap(writer.toByteBuffer()));
+        for (int i = 0; i < BEACON_COUNT; i++) {
+            beaconKeys[i] = BeaconInfoLoader.getBeaconKey(i);
+        }
+        Random random = new Random(42);
+        for (int f = 0; f < FIXES; f++) {
+            trueX[f] = 1 + random.nextDouble() * (ROOM_WIDTH - 2);
+            trueY[f] = 1 + random.nextDouble() * (ROOM_HEIGHT - 2);
+            for (int i = 0; i < BEACON_COUNT; i++) {
+                double d = Math.max(0.5, Math.hypot(trueX[f] - beaconX[i], trueY[f] - beaconY[i]));
+                double shadowing = random.nextGaussian() * RSSI_NOISE_DB;
+                measuredRanges[f][i] = d * Math.pow(10, shadowing / (10 * PATH_LOSS));
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        BeaconInfoLoader.setDatabase(BeaconDatabase.empty());
+    }
+
+    @Test
+    public void weightedLeastSquares_beatsThreeBeaconPath() {
+        double threeBeaconError = 0;
+        int threeBeaconFailures = 0;
+        double multilaterationError = 0;
+        PositionEstimate estimate = new PositionEstimate();
+        double[] variances = new double[BEACON_COUNT];
+        for (int f = 0; f < FIXES; f++) {
+            Point p = threeBeaconFix(measuredRanges[f]);
+            double error = Math.hypot(p.x - trueX[f], p.y - trueY[f]);
+            if (Double.isNaN(error) || Double.isInfinite(error)) {
+                // Three collinear beacons make both closed-form solutions singular
+                threeBeaconFailures++;
+            } else {
+                threeBeaconError += error;
+            }
+
+            fillVariances(measuredRanges[f], variances);
+            assertTrue(TrilaterationCalculator.multilaterate(beaconX, beaconY, measuredRanges[f], variances, BEACON_COUNT, estimate));
+            multilaterationError += Math.hypot(estimate.x - trueX[f], estimate.y - trueY[f]);
+        }
+        threeBeaconError /= FIXES - threeBeaconFailures;
+        multilaterationError /= FIXES;
+        assertTrue(multilaterationError + " m vs " + threeBeaconError + " m", multilaterationError < threeBeaconError);
+    }
+
+    @Test
+    public void exactRanges_recoverPosition() {
+        double[] ranges = new double[BEACON_COUNT];
+        double[] variances = new double[BEACON_COUNT];
+        for (int i = 0; i < BEACON_COUNT; i++) {
+            ranges[i] = Math.hypot(12.5 - beaconX[i], 7.25 - beaconY[i]);
+            variances[i] = 1;
+        }
+        PositionEstimate estimate = new PositionEstimate();
+        assertTrue(TrilaterationCalculator.multilaterate(beaconX, beaconY, ranges, variances, BEACON_COUNT, estimate));
+        assertEquals(12.5, estimate.x, 1e-6);
+        assertEquals(7.25, estimate.y, 1e-6);
+        assertTrue(estimate.varianceX > 0 && estimate.varianceY > 0);
+    }
+
+    @Test
+    public void collinearBeacons_stillConverge() {
+        double[] xs = {0, 5, 10, 15};
+        double[] ys = {0, 0, 0, 0};
+        double[] ranges = new double[4];
+        double[] variances = {1, 1, 1, 1};
+        for (int i = 0; i < 4; i++) {
+            ranges[i] = Math.hypot(6 - xs[i], 4 - ys[i]);
+        }
+        PositionEstimate estimate = new PositionEstimate();
+        assertTrue(TrilaterationCalculator.multilaterate(xs, ys, ranges, variances, 4, estimate));
+        assertEquals(6, estimate.x, 1e-3);
+        assertEquals(4, Math.abs(estimate.y), 1e-3);
+    }
+
+    private Point threeBeaconFix(double[] ranges) {
+        Map<String, Double> distances = new HashMap<>();
+        for (int i = 0; i < BEACON_COUNT; i++) {
+            distances.put(beaconKeys[i], ranges[i]);
+        }
+        Map<String, Double> strongest = distances.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue())
+                .limit(3)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        String[] keys = strongest.keySet().toArray(new String[0]);
+        Point p1 = BeaconInfoLoader.getBeaconLocation(keys[0]);
+        Point p2 = BeaconInfoLoader.getBeaconLocation(keys[1]);
+        Point p3 = BeaconInfoLoader.getBeaconLocation(keys[2]);
+        Point a = TrilaterationCalculator.trilateration(strongest);
+        Point b = TrilaterationCalculator.triangulation(p1, p2, p3, strongest.get(keys[0]), strongest.get(keys[1]), strongest.get(keys[2]));
+        return new Point((a.x + b.x) / 2, (a.y + b.y) / 2);
+    }
+
+    private static void fillVariances(double[] ranges, double[] variances) {
+        for (int i = 0; i < ranges.length; i++) {
+            variances[i] = BeaconDistanceCalculator.rangeVariance(ranges[i], PATH_LOSS);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.hero_pr12;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Walks a simulated user through a two-room plan and checks the particle filter against the
+ * walls and the true track.
+ */
+public class ParticleFilterTest {
+    private static final double PIXELS_PER_METER = 10;
+    private static final double STEP_LENGTH = 0.7;
+    private static final double[][] BEACONS = {{0, 0}, {20, 0}, {0, 10}, {20, 10}, {10, 9.5}};
+
+    // 20 m x 10 m, split by a wall at x = 10 m with a door between y = 8 m and y = 10 m
+    private static WallMap twoRooms() {
+        int width = (int) (20 * PIXELS_PER_METER);
+        int height = (int) (10 * PIXELS_PER_METER);
+        int[] pixels = new int[width * height];
+        java.util.Arrays.fill(pixels, 0xFFFFFFFF);
+        for (int py = 0; py < 8 * PIXELS_PER_METER; py++) {
+            pixels[py * width + (int) (10 * PIXELS_PER_METER)] = 0xFF000000;
+        }
+        return WallMap.fromPixels(pixels, width, height, PIXELS_PER_METER, 0, 0, 0.1);
+    }
+
+    @Test
+    public void wallMap_detectsCrossings() {
+        WallMap walls = twoRooms();
+        assertTrue(walls.isWall(10.05, 4));
+        assertFalse(walls.isWall(9, 4));
+        assertTrue(walls.crossesWall(9.5, 4, 10.5, 4));
+        assertTrue(walls.crossesWall(10.5, 1, 9.5, 3));
+        assertFalse(walls.crossesWall(9.5, 9, 10.5, 9)); // Through the door
+        assertFalse(walls.crossesWall(2, 2, 8, 7));
+        assertFalse(walls.crossesWall(-5, 4, -1, 4)); // Outside the plan
+    }
+
+    @Test
+    public void particles_neverPassThroughWalls() {
+        ParticleFilter filter = new ParticleFilter(2000, twoRooms());
+        filter.seedUniform(8.5, 4, 1);
+        for (int i = 0; i < 8; i++) {
+            filter.onStep(i, STEP_LENGTH, 0); // Straight at the wall
+        }
+        for (int i = 0; i < filter.getParticleCount(); i++) {
+            assertTrue("particle " + i + " at x=" + filter.getX(i), filter.getX(i) < 10);
+        }
+    }
+
+    @Test
+    public void walls_areLookedUpForEveryStep() {
+        WallMap[] current = {twoRooms()};
+        ParticleFilter filter = new ParticleFilter(2000, () -> current[0], 1);
+        filter.seedUniform(8.5, 4, 1);
+        for (int i = 0; i < 4; i++) {
+            filter.onStep(i, STEP_LENGTH, 0);
+        }
+        // A floor without the wall, or whose walls are not loaded yet
+        current[0] = null;
+        for (int i = 4; i < 8; i++) {
+            filter.onStep(i, STEP_LENGTH, 0);
+        }
+        int past = 0;
+        for (int i = 0; i < filter.getParticleCount(); i++) {
+            if (filter.getX(i) > 10) {
+                past++;
+            }
+        }
+        assertTrue(past + " particles past x = 10", past > filter.getParticleCount() / 2);
+    }
+
+    @Test
+    public void track_followsWalkThroughDoor() {
+        for (int threads : new int[]{1, 4}) {
+            ParticleFilter filter = new ParticleFilter(4000, twoRooms(), threads);
+            try {
+                double error = walk(filter, new Random(11));
+                assertTrue(threads + " threads: final error " + error, error < 2.0);
+            } finally {
+                filter.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void interruptedCaller_stillWaitsForEveryChunk() {
+        ParticleFilter expected = new ParticleFilter(4096, twoRooms(), 4);
+        ParticleFilter interrupted = new ParticleFilter(4096, twoRooms(), 4);
+        try {
+            assertEquals(4, interrupted.getThreadCount());
+            // The chunks' random generators are fixed, so both filters see the same moves
+            walk(expected, new Random(3));
+            Thread.currentThread().interrupt();
+            try {
+                walk(interrupted, new Random(3));
+                assertTrue(Thread.currentThread().isInterrupted());
+            } finally {
+                Thread.interrupted();
+            }
+            for (int i = 0; i < expected.getParticleCount(); i++) {
+                assertEquals(expected.getX(i), interrupted.getX(i), 0);
+                assertEquals(expected.getY(i), interrupted.getY(i), 0);
+            }
+        } finally {
+            expected.shutdown();
+            interrupted.shutdown();
+        }
+    }
+
+    // North up the left room, east through the door, south down the right room
+    static double walk(PositionEngine engine, Random random) {
+        double x = 5, y = 2;
+        long t = 0;
+        PositionEstimate estimate = new PositionEstimate();
+        double[][] legs = {{90, 10}, {0, 14}, {270, 10}};
+        for (double[] leg : legs) {
+            for (int s = 0; s < leg[1]; s++) {
+                x += STEP_LENGTH * Math.cos(Math.toRadians(leg[0]));
+                y += STEP_LENGTH * Math.sin(Math.toRadians(leg[0]));
+                t += 500000000L;
+                engine.onStep(t, STEP_LENGTH, leg[0] + random.nextGaussian() * 5);
+                for (int b = 0; b < BEACONS.length; b++) {
+                    double d = Math.hypot(x - BEACONS[b][0], y - BEACONS[b][1]);
+                    double measured = d * Math.pow(10, random.nextGaussian() * 2 / 17.0);
+                    engine.onBeaconRange(b, BEACONS[b][0], BEACONS[b][1], measured,
+                            BeaconDistanceCalculator.rangeVariance(measured, BeaconDistanceCalculator.PATH_LOSS_PARAMETER_INDOOR), t);
+                }
+            }
+        }
+        assertTrue(engine.estimate(estimate));
+        return Math.hypot(estimate.x - x, estimate.y - y);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.hero_pr12;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pyramid geometry of the building plan and wall maps built strip by strip.
+ */
+public class PlanTilePyramidTest {
+    @Test
+    public void levels_endWithASingleTile() {
+        assertEquals(1, PlanTilePyramid.levelCount(200, 100));
+        assertEquals(1, PlanTilePyramid.levelCount(256, 256));
+        assertEquals(2, PlanTilePyramid.levelCount(257, 10));
+        assertEquals(6, PlanTilePyramid.levelCount(8192, 6000));
+
+        int levels = PlanTilePyramid.levelCount(8192, 6000);
+        assertEquals(32, PlanTilePyramid.tileCount(8192, 0));
+        assertEquals(24, PlanTilePyramid.tileCount(6000, 0));
+        assertEquals(12, PlanTilePyramid.tileCount(6000, 1));
+        assertEquals(1, PlanTilePyramid.tileCount(8192, levels - 1));
+        assertEquals(1, PlanTilePyramid.tileCount(6000, levels - 1));
+    }
+
+    @Test
+    public void levelFor_neverEnlargesTiles() {
+        assertEquals(0, PlanTilePyramid.levelFor(1, 6));
+        assertEquals(0, PlanTilePyramid.levelFor(0.25, 6)); // Zoomed in past full resolution
+        assertEquals(0, PlanTilePyramid.levelFor(1.9, 6));
+        assertEquals(1, PlanTilePyramid.levelFor(2, 6));
+        assertEquals(3, PlanTilePyramid.levelFor(10, 6));
+        assertEquals(5, PlanTilePyramid.levelFor(1000, 6));
+        for (double ratio = 1; ratio < 40; ratio *= 1.1) {
+            int level = PlanTilePyramid.levelFor(ratio, 6);
+            // Screen pixels per decoded pixel stays within (1/2, 1]
+            double zoom = (1 << level) / ratio;
+            assertTrue("ratio " + ratio, zoom <= 1.0001 && zoom > 0.4999);
+        }
+    }
+
+    @Test
+    public void wallMap_fromStripsMatchesWholeImage() {
+        int width = 300;
+        int height = 170;
+        int[] pixels = new int[width * height];
+        Random random = new Random(3);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt(50) == 0 ? 0xFF000000 : 0xFFFFFFFF;
+        }
+        WallMap whole = WallMap.fromPixels(pixels, width, height, 50, -3, -1.7, 0.1);
+
+        WallMap strips = WallMap.forImage(width, height, 50, -3, -1.7, 0.1);
+        int stripHeight = 64;
+        for (int top = 0; top < height; top += stripHeight) {
+            int rows = Math.min(stripHeight, height - top);
+            int[] strip = new int[width * rows];
+            System.arraycopy(pixels, top * width, strip, 0, strip.length);
+            strips.addWallPixels(strip, 0, top, width, rows, 50);
+        }
+        assertEquals(whole.getColumns(), strips.getColumns());
+        assertEquals(whole.getRows(), strips.getRows());
+        for (double y = -1.65; y < 1.7; y += 0.1) {
+            for (double x = -2.95; x < 3; x += 0.1) {
+                assertEquals(whole.isWall(x, y), strips.isWall(x, y));
+            }
+        }
+    }
+}
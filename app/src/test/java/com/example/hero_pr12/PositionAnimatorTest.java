@@ -0,0 +1,107 @@
+package com.example.hero_pr12;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Displayed position and heading between fixes, sampled at 60 fps.
+ */
+public class PositionAnimatorTest {
+    private static final long SECOND = 1000000000L;
+    private static final long FRAME = SECOND / 60;
+
+    @Test
+    public void position_glidesBetweenFixesWithoutJumping() {
+        PositionAnimator animator = new PositionAnimator();
+        long t = SECOND;
+        animator.setPosition(0, 0, 0, t);
+        animator.sample(t);
+        assertEquals(0, animator.getX(), 1e-9);
+
+        // Walking along x at 1 m/s with a fix every 500 ms
+        double previous = 0;
+        double largestStep = 0;
+        for (int fix = 1; fix <= 10; fix++) {
+            for (int frame = 0; frame < 30; frame++) {
+                t += FRAME;
+                animator.sample(t);
+                largestStep = Math.max(largestStep, Math.abs(animator.getX() - previous));
+                assertTrue(animator.getX() >= previous - 1e-9); // Never walks backwards
+                previous = animator.getX();
+            }
+            animator.setPosition(fix * 0.5, 0, 0, t);
+        }
+        // 1 m/s is 1/60 m per frame; the first fix starts from standstill
+        assertTrue("step " + largestStep, largestStep < 0.1);
+        assertEquals(5.0, animator.getX(), 0.5);
+        assertEquals(0, animator.getY(), 1e-9);
+    }
+
+    @Test
+    public void extrapolation_followsVelocityAndStopsAfterOneSecond() {
+        PositionAnimator animator = new PositionAnimator();
+        long t = SECOND;
+        for (int fix = 0; fix <= 6; fix++) {
+            animator.setPosition(0, fix * 0.5, 0, t);
+            t += SECOND / 2;
+        }
+        long lastFix = t - SECOND / 2;
+        // No fixes for 3 s: carries on for a second at about 1 m/s, then settles
+        for (; t < lastFix + 3 * SECOND; t += FRAME) {
+            animator.sample(t);
+        }
+        assertEquals(3.0 + 1.0, animator.getY(), 0.1);
+        assertFalse(animator.isAnimating(t));
+        assertTrue(animator.isAnimating(lastFix + SECOND / 2));
+    }
+
+    @Test
+    public void heading_turnsTheShortWayRound() {
+        PositionAnimator animator = new PositionAnimator();
+        animator.setPosition(0, 0, 0, SECOND);
+        animator.setHeading(350);
+        animator.setHeading(10);
+        long t = SECOND;
+        for (int frame = 0; frame < 120; frame++) {
+            t += FRAME;
+            animator.sample(t);
+            double heading = animator.getHeading();
+            assertTrue("heading " + heading, heading >= 350 - 1e-9 || heading <= 10 + 1e-9);
+        }
+        assertEquals(0, PositionAnimator.angleDifference(10, animator.getHeading()), 0.2);
+        assertEquals(20, PositionAnimator.angleDifference(10, 350), 1e-9);
+        assertEquals(-20, PositionAnimator.angleDifference(350, 10), 1e-9);
+    }
+
+    @Test
+    public void floorChangeAndLongJump_areShownAtOnce() {
+        PositionAnimator animator = new PositionAnimator();
+        long t = SECOND;
+        animator.setPosition(1, 1, 0, t);
+        t += SECOND / 2;
+        animator.setPosition(1, 2, 1, t);
+        animator.sample(t);
+        assertEquals(1, animator.getFloor());
+        assertEquals(2, animator.getY(), 1e-9);
+
+        t += SECOND / 2;
+        animator.setPosition(30, 2, 1, t);
+        animator.sample(t);
+        assertEquals(30, animator.getX(), 1e-9);
+    }
+
+    @Test
+    public void firstFrameAfterIdle_easesIn() {
+        PositionAnimator animator = new PositionAnimator();
+        long t = SECOND;
+        animator.setPosition(0, 0, 0, t);
+        animator.sample(t);
+        t += 60 * SECOND;
+        assertFalse(animator.isAnimating(t));
+        animator.setPosition(2, 0, 0, t);
+        assertTrue(animator.isAnimating(t));
+        animator.sample(t + FRAME);
+        assertTrue(animator.getX() > 0 && animator.getX() < 1);
+    }
+}
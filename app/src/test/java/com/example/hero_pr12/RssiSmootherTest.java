@@ -0,0 +1,110 @@
+package com.example.hero_pr12;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Every smoothing mode against a naive recompute over the last window of samples, on channels
+ * whose ring buffers wrap many times and are cleared part way.
+ */
+public class RssiSmootherTest {
+    private static final int CHANNELS = 3;
+    private static final float DECAY = 0.8f;
+
+    @Test
+    public void everyMode_matchesNaiveRecompute() {
+        for (RssiSmoother.Mode mode : RssiSmoother.Mode.values()) {
+            for (int windowSize : new int[]{1, 2, 5, 10}) {
+                check(mode, windowSize, new Random(windowSize * 31 + mode.ordinal()));
+            }
+        }
+    }
+
+    @Test
+    public void constructor_rejectsBadParameters() {
+        int[][] bad = {{0, 5}, {1, 0}};
+        for (int[] args : bad) {
+            try {
+                new RssiSmoother(args[0], args[1], DECAY, RssiSmoother.Mode.MEDIAN, RssiSmoother.DEFAULT_TRIM_FRACTION);
+                fail();
+            } catch (IllegalArgumentException expected) {
+                // Channels and window must be positive
+            }
+        }
+        try {
+            new RssiSmoother(5, 0f);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // Decay must be in (0, 1]
+        }
+        try {
+            new RssiSmoother(5, DECAY, RssiSmoother.Mode.TRIMMED_MEAN, 0.5f);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // Trimming half from each end leaves nothing
+        }
+    }
+
+    private static void check(RssiSmoother.Mode mode, int windowSize, Random random) {
+        RssiSmoother smoother = new RssiSmoother(CHANNELS, windowSize, DECAY, mode, RssiSmoother.DEFAULT_TRIM_FRACTION);
+        @SuppressWarnings("unchecked")
+        ArrayDeque<Integer>[] windows = new ArrayDeque[CHANNELS];
+        for (int c = 0; c < CHANNELS; c++) {
+            windows[c] = new ArrayDeque<>();
+            assertTrue(Float.isNaN(smoother.getValue(c)));
+        }
+        for (int i = 0; i < 2000; i++) {
+            int channel = random.nextInt(CHANNELS);
+            if (i == 1000) {
+                smoother.clear(channel);
+                windows[channel].clear();
+                assertTrue(Float.isNaN(smoother.getValue(channel)));
+            }
+            // Repeated values exercise removing one of several equal entries from the sorted window
+            int rssi = -90 + random.nextInt(random.nextBoolean() ? 4 : 40);
+            windows[channel].addLast(rssi);
+            if (windows[channel].size() > windowSize) {
+                windows[channel].removeFirst();
+            }
+            String where = mode + " window " + windowSize + " sample " + i;
+            assertEquals(where, expected(mode, windows[channel]), smoother.add(channel, rssi), 1e-3f);
+            assertEquals(where, rssi, smoother.getLatest(channel));
+            assertEquals(where, windows[channel].size(), smoother.getCount(channel));
+        }
+    }
+
+    private static float expected(RssiSmoother.Mode mode, ArrayDeque<Integer> window) {
+        int n = window.size();
+        int[] sorted = new int[n];
+        int i = 0;
+        for (int rssi : window) {
+            sorted[i++] = rssi;
+        }
+        Arrays.sort(sorted);
+        switch (mode) {
+            case MEDIAN:
+                return (n & 1) == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2f;
+            case TRIMMED_MEAN:
+                int trim = (int) (n * RssiSmoother.DEFAULT_TRIM_FRACTION);
+                double sum = 0;
+                for (int k = trim; k < n - trim; k++) {
+                    sum += sorted[k];
+                }
+                return (float) (sum / (n - 2 * trim));
+            default:
+                // Newest sample weighs 1, each older one DECAY times the next
+                double weighted = 0, weights = 0, weight = 1;
+                for (Iterator<Integer> it = window.descendingIterator(); it.hasNext(); weight *= DECAY) {
+                    weighted += weight * it.next();
+                    weights += weight;
+                }
+                return (float) (weighted / weights);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.hero_pr12;
+
+import android.hardware.Sensor;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Sensor event counting, and the per-event sensor path staying allocation-free at the fastest
+ * rate.
+ */
+public class SensorRateCounterTest {
+    private static final long SECOND = 1000000000L;
+    // SENSOR_DELAY_FASTEST on a typical phone
+    private static final long FASTEST_PERIOD = SECOND / 200;
+
+    @Test
+    public void counter_measuresRatesAndFifoBursts() {
+        SensorRateCounter counter = new SensorRateCounter();
+        long t = SECOND;
+        // 3 s of accelerometer at 200 Hz, delivered 100 ms late in batches of 20
+        for (int batch = 0; batch < 30; batch++) {
+            long delivery = t + 20 * FASTEST_PERIOD + SECOND / 10;
+            for (int i = 0; i < 20; i++) {
+                counter.onEvent(Sensor.TYPE_ACCELEROMETER, t, delivery + i * 1000);
+                t += FASTEST_PERIOD;
+            }
+        }
+        // Gyroscope at 50 Hz, one event per delivery
+        for (long g = SECOND; g < 3 * SECOND; g += SECOND / 50) {
+            counter.onEvent(Sensor.TYPE_GYROSCOPE, g, g);
+        }
+        assertEquals(600, counter.getCount(Sensor.TYPE_ACCELEROMETER));
+        assertEquals(200, counter.getRate(Sensor.TYPE_ACCELEROMETER));
+        assertEquals(20, counter.getMaxBurst(Sensor.TYPE_ACCELEROMETER));
+        assertEquals(50, counter.getRate(Sensor.TYPE_GYROSCOPE));
+        assertEquals(1, counter.getMaxBurst(Sensor.TYPE_GYROSCOPE));
+        assertEquals(700, counter.getTotalCount());
+        assertEquals(0, counter.getCount(Sensor.TYPE_PRESSURE));
+        assertEquals(0, counter.getRate(1000)); // Vendor types beyond the table are ignored
+    }
+
+    @Test
+    public void sensorPath_allocatesNothingPerEvent() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        SensorRateCounter counter = new SensorRateCounter();
+        AdaptiveScanScheduler scheduler = new AdaptiveScanScheduler();
+        float[] values = new float[3];
+        float[] gravity = new float[3];
+        float[] geomagnetic = {20f, 0f, -40f};
+        long[] t = {SECOND};
+        float[] azimuth = new float[1];
+        Runnable events = () -> {
+            for (int i = 0; i < 20000; i++) {
+                // What SensorHandler does for an accelerometer event
+                values[0] = 0.1f * (i % 7);
+                values[1] = 0.2f;
+                values[2] = 9.81f;
+                counter.onEvent(Sensor.TYPE_ACCELEROMETER, t[0], t[0]);
+                scheduler.onAccelerometer(values, t[0]);
+                System.arraycopy(values, 0, gravity, 0, 3);
+                azimuth[0] += OrientationCalculator.azimuth(gravity, geomagnetic);
+                t[0] += FASTEST_PERIOD;
+            }
+        };
+        events.run(); // Warm up
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        events.run();
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertTrue("allocated " + allocated + " bytes for 20000 events", allocated < 20000);
+        assertEquals(40000, counter.getCount(Sensor.TYPE_ACCELEROMETER));
+        assertEquals(200, counter.getRate(Sensor.TYPE_ACCELEROMETER));
+    }
+}
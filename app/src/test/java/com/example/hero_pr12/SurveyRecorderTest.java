@@ -0,0 +1,172 @@
+package com.example.hero_pr12;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Streaming RSSI statistics per reference point, merging surveys into the radio map file, and
+ * constant memory over a long survey.
+ */
+public class SurveyRecorderTest {
+
+    private static BeaconDatabase database(int beacons) {
+        BeaconDatabaseWriter writer = new BeaconDatabaseWriter();
+        for (int i = 0; i < beacons; i++) {
+            writer.add(0xC30000192F00L + i, UUID.randomUUID(), 1, i, -59, i * 5, 0, 0xFF0000FF);
+        }
+        return BeaconDatabase.wrap(writer.toByteBuffer());
+    }
+
+    private static List<RadioMapFile.Fingerprint> readAll(File file) throws Exception {
+        List<RadioMapFile.Fingerprint> points = new ArrayList<>();
+        RadioMapFile.read(file, point -> {
+            RadioMapFile.Fingerprint copy = new RadioMapFile.Fingerprint(point.size());
+            copy.x = point.x;
+            copy.y = point.y;
+            copy.floor = point.floor;
+            copy.merge(point);
+            points.add(copy);
+        });
+        return points;
+    }
+
+    @Test
+    public void surveys_mergeIntoTheSamePointAcrossSessions() throws Exception {
+        BeaconDatabase database = database(3);
+        File file = File.createTempFile("survey", ".hrmp");
+        file.delete();
+        try {
+            SurveyRecorder first = new SurveyRecorder(database, file);
+            first.begin(2.0, 3.0, 0);
+            int[] rssi = {-60, -62, -64, -66, -68, -70};
+            for (int value : rssi) {
+                first.onSample(0, value);
+            }
+            first.onSample(1, -80); // Too few samples to keep
+            first.begin(10.0, 3.0, 0); // Merges the first point
+            for (int i = 0; i < 10; i++) {
+                first.onSample(2, -75);
+            }
+            assertTrue(first.commit());
+            assertFalse(first.commit());
+            assertEquals(2, first.getMergedPointCount());
+
+            // A later session a few centimeters off the same spot
+            SurveyRecorder second = new SurveyRecorder(database, file);
+            second.begin(2.2, 3.1, 0);
+            for (int value : new int[]{-72, -74, -76, -78, -80, -82}) {
+                second.onSample(0, value);
+            }
+            assertTrue(second.commit());
+
+            List<RadioMapFile.Fingerprint> points = readAll(file);
+            assertEquals(2, points.size());
+            RadioMapFile.Fingerprint point = points.get(0);
+            assertEquals(2.0, point.x, 1e-6); // The first survey's position
+            assertEquals(1, point.size());
+            assertEquals(database.mac(0), point.mac(0));
+            assertEquals(12, point.count(0));
+            // Mean and population variance of -60, -62, ..., -82
+            assertEquals(-71, point.mean(0), 1e-4);
+            assertEquals(47.6667, point.variance(0), 1e-3);
+            assertEquals(-75, points.get(1).mean(0), 1e-4);
+            assertEquals(0, points.get(1).variance(0), 1e-6);
+
+            RadioMap map = RadioMap.readSurvey(file, database);
+            assertEquals(2, map.getPointCount());
+            assertEquals(10f, map.x(1), 1e-6);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void longSurvey_runsInConstantMemory() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        BeaconDatabase database = database(200);
+        File file = File.createTempFile("survey", ".hrmp");
+        file.delete();
+        try {
+            SurveyRecorder recorder = new SurveyRecorder(database, file);
+            recorder.begin(0, 0, 0);
+            Random random = new Random(3);
+            long thread = Thread.currentThread().getId();
+            // About three hours of scanning at 100 samples per second
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < 1000000; i++) {
+                recorder.onSample(random.nextInt(200), -60 - random.nextInt(30));
+            }
+            long allocated = threads.getThreadAllocatedBytes(thread) - before;
+            assertTrue("allocated " + allocated + " bytes for 1000000 samples", allocated < 10000);
+            assertEquals(1000000, recorder.getPointSampleCount());
+            assertTrue(recorder.commit());
+            assertEquals(RadioMapFile.HEADER_SIZE + RadioMapFile.POINT_HEADER_SIZE + 200 * RadioMapFile.ENTRY_SIZE,
+                    file.length());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void merge_intoTruncatedFile_leavesItAsItWas() throws Exception {
+        BeaconDatabase database = database(3);
+        File file = File.createTempFile("survey", ".hrmp");
+        file.delete();
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            SurveyRecorder recorder = new SurveyRecorder(database, file);
+            recorder.begin(2.0, 3.0, 0);
+            for (int i = 0; i < 10; i++) {
+                recorder.onSample(0, -60);
+            }
+            assertTrue(recorder.commit());
+            // Cut the only point short, as a crash in the middle of a copy would
+            byte[] truncated = Arrays.copyOf(Files.readAllBytes(file.toPath()), RadioMapFile.HEADER_SIZE + 4);
+            Files.write(file.toPath(), truncated);
+
+            RadioMapFile.Fingerprint point = new RadioMapFile.Fingerprint(1);
+            point.x = 20.0;
+            point.floor = 0;
+            try {
+                RadioMapFile.merge(file, point, 1.0);
+                fail();
+            } catch (IOException expected) {
+                // The stored point ends early
+            }
+            assertArrayEquals(truncated, Files.readAllBytes(file.toPath()));
+            assertFalse(tmp.exists());
+        } finally {
+            file.delete();
+            tmp.delete();
+        }
+    }
+
+    @Test
+    public void read_rejectsOtherFiles() throws Exception {
+        File file = File.createTempFile("events", ".hevt");
+        try {
+            new EventTrace(16).dump(file);
+            RadioMapFile.read(file, point -> fail());
+            fail();
+        } catch (IOException expected) {
+            // Not a radio map
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.hero_pr12;
+
+import android.hardware.Sensor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Records a simulated walk to a trace and replays it through the positioning pipeline, which
+ * must follow the walk and give the same fixes on every replay.
+ */
+public class TraceReplayTest {
+    private static final UUID PROXIMITY_UUID = UUID.fromString("fda50693-a4e2-4fb1-afcf-c6eb07647825");
+    private static final int TX_POWER = -59;
+    private static final double[][] BEACONS = {{0, 0}, {20, 0}, {0, 10}, {20, 10}, {10, 9.5}, {10, 0.5}};
+    private static final long STEP_NANOS = 500000000L;
+    private static final long SENSOR_NANOS = 100000000L;
+    private static final int REPLAY_ROUNDS = 2;
+
+    private File traceFile;
+
+    @Before
+    public void setUp() throws IOException {
+        BeaconDatabaseWriter writer = new BeaconDatabaseWriter();
+        for (int i = 0; i < BEACONS.length; i++) {
+            writer.add(0xC30000192F00L + i, PROXIMITY_UUID, 1, i, TX_POWER, (float) BEACONS[i][0], (float) BEACONS[i][1], 0xFF00FF00);
+        }
+        BeaconInfoLoader.setDatabase(BeaconDatabase.wrap(writer.toByteBuffer()));
+        traceFile = File.createTempFile("trace", ".htrc");
+    }
+
+    @After
+    public void tearDown() {
+        BeaconInfoLoader.setDatabase(BeaconDatabase.empty());
+        traceFile.delete();
+    }
+
+    @Test
+    public void recordAndReplay_roundTripsEveryField() throws Exception {
+        byte[] scanRecord = iBeaconRecord(3);
+        try (TraceRecorder recorder = new TraceRecorder(traceFile)) {
+            recorder.recordScan("C3:00:00:19:2F:03", -70, scanRecord, 1000);
+            recorder.recordScan("not a mac", -80, null, 2000);
+            recorder.recordScanBatch();
+            recorder.recordSensor(TraceRecorder.SENSOR_ACCELEROMETER, new float[]{0.5f, -0.25f, 9.81f}, 3000);
+            recorder.recordSensor(TraceRecorder.SENSOR_STEP_DETECTOR, new float[]{1}, 4000);
+            assertEquals(5, recorder.getRecordCount());
+        }
+
+        final List<String> events = new ArrayList<>();
+        long delivered = TraceReplayer.open(traceFile).replay(new TraceReplayer.Listener() {
+            @Override
+            public void onScanSample(String address, int rssi, byte[] record, long timestampNanos) {
+                events.add("scan " + address + " " + rssi + " " + (record != null ? Arrays.equals(scanRecord, record) : "null") + " " + timestampNanos);
+            }
+
+            @Override
+            public void onScanBatchComplete() {
+                events.add("batch");
+            }
+
+            @Override
+            public void onSensorSample(int sensorType, float[] values, long timestampNanos) {
+                events.add("sensor " + sensorType + " " + Arrays.toString(values) + " " + timestampNanos);
+            }
+        }, 0);
+        assertEquals(5, delivered);
+        assertEquals(Arrays.asList(
+                "scan C3:00:00:19:2F:03 -70 true 1000",
+                "scan null -80 null 2000",
+                "batch",
+                "sensor 1 [0.5, -0.25, 9.81] 3000",
+                "sensor 18 [1.0] 4000"), events);
+    }
+
+    @Test
+    public void truncatedTrace_replaysCompleteRecords() throws Exception {
+        try (TraceRecorder recorder = new TraceRecorder(traceFile)) {
+            for (int i = 0; i < 10; i++) {
+                recorder.recordSensor(TraceRecorder.SENSOR_ACCELEROMETER, new float[]{0, 0, 9.81f}, i);
+            }
+        }
+        // As left by a process killed mid-write
+        try (RandomAccessFile file = new RandomAccessFile(traceFile, "rw")) {
+            file.setLength(file.length() - 5);
+        }
+        long delivered = TraceReplayer.open(traceFile).replay(new ReplayPipeline(null), 0);
+        assertEquals(9, delivered);
+    }
+
+    @Test
+    public void traceSensorTypes_areAndroidSensorTypes() {
+        // The sensor handlers record event.sensor.getType() unchanged
+        assertEquals(Sensor.TYPE_ACCELEROMETER, TraceRecorder.SENSOR_ACCELEROMETER);
+        assertEquals(Sensor.TYPE_MAGNETIC_FIELD, TraceRecorder.SENSOR_MAGNETIC_FIELD);
+        assertEquals(Sensor.TYPE_GYROSCOPE, TraceRecorder.SENSOR_GYROSCOPE);
+        assertEquals(Sensor.TYPE_PRESSURE, TraceRecorder.SENSOR_PRESSURE);
+        assertEquals(Sensor.TYPE_STEP_DETECTOR, TraceRecorder.SENSOR_STEP_DETECTOR);
+    }
+
+    @Test
+    public void orientation_matchesCompassHeading() {
+        float[] gravity = {0, 0, 9.81f};
+        for (int azimuth = 0; azimuth < 360; azimuth += 45) {
+            assertEquals(azimuth, OrientationCalculator.azimuth(gravity, magneticField(azimuth)), 0.01);
+        }
+        assertTrue(Float.isNaN(OrientationCalculator.azimuth(new float[]{0, 0, 0.1f}, magneticField(0))));
+    }
+
+    @Test
+    public void replay_isDeterministicAndFollowsTheWalk() throws Exception {
+        double[] truth = recordWalk(new Random(7));
+        ByteBuffer trace = ByteBuffer.wrap(Files.readAllBytes(traceFile.toPath()));
+
+        List<Point> firstRun = new ArrayList<>();
+        ReplayPipeline pipeline = replay(trace, firstRun);
+        Point end = pipeline.getPosition();
+        double error = Math.hypot(end.x - truth[0], end.y - truth[1]);
+        assertTrue("final error " + error, error < 2.0);
+        assertEquals(30, pipeline.getStepCount());
+
+        for (int round = 0; round < REPLAY_ROUNDS; round++) {
+            List<Point> run = new ArrayList<>();
+            replay(trace, run);
+            assertEquals(firstRun.size(), run.size());
+            for (int i = 0; i < run.size(); i++) {
+                assertEquals(firstRun.get(i).x, run.get(i).x, 0);
+                assertEquals(firstRun.get(i).y, run.get(i).y, 0);
+            }
+        }
+    }
+
+    @Test
+    public void realTimeReplay_followsRecordedTimestamps() throws Exception {
+        try (TraceRecorder recorder = new TraceRecorder(traceFile)) {
+            recorder.recordSensor(TraceRecorder.SENSOR_STEP_DETECTOR, new float[]{1}, 0);
+            recorder.recordSensor(TraceRecorder.SENSOR_STEP_DETECTOR, new float[]{1}, 2000000000L);
+        }
+        long start = System.nanoTime();
+        TraceReplayer.open(traceFile).replay(new ReplayPipeline(null), 20); // 2 s at 20x
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertTrue("replayed in " + elapsedMillis + " ms", elapsedMillis >= 95);
+    }
+
+    private static ReplayPipeline replay(ByteBuffer trace, final List<Point> fixes) throws InterruptedException {
+        ReplayPipeline pipeline = new ReplayPipeline(new FusedPositionFilter());
+        pipeline.setFixListener((timestampNanos, position) -> fixes.add(position));
+        new TraceReplayer(trace).replay(pipeline, 0);
+        pipeline.shutdown();
+        return pipeline;
+    }
+
+    // North, east and south again; returns where the walk ended
+    private double[] recordWalk(Random random) throws IOException {
+        double x = 5, y = 2;
+        long t = 1000000000L;
+        double[][] legs = {{90, 8}, {0, 14}, {270, 8}};
+        try (TraceRecorder recorder = new TraceRecorder(traceFile)) {
+            for (double[] leg : legs) {
+                for (int s = 0; s < leg[1]; s++) {
+                    for (long sensor = 0; sensor < STEP_NANOS; sensor += SENSOR_NANOS) {
+                        float heading = (float) (leg[0] + random.nextGaussian() * 5);
+                        recorder.recordSensor(TraceRecorder.SENSOR_ACCELEROMETER, new float[]{0, 0, 9.81f}, t + sensor);
+                        recorder.recordSensor(TraceRecorder.SENSOR_MAGNETIC_FIELD, magneticField(heading), t + sensor);
+                    }
+                    t += STEP_NANOS;
+                    x += PositioningPipeline.STEP_LENGTH * Math.cos(Math.toRadians(leg[0]));
+                    y += PositioningPipeline.STEP_LENGTH * Math.sin(Math.toRadians(leg[0]));
+                    recorder.recordSensor(TraceRecorder.SENSOR_STEP_DETECTOR, new float[]{1}, t);
+                    for (int b = 0; b < BEACONS.length; b++) {
+                        double d = Math.max(Math.hypot(x - BEACONS[b][0], y - BEACONS[b][1]), 0.5);
+                        double rssi = TX_POWER - 10 * BeaconDistanceCalculator.PATH_LOSS_PARAMETER_INDOOR * Math.log10(d)
+                                + random.nextGaussian() * 2;
+                        recorder.recordScan(BeaconDatabase.formatMac(0xC30000192F00L + b), (int) Math.round(rssi),
+                                iBeaconRecord(b), t + b * 1000000L);
+                    }
+                    recorder.recordScanBatch();
+                }
+            }
+        }
+        return new double[]{x, y};
+    }
+
+    // Earth field of 40 uT with the device flat and turned to the given azimuth
+    private static float[] magneticField(double azimuthDegrees) {
+        double azimuth = Math.toRadians(azimuthDegrees);
+        return new float[]{(float) (-20 * Math.sin(azimuth)), (float) (20 * Math.cos(azimuth)), -40};
+    }
+
+    private static byte[] iBeaconRecord(int minor) {
+        ByteBuffer record = ByteBuffer.allocate(62);
+        record.put(new byte[]{0x02, 0x01, 0x06, 0x1A, (byte) 0xFF, 0x4C, 0x00, 0x02, 0x15});
+        record.putLong(PROXIMITY_UUID.getMostSignificantBits());
+        record.putLong(PROXIMITY_UUID.getLeastSignificantBits());
+        record.putShort((short) 1);
+        record.putShort((short) minor);
+        record.put((byte) TX_POWER);
+        return record.array();
+    }
+}
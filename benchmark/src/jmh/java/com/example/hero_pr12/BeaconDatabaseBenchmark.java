@@ -0,0 +1,102 @@
+package com.example.hero_pr12;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost for 10,000 beacons: the previous beacon_info.txt parse into four HashMaps against
+ * mapping the converted binary database, and one MAC lookup in the mapped database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BeaconDatabaseBenchmark {
+    private static final int BEACON_COUNT = 10000;
+    private static final int LOOKUPS = 1024;
+    private static final String[] UUIDS = {
+            "fda50693-a4e2-4fb1-afcf-c6eb07647825",
+            "e2c56db5-dffb-48d2-b060-d0f5a71096e0",
+    };
+
+    private String csv;
+    private File databaseFile;
+    private BeaconDatabase database;
+    private final long[] macs = new long[LOOKUPS];
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(7);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < BEACON_COUNT; i++) {
+            builder.append(BeaconDatabase.formatMac(0xC30000000000L + random.nextInt(1 << 24) * 256L + (i & 0xFF)))
+                    .append(',').append(UUIDS[i % UUIDS.length])
+                    .append(',').append(i / 1000)
+                    .append(',').append(i % 1000)
+                    .append(',').append(-59 - random.nextInt(10))
+                    .append(',').append(random.nextInt(2000) / 10.0)
+                    .append(',').append(random.nextInt(2000) / 10.0)
+                    .append(',').append(String.format("#%06X", random.nextInt(1 << 24)))
+                    .append('\n');
+        }
+        csv = builder.toString();
+        databaseFile = File.createTempFile("beacons", ".bcdb");
+        new BeaconDatabaseWriter().readCsv(new StringReader(csv)).writeTo(databaseFile);
+        database = BeaconDatabase.open(databaseFile);
+        for (int i = 0; i < LOOKUPS; i++) {
+            macs[i] = database.mac(random.nextInt(BEACON_COUNT));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        databaseFile.delete();
+    }
+
+    // The parse BeaconInfoLoader did before the binary database, minus Color.parseColor
+    @Benchmark
+    public Map<String, Point> parseCsv() throws IOException {
+        Map<String, Point> locations = new HashMap<>();
+        Map<String, Integer> txPowers = new HashMap<>();
+        Map<String, String> macAddresses = new HashMap<>();
+        Map<String, Integer> colors = new HashMap<>();
+        BufferedReader reader = new BufferedReader(new StringReader(csv));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] parts = line.split(",");
+            String beaconKey = UUID.fromString(parts[1]) + "_" + Integer.parseInt(parts[2]) + "_" + Integer.parseInt(parts[3]);
+            locations.put(beaconKey, new Point(Double.parseDouble(parts[5]), Double.parseDouble(parts[6])));
+            txPowers.put(beaconKey, Integer.parseInt(parts[4]));
+            macAddresses.put(parts[0], beaconKey);
+            colors.put(beaconKey, BeaconDatabaseWriter.parseColor(parts[7]));
+        }
+        return locations;
+    }
+
+    @Benchmark
+    public BeaconDatabase openMapped() throws IOException {
+        return BeaconDatabase.open(databaseFile);
+    }
+
+    @Benchmark
+    public int findByMac() {
+        next = (next + 1) & (LOOKUPS - 1);
+        return database.findByMac(macs[next]);
+    }
+}
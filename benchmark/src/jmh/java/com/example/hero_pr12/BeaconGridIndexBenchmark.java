@@ -0,0 +1,103 @@
+package com.example.hero_pr12;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-fix (radius) and per-frame (viewport) beacon queries through the grid index and by scanning
+ * every beacon, for venues of beaconCount beacons at a constant density of one per 8 x 8 m.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BeaconGridIndexBenchmark {
+    private static final int QUERIES = 1024;
+    private static final double BEACON_SPACING = 8.0;
+    private static final double FIX_RADIUS = 30.0;
+    private static final double VIEWPORT_WIDTH = 40.0;
+    private static final double VIEWPORT_HEIGHT = 60.0;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int beaconCount;
+
+    private double[] xs;
+    private double[] ys;
+    private BeaconGridIndex index;
+    private int[] out;
+    private final double[] queryX = new double[QUERIES];
+    private final double[] queryY = new double[QUERIES];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(beaconCount);
+        double side = Math.sqrt(beaconCount) * BEACON_SPACING;
+        xs = new double[beaconCount];
+        ys = new double[beaconCount];
+        for (int i = 0; i < beaconCount; i++) {
+            xs[i] = random.nextDouble() * side;
+            ys[i] = random.nextDouble() * side;
+        }
+        index = BeaconGridIndex.build(xs, ys, 0);
+        out = new int[beaconCount];
+        for (int q = 0; q < QUERIES; q++) {
+            queryX[q] = random.nextDouble() * side;
+            queryY[q] = random.nextDouble() * side;
+        }
+    }
+
+    @Benchmark
+    public int indexedRadius() {
+        next = (next + 1) & (QUERIES - 1);
+        return index.queryRadius(queryX[next], queryY[next], FIX_RADIUS, out);
+    }
+
+    @Benchmark
+    public int scanRadius() {
+        next = (next + 1) & (QUERIES - 1);
+        double x = queryX[next];
+        double y = queryY[next];
+        int found = 0;
+        for (int i = 0; i < beaconCount; i++) {
+            double dx = xs[i] - x;
+            double dy = ys[i] - y;
+            if (dx * dx + dy * dy <= FIX_RADIUS * FIX_RADIUS) {
+                out[found++] = i;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int indexedViewport() {
+        next = (next + 1) & (QUERIES - 1);
+        double x = queryX[next];
+        double y = queryY[next];
+        return index.queryRect(x, y, x + VIEWPORT_WIDTH, y + VIEWPORT_HEIGHT, out);
+    }
+
+    @Benchmark
+    public int scanViewport() {
+        next = (next + 1) & (QUERIES - 1);
+        double minX = queryX[next];
+        double minY = queryY[next];
+        double maxX = minX + VIEWPORT_WIDTH;
+        double maxY = minY + VIEWPORT_HEIGHT;
+        int found = 0;
+        for (int i = 0; i < beaconCount; i++) {
+            if (xs[i] >= minX && xs[i] <= maxX && ys[i] >= minY && ys[i] <= maxY) {
+                out[found++] = i;
+            }
+        }
+        return found;
+    }
+}
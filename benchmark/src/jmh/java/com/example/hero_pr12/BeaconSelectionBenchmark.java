@@ -0,0 +1,59 @@
+package com.example.hero_pr12;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picking the beacons near the user for the solver, which replaced BeaconManager.getStrongestBeacons.
+ * Beacons are spread 5 m apart on average, so the number found per query stays about the same
+ * while the venue grows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BeaconSelectionBenchmark {
+    private static final int QUERIES = 1024;
+    private static final double RADIUS = 30;
+
+    @Param({"100", "1000", "10000"})
+    public int beaconCount;
+
+    private BeaconGridIndex index;
+    private int[] found;
+    private final double[] queryX = new double[QUERIES];
+    private final double[] queryY = new double[QUERIES];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        double side = Math.sqrt(beaconCount) * 5;
+        Random random = new Random(4);
+        double[] xs = new double[beaconCount];
+        double[] ys = new double[beaconCount];
+        for (int i = 0; i < beaconCount; i++) {
+            xs[i] = random.nextDouble() * side;
+            ys[i] = random.nextDouble() * side;
+        }
+        index = BeaconGridIndex.build(xs, ys, RADIUS);
+        found = new int[beaconCount];
+        for (int i = 0; i < QUERIES; i++) {
+            queryX[i] = random.nextDouble() * side;
+            queryY[i] = random.nextDouble() * side;
+        }
+    }
+
+    @Benchmark
+    public int queryRadius() {
+        next = (next + 1) & (QUERIES - 1);
+        return index.queryRadius(queryX[next], queryY[next], RADIUS, found);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.hero_pr12;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One sample into the beacon state table, which keeps the best beacons ranked as it goes, and
+ * reading the ranked best set for a fix. Every beacon is heard, so the heaps are full.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BeaconStateTableBenchmark {
+    private static final int SAMPLES = 4096;
+
+    @Param({"16", "256", "4096"})
+    public int beaconCount;
+
+    private BeaconStateTable state;
+    private final int[] ids = new int[SAMPLES];
+    private final float[] distances = new float[SAMPLES];
+    private int[] best;
+    private long clock = 1000000000L;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        state = new BeaconStateTable(beaconCount);
+        best = new int[state.getBestCapacity()];
+        Random random = new Random(6);
+        for (int i = 0; i < SAMPLES; i++) {
+            ids[i] = random.nextInt(beaconCount);
+            distances[i] = 0.5f + random.nextFloat() * 20;
+        }
+        for (int id = 0; id < beaconCount; id++) {
+            state.update(id, -70, -70, 5, 2.5, clock);
+        }
+    }
+
+    @Benchmark
+    public double update() {
+        next = (next + 1) & (SAMPLES - 1);
+        clock += 1000000L;
+        float distance = distances[next];
+        return state.update(ids[next], -70, -70, distance, distance * distance * 0.1 + 0.25, clock);
+    }
+
+    @Benchmark
+    public int copyBest() {
+        return state.copyBest(best);
+    }
+}
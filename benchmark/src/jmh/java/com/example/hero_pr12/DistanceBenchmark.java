@@ -0,0 +1,45 @@
+package com.example.hero_pr12;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RSSI to distance conversion, run once for every advertisement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DistanceBenchmark {
+    private static final int SAMPLES = 1024;
+
+    private final float[] rssis = new float[SAMPLES];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < SAMPLES; i++) {
+            rssis[i] = -100 + random.nextInt(60);
+        }
+    }
+
+    @Benchmark
+    public float calculateDistance() {
+        next = (next + 1) & (SAMPLES - 1);
+        return BeaconDistanceCalculator.calculateDistance(rssis[next], -59, BeaconDistanceCalculator.PATH_LOSS_PARAMETER_INDOOR);
+    }
+
+    @Benchmark
+    public double rangeVariance() {
+        next = (next + 1) & (SAMPLES - 1);
+        return BeaconDistanceCalculator.rangeVariance(-rssis[next] / 10.0, BeaconDistanceCalculator.PATH_LOSS_PARAMETER_INDOOR);
+    }
+}
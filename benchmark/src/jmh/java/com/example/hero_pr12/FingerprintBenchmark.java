@@ -0,0 +1,97 @@
+package com.example.hero_pr12;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One k-NN fingerprint search, through the radio map's inverted index and by comparing every
+ * reference point. Reference points are 1 m apart and beacons 8 m apart; each point hears the
+ * beacons within 20 m, and queries are fingerprints with 3 dB of noise.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FingerprintBenchmark {
+    private static final int QUERIES = 256;
+    private static final double BEACON_SPACING = 8;
+    private static final double HEARING_RADIUS = 20;
+
+    @Param({"5000", "50000"})
+    public int pointCount;
+
+    private FingerprintEngine indexed;
+    private FingerprintEngine scanning;
+    private RadioMap map;
+    private final int[] queryPoints = new int[QUERIES];
+    private final float[][] queryNoise = new float[QUERIES][];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(6);
+        int width = (int) Math.sqrt(pointCount * 1.25);
+        int height = pointCount / width;
+        int columns = (int) Math.ceil(width / BEACON_SPACING);
+        int rows = (int) Math.ceil(height / BEACON_SPACING);
+        RadioMap.Builder builder = new RadioMap.Builder(columns * rows);
+        int[] ids = new int[columns * rows];
+        float[] values = new float[ids.length];
+        for (int py = 0; py < height; py++) {
+            for (int px = 0; px < width; px++) {
+                int count = 0;
+                for (int id = 0; id < ids.length; id++) {
+                    double dx = (id % columns + 0.5) * BEACON_SPACING - px;
+                    double dy = (id / columns + 0.5) * BEACON_SPACING - py;
+                    double distance = Math.sqrt(dx * dx + dy * dy);
+                    if (distance <= HEARING_RADIUS) {
+                        ids[count] = id;
+                        values[count++] = (float) (-59 - 25 * Math.log10(Math.max(distance, 0.5)) + random.nextGaussian() * 2);
+                    }
+                }
+                builder.addPoint(px, py, 0, ids, values, count);
+            }
+        }
+        map = builder.build();
+        indexed = new FingerprintEngine(map);
+        scanning = new FingerprintEngine(map);
+        scanning.setUseIndex(false);
+        for (int q = 0; q < QUERIES; q++) {
+            queryPoints[q] = random.nextInt(map.getPointCount());
+            int size = map.rowStart(queryPoints[q] + 1) - map.rowStart(queryPoints[q]);
+            queryNoise[q] = new float[size];
+            for (int i = 0; i < size; i++) {
+                queryNoise[q][i] = (float) (random.nextGaussian() * 3);
+            }
+        }
+    }
+
+    @Benchmark
+    public int indexedSearch() {
+        return search(indexed);
+    }
+
+    @Benchmark
+    public int searchEveryPoint() {
+        return search(scanning);
+    }
+
+    private int search(FingerprintEngine engine) {
+        next = (next + 1) & (QUERIES - 1);
+        int point = queryPoints[next];
+        engine.reset();
+        for (int i = map.rowStart(point), end = map.rowStart(point + 1); i < end; i++) {
+            engine.onBeaconRssi(map.beaconAt(i), map.rssiAt(i) + queryNoise[next][i - map.rowStart(point)], 1);
+        }
+        engine.search(0);
+        return engine.getNeighbour(0);
+    }
+}
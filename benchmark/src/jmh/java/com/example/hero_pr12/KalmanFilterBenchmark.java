@@ -0,0 +1,61 @@
+package com.example.hero_pr12;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The static Kalman kernels over a batch of filters laid out in shared arrays, as one filter per
+ * beacon would be. Time is per batch, so divide by beaconCount for the cost of one filter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KalmanFilterBenchmark {
+    @Param({"1", "16", "128"})
+    public int beaconCount;
+
+    private double[] state;
+    private double[] covariance;
+    private double[] measurements;
+
+    @Setup
+    public void setUp() {
+        state = new double[beaconCount * ExtendedKalmanFilter.STATE_SIZE];
+        covariance = new double[beaconCount * ExtendedKalmanFilter.COVARIANCE_SIZE];
+        measurements = new double[beaconCount * 2];
+        Random random = new Random(2);
+        for (int i = 0; i < beaconCount; i++) {
+            ExtendedKalmanFilter.reset(state, i * ExtendedKalmanFilter.STATE_SIZE,
+                    covariance, i * ExtendedKalmanFilter.COVARIANCE_SIZE);
+            measurements[i * 2] = random.nextDouble() * 10;
+            measurements[i * 2 + 1] = random.nextDouble() * 10;
+        }
+    }
+
+    @Benchmark
+    public double[] predict() {
+        for (int i = 0; i < beaconCount; i++) {
+            ExtendedKalmanFilter.predict(state, i * ExtendedKalmanFilter.STATE_SIZE,
+                    covariance, i * ExtendedKalmanFilter.COVARIANCE_SIZE, 0.1, 0, 0);
+        }
+        return state;
+    }
+
+    @Benchmark
+    public double[] update() {
+        for (int i = 0; i < beaconCount; i++) {
+            ExtendedKalmanFilter.update(state, i * ExtendedKalmanFilter.STATE_SIZE,
+                    covariance, i * ExtendedKalmanFilter.COVARIANCE_SIZE, measurements[i * 2], measurements[i * 2 + 1]);
+        }
+        return state;
+    }
+}
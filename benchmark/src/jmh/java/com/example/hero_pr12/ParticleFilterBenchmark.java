@@ -0,0 +1,86 @@
+package com.example.hero_pr12;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One particle filter update, a step with wall checks followed by four beacon ranges, for a range
+ * of particle counts, sequential and split over threads. Used to choose a particle count per
+ * device class. The walk is precomputed so that only the filter is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParticleFilterBenchmark {
+    private static final int STEPS = 256;
+    private static final double STEP_LENGTH = 0.7;
+    private static final double[][] BEACONS = {{0, 0}, {30, 0}, {0, 30}, {30, 30}};
+
+    @Param({"250", "1000", "5000", "10000"})
+    public int particleCount;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private ParticleFilter filter;
+    private final double[] headings = new double[STEPS];
+    private final double[][] ranges = new double[STEPS][BEACONS.length];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        filter = new ParticleFilter(particleCount, corridors(), threads);
+        filter.seedUniform(15, 15, 3);
+        Random random = new Random(5);
+        double x = 15, y = 15, heading = 0;
+        for (int s = 0; s < STEPS; s++) {
+            heading += random.nextGaussian() * 20;
+            x += STEP_LENGTH * Math.cos(Math.toRadians(heading));
+            y += STEP_LENGTH * Math.sin(Math.toRadians(heading));
+            headings[s] = heading;
+            for (int b = 0; b < BEACONS.length; b++) {
+                ranges[s][b] = Math.hypot(x - BEACONS[b][0], y - BEACONS[b][1]) + random.nextGaussian();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        filter.shutdown();
+    }
+
+    @Benchmark
+    public ParticleFilter update() {
+        next = (next + 1) & (STEPS - 1);
+        filter.onStep(next, STEP_LENGTH, headings[next]);
+        for (int b = 0; b < BEACONS.length; b++) {
+            double d = ranges[next][b];
+            filter.onBeaconRange(b, BEACONS[b][0], BEACONS[b][1], d, 1 + d * d * 0.05, next);
+        }
+        return filter;
+    }
+
+    // 30 m x 30 m floor with a grid of walls every 6 m, each with a doorway
+    private static WallMap corridors() {
+        WallMap walls = new WallMap(300, 300, 0.1, 0, 0);
+        for (int line = 60; line < 300; line += 60) {
+            for (int i = 0; i < 300; i++) {
+                if (i % 60 > 15) {
+                    walls.setWall(line, i);
+                    walls.setWall(i, line);
+                }
+            }
+        }
+        return walls;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.hero_pr12;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One RSSI sample through the smoother, which replaced BeaconManager.calculateWeightedAverageRssi.
+ * Samples are spread over beaconCount channels, so larger counts show the cache cost of the
+ * per-beacon windows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RssiSmootherBenchmark {
+    private static final int SAMPLES = 4096;
+
+    @Param({"16", "1024"})
+    public int beaconCount;
+
+    @Param({"10"})
+    public int windowSize;
+
+    @Param({"EXPONENTIAL", "MEDIAN", "TRIMMED_MEAN"})
+    public String mode;
+
+    private RssiSmoother smoother;
+    private final int[] channels = new int[SAMPLES];
+    private final int[] rssis = new int[SAMPLES];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        smoother = new RssiSmoother(beaconCount, windowSize, 0.9f, RssiSmoother.Mode.valueOf(mode),
+                RssiSmoother.DEFAULT_TRIM_FRACTION);
+        Random random = new Random(3);
+        for (int i = 0; i < SAMPLES; i++) {
+            channels[i] = random.nextInt(beaconCount);
+            rssis[i] = -100 + random.nextInt(60);
+        }
+    }
+
+    @Benchmark
+    public float add() {
+        next = (next + 1) & (SAMPLES - 1);
+        return smoother.add(channels[next], rssis[next]);
+    }
+}
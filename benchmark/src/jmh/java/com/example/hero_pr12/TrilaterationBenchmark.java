@@ -0,0 +1,106 @@
+package com.example.hero_pr12;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Position solvers for beaconCount heard beacons. The map-based solvers look beacons up by key
+ * and only use the first three; nearestThree is the path multilaterate replaced, which picks the
+ * three nearest beacons and averages trilateration and triangulation; multilaterate uses every
+ * range.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TrilaterationBenchmark {
+    @Param({"3", "8", "32"})
+    public int beaconCount;
+
+    private final Map<String, Double> distances = new LinkedHashMap<>();
+    private Point[] points;
+    private double[] beaconX;
+    private double[] beaconY;
+    private double[] ranges;
+    private double[] variances;
+    private final PositionEstimate estimate = new PositionEstimate();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(5);
+        BeaconDatabaseWriter writer = new BeaconDatabaseWriter();
+        UUID uuid = UUID.fromString("fda50693-a4e2-4fb1-afcf-c6eb07647825");
+        beaconX = new double[beaconCount];
+        beaconY = new double[beaconCount];
+        ranges = new double[beaconCount];
+        variances = new double[beaconCount];
+        points = new Point[beaconCount];
+        double userX = 12, userY = 8;
+        for (int i = 0; i < beaconCount; i++) {
+            beaconX[i] = random.nextDouble() * 30;
+            beaconY[i] = random.nextDouble() * 20;
+            points[i] = new Point(beaconX[i], beaconY[i]);
+            ranges[i] = Math.hypot(userX - beaconX[i], userY - beaconY[i]) + random.nextGaussian() * 0.5;
+            variances[i] = BeaconDistanceCalculator.rangeVariance(ranges[i], BeaconDistanceCalculator.PATH_LOSS_PARAMETER_INDOOR);
+            writer.add(0xC30000192F00L + i, uuid, 1, i, -59, (float) beaconX[i], (float) beaconY[i], 0xFF00FF00);
+        }
+        BeaconDatabase database = BeaconDatabase.wrap(writer.toByteBuffer());
+        BeaconInfoLoader.setDatabase(database);
+        for (int i = 0; i < beaconCount; i++) {
+            distances.put(database.beaconKey(i), ranges[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BeaconInfoLoader.setDatabase(BeaconDatabase.empty());
+    }
+
+    @Benchmark
+    public Point trilateration() {
+        return TrilaterationCalculator.trilateration(distances);
+    }
+
+    @Benchmark
+    public Point triangulation() {
+        return TrilaterationCalculator.triangulation(points[0], points[1], points[2], ranges[0], ranges[1], ranges[2]);
+    }
+
+    @Benchmark
+    public Point combinedLocalization() {
+        return TrilaterationCalculator.combinedLocalization(distances, 45, 0, 0.5f);
+    }
+
+    @Benchmark
+    public Point nearestThree() {
+        Map<String, Double> nearest = distances.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue())
+                .limit(3)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        String[] keys = nearest.keySet().toArray(new String[0]);
+        Point a = TrilaterationCalculator.trilateration(nearest);
+        Point b = TrilaterationCalculator.triangulation(BeaconInfoLoader.getBeaconLocation(keys[0]),
+                BeaconInfoLoader.getBeaconLocation(keys[1]), BeaconInfoLoader.getBeaconLocation(keys[2]),
+                nearest.get(keys[0]), nearest.get(keys[1]), nearest.get(keys[2]));
+        return new Point((a.x + b.x) / 2, (a.y + b.y) / 2);
+    }
+
+    @Benchmark
+    public PositionEstimate multilaterate() {
+        TrilaterationCalculator.multilaterate(beaconX, beaconY, ranges, variances, beaconCount, estimate);
+        return estimate;
+    }
+}